@@ -0,0 +1,143 @@
+package myschedule.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare a JMH CSV result file (<code>-rf csv -rff new.csv</code>) against the committed baseline and print the
+ * change of each benchmark. It exits with status 1 if any benchmark regressed, so it can be used to fail a build. Lower
+ * is better for the time modes (avgt, sample, ss) and higher is better for thrpt.
+ * <p/>
+ * <p>A benchmark regressed only if it got worse than the allowed percentage and its new score interval (score plus or
+ * minus the JMH "Score Error") lies wholly on the worse side of the baseline interval. A short run has error margins
+ * that can be many times its score, and a change within them is noise, not a regression.
+ * <pre>
+ * java -cp target/benchmarks.jar myschedule.benchmarks.BaselineComparator baseline/results.csv new.csv [maxPercent]
+ * </pre>
+ * Benchmarks are matched by name and parameters; the ones only found in one of the files are listed but not compared.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class BaselineComparator {
+    public static final double DEFAULT_MAX_REGRESSION_PERCENT = 20.0;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparator <baseline.csv> <new.csv> [maxRegressionPercent]");
+            System.exit(2);
+        }
+        double maxPercent = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_MAX_REGRESSION_PERCENT;
+        Map<String, Result> baseline = readResults(new File(args[0]));
+        Map<String, Result> current = readResults(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            String key = entry.getKey();
+            Result newResult = entry.getValue();
+            Result oldResult = baseline.get(key);
+            if (oldResult == null) {
+                System.out.println(String.format("NEW        %s %.3f %s", key, newResult.score, newResult.unit));
+                continue;
+            }
+            double changePercent = (newResult.score - oldResult.score) / oldResult.score * 100.0;
+            // Positive means worse.
+            double worsePercent = newResult.isHigherBetter() ? -changePercent : changePercent;
+            boolean worse = worsePercent > maxPercent;
+            boolean regressed = worse && newResult.isWorseBeyondError(oldResult);
+            if (regressed)
+                regressions++;
+            String status = regressed ? "REGRESSED" : (worse ? "NOISE" : "OK");
+            System.out.println(String.format("%-10s %s %.3f +/- %.3f -> %.3f +/- %.3f %s (%+.1f%%)", status, key,
+                    oldResult.score, oldResult.error, newResult.score, newResult.error, newResult.unit,
+                    changePercent));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key))
+                System.out.println("MISSING    " + key);
+        }
+
+        System.out.println(regressions + " benchmark(s) regressed by more than " + maxPercent +
+                "% and beyond their error margins.");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    static Map<String, Result> readResults(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<String, Result>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            List<String> header = parseCsvLine(reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0)
+                    continue;
+                List<String> values = parseCsvLine(line);
+                StringBuilder key = new StringBuilder(values.get(0));
+                for (int i = 7; i < header.size() && i < values.size(); i++) {
+                    if (values.get(i).length() > 0)
+                        key.append(" ").append(header.get(i).replace("Param: ", "")).append("=").append(values.get(i));
+                }
+                Result result = new Result();
+                result.mode = values.get(1);
+                result.score = Double.parseDouble(values.get(4));
+                // JMH writes NaN when there are too few samples to compute it.
+                double error = Double.parseDouble(values.get(5));
+                result.error = Double.isNaN(error) ? 0.0 : error;
+                result.unit = values.get(6);
+                results.put(key.toString(), result);
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    static class Result {
+        String mode;
+        double score;
+        double error;
+        String unit;
+
+        boolean isHigherBetter() {
+            return mode.equals("thrpt");
+        }
+
+        /** @return true if this score interval does not overlap the baseline one and is on its worse side. */
+        boolean isWorseBeyondError(Result baseline) {
+            if (isHigherBetter())
+                return score + error < baseline.score - baseline.error;
+            else
+                return score - error > baseline.score + baseline.error;
+        }
+    }
+}
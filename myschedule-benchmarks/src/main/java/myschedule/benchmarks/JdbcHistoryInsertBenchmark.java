@@ -0,0 +1,141 @@
+package myschedule.benchmarks;
+
+import myschedule.quartz.extra.AsyncHistoryWriter;
+import myschedule.quartz.extra.HistoryEvent;
+import myschedule.quartz.extra.HistoryStore;
+import myschedule.quartz.extra.JdbcSchedulerHistoryPlugin;
+import myschedule.quartz.extra.SchedulerTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many history events per second {@link JdbcSchedulerHistoryPlugin} can insert into an embedded H2
+ * database: one event per statement, a batch of 100 events, and (with <code>asyncWrite=true</code>) the cost seen by a
+ * worker thread handing an event to the async writer, which is bounded by how fast the writer drains its queue.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcHistoryInsertBenchmark {
+    private static final String DB_URL = "jdbc:h2:mem:JdbcHistoryInsertBenchmark;DB_CLOSE_DELAY=-1";
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"false", "true"})
+    public boolean asyncWrite;
+
+    private SchedulerTemplate scheduler;
+    private HistoryStore historyStore;
+    private AsyncHistoryWriter<HistoryEvent> asyncHistoryWriter;
+    private HistoryEvent event;
+    private List<HistoryEvent> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        execute("DROP TABLE IF EXISTS qrtz_scheduler_history");
+        execute("CREATE TABLE qrtz_scheduler_history (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "host_ip VARCHAR(15) NOT NULL, host_name VARCHAR(256) NOT NULL, " +
+                "scheduler_name VARCHAR(256) NOT NULL, event_type VARCHAR(128) NOT NULL, " +
+                "event_name VARCHAR(128) NOT NULL, event_time TIMESTAMP NOT NULL, " +
+                "info1 VARCHAR(256), info2 VARCHAR(256), info3 VARCHAR(256), info4 VARCHAR(256), " +
+                "info5 VARCHAR(256))");
+        execute("CREATE INDEX qrtz_scheduler_history_time_idx ON qrtz_scheduler_history(event_time, id)");
+
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "JdbcHistoryInsertBenchmark");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        props.put("org.quartz.dataSource.historyDs.driver", "org.h2.Driver");
+        props.put("org.quartz.dataSource.historyDs.URL", DB_URL);
+        props.put("org.quartz.dataSource.historyDs.maxConnections", "3");
+        String prefix = "org.quartz.plugin.MyJobHistoryPlugin.";
+        props.put(prefix + "class", JdbcSchedulerHistoryPlugin.class.getName());
+        props.put(prefix + "dataSourceName", "historyDs");
+        props.put(prefix + "insertSql", "INSERT INTO qrtz_scheduler_history(host_ip, host_name, scheduler_name, " +
+                "event_type, event_name, event_time, info1, info2, info3, info4, info5) VALUES(?,?,?,?,?,?,?,?,?,?,?)");
+        props.put(prefix + "querySql", "SELECT * FROM qrtz_scheduler_history ORDER BY event_time DESC");
+        props.put(prefix + "deleteSql", "DELETE FROM qrtz_scheduler_history WHERE event_time < ?");
+        props.put(prefix + "idColumnName", "id");
+        props.put(prefix + "asyncWrite", "" + asyncWrite);
+        scheduler = new SchedulerTemplate(props);
+
+        JdbcSchedulerHistoryPlugin plugin = (JdbcSchedulerHistoryPlugin) scheduler.getContext().get(
+                JdbcSchedulerHistoryPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        historyStore = plugin.getHistoryStore();
+        asyncHistoryWriter = plugin.getAsyncHistoryWriter();
+
+        event = new HistoryEvent("127.0.0.1", "localhost", "JdbcHistoryInsertBenchmark", "JobListener",
+                "jobWasExecuted", new Date(), "MyJob", "DEFAULT", "MyTrigger", "DEFAULT", null);
+        batch = new ArrayList<HistoryEvent>();
+        for (int i = 0; i < BATCH_SIZE; i++)
+            batch.add(event);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws Exception {
+        // Keep the table from growing across iterations so each one starts from the same state.
+        execute("TRUNCATE TABLE qrtz_scheduler_history");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+        execute("DROP TABLE qrtz_scheduler_history");
+    }
+
+    private static void execute(String sql) throws Exception {
+        Connection conn = DriverManager.getConnection(DB_URL);
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.execute(sql);
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    public void insertOne() {
+        if (asyncWrite)
+            asyncHistoryWriter.add(event);
+        else
+            historyStore.append(event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch() {
+        if (asyncWrite) {
+            for (HistoryEvent e : batch)
+                asyncHistoryWriter.add(e);
+        } else {
+            historyStore.appendBatch(batch);
+        }
+    }
+}
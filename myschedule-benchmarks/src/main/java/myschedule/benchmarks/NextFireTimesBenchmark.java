@@ -0,0 +1,73 @@
+package myschedule.benchmarks;
+
+import myschedule.quartz.extra.SchedulerTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.Trigger;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SchedulerTemplate#getNextFireTimes(Trigger, Date, int)} for a cron and a simple trigger, which is
+ * what the UI calls to preview the fire times of a trigger.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NextFireTimesBenchmark {
+    @Param({"10", "100", "1000"})
+    public int maxCount;
+
+    private SchedulerTemplate scheduler;
+    private Trigger cronTrigger;
+    private Trigger simpleTrigger;
+    private Date startTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "NextFireTimesBenchmark");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        scheduler = new SchedulerTemplate(props);
+        startTime = new Date();
+        // Every 5 minutes during business hours on week days.
+        cronTrigger = SchedulerTemplate.createCronTrigger("cron", "0 0/5 8-17 ? * MON-FRI", startTime);
+        // Every minute, forever.
+        simpleTrigger = SchedulerTemplate.createSimpleTrigger("simple", -1, 60 * 1000, startTime);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public List<Date> cronTrigger() {
+        return scheduler.getNextFireTimes(cronTrigger, startTime, maxCount);
+    }
+
+    @Benchmark
+    public List<Date> simpleTrigger() {
+        return scheduler.getNextFireTimes(simpleTrigger, startTime, maxCount);
+    }
+}
@@ -0,0 +1,51 @@
+package myschedule.benchmarks;
+
+import myschedule.quartz.extra.util.ProcessUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link ProcessUtils#run(long, String[], ProcessUtils.LineAction)} with a command that
+ * prints one line and exits right away, so the time is the spawn, the output readers and the completion wait. With a
+ * timeout, completion is checked by polling every 10% of the timeout, which shows up here as added latency.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessUtilsBenchmark {
+    /** Timeout in millis, 0 for no timeout. */
+    @Param({"0", "1000"})
+    public long timeout;
+
+    private String[] command;
+
+    @Setup
+    public void setUp() {
+        if (ProcessUtils.getOsType() == ProcessUtils.EOSType.WINDOWS)
+            command = new String[]{"cmd.exe", "/C", "echo", "hello"};
+        else
+            command = new String[]{"echo", "hello"};
+    }
+
+    @Benchmark
+    public int run() {
+        ProcessUtils.LineCollector lineCollector = new ProcessUtils.LineCollector();
+        return ProcessUtils.run(timeout, command, lineCollector);
+    }
+}
@@ -0,0 +1,61 @@
+package myschedule.benchmarks;
+
+import myschedule.quartz.extra.util.Props;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Props#expandVariables()} on settings shaped like myschedule-settings.properties: every entry refers
+ * to a base directory entry, which itself refers to a system property. Since expanding changes the Props, each call
+ * expands a fresh copy; the <code>copyOnly</code> benchmark measures that copy alone so it can be subtracted.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropsBenchmark {
+    @Param({"10", "100", "1000"})
+    public int entryCount;
+
+    private Map<String, String> settings;
+
+    @Setup
+    public void setUp() {
+        settings = new HashMap<String, String>();
+        settings.put("myschedule.key0", "${user.home}/.myschedule");
+        for (int i = 1; i < entryCount; i++)
+            settings.put("myschedule.key" + i, "${myschedule.key0}/dir" + i);
+    }
+
+    @Benchmark
+    public Props copyOnly() {
+        Props props = new Props();
+        props.putAll(settings);
+        return props;
+    }
+
+    @Benchmark
+    public Props expandVariables() {
+        Props props = new Props();
+        props.putAll(settings);
+        props.expandVariables();
+        return props;
+    }
+}
@@ -0,0 +1,98 @@
+package myschedule.benchmarks;
+
+import myschedule.quartz.extra.SchedulerSnapshot;
+import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.quartz.extra.job.LoggerJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SchedulerTemplate#getAllTriggers()}, {@link SchedulerTemplate#getAllJobDetails()} and
+ * {@link SchedulerTemplate#snapshot()} over a RAMJobStore holding <code>triggerCount</code> jobs, each with one
+ * trigger, spread over 100 groups. The scheduler is never started, so nothing fires while measuring.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class SchedulerTemplateBenchmark {
+    private static final int GROUP_COUNT = 100;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int triggerCount;
+
+    private SchedulerTemplate scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "SchedulerTemplateBenchmark");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        scheduler = new SchedulerTemplate(props);
+
+        Map<JobDetail, Set<? extends Trigger>> batch = new HashMap<JobDetail, Set<? extends Trigger>>();
+        for (int i = 0; i < triggerCount; i++) {
+            String name = "job" + i;
+            String group = "group" + (i % GROUP_COUNT);
+            JobDetail job = SchedulerTemplate.createJobDetail(JobKey.jobKey(name, group), LoggerJob.class, true, null);
+            Trigger trigger = SchedulerTemplate.createCronTrigger(TriggerKey.triggerKey(name, group),
+                    "0 0 0 1 1 ? 2099", null, null);
+            batch.put(job, Collections.singleton(trigger));
+            if (batch.size() >= BATCH_SIZE) {
+                scheduler.scheduleJobs(batch, true);
+                batch.clear();
+            }
+        }
+        if (batch.size() > 0)
+            scheduler.scheduleJobs(batch, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public List<Trigger> getAllTriggers() {
+        return scheduler.getAllTriggers();
+    }
+
+    @Benchmark
+    public List<JobDetail> getAllJobDetails() {
+        return scheduler.getAllJobDetails();
+    }
+
+    @Benchmark
+    public SchedulerSnapshot snapshot() {
+        return scheduler.snapshot();
+    }
+}
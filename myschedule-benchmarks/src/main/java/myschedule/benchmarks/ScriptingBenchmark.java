@@ -0,0 +1,56 @@
+package myschedule.benchmarks;
+
+import myschedule.quartz.extra.util.ScriptingUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of one {@link ScriptingUtils#runScriptText(String, String, Map)} call per script engine. Each
+ * call looks up a new engine and evaluates the script from source, the same as ScriptingJob does on every fire, so
+ * this is mostly engine creation and compile time.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptingBenchmark {
+    @Param({"JavaScript", "groovy"})
+    public String scriptEngineName;
+
+    private String scriptText;
+    private Map<String, Object> bindingParams;
+
+    @Setup
+    public void setUp() {
+        // Fail early if the engine is not available in this JVM.
+        ScriptingUtils.getScriptEngine(scriptEngineName);
+        if (scriptEngineName.equals("groovy"))
+            scriptText = "def sum = 0; for (i in 1..count) { sum += i }; sum";
+        else
+            scriptText = "var sum = 0; for (var i = 1; i <= count; i++) { sum += i; } sum;";
+        bindingParams = new HashMap<String, Object>();
+        bindingParams.put("count", 100);
+    }
+
+    @Benchmark
+    public Object runScriptText() {
+        return ScriptingUtils.runScriptText(scriptEngineName, scriptText, bindingParams);
+    }
+}
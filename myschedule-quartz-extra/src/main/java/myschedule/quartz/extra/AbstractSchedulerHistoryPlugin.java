@@ -0,0 +1,386 @@
+package myschedule.quartz.extra;
+
+import org.quartz.*;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Base class of the scheduler history plugins. It registers the SchedulerListener and TriggerListener that turn the
+ * scheduler events into {@link HistoryEvent}, appends them to a {@link HistoryStore}, and stores the plugin instance
+ * into the scheduler context map under <code>schedulerContextKey</code> so other components (eg: the web UI) can query
+ * the histories. See {@link JdbcSchedulerHistoryPlugin} for what each event records.
+ * <p/>
+ * <p>Each subclass creates its default store from its own settings: {@link JdbcSchedulerHistoryPlugin},
+ * {@link FileSchedulerHistoryPlugin} and {@link MemorySchedulerHistoryPlugin}. To use your own store instead, set
+ * <code>historyStoreClass</code> to a HistoryStore implementation with a public no-arg constructor. The subclass
+ * specific settings do not apply to such a store.
+ * <pre>
+ * org.quartz.plugin.MyJobHistoryPlugin.class = myschedule.quartz.extra.MemorySchedulerHistoryPlugin
+ * org.quartz.plugin.MyJobHistoryPlugin.historyStoreClass = com.mycompany.MyHistoryStore
+ * </pre>
+ * <p/>
+ * <p>By default each event is appended on the thread that fired it (eg: the Quartz worker thread). For a slow store
+ * you may turn on <code>asyncWrite</code> so listeners only put events into a bounded in-memory queue, and a background
+ * {@link AsyncHistoryWriter} thread appends them to the store in batches. A batch is written when it has
+ * <code>asyncBatchSize</code> events, or when <code>asyncFlushIntervalInMillis</code> has passed. When the queue is
+ * full, <code>asyncOverflowPolicy</code> decides to BLOCK the caller, DROP_OLDEST event, or SPILL to
+ * <code>asyncSpillFile</code>. Queued events are flushed when the plugin shutdown.
+ * <pre>
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncWrite = true
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncQueueCapacity = 10000
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncBatchSize = 100
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncFlushIntervalInMillis = 1000
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncOverflowPolicy = BLOCK
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncSpillFile = /var/tmp/myschedule-history-spill.dat
+ * </pre>
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public abstract class AbstractSchedulerHistoryPlugin implements SchedulerPlugin {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractSchedulerHistoryPlugin.class);
+    private String name;
+    private Scheduler scheduler;
+    private String localIp;
+    private String localHost;
+    private String schedulerNameAndId;
+    private String schedulerContextKey;
+    private String historyStoreClass;
+    private HistoryStore historyStore;
+
+    private boolean asyncWrite;
+    private int asyncQueueCapacity = 10000;
+    private int asyncBatchSize = 100;
+    private long asyncFlushIntervalInMillis = 1000;
+    private String asyncOverflowPolicy = AsyncHistoryWriter.OverflowPolicy.BLOCK.name();
+    private String asyncSpillFile;
+    private long asyncShutdownTimeoutInMillis = 30000;
+    private AsyncHistoryWriter<HistoryEvent> asyncHistoryWriter;
+
+    public void setSchedulerContextKey(String schedulerContextKey) {
+        this.schedulerContextKey = schedulerContextKey;
+    }
+
+    public String getSchedulerContextKey() {
+        return schedulerContextKey;
+    }
+
+    public void setHistoryStoreClass(String historyStoreClass) {
+        this.historyStoreClass = historyStoreClass;
+    }
+
+    public void setAsyncWrite(boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    public void setAsyncBatchSize(int asyncBatchSize) {
+        this.asyncBatchSize = asyncBatchSize;
+    }
+
+    public void setAsyncFlushIntervalInMillis(long asyncFlushIntervalInMillis) {
+        this.asyncFlushIntervalInMillis = asyncFlushIntervalInMillis;
+    }
+
+    public void setAsyncOverflowPolicy(String asyncOverflowPolicy) {
+        this.asyncOverflowPolicy = asyncOverflowPolicy;
+    }
+
+    public void setAsyncSpillFile(String asyncSpillFile) {
+        this.asyncSpillFile = asyncSpillFile;
+    }
+
+    public void setAsyncShutdownTimeoutInMillis(long asyncShutdownTimeoutInMillis) {
+        this.asyncShutdownTimeoutInMillis = asyncShutdownTimeoutInMillis;
+    }
+
+    /**
+     * @return the background writer if asyncWrite is enabled, else null.
+     */
+    public AsyncHistoryWriter<HistoryEvent> getAsyncHistoryWriter() {
+        return asyncHistoryWriter;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public String getSchedulerNameAndId() {
+        return schedulerNameAndId;
+    }
+
+    /**
+     * @return the store of this plugin, after it's initialized.
+     */
+    public HistoryStore getHistoryStore() {
+        return historyStore;
+    }
+
+    /**
+     * Query one page of history events, newest first. See {@link HistoryQuery}.
+     */
+    public List<HistoryEvent> queryHistory(HistoryQuery query) {
+        return historyStore.query(query);
+    }
+
+    /**
+     * @return the scheduler context key to use when <code>schedulerContextKey</code> is not set.
+     */
+    protected abstract String getDefaultSchedulerContextKey();
+
+    /**
+     * Create the store to use when <code>historyStoreClass</code> is not set. It will be opened by this class.
+     */
+    protected abstract HistoryStore createHistoryStore() throws SchedulerException;
+
+    /**
+     * Called after the schedulerStarted event is recorded. Default does nothing.
+     */
+    protected void onSchedulerStarted() {
+    }
+
+    /**
+     * Store one history event. This is called by the listeners on the thread that fired the event.
+     */
+    protected void recordHistory(HistoryEvent event) {
+        if (asyncHistoryWriter != null)
+            asyncHistoryWriter.add(event);
+        else
+            historyStore.append(event);
+    }
+
+    private void recordHistory(String eventType, String eventName, String info1, String info2, String info3,
+                               String info4, String info5) {
+        recordHistory(new HistoryEvent(localIp, localHost, schedulerNameAndId, eventType, eventName, new Date(),
+                info1, info2, info3, info4, info5));
+    }
+
+    /** Same as how the fireTime would look like when it's stored in a VARCHAR column. */
+    private static String toInfo(Date time) {
+        return (time == null) ? null : new java.sql.Timestamp(time.getTime()).toString();
+    }
+
+    private String retrieveLocalHost() {
+        try {
+            InetAddress localHost = InetAddress.getLocalHost();
+            return localHost.getHostName();
+        } catch (UnknownHostException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String retrieveLocalIp() {
+        try {
+            InetAddress localHost = InetAddress.getLocalHost();
+            return localHost.getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String retrieveSchedulerNameAndId() {
+        try {
+            return scheduler.getSchedulerName() + "_$_" + scheduler.getSchedulerInstanceId();
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper) throws SchedulerException {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.localIp = retrieveLocalIp();
+        this.localHost = retrieveLocalHost();
+        this.schedulerNameAndId = retrieveSchedulerNameAndId();
+
+        // Open the store before any event can be recorded.
+        if (historyStoreClass != null)
+            historyStore = newHistoryStore(loadHelper);
+        else
+            historyStore = createHistoryStore();
+        try {
+            historyStore.open();
+        } catch (RuntimeException e) {
+            throw new SchedulerException("Plugin " + name + " failed to open " + historyStore, e);
+        }
+        logger.info("Plugin {} uses history store {}", name, historyStore);
+        if (asyncWrite)
+            initAsyncHistoryWriter();
+
+        // Register listeners
+        scheduler.getListenerManager().addTriggerListener(new HistoryTriggerListener());
+        scheduler.getListenerManager().addSchedulerListener(new HistorySchedulerListener());
+
+        // Store this plugin instance into scheduler context map
+        if (schedulerContextKey == null)
+            schedulerContextKey = getDefaultSchedulerContextKey();
+        scheduler.getContext().put(schedulerContextKey, this);
+        logger.info("Added plugin instance {} to scheduler context key: {}", this, schedulerContextKey);
+    }
+
+    private HistoryStore newHistoryStore(ClassLoadHelper loadHelper) throws SchedulerException {
+        try {
+            return (HistoryStore) loadHelper.loadClass(historyStoreClass).newInstance();
+        } catch (Exception e) {
+            throw new SchedulerException("Plugin " + name + " failed to create history store " + historyStoreClass, e);
+        }
+    }
+
+    private void initAsyncHistoryWriter() {
+        asyncHistoryWriter = new AsyncHistoryWriter<HistoryEvent>(name, asyncQueueCapacity,
+                new AsyncHistoryWriter.BatchHandler<HistoryEvent>() {
+                    @Override
+                    public void onBatch(List<HistoryEvent> batch) {
+                        historyStore.appendBatch(batch);
+                    }
+                });
+        asyncHistoryWriter.setBatchSize(asyncBatchSize);
+        asyncHistoryWriter.setFlushIntervalInMillis(asyncFlushIntervalInMillis);
+        AsyncHistoryWriter.OverflowPolicy policy =
+                AsyncHistoryWriter.OverflowPolicy.valueOf(asyncOverflowPolicy.trim().toUpperCase());
+        asyncHistoryWriter.setOverflowPolicy(policy);
+        if (policy == AsyncHistoryWriter.OverflowPolicy.SPILL) {
+            if (asyncSpillFile == null)
+                asyncSpillFile = System.getProperty("java.io.tmpdir") + File.separator +
+                        schedulerNameAndId + "-" + name + "-history-spill.dat";
+            asyncHistoryWriter.setSpillFile(new File(asyncSpillFile));
+        }
+
+        // Start it now, because other plugins may schedule jobs before scheduler is started.
+        asyncHistoryWriter.start();
+    }
+
+    @Override
+    public void start() {
+        logger.info(name + " has started.");
+    }
+
+    @Override
+    public void shutdown() {
+        if (asyncHistoryWriter != null)
+            asyncHistoryWriter.shutdown(asyncShutdownTimeoutInMillis);
+        if (historyStore != null)
+            historyStore.close();
+        logger.info(name + " has shutdown.");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Listeners
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private class HistorySchedulerListener extends SimpleSchedulerListener {
+
+        @Override
+        public void jobScheduled(Trigger trigger) {
+            recordHistory("SchedulerListener", "jobScheduled",
+                    trigger.getKey().toString(), trigger.getJobKey().toString(), null, null, null);
+        }
+
+        @Override
+        public void jobUnscheduled(TriggerKey triggerKey) {
+            recordHistory("SchedulerListener", "jobUnscheduled", triggerKey.toString(), null, null, null, null);
+        }
+
+        @Override
+        public void triggerPaused(TriggerKey triggerKey) {
+            recordHistory("SchedulerListener", "triggerPaused", triggerKey.toString(), null, null, null, null);
+        }
+
+        @Override
+        public void triggersPaused(String triggerGroup) {
+            recordHistory("SchedulerListener", "triggersPaused", triggerGroup, null, null, null, null);
+        }
+
+        @Override
+        public void triggerResumed(TriggerKey triggerKey) {
+            recordHistory("SchedulerListener", "triggerResumed", triggerKey.toString(), null, null, null, null);
+        }
+
+        @Override
+        public void triggersResumed(String triggerGroup) {
+            recordHistory("SchedulerListener", "triggersResumed", triggerGroup, null, null, null, null);
+        }
+
+        @Override
+        public void schedulerError(String msg, SchedulerException cause) {
+            recordHistory("SchedulerListener", "schedulerError", msg, cause.getClass().getName(), null, null, null);
+        }
+
+        @Override
+        public void schedulerInStandbyMode() {
+            recordHistory("SchedulerListener", "schedulerInStandbyMode", null, null, null, null, null);
+        }
+
+        @Override
+        public void schedulerStarted() {
+            recordHistory("SchedulerListener", "schedulerStarted", null, null, null, null, null);
+
+            onSchedulerStarted();
+        }
+
+//        @Override
+//        public void schedulerShutdown() {
+//            // TODO: We can not insert SQL data here yet. See QTZ-257.
+//            //       For now, the workaround is use schedulerShuttingdown(), which called before all pending jobs are
+//            //       completed.
+//            recordHistory("SchedulerListener", "schedulerShutdown", null, null, null, null, null);
+//        }
+
+        @Override
+        public void schedulerShuttingdown() {
+            recordHistory("SchedulerListener", "schedulerShuttingdown", null, null, null, null, null);
+        }
+    }
+
+    private class HistoryTriggerListener implements TriggerListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            recordHistory("TriggerListener", "triggerFired",
+                    trigger.getKey().toString(), trigger.getJobKey().toString(),
+                    context.getFireInstanceId(), toInfo(context.getFireTime()), null);
+        }
+
+        @Override
+        public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+            // Do nothing.
+            return false;
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            recordHistory("TriggerListener", "triggerMisfired",
+                    trigger.getKey().toString(), trigger.getJobKey().toString(), null, null, null);
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                    CompletedExecutionInstruction triggerInstructionCode) {
+            recordHistory("TriggerListener", "triggerComplete",
+                    trigger.getKey().toString(), trigger.getJobKey().toString(),
+                    context.getFireInstanceId(), toInfo(context.getFireTime()), triggerInstructionCode.toString());
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package myschedule.quartz.extra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A background writer that take history records from a bounded in-memory queue and hand them to a
+ * {@link BatchHandler} in batches. A batch is flushed when it reached {@link #setBatchSize(int)} records, or when
+ * {@link #setFlushIntervalInMillis(long)} has passed since the first record of the batch was taken.
+ * <p/>
+ * <p>Producers (eg: the Quartz worker threads calling listeners) only pay for a queue offer. When the queue is full,
+ * the {@link OverflowPolicy} decides what to do:
+ * <ul>
+ * <li><code>BLOCK</code> - producer waits until there is room in queue. No record is lost.</li>
+ * <li><code>DROP_OLDEST</code> - the oldest queued record is discarded to make room for the new one.</li>
+ * <li><code>SPILL</code> - the record is appended to a local spill file, and the writer will load them back once the
+ * queue has drained. Records must be Serializable for this option.</li>
+ * </ul>
+ * <p/>
+ * <p>Calling {@link #shutdown(long)} will stop accepting new records into the queue and flush everything remaining
+ * (including spilled records) before it return. Records added after shutdown are written synchronously.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class AsyncHistoryWriter<T> {
+
+    public static enum OverflowPolicy {
+        BLOCK, DROP_OLDEST, SPILL
+    }
+
+    /**
+     * Callback that perform the actual write of a batch of records.
+     */
+    public static interface BatchHandler<T> {
+        void onBatch(List<T> batch);
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncHistoryWriter.class);
+
+    private String name;
+    private BatchHandler<T> batchHandler;
+    private BlockingQueue<T> queue;
+    private int batchSize = 100;
+    private long flushIntervalInMillis = 1000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private File spillFile;
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private final Object spillLock = new Object();
+    private DataOutputStream spillOut;
+    private AtomicLong spillPendingCount = new AtomicLong();
+
+    private AtomicLong addedCount = new AtomicLong();
+    private AtomicLong writtenCount = new AtomicLong();
+    private AtomicLong failedCount = new AtomicLong();
+    private AtomicLong droppedCount = new AtomicLong();
+    private AtomicLong spilledCount = new AtomicLong();
+    private AtomicLong batchCount = new AtomicLong();
+
+    public AsyncHistoryWriter(String name, int queueCapacity, BatchHandler<T> batchHandler) {
+        this.name = name;
+        this.batchHandler = batchHandler;
+        this.queue = new ArrayBlockingQueue<T>(queueCapacity);
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        this.batchSize = batchSize;
+    }
+
+    public void setFlushIntervalInMillis(long flushIntervalInMillis) {
+        if (flushIntervalInMillis < 1)
+            throw new IllegalArgumentException("Flush interval must be greater than zero.");
+        this.flushIntervalInMillis = flushIntervalInMillis;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void setSpillFile(File spillFile) {
+        this.spillFile = spillFile;
+    }
+
+    public synchronized void start() {
+        if (running)
+            return;
+        if (overflowPolicy == OverflowPolicy.SPILL && spillFile == null)
+            throw new IllegalStateException("Overflow policy SPILL requires a spill file.");
+
+        running = true;
+        writerThread = new Thread(name + "_AsyncHistoryWriter") {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        };
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("{} started with batchSize={}, flushIntervalInMillis={}, overflowPolicy={}",
+                new Object[]{writerThread.getName(), batchSize, flushIntervalInMillis, overflowPolicy});
+
+        // Load any records left by a previous run that did not get a chance to flush.
+        if (spillFile != null && (spillFile.exists() || getDrainingFile().exists()))
+            spillPendingCount.incrementAndGet();
+    }
+
+    /**
+     * Add a record to be written. This method only block the caller if queue is full and overflow policy is BLOCK.
+     */
+    public void add(T item) {
+        addedCount.incrementAndGet();
+        if (!running) {
+            writeBatch(singletonList(item));
+            return;
+        }
+
+        if (queue.offer(item))
+            return;
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.incrementAndGet();
+                    logger.warn("Interrupted while waiting for history queue space. Record dropped: {}", item);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(item)) {
+                    if (queue.poll() != null)
+                        droppedCount.incrementAndGet();
+                }
+                break;
+            case SPILL:
+                spill(item);
+                break;
+        }
+    }
+
+    /**
+     * Stop the writer thread and flush all remaining records, including the spilled ones.
+     *
+     * @param timeoutInMillis max time to wait for the writer thread to finish.
+     */
+    public void shutdown(long timeoutInMillis) {
+        Thread thread;
+        synchronized (this) {
+            if (!running)
+                return;
+            running = false;
+            thread = writerThread;
+        }
+        try {
+            thread.join(timeoutInMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("{} did not finish flushing in {} ms. Queued records left: {}",
+                    new Object[]{thread.getName(), timeoutInMillis, queue.size()});
+        } else {
+            // Any record that raced in while we were stopping will be written here.
+            List<T> batch = new ArrayList<T>();
+            queue.drainTo(batch);
+            if (batch.size() > 0)
+                writeBatch(batch);
+        }
+        logger.info("{} stopped. {}", thread.getName(), this);
+    }
+
+    private void writeLoop() {
+        List<T> batch = new ArrayList<T>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(flushIntervalInMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Queue is idle, this is a good time to bring back spilled records.
+                    if (spillPendingCount.get() > 0)
+                        loadSpilledRecords();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalInMillis;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                        continue;
+                    long waitTime = deadline - System.currentTimeMillis();
+                    if (waitTime <= 0 || !running)
+                        break;
+                    T next = queue.poll(waitTime, TimeUnit.MILLISECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+                writeBatch(batch);
+                batch = new ArrayList<T>(batchSize);
+            } catch (InterruptedException e) {
+                logger.warn("{} interrupted. Queued records will be flushed on shutdown.", name);
+                break;
+            }
+        }
+        if (spillPendingCount.get() > 0)
+            loadSpilledRecords();
+    }
+
+    private void writeBatch(List<T> batch) {
+        try {
+            batchHandler.onBatch(batch);
+            writtenCount.addAndGet(batch.size());
+            batchCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedCount.addAndGet(batch.size());
+            logger.error("Failed to write batch of " + batch.size() + " history records.", e);
+        }
+    }
+
+    private void spill(T item) {
+        synchronized (spillLock) {
+            try {
+                if (spillOut == null)
+                    spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, true)));
+                // Each record is length prefixed so the file stay readable after append from multiple runs.
+                byte[] bytes = serialize(item);
+                spillOut.writeInt(bytes.length);
+                spillOut.write(bytes);
+                spillOut.flush();
+                spilledCount.incrementAndGet();
+                spillPendingCount.incrementAndGet();
+            } catch (IOException e) {
+                droppedCount.incrementAndGet();
+                logger.error("Failed to spill history record to " + spillFile + ". Record dropped: " + item, e);
+            }
+        }
+    }
+
+    private File getDrainingFile() {
+        return new File(spillFile.getPath() + ".draining");
+    }
+
+    private void loadSpilledRecords() {
+        File drainingFile = getDrainingFile();
+        synchronized (spillLock) {
+            spillPendingCount.set(0);
+            if (spillOut != null) {
+                try {
+                    spillOut.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close spill file " + spillFile, e);
+                }
+                spillOut = null;
+            }
+        }
+
+        // A draining file left from a previous load take priority, then the current spill file. Producers may keep
+        // spilling into a new file while we read the renamed one.
+        while (true) {
+            synchronized (spillLock) {
+                if (!drainingFile.exists()) {
+                    if (!spillFile.exists())
+                        return;
+                    if (spillOut != null) {
+                        // New records were spilled while we were loading, leave them to the next idle round.
+                        spillPendingCount.incrementAndGet();
+                        return;
+                    }
+                    if (!spillFile.renameTo(drainingFile)) {
+                        logger.error("Unable to rename spill file {} for loading.", spillFile);
+                        return;
+                    }
+                }
+            }
+            if (!loadSpillFile(drainingFile))
+                return;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean loadSpillFile(File file) {
+        int count = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            List<T> batch = new ArrayList<T>(batchSize);
+            while (true) {
+                int length;
+                byte[] bytes;
+                try {
+                    length = in.readInt();
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    break; // End of file, or a partial record from a crash that we can not recover.
+                }
+                batch.add((T) deserialize(bytes));
+                count++;
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch = new ArrayList<T>(batchSize);
+                }
+            }
+            if (batch.size() > 0)
+                writeBatch(batch);
+        } catch (Exception e) {
+            logger.error("Failed to load spilled history records from " + file, e);
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close spill file " + file, e);
+                }
+            }
+        }
+        logger.info("Loaded {} spilled history records from {}", count, file);
+        if (!file.delete()) {
+            logger.warn("Unable to delete spill file {}", file);
+            return false;
+        }
+        return true;
+    }
+
+    private byte[] serialize(T item) throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(256);
+        ObjectOutputStream objOut = new ObjectOutputStream(bytesOut);
+        objOut.writeObject(item);
+        objOut.close();
+        return bytesOut.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return objIn.readObject();
+        } finally {
+            objIn.close();
+        }
+    }
+
+    private List<T> singletonList(T item) {
+        List<T> list = new ArrayList<T>(1);
+        list.add(item);
+        return list;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    public long getAddedCount() {
+        return addedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncHistoryWriter[" + name + ", queueSize=" + getQueueSize() + ", added=" + getAddedCount() +
+                ", written=" + getWrittenCount() + ", batches=" + getBatchCount() + ", failed=" + getFailedCount() +
+                ", dropped=" + getDroppedCount() + ", spilled=" + getSpilledCount() + "]";
+    }
+}
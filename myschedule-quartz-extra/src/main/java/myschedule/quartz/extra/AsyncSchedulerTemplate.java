@@ -0,0 +1,481 @@
+package myschedule.quartz.extra;
+
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.SchedulerMetaData;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs SchedulerTemplate operations on its own bounded thread pool and returns a Future for each, so a caller such as
+ * a web request thread doesn't block on a slow JobStore or RMI connection. The caller can wait with
+ * Future.get(timeout), cancel, or go on and read the result later.
+ * <pre>
+ * Future&lt;Integer&gt; count = asyncScheduler.countTriggers();
+ * ...
+ * Integer result = count.get(2, TimeUnit.SECONDS);
+ * </pre>
+ * <p/>
+ * <p>The pool has a fixed number of threads and a queue of fixed capacity; submitting to a full queue throws
+ * RejectedExecutionException right away instead of piling up work on a scheduler that doesn't answer. An operation
+ * not done within its timeout is cancelled, so its Future.get() throws CancellationException; an operation already
+ * running is not interrupted (Quartz store calls don't handle that well) and ends in the background.
+ * <p/>
+ * <p>The same read asked again while it's still queued or running, such as several users opening the same screen,
+ * is not run again: the Future of the read in flight is returned. Cancelling such a shared Future cancels it for all
+ * its callers. Writes are never shared. Any other operation can be run with {@link #submit(Call)}.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class AsyncSchedulerTemplate {
+    public static final int DEFAULT_THREAD_COUNT = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSchedulerTemplate.class);
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final SchedulerTemplate scheduler;
+    private final long defaultTimeoutInMillis;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timeoutExecutor;
+    private final ConcurrentMap<Object, Operation<?>> readsInFlight = new ConcurrentHashMap<Object, Operation<?>>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+
+    public AsyncSchedulerTemplate(SchedulerTemplate scheduler) {
+        this(scheduler, DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_CAPACITY, 0);
+    }
+
+    /**
+     * @param defaultTimeoutInMillis the timeout of the operations submitted without one. Zero or less for none.
+     */
+    public AsyncSchedulerTemplate(SchedulerTemplate scheduler, int threadCount, int queueCapacity,
+                                  long defaultTimeoutInMillis) {
+        this.scheduler = scheduler;
+        this.defaultTimeoutInMillis = defaultTimeoutInMillis;
+
+        final String namePrefix = "AsyncSchedulerTemplate-" + POOL_COUNT.incrementAndGet() + "-";
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        timeoutExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + "timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public SchedulerTemplate getScheduler() {
+        return scheduler;
+    }
+
+    /** Run any operation on the pool, with the default timeout. */
+    public <V> Future<V> submit(Call<V> call) {
+        return submit(call, defaultTimeoutInMillis);
+    }
+
+    /**
+     * Run any operation on the pool.
+     *
+     * @param timeoutInMillis cancel the operation if not done by then. Zero or less for no timeout.
+     * @throws RejectedExecutionException if the queue is full or this has been shut down.
+     */
+    public <V> Future<V> submit(Call<V> call, long timeoutInMillis) {
+        Operation<V> operation = new Operation<V>(call, null);
+        executor.execute(operation);
+        startTimeout(operation, timeoutInMillis);
+        return operation;
+    }
+
+    /**
+     * Run a read operation on the pool, or return the Future of the same read if one is already in flight.
+     *
+     * @param readKey identifies the read, two reads with equal keys must give the same result.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Future<V> submitRead(Object readKey, Call<V> call) {
+        Operation<V> operation = new Operation<V>(call, readKey);
+        while (true) {
+            Operation<V> inFlight = (Operation<V>) readsInFlight.putIfAbsent(readKey, operation);
+            if (inFlight == null)
+                break;
+            if (!inFlight.isDone()) {
+                coalescedCount.incrementAndGet();
+                return inFlight;
+            }
+            // Done but not removed yet, its result may already be out of date.
+            if (readsInFlight.replace(readKey, inFlight, operation))
+                break;
+        }
+        try {
+            executor.execute(operation);
+        } catch (RejectedExecutionException e) {
+            readsInFlight.remove(readKey, operation);
+            throw e;
+        }
+        startTimeout(operation, defaultTimeoutInMillis);
+        return operation;
+    }
+
+    private void startTimeout(final Operation<?> operation, final long timeoutInMillis) {
+        if (timeoutInMillis <= 0)
+            return;
+        operation.timeout = timeoutExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Counted first, so it's seen by the callers woken up by the cancel.
+                timedOutCount.incrementAndGet();
+                if (!operation.cancel(false)) {
+                    timedOutCount.decrementAndGet();
+                } else {
+                    logger.warn("Scheduler operation {} cancelled after its timeout of {} ms.",
+                            (operation.readKey == null) ? operation.call.getClass().getName() : operation.readKey,
+                            timeoutInMillis);
+                }
+            }
+        }, timeoutInMillis, TimeUnit.MILLISECONDS);
+        // Done before the timeout was set.
+        if (operation.isDone())
+            operation.timeout.cancel(false);
+    }
+
+    // == Reads, shared while in flight
+
+    public Future<Trigger> getTrigger(final TriggerKey triggerKey) {
+        return submitRead(new ReadKey("getTrigger", triggerKey), new Call<Trigger>() {
+            @Override
+            public Trigger call(SchedulerTemplate scheduler) {
+                return scheduler.getTrigger(triggerKey);
+            }
+        });
+    }
+
+    public Future<TriggerState> getTriggerState(final TriggerKey triggerKey) {
+        return submitRead(new ReadKey("getTriggerState", triggerKey), new Call<TriggerState>() {
+            @Override
+            public TriggerState call(SchedulerTemplate scheduler) {
+                return scheduler.getTriggerState(triggerKey);
+            }
+        });
+    }
+
+    public Future<JobDetail> getJobDetail(final JobKey jobKey) {
+        return submitRead(new ReadKey("getJobDetail", jobKey), new Call<JobDetail>() {
+            @Override
+            public JobDetail call(SchedulerTemplate scheduler) {
+                return scheduler.getJobDetail(jobKey);
+            }
+        });
+    }
+
+    public Future<List<? extends Trigger>> getTriggersOfJob(final JobKey jobKey) {
+        return submitRead(new ReadKey("getTriggersOfJob", jobKey), new Call<List<? extends Trigger>>() {
+            @Override
+            public List<? extends Trigger> call(SchedulerTemplate scheduler) {
+                return scheduler.getTriggersOfJob(jobKey);
+            }
+        });
+    }
+
+    public Future<List<Trigger>> getAllTriggers() {
+        return submitRead("getAllTriggers", new Call<List<Trigger>>() {
+            @Override
+            public List<Trigger> call(SchedulerTemplate scheduler) {
+                return scheduler.getAllTriggers();
+            }
+        });
+    }
+
+    public Future<List<JobDetail>> getAllJobDetails() {
+        return submitRead("getAllJobDetails", new Call<List<JobDetail>>() {
+            @Override
+            public List<JobDetail> call(SchedulerTemplate scheduler) {
+                return scheduler.getAllJobDetails();
+            }
+        });
+    }
+
+    public Future<List<Trigger>> getPausedTriggers() {
+        return submitRead("getPausedTriggers", new Call<List<Trigger>>() {
+            @Override
+            public List<Trigger> call(SchedulerTemplate scheduler) {
+                return scheduler.getPausedTriggers();
+            }
+        });
+    }
+
+    public Future<SchedulerSnapshot> snapshot() {
+        return submitRead("snapshot", new Call<SchedulerSnapshot>() {
+            @Override
+            public SchedulerSnapshot call(SchedulerTemplate scheduler) {
+                return scheduler.snapshot();
+            }
+        });
+    }
+
+    public Future<Integer> countTriggers() {
+        return submitRead("countTriggers", new Call<Integer>() {
+            @Override
+            public Integer call(SchedulerTemplate scheduler) {
+                return scheduler.countTriggers();
+            }
+        });
+    }
+
+    public Future<Integer> countJobs() {
+        return submitRead("countJobs", new Call<Integer>() {
+            @Override
+            public Integer call(SchedulerTemplate scheduler) {
+                return scheduler.countJobs();
+            }
+        });
+    }
+
+    public Future<List<JobExecutionContext>> getCurrentlyExecutingJobs() {
+        return submitRead("getCurrentlyExecutingJobs", new Call<List<JobExecutionContext>>() {
+            @Override
+            public List<JobExecutionContext> call(SchedulerTemplate scheduler) {
+                return scheduler.getCurrentlyExecutingJobs();
+            }
+        });
+    }
+
+    public Future<SchedulerMetaData> getSchedulerMetaData() {
+        return submitRead("getSchedulerMetaData", new Call<SchedulerMetaData>() {
+            @Override
+            public SchedulerMetaData call(SchedulerTemplate scheduler) {
+                return scheduler.getSchedulerMetaData();
+            }
+        });
+    }
+
+    public Future<List<TriggerKey>> findTriggerKeys(final TriggerFilter filter) {
+        return submit(new Call<List<TriggerKey>>() {
+            @Override
+            public List<TriggerKey> call(SchedulerTemplate scheduler) {
+                return scheduler.findTriggerKeys(filter);
+            }
+        });
+    }
+
+    // == Writes
+
+    public Future<Date> scheduleJob(final JobDetail jobDetail, final Trigger trigger) {
+        return submit(new Call<Date>() {
+            @Override
+            public Date call(SchedulerTemplate scheduler) {
+                return scheduler.scheduleJob(jobDetail, trigger);
+            }
+        });
+    }
+
+    public Future<Boolean> unscheduleJob(final TriggerKey triggerKey) {
+        return submit(new Call<Boolean>() {
+            @Override
+            public Boolean call(SchedulerTemplate scheduler) {
+                return scheduler.unscheduleJob(triggerKey);
+            }
+        });
+    }
+
+    public Future<Boolean> deleteJob(final JobKey jobKey) {
+        return submit(new Call<Boolean>() {
+            @Override
+            public Boolean call(SchedulerTemplate scheduler) {
+                return scheduler.deleteJob(jobKey);
+            }
+        });
+    }
+
+    public Future<Void> triggerJob(final JobKey jobKey) {
+        return submit(new Call<Void>() {
+            @Override
+            public Void call(SchedulerTemplate scheduler) {
+                scheduler.triggerJob(jobKey);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> pauseTrigger(final TriggerKey triggerKey) {
+        return submit(new Call<Void>() {
+            @Override
+            public Void call(SchedulerTemplate scheduler) {
+                scheduler.pauseTrigger(triggerKey);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> resumeTrigger(final TriggerKey triggerKey) {
+        return submit(new Call<Void>() {
+            @Override
+            public Void call(SchedulerTemplate scheduler) {
+                scheduler.resumeTrigger(triggerKey);
+                return null;
+            }
+        });
+    }
+
+    public Future<BulkOperationResult> pauseTriggers(final TriggerFilter filter) {
+        return submit(new Call<BulkOperationResult>() {
+            @Override
+            public BulkOperationResult call(SchedulerTemplate scheduler) {
+                return scheduler.pauseTriggers(filter);
+            }
+        });
+    }
+
+    public Future<BulkOperationResult> resumeTriggers(final TriggerFilter filter) {
+        return submit(new Call<BulkOperationResult>() {
+            @Override
+            public BulkOperationResult call(SchedulerTemplate scheduler) {
+                return scheduler.resumeTriggers(filter);
+            }
+        });
+    }
+
+    public Future<BulkOperationResult> unscheduleJobs(final TriggerFilter filter) {
+        return submit(new Call<BulkOperationResult>() {
+            @Override
+            public BulkOperationResult call(SchedulerTemplate scheduler) {
+                return scheduler.unscheduleJobs(filter);
+            }
+        });
+    }
+
+    public Future<BulkOperationResult> deleteJobs(final TriggerFilter filter) {
+        return submit(new Call<BulkOperationResult>() {
+            @Override
+            public BulkOperationResult call(SchedulerTemplate scheduler) {
+                return scheduler.deleteJobs(filter);
+            }
+        });
+    }
+
+    // == Pool state
+
+    /** @return the number of operations waiting for a thread. */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /** @return the number of operations running now. */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /** @return the number of reads that got the Future of the same read in flight instead of running again. */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /** @return the number of operations cancelled by their timeout. */
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /** Stop taking operations. The ones queued or running still end, but timeouts no longer apply. */
+    public void shutdown() {
+        executor.shutdown();
+        timeoutExecutor.shutdownNow();
+    }
+
+    /** An operation run on the pool. */
+    public static interface Call<V> {
+        V call(SchedulerTemplate scheduler) throws Exception;
+    }
+
+    /** The key of a read of one trigger or job. */
+    private static class ReadKey {
+        private final String operation;
+        private final Object key;
+
+        ReadKey(String operation, Object key) {
+            this.operation = operation;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ReadKey))
+                return false;
+            ReadKey readKey = (ReadKey) other;
+            return operation.equals(readKey.operation) && key.equals(readKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operation.hashCode() + key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return operation + "(" + key + ")";
+        }
+    }
+
+    private class Operation<V> extends FutureTask<V> {
+        private final Call<V> call;
+        private final Object readKey;
+        private volatile ScheduledFuture<?> timeout;
+
+        Operation(final Call<V> call, Object readKey) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return call.call(scheduler);
+                }
+            });
+            this.call = call;
+            this.readKey = readKey;
+        }
+
+        @Override
+        protected void done() {
+            if (readKey != null)
+                readsInFlight.remove(readKey, this);
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null)
+                timeout.cancel(false);
+            // Free its place in the queue now, instead of when a thread gets to it.
+            if (isCancelled())
+                executor.remove(this);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The summary of a bulk operation of SchedulerTemplate on the triggers selected by a {@link TriggerFilter}, such as
+ * {@link SchedulerTemplate#pauseTriggers(TriggerFilter)}.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class BulkOperationResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String operation;
+    private final int matchedCount;
+    private final int changedCount;
+    private final boolean changedCountMaximum;
+    private final int storeCallCount;
+    private final long elapsedInMillis;
+    private final List<String> failures;
+
+    public BulkOperationResult(String operation, int matchedCount, int changedCount, int storeCallCount,
+                               long elapsedInMillis, List<String> failures) {
+        this(operation, matchedCount, changedCount, false, storeCallCount, elapsedInMillis, failures);
+    }
+
+    public BulkOperationResult(String operation, int matchedCount, int changedCount, boolean changedCountMaximum,
+                               int storeCallCount, long elapsedInMillis, List<String> failures) {
+        this.operation = operation;
+        this.matchedCount = matchedCount;
+        this.changedCount = changedCount;
+        this.changedCountMaximum = changedCountMaximum;
+        this.storeCallCount = storeCallCount;
+        this.elapsedInMillis = elapsedInMillis;
+        this.failures = new ArrayList<String>(failures);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /** @return the number of triggers (or jobs for deleteJobs) selected by the filter. */
+    public int getMatchedCount() {
+        return matchedCount;
+    }
+
+    /** @return the number of triggers or jobs the operation was done on without error. */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * @return true if {@link #getChangedCount()} is only a maximum, because the scheduler reported that some of the
+     * triggers or jobs of a call were already gone without saying which ones.
+     */
+    public boolean isChangedCountMaximum() {
+        return changedCountMaximum;
+    }
+
+    /** @return the number of scheduler calls made to change them, each one taking the JobStore lock once. */
+    public int getStoreCallCount() {
+        return storeCallCount;
+    }
+
+    public long getElapsedInMillis() {
+        return elapsedInMillis;
+    }
+
+    /** @return one message per trigger or job that failed, with its key. */
+    public List<String> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkOperationResult[" + operation + ", matched=" + matchedCount + ", changed=" +
+                (changedCountMaximum ? "<=" : "") + changedCount +
+                ", failed=" + failures.size() + ", storeCalls=" + storeCallCount + ", elapsedInMillis=" +
+                elapsedInMillis + "]";
+    }
+}
@@ -0,0 +1,222 @@
+package myschedule.quartz.extra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many OS commands run at once: in total, and in each command group (the job group by default). The
+ * trigger listener of {@link CommandGatePlugin} takes a permit in vetoJobExecution, before an
+ * {@link myschedule.quartz.extra.job.OsCommandJob} runs, and hands it to the job in its JobExecutionContext under
+ * {@link CommandGatePlugin#PERMIT_CONTEXT_KEY}. The job gives it back when its process exits, or the plugin does when
+ * the job ends without starting one. When no permit is free, the fire waits in a fair queue (first come, first
+ * served) up to a wait timeout. A wait timeout of 0 rejects right away, and one less than zero waits as long as it
+ * takes. A rejected permit, or a wait that is interrupted, vetoes the execution: the job does not run this time.
+ * <p/>
+ * <p>The group permit is taken before the global one, always in that order, so two jobs never hold a permit the
+ * other waits for. A group without a limit only takes the global permit.
+ * <p/>
+ * <p>For each limit, the gate counts the permits in use, the jobs waiting, the acquired and rejected permits, and
+ * keeps a histogram of the wait times. See {@link #getStats()}. Configure it with {@link CommandGatePlugin}.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class CommandGate {
+    public static final String GLOBAL_NAME = "ALL";
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandGate.class);
+
+    private final boolean fair;
+    private final Limit globalLimit;
+    private final ConcurrentMap<String, Limit> groupLimits = new ConcurrentHashMap<String, Limit>();
+    private volatile int defaultGroupLimit;
+
+    /**
+     * @param maxConcurrent max commands running at once in total, or 0 for no limit.
+     * @param fair          true to queue the waiting jobs first come, first served.
+     */
+    public CommandGate(int maxConcurrent, boolean fair) {
+        this.fair = fair;
+        this.globalLimit = new Limit(GLOBAL_NAME, maxConcurrent, fair);
+    }
+
+    /** Set the limit of the groups that have none set, 0 for no limit. Only applies to groups not seen yet. */
+    public void setDefaultGroupLimit(int defaultGroupLimit) {
+        this.defaultGroupLimit = defaultGroupLimit;
+    }
+
+    public int getDefaultGroupLimit() {
+        return defaultGroupLimit;
+    }
+
+    /**
+     * Set the max commands running at once in a group, 0 for no limit. The commands running keep their permits,
+     * and give them back to the limit they took them from.
+     */
+    public void setGroupLimit(String group, int limit) {
+        groupLimits.put(group, new Limit(group, limit, fair));
+        logger.info("Command group {} limit set to {}", group, limit);
+    }
+
+    /** Same as {@link #setGroupLimit(String, int)}, but only if the group has no limit yet. */
+    public void setGroupLimitIfAbsent(String group, int limit) {
+        if (!groupLimits.containsKey(group) && groupLimits.putIfAbsent(group, new Limit(group, limit, fair)) == null)
+            logger.info("Command group {} limit set to {}", group, limit);
+    }
+
+    /**
+     * Take a permit to run a command of the group, waiting up to waitInMillis.
+     *
+     * @param waitInMillis how long to wait for a permit. 0 does not wait, less than zero waits as long as it takes.
+     * @return the permit to release when the command is done, or null if rejected.
+     * @throws InterruptedException if interrupted while waiting. No permit is held then.
+     */
+    public Permit acquire(String group, long waitInMillis) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        List<Limit> acquired = new ArrayList<Limit>(2);
+        Limit groupLimit = getGroupLimit(group);
+        Limit[] limits = (groupLimit == null) ? new Limit[]{globalLimit} : new Limit[]{groupLimit, globalLimit};
+        boolean done = false;
+        try {
+            for (Limit limit : limits) {
+                long remaining = (waitInMillis < 0) ? -1 :
+                        Math.max(0, waitInMillis - (System.currentTimeMillis() - startTime));
+                if (!limit.acquire(remaining, startTime)) {
+                    logger.debug("No permit for command group {} after {} ms, limit {} is full.",
+                            new Object[]{group, System.currentTimeMillis() - startTime, limit.name});
+                    return null;
+                }
+                acquired.add(limit);
+            }
+            done = true;
+            return new Permit(group, acquired);
+        } finally {
+            if (!done) {
+                for (Limit limit : acquired)
+                    limit.release();
+            }
+        }
+    }
+
+    private Limit getGroupLimit(String group) {
+        Limit limit = groupLimits.get(group);
+        if (limit == null) {
+            int defaultLimit = defaultGroupLimit;
+            if (defaultLimit <= 0)
+                return null;
+            Limit newLimit = new Limit(group, defaultLimit, fair);
+            limit = groupLimits.putIfAbsent(group, newLimit);
+            if (limit == null)
+                limit = newLimit;
+        }
+        return (limit.limit > 0) ? limit : null;
+    }
+
+    /** @return the stats of the global limit first, then of each group limit sorted by name. */
+    public List<CommandGateStats> getStats() {
+        List<CommandGateStats> groupStats = new ArrayList<CommandGateStats>();
+        for (Limit limit : groupLimits.values())
+            groupStats.add(limit.getStats());
+        Collections.sort(groupStats, new Comparator<CommandGateStats>() {
+            @Override
+            public int compare(CommandGateStats a, CommandGateStats b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        List<CommandGateStats> result = new ArrayList<CommandGateStats>();
+        result.add(globalLimit.getStats());
+        result.addAll(groupStats);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandGate[maxConcurrent=" + globalLimit.limit + ", groups=" + groupLimits.keySet() + "]";
+    }
+
+    /**
+     * Permits held for one command. Release it once the command is done, more calls do nothing.
+     */
+    public static class Permit {
+        private final String group;
+        private final List<Limit> limits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String group, List<Limit> limits) {
+            this.group = group;
+            this.limits = limits;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true))
+                return;
+            for (int i = limits.size() - 1; i >= 0; i--)
+                limits.get(i).release();
+        }
+    }
+
+    private static class Limit {
+        private final String name;
+        private final int limit;
+        private final Semaphore semaphore;
+        private final AtomicInteger waitingCount = new AtomicInteger();
+        private final AtomicLong acquiredCount = new AtomicLong();
+        private final AtomicLong rejectedCount = new AtomicLong();
+        private final LatencyHistogram waitTimes = new LatencyHistogram();
+
+        private Limit(String name, int limit, boolean fair) {
+            this.name = name;
+            this.limit = limit;
+            this.semaphore = new Semaphore((limit > 0) ? limit : Integer.MAX_VALUE, fair);
+        }
+
+        private boolean acquire(long waitInMillis, long startTime) throws InterruptedException {
+            boolean acquired;
+            waitingCount.incrementAndGet();
+            try {
+                if (waitInMillis < 0) {
+                    semaphore.acquire();
+                    acquired = true;
+                } else {
+                    // The timed version, even with 0, queues behind the waiting jobs of a fair semaphore.
+                    acquired = semaphore.tryAcquire(waitInMillis, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                waitingCount.decrementAndGet();
+            }
+            if (acquired) {
+                acquiredCount.incrementAndGet();
+                waitTimes.record(System.currentTimeMillis() - startTime);
+            } else {
+                rejectedCount.incrementAndGet();
+            }
+            return acquired;
+        }
+
+        private void release() {
+            semaphore.release();
+        }
+
+        private CommandGateStats getStats() {
+            int permits = (limit > 0) ? limit : Integer.MAX_VALUE;
+            return new CommandGateStats(name, limit, permits - semaphore.availablePermits(), waitingCount.get(),
+                    acquiredCount.get(), rejectedCount.get(), waitTimes.getValueAtPercentile(50),
+                    waitTimes.getValueAtPercentile(95), waitTimes.getMax());
+        }
+    }
+}
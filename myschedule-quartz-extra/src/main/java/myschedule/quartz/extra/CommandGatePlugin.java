@@ -0,0 +1,231 @@
+package myschedule.quartz.extra;
+
+import myschedule.quartz.extra.job.OsCommandJob;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This plugin creates the {@link CommandGate} that limits how many
+ * {@link myschedule.quartz.extra.job.OsCommandJob} processes run at once in a scheduler, so a burst of fires does
+ * not fork as many processes as there are threads in the pool.
+ * <p/>
+ * <p>The plugin stores itself into the scheduler context map under <code>schedulerContextKey</code>, where
+ * OsCommandJob and {@link SchedulerTemplate#getCommandGate()} find it. Here is an example of how you configure this
+ * plugin in <code>quartz.properties</code> file.
+ * <pre>
+ * org.quartz.plugin.MyCommandGatePlugin.class = myschedule.quartz.extra.CommandGatePlugin
+ * # Max commands running at once in total, 0 for no limit.
+ * org.quartz.plugin.MyCommandGatePlugin.maxConcurrent = 4
+ * # Optional settings
+ * org.quartz.plugin.MyCommandGatePlugin.groupLimits = reports=2,backups=1
+ * org.quartz.plugin.MyCommandGatePlugin.defaultGroupLimit = 0
+ * org.quartz.plugin.MyCommandGatePlugin.fair = true
+ * org.quartz.plugin.MyCommandGatePlugin.maxWaitInMillis = 0
+ * org.quartz.plugin.MyCommandGatePlugin.schedulerContextKey = CommandGatePlugin.Instance
+ * </pre>
+ * <p/>
+ * <p>The plugin takes the permit in a trigger listener, before an OsCommandJob runs, and vetoes the fire if no permit
+ * is free: the job does not run, and the worker thread goes back to the pool. The job takes the permit over and gives
+ * it back when its process exits; a permit the job did not take over is given back when the job is done.
+ * <p/>
+ * <p><code>maxWaitInMillis</code> is how long a fire waits for a permit before it's vetoed. The default 0 vetoes right
+ * away. A wait holds the worker thread, so keep it short; less than zero waits as long as it takes, and can hold all
+ * the worker threads. A job may override it, and its command group, in its data map.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class CommandGatePlugin implements SchedulerPlugin {
+
+    public static final String DEFAULT_SCHEDULER_CONTEXT_KEY = "CommandGatePlugin.Instance";
+    /** The JobExecutionContext key of the permit taken for a fire, until the job takes it over. */
+    public static final String PERMIT_CONTEXT_KEY = "CommandGatePlugin.Permit";
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandGatePlugin.class);
+    private String name;
+    private String schedulerContextKey = DEFAULT_SCHEDULER_CONTEXT_KEY;
+    private int maxConcurrent;
+    private String groupLimits;
+    private int defaultGroupLimit;
+    private boolean fair = true;
+    private long maxWaitInMillis;
+    private CommandGate commandGate;
+
+    public void setSchedulerContextKey(String schedulerContextKey) {
+        this.schedulerContextKey = schedulerContextKey;
+    }
+
+    public String getSchedulerContextKey() {
+        return schedulerContextKey;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /** @param groupLimits comma separated group=limit pairs, eg: "reports=2,backups=1" */
+    public void setGroupLimits(String groupLimits) {
+        this.groupLimits = groupLimits;
+    }
+
+    public void setDefaultGroupLimit(int defaultGroupLimit) {
+        this.defaultGroupLimit = defaultGroupLimit;
+    }
+
+    public void setFair(boolean fair) {
+        this.fair = fair;
+    }
+
+    public void setMaxWaitInMillis(long maxWaitInMillis) {
+        this.maxWaitInMillis = maxWaitInMillis;
+    }
+
+    public long getMaxWaitInMillis() {
+        return maxWaitInMillis;
+    }
+
+    public CommandGate getCommandGate() {
+        return commandGate;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper) throws SchedulerException {
+        this.name = name;
+        commandGate = new CommandGate(maxConcurrent, fair);
+        commandGate.setDefaultGroupLimit(defaultGroupLimit);
+        if (groupLimits != null) {
+            for (String pair : groupLimits.split(",")) {
+                pair = pair.trim();
+                if (pair.length() == 0)
+                    continue;
+                int pos = pair.indexOf('=');
+                if (pos <= 0)
+                    throw new SchedulerException("Invalid command group limit '" + pair + "' in " + groupLimits);
+                try {
+                    commandGate.setGroupLimit(pair.substring(0, pos).trim(),
+                            Integer.parseInt(pair.substring(pos + 1).trim()));
+                } catch (NumberFormatException e) {
+                    throw new SchedulerException("Invalid command group limit '" + pair + "' in " + groupLimits, e);
+                }
+            }
+        }
+
+        // Register listeners
+        scheduler.getListenerManager().addTriggerListener(new CommandGateTriggerListener());
+        scheduler.getListenerManager().addJobListener(new CommandGateJobListener());
+
+        // Store this plugin instance into scheduler context map
+        scheduler.getContext().put(schedulerContextKey, this);
+        logger.info("Added plugin instance {} to scheduler context key: {}", this, schedulerContextKey);
+    }
+
+    @Override
+    public void start() {
+        logger.info(name + " has started with " + commandGate);
+    }
+
+    @Override
+    public void shutdown() {
+        logger.info(name + " has shutdown.");
+    }
+
+    /** Give back the permit of a fire the job did not take over. */
+    private void releasePermit(JobExecutionContext context) {
+        CommandGate.Permit permit = (CommandGate.Permit) context.get(PERMIT_CONTEXT_KEY);
+        if (permit != null) {
+            context.put(PERMIT_CONTEXT_KEY, null);
+            permit.release();
+        }
+    }
+
+    private class CommandGateTriggerListener implements TriggerListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            // Do nothing.
+        }
+
+        @Override
+        public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+            JobDetail jobDetail = context.getJobDetail();
+            if (!OsCommandJob.class.isAssignableFrom(jobDetail.getJobClass()))
+                return false;
+
+            JobDataMap dataMap = context.getMergedJobDataMap();
+            String group = jobDetail.getKey().getGroup();
+            if (dataMap.containsKey(OsCommandJob.COMMAND_GROUP_KEY))
+                group = dataMap.getString(OsCommandJob.COMMAND_GROUP_KEY);
+            if (dataMap.containsKey(OsCommandJob.COMMAND_GROUP_LIMIT_KEY))
+                commandGate.setGroupLimitIfAbsent(group, dataMap.getInt(OsCommandJob.COMMAND_GROUP_LIMIT_KEY));
+            long maxWait = maxWaitInMillis;
+            if (dataMap.containsKey(OsCommandJob.PERMIT_WAIT_KEY))
+                maxWait = dataMap.getLong(OsCommandJob.PERMIT_WAIT_KEY);
+
+            CommandGate.Permit permit;
+            try {
+                permit = commandGate.acquire(group, maxWait);
+            } catch (InterruptedException e) {
+                // Keep the interrupt for the scheduler, which interrupts its threads on shutdown.
+                Thread.currentThread().interrupt();
+                logger.info("Vetoed job {}: interrupted while waiting for a permit of command group {}",
+                        jobDetail.getKey(), group);
+                return true;
+            }
+            if (permit == null) {
+                logger.info("Vetoed job {}: no permit free for command group {} within {} ms.",
+                        new Object[]{jobDetail.getKey(), group, maxWait});
+                return true;
+            }
+            context.put(PERMIT_CONTEXT_KEY, permit);
+            return false;
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            // Do nothing.
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                    CompletedExecutionInstruction triggerInstructionCode) {
+            // Do nothing.
+        }
+    }
+
+    private class CommandGateJobListener implements JobListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void jobToBeExecuted(JobExecutionContext context) {
+        }
+
+        @Override
+        public void jobExecutionVetoed(JobExecutionContext context) {
+            // Another listener may have vetoed the fire after the permit was taken.
+            releasePermit(context);
+        }
+
+        @Override
+        public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+            releasePermit(context);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+
+/**
+ * A copy of the counters of one {@link CommandGate} limit at the time it was read. All the times are in milliseconds.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class CommandGateStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final int limit;
+    private final int inUseCount;
+    private final int waitingCount;
+    private final long acquiredCount;
+    private final long rejectedCount;
+    private final long waitTimeP50;
+    private final long waitTimeP95;
+    private final long waitTimeMax;
+
+    public CommandGateStats(String name, int limit, int inUseCount, int waitingCount, long acquiredCount,
+                            long rejectedCount, long waitTimeP50, long waitTimeP95, long waitTimeMax) {
+        this.name = name;
+        this.limit = limit;
+        this.inUseCount = inUseCount;
+        this.waitingCount = waitingCount;
+        this.acquiredCount = acquiredCount;
+        this.rejectedCount = rejectedCount;
+        this.waitTimeP50 = waitTimeP50;
+        this.waitTimeP95 = waitTimeP95;
+        this.waitTimeMax = waitTimeMax;
+    }
+
+    /** @return the command group, or {@link CommandGate#GLOBAL_NAME} for the global limit. */
+    public String getName() {
+        return name;
+    }
+
+    /** @return the max permits, or 0 if not limited. */
+    public int getLimit() {
+        return limit;
+    }
+
+    /** @return the permits held by running commands. */
+    public int getInUseCount() {
+        return inUseCount;
+    }
+
+    /** @return the jobs waiting for a permit. */
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getWaitTimeP50() {
+        return waitTimeP50;
+    }
+
+    public long getWaitTimeP95() {
+        return waitTimeP95;
+    }
+
+    public long getWaitTimeMax() {
+        return waitTimeMax;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandGateStats[name=" + name + ", inUse=" + inUseCount + "/" + limit + ", waiting=" +
+                waitingCount + ", acquired=" + acquiredCount + ", rejected=" + rejectedCount + ", waitTimeP95=" +
+                waitTimeP95 + "]";
+    }
+}
@@ -0,0 +1,525 @@
+package myschedule.quartz.extra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An append-only history store in local segment files, for schedulers that do not have a database.
+ * <p/>
+ * <p>Each segment is a memory mapped file of fixed <code>segmentSizeInBytes</code> with a small header, followed by
+ * binary records. A record is <code>[int length][long id][long eventTime][10 strings][int length]</code>, where each
+ * string is an unsigned short byte count (0xFFFF for null) plus UTF-8 bytes. The length is repeated at the end so
+ * records can be read backward, newest first. Ids are assigned by this store in append order.
+ * <p/>
+ * <p>Each segment keeps a sparse in memory index of every <code>indexInterval</code> records, with their id, file
+ * offset and the max event time before them. It lets a query jump to its (id) cursor, and stop scanning once all the
+ * remaining records are older than its fromTime. The index is rebuilt by scanning the segments on {@link #open()}.
+ * <p/>
+ * <p>A new segment is started when current one is full or older than <code>maxSegmentAgeInMillis</code>. Old
+ * segments are removed as whole files, either by {@link #purge(Date)} or by the <code>retentionInMillis</code>
+ * setting on each rollover. A removed segment is no longer seen by new queries; its mapping is released and its file
+ * deleted once the queries still reading it are done. A file that can't be deleted yet is retried on the next purge.
+ * <p/>
+ * <p>Appends are serialized by this store. Reads are not locked: a writer publishes each record by updating the
+ * volatile segment limit after the record bytes are written, and readers only read up to that limit.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class FileHistoryStore implements HistoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(FileHistoryStore.class);
+    private static final int MAGIC = 0x4D534853; // "MSHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int MAX_STRING_BYTES = 0xFFFE;
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File storeDir;
+    private int segmentSizeInBytes = 16 * 1024 * 1024;
+    private long maxSegmentAgeInMillis = 24 * 60 * 60 * 1000L;
+    private long retentionInMillis;
+    private int indexInterval = 64;
+    private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+    // Segments removed from the list whose files are not deleted yet.
+    private final List<Segment> removedSegments = new ArrayList<Segment>();
+    private Segment current;
+    private long nextId = 1;
+    private volatile boolean opened;
+    private long appendedCount;
+    private long purgedCount;
+
+    public FileHistoryStore(File storeDir) {
+        this.storeDir = storeDir;
+    }
+
+    public void setSegmentSizeInBytes(int segmentSizeInBytes) {
+        this.segmentSizeInBytes = segmentSizeInBytes;
+    }
+
+    public void setMaxSegmentAgeInMillis(long maxSegmentAgeInMillis) {
+        this.maxSegmentAgeInMillis = maxSegmentAgeInMillis;
+    }
+
+    /** Remove segments older than this on each rollover. Zero means keep them forever. */
+    public void setRetentionInMillis(long retentionInMillis) {
+        this.retentionInMillis = retentionInMillis;
+    }
+
+    public void setIndexInterval(int indexInterval) {
+        this.indexInterval = indexInterval;
+    }
+
+    public File getStoreDir() {
+        return storeDir;
+    }
+
+    @Override
+    public synchronized void open() {
+        if (!storeDir.exists() && !storeDir.mkdirs())
+            throw new QuartzRuntimeException("Failed to create history store directory " + storeDir);
+        File[] files = storeDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(files);
+        for (File file : files) {
+            Segment segment = Segment.load(file, indexInterval);
+            segments.add(segment);
+            nextId = Math.max(nextId, segment.lastId + 1);
+        }
+        if (segments.size() > 0)
+            current = segments.get(segments.size() - 1);
+        opened = true;
+        logger.info("Opened history store {} with {} segments, next id {}",
+                new Object[]{storeDir, segments.size(), nextId});
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!opened)
+            return;
+        opened = false;
+        if (current != null)
+            current.buffer.force();
+        deleteRemovedSegments();
+        logger.info("Closed history store {}", storeDir);
+    }
+
+    @Override
+    public synchronized void append(HistoryEvent event) {
+        if (!opened)
+            throw new QuartzRuntimeException("History store " + storeDir + " is not opened.");
+
+        byte[][] strings = new byte[][]{
+                toBytes(event.getHostIp()),
+                toBytes(event.getHostName()),
+                toBytes(event.getSchedulerName()),
+                toBytes(event.getEventType()),
+                toBytes(event.getEventName()),
+                toBytes(event.getInfo1()),
+                toBytes(event.getInfo2()),
+                toBytes(event.getInfo3()),
+                toBytes(event.getInfo4()),
+                toBytes(event.getInfo5())
+        };
+        int payloadSize = 8 + 8;
+        for (byte[] bytes : strings)
+            payloadSize += 2 + (bytes == null ? 0 : bytes.length);
+        int recordSize = 4 + payloadSize + 4;
+        if (HEADER_SIZE + recordSize > segmentSizeInBytes)
+            throw new IllegalArgumentException("History record of " + recordSize + " bytes is larger than segment.");
+
+        long now = System.currentTimeMillis();
+        if (current == null || current.limit + recordSize > segmentSizeInBytes ||
+                now - current.createTime >= maxSegmentAgeInMillis)
+            rollover(now);
+
+        long id = nextId++;
+        long eventTime = (event.getEventTime() == null) ? now : event.getEventTime().getTime();
+        current.append(id, eventTime, strings, payloadSize);
+        event.setId(id);
+        appendedCount++;
+    }
+
+    /** Append the events under one lock, so other appends are not interleaved with the batch. */
+    @Override
+    public synchronized void appendBatch(List<HistoryEvent> events) {
+        for (HistoryEvent event : events)
+            append(event);
+    }
+
+    private void rollover(long now) {
+        if (current != null)
+            current.buffer.force();
+        File file = new File(storeDir, String.format("%s%020d%s", SEGMENT_PREFIX, nextId, SEGMENT_SUFFIX));
+        current = Segment.create(file, segmentSizeInBytes, now, nextId, indexInterval);
+        segments.add(current);
+        logger.debug("Started new history segment {}", file);
+
+        if (retentionInMillis > 0)
+            purge(new Date(now - retentionInMillis));
+    }
+
+    /**
+     * Remove all segments (except the current one) that only have events older than the given date.
+     *
+     * @return number of records removed.
+     */
+    @Override
+    public synchronized long purge(Date olderThanDate) {
+        long cutoff = olderThanDate.getTime();
+        long count = 0;
+        for (Segment segment : segments) {
+            if (segment == current)
+                continue;
+            long newestTime = (segment.recordCount == 0) ? segment.createTime : segment.maxTime;
+            if (newestTime < cutoff) {
+                // Removed from the list first, so new queries no longer read it.
+                segments.remove(segment);
+                segment.removed = true;
+                removedSegments.add(segment);
+                count += segment.recordCount;
+            }
+        }
+        deleteRemovedSegments();
+        purgedCount += count;
+        return count;
+    }
+
+    /** Delete the files of the removed segments that no query reads anymore. The others are left for the next purge. */
+    private void deleteRemovedSegments() {
+        for (Iterator<Segment> iterator = removedSegments.iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+            if (segment.readerCount.get() > 0) {
+                logger.debug("History segment {} is still read, it will be deleted on next purge.", segment.file);
+                continue;
+            }
+            segment.unmap();
+            if (segment.file.delete() || !segment.file.exists()) {
+                iterator.remove();
+                logger.info("Deleted history segment {} with {} records.", segment.file, segment.recordCount);
+            } else {
+                logger.warn("Failed to delete history segment {}, it will be retried on next purge.", segment.file);
+            }
+        }
+    }
+
+    /**
+     * Query one page of events, newest (highest id) first. The HistoryQuery afterId is the cursor, and the
+     * afterEventTime is not used since ids are already in append order.
+     */
+    @Override
+    public List<HistoryEvent> query(HistoryQuery query) {
+        List<HistoryEvent> result = new ArrayList<HistoryEvent>();
+        long fromTime = (query.getFromTime() == null) ? Long.MIN_VALUE : query.getFromTime().getTime();
+        long toTime = (query.getToTime() == null) ? Long.MAX_VALUE : query.getToTime().getTime();
+        long afterId = (query.getAfterId() == null) ? Long.MAX_VALUE : query.getAfterId();
+
+        List<Segment> snapshot = new ArrayList<Segment>(segments);
+        for (int i = snapshot.size() - 1; i >= 0 && result.size() < query.getPageSize(); i--) {
+            Segment segment = snapshot.get(i);
+            if (segment.recordCount == 0 || segment.baseId >= afterId ||
+                    segment.maxTime < fromTime || segment.minTime >= toTime)
+                continue;
+            // A segment purged since the snapshot was taken is skipped, its mapping may be released.
+            if (!segment.startRead())
+                continue;
+            try {
+                segment.scanBackward(query, afterId, fromTime, toTime, result);
+            } finally {
+                segment.endRead();
+            }
+        }
+        return result;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getRecordCount() {
+        long count = 0;
+        for (Segment segment : segments)
+            count += segment.recordCount;
+        return count;
+    }
+
+    /** @return the bytes used by records, not the allocated segment file sizes. */
+    public long getSizeInBytes() {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.limit - HEADER_SIZE;
+        return size;
+    }
+
+    @Override
+    public synchronized HistoryStoreStats getStats() {
+        return new HistoryStoreStats(toString(), getRecordCount(), getSizeInBytes(), appendedCount, purgedCount);
+    }
+
+    private static byte[] toBytes(String str) {
+        if (str == null)
+            return null;
+        try {
+            byte[] bytes = str.getBytes("UTF-8");
+            if (bytes.length > MAX_STRING_BYTES)
+                bytes = Arrays.copyOf(bytes, MAX_STRING_BYTES);
+            return bytes;
+        } catch (UnsupportedEncodingException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileHistoryStore[" + storeDir + "]";
+    }
+
+    /**
+     * One memory mapped segment file. All mutable fields are written by the store appending thread only, except the
+     * reader count.
+     */
+    private static class Segment {
+        final File file;
+        final MappedByteBuffer buffer;
+        final ByteBuffer writeBuffer;
+        final long createTime;
+        final long baseId;
+        final int indexInterval;
+        volatile int limit = HEADER_SIZE;
+        volatile int recordCount;
+        volatile long minTime = Long.MAX_VALUE;
+        volatile long maxTime = Long.MIN_VALUE;
+        volatile long lastId;
+        volatile long[] indexIds = new long[16];
+        volatile long[] indexMaxTimes = new long[16];
+        volatile int[] indexOffsets = new int[16];
+        volatile int indexSize;
+        // Queries reading the buffer, so that a removed segment is not unmapped under them.
+        final AtomicInteger readerCount = new AtomicInteger();
+        volatile boolean removed;
+        private boolean unmapped;
+
+        private Segment(File file, MappedByteBuffer buffer, long createTime, long baseId, int indexInterval) {
+            this.file = file;
+            this.buffer = buffer;
+            this.writeBuffer = buffer.duplicate();
+            this.createTime = createTime;
+            this.baseId = baseId;
+            this.indexInterval = indexInterval;
+            this.lastId = baseId - 1;
+        }
+
+        static Segment create(File file, int size, long createTime, long baseId, int indexInterval) {
+            MappedByteBuffer buffer = map(file, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, createTime);
+            buffer.putLong(16, baseId);
+            return new Segment(file, buffer, createTime, baseId, indexInterval);
+        }
+
+        static Segment load(File file, int indexInterval) {
+            MappedByteBuffer buffer = map(file, (int) file.length());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new QuartzRuntimeException("Invalid history segment file " + file);
+            Segment segment = new Segment(file, buffer, buffer.getLong(8), buffer.getLong(16), indexInterval);
+
+            // Scan to rebuild the index, and stop at the first incomplete record.
+            int pos = HEADER_SIZE;
+            int capacity = buffer.capacity();
+            while (pos + 8 <= capacity) {
+                int length = buffer.getInt(pos);
+                int end = pos + 4 + length;
+                if (length < 16 || end + 4 > capacity || buffer.getInt(end) != length)
+                    break;
+                long id = buffer.getLong(pos + 4);
+                long eventTime = buffer.getLong(pos + 12);
+                segment.recordAppended(pos, id, eventTime, end + 4);
+                pos = end + 4;
+            }
+            return segment;
+        }
+
+        private static MappedByteBuffer map(File file, int size) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    if (raf.length() < size)
+                        raf.setLength(size);
+                    // The mapping stays valid after the file is closed.
+                    return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                } finally {
+                    raf.close();
+                }
+            } catch (IOException e) {
+                throw new QuartzRuntimeException("Failed to map history segment file " + file, e);
+            }
+        }
+
+        /** @return false if the segment was removed, and must not be read. Call endRead() after a true. */
+        boolean startRead() {
+            readerCount.incrementAndGet();
+            // Checked after the count, so a purge that sees no reader sees the segment removed before this read.
+            if (removed) {
+                readerCount.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        void endRead() {
+            readerCount.decrementAndGet();
+        }
+
+        /**
+         * Release the mapping now rather than when the buffer is garbage collected, since a mapped file can't be
+         * deleted on some platforms. Only called on a removed segment without readers.
+         */
+        void unmap() {
+            if (unmapped)
+                return;
+            unmapped = true;
+            try {
+                // Not a public API before Java 9, so it's called by reflection where the JVM has it.
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (Exception e) {
+                logger.debug("Unable to unmap history segment {}, it's released when garbage collected.", file, e);
+            }
+        }
+
+        void append(long id, long eventTime, byte[][] strings, int payloadSize) {
+            int pos = limit;
+            ByteBuffer buf = writeBuffer;
+            buf.position(pos + 4);
+            buf.putLong(id);
+            buf.putLong(eventTime);
+            for (byte[] bytes : strings) {
+                if (bytes == null) {
+                    buf.putShort((short) NULL_STRING);
+                } else {
+                    buf.putShort((short) bytes.length);
+                    buf.put(bytes);
+                }
+            }
+            buf.putInt(payloadSize);
+            // Write leading length last, so a partially written record is never valid.
+            buf.putInt(pos, payloadSize);
+            recordAppended(pos, id, eventTime, pos + 4 + payloadSize + 4);
+        }
+
+        private void recordAppended(int pos, long id, long eventTime, int newLimit) {
+            if (recordCount % indexInterval == 0)
+                addIndex(id, maxTime, pos);
+            if (eventTime < minTime)
+                minTime = eventTime;
+            if (eventTime > maxTime)
+                maxTime = eventTime;
+            lastId = id;
+            recordCount++;
+            // Publish the record to readers.
+            limit = newLimit;
+        }
+
+        private void addIndex(long id, long maxTimeBefore, int offset) {
+            int size = indexSize;
+            if (size == indexIds.length) {
+                indexIds = Arrays.copyOf(indexIds, size * 2);
+                indexMaxTimes = Arrays.copyOf(indexMaxTimes, size * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, size * 2);
+            }
+            indexIds[size] = id;
+            indexMaxTimes[size] = maxTimeBefore;
+            indexOffsets[size] = offset;
+            indexSize = size + 1;
+        }
+
+        void scanBackward(HistoryQuery query, long afterId, long fromTime, long toTime, List<HistoryEvent> result) {
+            // Read the published limit and index size first, then the arrays.
+            int pos = limit;
+            int size = indexSize;
+            long[] ids = indexIds;
+            long[] maxTimes = indexMaxTimes;
+            int[] offsets = indexOffsets;
+
+            // Jump to the first indexed record with id >= afterId, since all records from there are excluded.
+            int idx = size - 1;
+            if (afterId != Long.MAX_VALUE) {
+                for (int i = 0; i < size; i++) {
+                    if (ids[i] >= afterId) {
+                        pos = offsets[i];
+                        idx = i - 1;
+                        break;
+                    }
+                }
+            }
+
+            ByteBuffer buf = buffer.duplicate();
+            while (pos > HEADER_SIZE && result.size() < query.getPageSize()) {
+                while (idx >= 0 && offsets[idx] > pos)
+                    idx--;
+                // All records before this index point are older than fromTime.
+                if (idx >= 0 && offsets[idx] == pos && maxTimes[idx] < fromTime)
+                    break;
+
+                int length = buf.getInt(pos - 4);
+                int start = pos - 4 - length - 4;
+                pos = start;
+                long id = buf.getLong(start + 4);
+                long eventTime = buf.getLong(start + 12);
+                if (id >= afterId || eventTime < fromTime || eventTime >= toTime)
+                    continue;
+
+                buf.position(start + 20);
+                HistoryEvent event = new HistoryEvent();
+                event.setId(id);
+                event.setEventTime(new Date(eventTime));
+                event.setHostIp(readString(buf));
+                event.setHostName(readString(buf));
+                event.setSchedulerName(readString(buf));
+                event.setEventType(readString(buf));
+                event.setEventName(readString(buf));
+                event.setInfo1(readString(buf));
+                event.setInfo2(readString(buf));
+                event.setInfo3(readString(buf));
+                event.setInfo4(readString(buf));
+                event.setInfo5(readString(buf));
+                if (query.matches(event))
+                    result.add(event);
+            }
+        }
+
+        private static String readString(ByteBuffer buf) {
+            int length = buf.getShort() & 0xFFFF;
+            if (length == NULL_STRING)
+                return null;
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            try {
+                return new String(bytes, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new QuartzRuntimeException(e);
+            }
+        }
+    }
+}
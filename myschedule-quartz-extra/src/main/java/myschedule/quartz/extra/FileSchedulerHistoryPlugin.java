@@ -0,0 +1,81 @@
+package myschedule.quartz.extra;
+
+import org.quartz.SchedulerException;
+
+import java.io.File;
+
+/**
+ * This plugin records the same scheduler and trigger events as {@link JdbcSchedulerHistoryPlugin}, but into local
+ * append-only segment files with {@link FileHistoryStore}, so schedulers without a database (eg: RAMJobStore) can
+ * still keep job histories. Like the JDBC plugin, it stores itself into the scheduler context map under
+ * <code>schedulerContextKey</code>, and the web UI reads the histories with {@link #queryHistory(HistoryQuery)}.
+ * <p/>
+ * <p>Here is an example of how you configure this plugin in <code>quartz.properties</code> file.
+ * <pre>
+ * org.quartz.plugin.MyJobHistoryPlugin.class = myschedule.quartz.extra.FileSchedulerHistoryPlugin
+ * org.quartz.plugin.MyJobHistoryPlugin.storeDir = /var/myschedule/history
+ * # Optional settings
+ * org.quartz.plugin.MyJobHistoryPlugin.segmentSizeInBytes = 16777216
+ * org.quartz.plugin.MyJobHistoryPlugin.maxSegmentAgeInSecs = 86400
+ * org.quartz.plugin.MyJobHistoryPlugin.retentionInSecs = 604800
+ * org.quartz.plugin.MyJobHistoryPlugin.schedulerContextKey = FileSchedulerHistoryPlugin.Instance
+ * </pre>
+ * <p/>
+ * <p>If <code>storeDir</code> is not set, it defaults to a directory named after the scheduler under
+ * <code>java.io.tmpdir</code>.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class FileSchedulerHistoryPlugin extends AbstractSchedulerHistoryPlugin {
+
+    public static final String DEFAULT_SCHEDULER_CONTEXT_KEY = "FileSchedulerHistoryPlugin.Instance";
+
+    private String storeDir;
+    private int segmentSizeInBytes = 16 * 1024 * 1024;
+    private long maxSegmentAgeInSecs = 24 * 60 * 60;
+    private long retentionInSecs;
+    private int indexInterval = 64;
+    private FileHistoryStore store;
+
+    public void setStoreDir(String storeDir) {
+        this.storeDir = storeDir;
+    }
+
+    public void setSegmentSizeInBytes(int segmentSizeInBytes) {
+        this.segmentSizeInBytes = segmentSizeInBytes;
+    }
+
+    public void setMaxSegmentAgeInSecs(long maxSegmentAgeInSecs) {
+        this.maxSegmentAgeInSecs = maxSegmentAgeInSecs;
+    }
+
+    public void setRetentionInSecs(long retentionInSecs) {
+        this.retentionInSecs = retentionInSecs;
+    }
+
+    public void setIndexInterval(int indexInterval) {
+        this.indexInterval = indexInterval;
+    }
+
+    public FileHistoryStore getStore() {
+        return store;
+    }
+
+    @Override
+    protected String getDefaultSchedulerContextKey() {
+        return DEFAULT_SCHEDULER_CONTEXT_KEY;
+    }
+
+    @Override
+    protected HistoryStore createHistoryStore() throws SchedulerException {
+        if (storeDir == null)
+            storeDir = System.getProperty("java.io.tmpdir") + File.separator +
+                    getScheduler().getSchedulerName() + "-history";
+        store = new FileHistoryStore(new File(storeDir));
+        store.setSegmentSizeInBytes(segmentSizeInBytes);
+        store.setMaxSegmentAgeInMillis(maxSegmentAgeInSecs * 1000);
+        store.setRetentionInMillis(retentionInSecs * 1000);
+        store.setIndexInterval(indexInterval);
+        return store;
+    }
+}
@@ -0,0 +1,148 @@
+package myschedule.quartz.extra;
+
+import org.quartz.Calendar;
+import org.quartz.Trigger;
+import org.quartz.spi.OperableTrigger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Computes the upcoming fire times of triggers without changing them, the same way the scheduler will: each trigger
+ * is copied and moved forward with {@link OperableTrigger#triggered(Calendar)}, so times excluded by the trigger's
+ * calendar are skipped while computing, and never count toward a requested number of fire times.
+ * <p/>
+ * <p>{@link #getTimeline(Collection, Date, Date, int)} merges the fire times of many triggers into one list in time
+ * order. It only moves forward the trigger whose fire time comes next, so asking for the first few fires of a large
+ * scheduler costs little more than the fires returned.
+ * <p/>
+ * <p>Calendars are looked up by name from the scheduler once per forecaster. Not thread safe; create one per use.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class FireTimeForecaster {
+
+    private final SchedulerTemplate scheduler;
+    private final Map<String, Calendar> calendars = new HashMap<String, Calendar>();
+
+    public FireTimeForecaster(SchedulerTemplate scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return up to maxCount fire times after startTime, leaving out times excluded by the trigger's calendar.
+     * Fewer are returned only if the trigger does not fire that many more times.
+     */
+    public List<Date> getNextFireTimes(Trigger trigger, Date startTime, int maxCount) {
+        List<Date> result = new ArrayList<Date>();
+        FireTimeCursor cursor = new FireTimeCursor(trigger, getCalendar(trigger), startTime);
+        while (result.size() < maxCount && cursor.getNextFireTime() != null) {
+            result.add(cursor.getNextFireTime());
+            cursor.advance();
+        }
+        return result;
+    }
+
+    /**
+     * @return all the fire times from fromTime (inclusive) to toTime (exclusive), leaving out times excluded by the
+     * trigger's calendar.
+     */
+    public List<Date> getFireTimesBetween(Trigger trigger, Date fromTime, Date toTime) {
+        List<Date> result = new ArrayList<Date>();
+        FireTimeCursor cursor = new FireTimeCursor(trigger, getCalendar(trigger), new Date(fromTime.getTime() - 1));
+        while (cursor.getNextFireTime() != null && cursor.getNextFireTime().before(toTime)) {
+            result.add(cursor.getNextFireTime());
+            cursor.advance();
+        }
+        return result;
+    }
+
+    /**
+     * @return the fires of all the triggers from fromTime (inclusive) to toTime (exclusive), in time order, up to
+     * maxCount fires. Fires at the same time are ordered by trigger key.
+     */
+    public List<ForecastFire> getTimeline(Collection<? extends Trigger> triggers, Date fromTime, Date toTime,
+                                          int maxCount) {
+        Date afterTime = new Date(fromTime.getTime() - 1);
+        PriorityQueue<FireTimeCursor> queue = new PriorityQueue<FireTimeCursor>(Math.max(1, triggers.size()));
+        for (Trigger trigger : triggers) {
+            FireTimeCursor cursor = new FireTimeCursor(trigger, getCalendar(trigger), afterTime);
+            if (cursor.getNextFireTime() != null && cursor.getNextFireTime().before(toTime))
+                queue.add(cursor);
+        }
+
+        List<ForecastFire> result = new ArrayList<ForecastFire>();
+        while (result.size() < maxCount && !queue.isEmpty()) {
+            FireTimeCursor cursor = queue.poll();
+            Trigger trigger = cursor.getTrigger();
+            result.add(new ForecastFire(cursor.getNextFireTime(), trigger.getKey(), trigger.getJobKey()));
+            cursor.advance();
+            if (cursor.getNextFireTime() != null && cursor.getNextFireTime().before(toTime))
+                queue.add(cursor);
+        }
+        return result;
+    }
+
+    private Calendar getCalendar(Trigger trigger) {
+        String calendarName = trigger.getCalendarName();
+        if (calendarName == null)
+            return null;
+        if (!calendars.containsKey(calendarName))
+            calendars.put(calendarName, scheduler.getCalendar(calendarName));
+        return calendars.get(calendarName);
+    }
+
+    /**
+     * A copy of one trigger, positioned on its first included fire time after a given time.
+     */
+    private static class FireTimeCursor implements Comparable<FireTimeCursor> {
+        private final OperableTrigger trigger;
+        private final Calendar calendar;
+
+        FireTimeCursor(Trigger trigger, Calendar calendar, Date afterTime) {
+            this.trigger = (OperableTrigger) ((OperableTrigger) trigger).clone();
+            this.calendar = calendar;
+
+            if (this.trigger.getNextFireTime() == null)
+                this.trigger.computeFirstFireTime(calendar);
+
+            // The trigger never fires before its own next fire time, so only jump ahead when that's already passed.
+            Date nextFireTime = this.trigger.getNextFireTime();
+            if (nextFireTime != null && !nextFireTime.after(afterTime)) {
+                nextFireTime = this.trigger.getFireTimeAfter(afterTime);
+                while (nextFireTime != null && calendar != null && !calendar.isTimeIncluded(nextFireTime.getTime()))
+                    nextFireTime = this.trigger.getFireTimeAfter(skipExcluded(nextFireTime));
+                this.trigger.setNextFireTime(nextFireTime);
+            }
+        }
+
+        // Jump to just before the next time the calendar includes, instead of trying each excluded fire time.
+        private Date skipExcluded(Date excludedTime) {
+            long includedTime = calendar.getNextIncludedTime(excludedTime.getTime());
+            return (includedTime > excludedTime.getTime()) ? new Date(includedTime - 1) : excludedTime;
+        }
+
+        Trigger getTrigger() {
+            return trigger;
+        }
+
+        Date getNextFireTime() {
+            return trigger.getNextFireTime();
+        }
+
+        void advance() {
+            trigger.triggered(calendar);
+        }
+
+        @Override
+        public int compareTo(FireTimeCursor other) {
+            int result = getNextFireTime().compareTo(other.getNextFireTime());
+            return (result != 0) ? result : trigger.getKey().compareTo(other.trigger.getKey());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package myschedule.quartz.extra;
+
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * One upcoming fire of a trigger, as computed by {@link FireTimeForecaster}. Immutable.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class ForecastFire implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Date fireTime;
+    private final TriggerKey triggerKey;
+    private final JobKey jobKey;
+
+    public ForecastFire(Date fireTime, TriggerKey triggerKey, JobKey jobKey) {
+        this.fireTime = fireTime;
+        this.triggerKey = triggerKey;
+        this.jobKey = jobKey;
+    }
+
+    public Date getFireTime() {
+        return fireTime;
+    }
+
+    public TriggerKey getTriggerKey() {
+        return triggerKey;
+    }
+
+    public JobKey getJobKey() {
+        return jobKey;
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastFire[" + fireTime + ", " + triggerKey + "]";
+    }
+}
@@ -0,0 +1,63 @@
+package myschedule.quartz.extra;
+
+import org.quartz.SchedulerException;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An iterator over the triggers or jobs of a scheduler that loads the keys of one group at a time, and each value
+ * only when the iteration reaches it. Values that are gone by then (eg: a trigger removed while iterating) are
+ * skipped. Used by {@link SchedulerTemplate#iterateTriggers()} and {@link SchedulerTemplate#iterateJobDetails()}.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+abstract class GroupPagedIterator<K, V> implements Iterator<V> {
+
+    private Iterator<String> groups;
+    private Iterator<K> keys = Collections.<K>emptySet().iterator();
+    private V next;
+
+    public GroupPagedIterator(List<String> groups) {
+        this.groups = groups.iterator();
+    }
+
+    protected abstract Set<K> getKeys(String group) throws SchedulerException;
+
+    /** @return the value of key, or null if it no longer exists. */
+    protected abstract V getValue(K key) throws SchedulerException;
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                if (keys.hasNext())
+                    next = getValue(keys.next());
+                else if (groups.hasNext())
+                    keys = getKeys(groups.next()).iterator();
+                else
+                    return false;
+            }
+            return true;
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    @Override
+    public V next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        V result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Use SchedulerTemplate to remove triggers or jobs.");
+    }
+}
@@ -0,0 +1,161 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * One scheduler history event, as recorded by the history plugins (see {@link AbstractSchedulerHistoryPlugin}) and
+ * kept by a {@link HistoryStore}. The fields map one to one to the history table columns of
+ * {@link JdbcSchedulerHistoryPlugin}, and {@link #toParams()} gives them in the insert parameters order.
+ * <p/>
+ * <p>The <code>id</code> is assigned by the store. For JDBC it's only available when the history table has a unique,
+ * increasing id column and the plugin is configured with <code>idColumnName</code>; otherwise it will be null.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class HistoryEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+    private String hostIp;
+    private String hostName;
+    private String schedulerName;
+    private String eventType;
+    private String eventName;
+    private Date eventTime;
+    private String info1;
+    private String info2;
+    private String info3;
+    private String info4;
+    private String info5;
+
+    public HistoryEvent() {
+    }
+
+    public HistoryEvent(String hostIp, String hostName, String schedulerName, String eventType, String eventName,
+                        Date eventTime, String info1, String info2, String info3, String info4, String info5) {
+        this.hostIp = hostIp;
+        this.hostName = hostName;
+        this.schedulerName = schedulerName;
+        this.eventType = eventType;
+        this.eventName = eventName;
+        this.eventTime = eventTime;
+        this.info1 = info1;
+        this.info2 = info2;
+        this.info3 = info3;
+        this.info4 = info4;
+        this.info5 = info5;
+    }
+
+    /**
+     * @return the 11 values of host_ip, host_name, scheduler_name, event_type, event_name, event_time, info1, info2,
+     *         info3, info4 and info5. The id is not included.
+     */
+    public Object[] toParams() {
+        return new Object[]{
+                hostIp, hostName, schedulerName, eventType, eventName, eventTime, info1, info2, info3, info4, info5
+        };
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getHostIp() {
+        return hostIp;
+    }
+
+    public void setHostIp(String hostIp) {
+        this.hostIp = hostIp;
+    }
+
+    public String getHostName() {
+        return hostName;
+    }
+
+    public void setHostName(String hostName) {
+        this.hostName = hostName;
+    }
+
+    public String getSchedulerName() {
+        return schedulerName;
+    }
+
+    public void setSchedulerName(String schedulerName) {
+        this.schedulerName = schedulerName;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public void setEventName(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public Date getEventTime() {
+        return eventTime;
+    }
+
+    public void setEventTime(Date eventTime) {
+        this.eventTime = eventTime;
+    }
+
+    public String getInfo1() {
+        return info1;
+    }
+
+    public void setInfo1(String info1) {
+        this.info1 = info1;
+    }
+
+    public String getInfo2() {
+        return info2;
+    }
+
+    public void setInfo2(String info2) {
+        this.info2 = info2;
+    }
+
+    public String getInfo3() {
+        return info3;
+    }
+
+    public void setInfo3(String info3) {
+        this.info3 = info3;
+    }
+
+    public String getInfo4() {
+        return info4;
+    }
+
+    public void setInfo4(String info4) {
+        this.info4 = info4;
+    }
+
+    public String getInfo5() {
+        return info5;
+    }
+
+    public void setInfo5(String info5) {
+        this.info5 = info5;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryEvent[id=" + id + ", eventType=" + eventType + ", eventName=" + eventName +
+                ", eventTime=" + eventTime + ", info1=" + info1 + ", info2=" + info2 + "]";
+    }
+}
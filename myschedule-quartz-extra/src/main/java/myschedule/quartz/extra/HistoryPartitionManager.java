@@ -0,0 +1,293 @@
+package myschedule.quartz.extra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.Date;
+
+/**
+ * Maintain the time partitions of the history table used by {@link JdbcSchedulerHistoryPlugin}. Each partition holds
+ * one DAY or one WEEK of events, and it is named with a prefix plus the <code>yyyyMMdd</code> of its period start.
+ * Retention is done by dropping whole partitions that are older than the cut off date, instead of deleting rows.
+ * <p/>
+ * <p>There are two layouts:
+ * <ul>
+ * <li>NATIVE - one table with database native range partitions on event_time. Partitions are named
+ * <code>p + yyyyMMdd</code>, and the database prunes partitions by itself for queries that filter on event_time. The
+ * SQL to list, add and drop partitions are database specific, so they are given as templates.</li>
+ * <li>TABLES - one physical table per period named <code>tableName + _ + yyyyMMdd</code>, and a view named
+ * <code>tableName</code> that UNION ALL of them for other tools. Events are inserted directly into the table of their
+ * period, and queries only read from the tables within their time range. Ids must come from one source shared by all
+ * the tables, such as a sequence, since pages are resumed by (event_time, id) across them.</li>
+ * </ul>
+ * <p/>
+ * <p>The SQL templates may use these place holders: <code>{table}</code> is the table (or view) name,
+ * <code>{name}</code> is the partition name, <code>{start}</code> and <code>{end}</code> are the partition period
+ * in <code>yyyy-MM-dd HH:mm:ss</code> format, and <code>{union}</code> is the UNION ALL select of all partition
+ * tables (only for the TABLES view SQL). The add and drop templates may hold several statements separated by
+ * <code>;</code>, run one after another, eg: to create a partition table and then its primary key and indexes.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class HistoryPartitionManager {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryPartitionManager.class);
+
+    public static enum Mode {NATIVE, TABLES}
+
+    public static enum Period {DAY, WEEK}
+
+    private final Mode mode;
+    private final Period period;
+    private final String tableName;
+    private final String columns;
+    private final String prefix;
+    private int partitionsAhead = 2;
+    private String listSql;
+    private String addSql;
+    private String dropSql;
+    private String viewSql = "CREATE OR REPLACE VIEW {table} AS {union}";
+    private volatile List<String> partitions = Collections.emptyList();
+
+    /**
+     * @param columns the comma separated history table columns to read from the partition tables.
+     */
+    public HistoryPartitionManager(Mode mode, Period period, String tableName, String columns) {
+        this.mode = mode;
+        this.period = period;
+        this.tableName = tableName;
+        this.columns = columns;
+        if (mode == Mode.NATIVE) {
+            this.prefix = "p";
+            this.dropSql = "ALTER TABLE {table} DROP PARTITION {name}";
+        } else {
+            this.prefix = tableName + "_";
+            this.addSql = "CREATE TABLE {name} LIKE {table}_template";
+            this.dropSql = "DROP TABLE {name}";
+        }
+    }
+
+    /** Number of future partitions to create ahead of current one. */
+    public void setPartitionsAhead(int partitionsAhead) {
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    /** NATIVE only: a query that returns the partition names of the table in its first column. */
+    public void setListSql(String listSql) {
+        this.listSql = listSql;
+    }
+
+    /**
+     * Add one partition (NATIVE), or create one partition table (TABLES). It may be null for NATIVE mode if the
+     * database creates partitions by itself (eg: Oracle interval partitions).
+     */
+    public void setAddSql(String addSql) {
+        this.addSql = addSql;
+    }
+
+    /** Drop one partition (NATIVE), or one partition table (TABLES). */
+    public void setDropSql(String dropSql) {
+        this.dropSql = dropSql;
+    }
+
+    /** TABLES only: recreate the view of all partition tables. Set to null to not manage the view. */
+    public void setViewSql(String viewSql) {
+        this.viewSql = viewSql;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Period getPeriod() {
+        return period;
+    }
+
+    /** @return the known partition names in ascending period order, as of the last {@link #maintain} call. */
+    public List<String> getPartitions() {
+        return partitions;
+    }
+
+    public Date getPeriodStart(Date time) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(time);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        if (period == Period.WEEK) {
+            while (cal.get(Calendar.DAY_OF_WEEK) != cal.getFirstDayOfWeek())
+                cal.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return cal.getTime();
+    }
+
+    public Date getNextPeriodStart(Date periodStart) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(periodStart);
+        cal.add(Calendar.DAY_OF_MONTH, period == Period.WEEK ? 7 : 1);
+        return cal.getTime();
+    }
+
+    public String getPartitionName(Date time) {
+        return prefix + new SimpleDateFormat("yyyyMMdd").format(getPeriodStart(time));
+    }
+
+    /**
+     * @return the period start of a partition name, or null if it's not a partition managed by this class.
+     */
+    public Date parsePartitionStart(String name) {
+        if (name.length() != prefix.length() + 8 || !name.toLowerCase().startsWith(prefix.toLowerCase()))
+            return null;
+        String suffix = name.substring(prefix.length());
+        for (int i = 0; i < suffix.length(); i++)
+            if (!Character.isDigit(suffix.charAt(i)))
+                return null;
+        try {
+            return new SimpleDateFormat("yyyyMMdd").parse(suffix);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create the current and the ahead partitions that do not exist yet, and drop partitions that end at or before
+     * the retainAfter date. The retainAfter may be null to not drop any.
+     */
+    public void maintain(Connection conn, Date now, Date retainAfter) throws SQLException {
+        SortedMap<Date, String> existing = listPartitions(conn);
+        boolean changed = false;
+
+        // Create missing partitions, in ascending order.
+        Date start = getPeriodStart(now);
+        for (int i = 0; i <= partitionsAhead; i++) {
+            // Native range partitions can only be added after the last one.
+            boolean canAdd = mode == Mode.TABLES || existing.isEmpty() || start.after(existing.lastKey());
+            if (addSql != null && canAdd && !existing.containsKey(start)) {
+                String name = getPartitionName(start);
+                execute(conn, addSql, name, start);
+                existing.put(start, name);
+                changed = true;
+                logger.info("Added history partition {}", name);
+            }
+            start = getNextPeriodStart(start);
+        }
+
+        // Drop expired partitions, but never the current one.
+        if (retainAfter != null) {
+            Date currentStart = getPeriodStart(now);
+            Iterator<Map.Entry<Date, String>> it = existing.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Date, String> entry = it.next();
+                Date partitionStart = entry.getKey();
+                if (partitionStart.before(currentStart) && !getNextPeriodStart(partitionStart).after(retainAfter)) {
+                    execute(conn, dropSql, entry.getValue(), partitionStart);
+                    it.remove();
+                    changed = true;
+                    logger.info("Dropped history partition {}", entry.getValue());
+                }
+            }
+        }
+
+        if (changed && mode == Mode.TABLES && viewSql != null && !existing.isEmpty()) {
+            String sql = viewSql.replace("{table}", tableName).replace("{union}", getUnionSql(existing.values()));
+            logger.debug("Update history view SQL: {}", sql);
+            Statement stmt = conn.createStatement();
+            stmt.execute(sql);
+            stmt.close();
+        }
+        if (!conn.getAutoCommit())
+            conn.commit();
+        partitions = Collections.unmodifiableList(new ArrayList<String>(existing.values()));
+    }
+
+    /**
+     * @return the table an event at the given time should be inserted into.
+     */
+    public String getInsertTable(Date eventTime) {
+        if (mode == Mode.NATIVE)
+            return tableName;
+        return getPartitionName(eventTime);
+    }
+
+    /**
+     * @return the FROM clause source that covers the given time range, where null means no bound. In TABLES mode it
+     *         only reads the partition tables within the range.
+     */
+    public String getQuerySource(Date fromTime, Date toTime) {
+        if (mode == Mode.NATIVE)
+            return tableName;
+
+        List<String> names = new ArrayList<String>();
+        for (String name : partitions) {
+            Date start = parsePartitionStart(name);
+            if (fromTime != null && !getNextPeriodStart(start).after(fromTime))
+                continue;
+            if (toTime != null && start.after(toTime))
+                continue;
+            names.add(name);
+        }
+        if (names.isEmpty())
+            return tableName;
+        if (names.size() == 1)
+            return names.get(0);
+        return "(" + getUnionSql(names) + ") h";
+    }
+
+    private String getUnionSql(Collection<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            if (sb.length() > 0)
+                sb.append(" UNION ALL ");
+            sb.append("SELECT ").append(columns).append(" FROM ").append(name);
+        }
+        return sb.toString();
+    }
+
+    private SortedMap<Date, String> listPartitions(Connection conn) throws SQLException {
+        SortedMap<Date, String> result = new TreeMap<Date, String>();
+        if (mode == Mode.NATIVE) {
+            String sql = listSql.replace("{table}", tableName);
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next())
+                addPartition(result, rs.getString(1));
+            rs.close();
+            stmt.close();
+        } else {
+            ResultSet rs = conn.getMetaData().getTables(null, null, "%", new String[]{"TABLE"});
+            while (rs.next())
+                addPartition(result, rs.getString("TABLE_NAME"));
+            rs.close();
+        }
+        return result;
+    }
+
+    private void addPartition(SortedMap<Date, String> result, String name) {
+        if (name == null)
+            return;
+        // Database may return names in different case, so we always use our own.
+        Date start = parsePartitionStart(name);
+        if (start != null)
+            result.put(start, getPartitionName(start));
+    }
+
+    private void execute(Connection conn, String sqlTemplate, String name, Date start) throws SQLException {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        String sql = sqlTemplate.replace("{table}", tableName).replace("{name}", name).
+                replace("{start}", df.format(start)).replace("{end}", df.format(getNextPeriodStart(start)));
+        logger.debug("History partition SQL: {}", sql);
+        Statement stmt = conn.createStatement();
+        try {
+            for (String statementSql : sql.split(";")) {
+                if (statementSql.trim().length() > 0)
+                    stmt.execute(statementSql.trim());
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+}
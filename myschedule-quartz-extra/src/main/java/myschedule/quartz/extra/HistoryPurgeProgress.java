@@ -0,0 +1,77 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+
+/**
+ * Progress of a chunked history purge from {@link JdbcSchedulerHistoryPlugin#purgeJobHistory}. The purge thread
+ * updates it after each chunk, so other threads may read it while it's running, and may {@link #cancel()} it to stop
+ * the purge after current chunk.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class HistoryPurgeProgress implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile long deletedCount;
+    private volatile int chunkCount;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+
+    /** Request the purge to stop after current chunk. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    void start() {
+        startTime = System.currentTimeMillis();
+    }
+
+    void chunkDeleted(int count) {
+        deletedCount += count;
+        chunkCount++;
+    }
+
+    void end() {
+        endTime = System.currentTimeMillis();
+        done = true;
+    }
+
+    public long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getElapsedInMillis() {
+        if (startTime == 0)
+            return 0;
+        return (done ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /** @return average rows deleted per second, including the pauses between chunks. */
+    public double getRowsPerSec() {
+        long elapsed = getElapsedInMillis();
+        if (elapsed <= 0)
+            return 0;
+        return deletedCount * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryPurgeProgress[deletedCount=" + deletedCount + ", chunkCount=" + chunkCount +
+                ", elapsedInMillis=" + getElapsedInMillis() + ", rowsPerSec=" + String.format("%.1f", getRowsPerSec()) +
+                ", cancelled=" + cancelled + ", done=" + done + "]";
+    }
+}
@@ -0,0 +1,167 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Filters and cursor for one page of scheduler history, newest events first. All filters are optional and combined
+ * with AND. The time range is inclusive of <code>fromTime</code> and exclusive of <code>toTime</code>.
+ * <p/>
+ * <p>Pages are read with keyset pagination: instead of an offset, the next page resumes right after the
+ * (eventTime, id) of the last event of current page. This keeps each page query an index range scan on
+ * (event_time, id) no matter how deep the user reads. Use {@link #nextPage(HistoryEvent)} to get the next page query.
+ * <pre>
+ * HistoryQuery query = new HistoryQuery();
+ * query.setEventType("TriggerListener");
+ * query.setPageSize(100);
+ * List&lt;HistoryEvent&gt; page = plugin.queryHistory(query);
+ * while (page.size() == query.getPageSize()) {
+ *     query = query.nextPage(page.get(page.size() - 1));
+ *     page = plugin.queryHistory(query);
+ * }
+ * </pre>
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class HistoryQuery implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private Date fromTime;
+    private Date toTime;
+    private String eventType;
+    private String eventName;
+    private String triggerKey;
+    private String jobKey;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private Date afterEventTime;
+    private Long afterId;
+
+    /**
+     * @return a copy of this query that resume after the given event, which should be the last one of current page.
+     */
+    public HistoryQuery nextPage(HistoryEvent lastEvent) {
+        HistoryQuery next = copy();
+        next.afterEventTime = lastEvent.getEventTime();
+        next.afterId = lastEvent.getId();
+        return next;
+    }
+
+    public HistoryQuery copy() {
+        HistoryQuery result = new HistoryQuery();
+        result.fromTime = fromTime;
+        result.toTime = toTime;
+        result.eventType = eventType;
+        result.eventName = eventName;
+        result.triggerKey = triggerKey;
+        result.jobKey = jobKey;
+        result.pageSize = pageSize;
+        result.afterEventTime = afterEventTime;
+        result.afterId = afterId;
+        return result;
+    }
+
+    /**
+     * Check the event against the time range and the other filters, but not the page cursor. It's for stores that
+     * filter events in memory.
+     */
+    public boolean matches(HistoryEvent event) {
+        Date eventTime = event.getEventTime();
+        if (fromTime != null && (eventTime == null || eventTime.before(fromTime)))
+            return false;
+        if (toTime != null && (eventTime == null || !eventTime.before(toTime)))
+            return false;
+        return matches(event.getEventType(), eventType) && matches(event.getEventName(), eventName) &&
+                matches(event.getInfo1(), triggerKey) && matches(event.getInfo2(), jobKey);
+    }
+
+    private static boolean matches(String value, String filter) {
+        return filter == null || filter.equals(value);
+    }
+
+    public Date getFromTime() {
+        return fromTime;
+    }
+
+    public void setFromTime(Date fromTime) {
+        this.fromTime = fromTime;
+    }
+
+    public Date getToTime() {
+        return toTime;
+    }
+
+    public void setToTime(Date toTime) {
+        this.toTime = toTime;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    /** Either SchedulerListener or TriggerListener. */
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    /** The listener method name, eg: triggerFired. */
+    public void setEventName(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public String getTriggerKey() {
+        return triggerKey;
+    }
+
+    /** Match the info1 column, in the <code>TriggerKey.toString()</code> format of "group.name". */
+    public void setTriggerKey(String triggerKey) {
+        this.triggerKey = triggerKey;
+    }
+
+    public String getJobKey() {
+        return jobKey;
+    }
+
+    /** Match the info2 column, in the <code>JobKey.toString()</code> format of "group.name". */
+    public void setJobKey(String jobKey) {
+        this.jobKey = jobKey;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Page size must be greater than zero: " + pageSize);
+        this.pageSize = pageSize;
+    }
+
+    public Date getAfterEventTime() {
+        return afterEventTime;
+    }
+
+    public void setAfterEventTime(Date afterEventTime) {
+        this.afterEventTime = afterEventTime;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Long afterId) {
+        this.afterId = afterId;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryQuery[fromTime=" + fromTime + ", toTime=" + toTime + ", eventType=" + eventType +
+                ", eventName=" + eventName + ", triggerKey=" + triggerKey + ", jobKey=" + jobKey +
+                ", pageSize=" + pageSize + ", afterEventTime=" + afterEventTime + ", afterId=" + afterId + "]";
+    }
+}
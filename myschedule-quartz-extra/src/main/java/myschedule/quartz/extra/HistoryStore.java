@@ -0,0 +1,48 @@
+package myschedule.quartz.extra;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A storage of scheduler history events. The history plugins (see {@link AbstractSchedulerHistoryPlugin}) turn the
+ * scheduler and trigger listener callbacks into {@link HistoryEvent} and append them to a store, and the web UI reads
+ * them back with {@link #query(HistoryQuery)}.
+ * <p/>
+ * <p>This package provides {@link JdbcHistoryStore}, {@link FileHistoryStore} and {@link MemoryHistoryStore}. Each
+ * plugin creates its default store, and you may plug in your own implementation with the plugin
+ * <code>historyStoreClass</code> setting.
+ * <p/>
+ * <p>The append methods are called by the Quartz worker threads (or by the async history writer thread), so an
+ * implementation must be thread safe, and should return as fast as it can.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public interface HistoryStore {
+
+    /** Prepare the store for use. It's called once by the plugin before any event is appended. */
+    void open();
+
+    /** Flush and release any resources. Events appended after close are not guaranteed to be stored. */
+    void close();
+
+    /** Store one event. A store that assigns ids should set it back into the event. */
+    void append(HistoryEvent event);
+
+    /** Store a list of events in the given order, in one batch if the store supports it. */
+    void appendBatch(List<HistoryEvent> events);
+
+    /**
+     * Query one page of events, newest first. See {@link HistoryQuery} for the filters and paging.
+     */
+    List<HistoryEvent> query(HistoryQuery query);
+
+    /**
+     * Remove events older than the given date.
+     *
+     * @return number of events removed, or -1 if the store can not tell.
+     */
+    long purge(Date olderThan);
+
+    /** @return a snapshot of the store counters. */
+    HistoryStoreStats getStats();
+}
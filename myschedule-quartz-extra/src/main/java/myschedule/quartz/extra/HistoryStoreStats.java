@@ -0,0 +1,57 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of {@link HistoryStore} counters. The counts are since the store is opened, except the
+ * <code>eventCount</code> and <code>sizeInBytes</code> that are about what the store currently holds. A value of -1
+ * means the store does not know it cheaply (eg: the row count of a large history table).
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class HistoryStoreStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String storeName;
+    private final long eventCount;
+    private final long sizeInBytes;
+    private final long appendedCount;
+    private final long purgedCount;
+
+    public HistoryStoreStats(String storeName, long eventCount, long sizeInBytes, long appendedCount,
+                             long purgedCount) {
+        this.storeName = storeName;
+        this.eventCount = eventCount;
+        this.sizeInBytes = sizeInBytes;
+        this.appendedCount = appendedCount;
+        this.purgedCount = purgedCount;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount;
+    }
+
+    /** @return events removed by purge or by the store own retention. */
+    public long getPurgedCount() {
+        return purgedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryStoreStats[storeName=" + storeName + ", eventCount=" + eventCount +
+                ", sizeInBytes=" + sizeInBytes + ", appendedCount=" + appendedCount +
+                ", purgedCount=" + purgedCount + "]";
+    }
+}
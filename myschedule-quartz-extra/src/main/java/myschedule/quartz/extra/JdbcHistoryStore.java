@@ -0,0 +1,626 @@
+package myschedule.quartz.extra;
+
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link HistoryStore} that keeps the events in a database table, with connections from a Quartz data source. This
+ * is the store of {@link JdbcSchedulerHistoryPlugin}; see that class for the table DDL and what each setting does.
+ * <p/>
+ * <p>Events appended in a batch are inserted with one connection and one JDBC batch per insert SQL. Purge either
+ * runs the single <code>deleteSql</code>, deletes in chunks (see {@link #purgeJobHistory(Date, HistoryPurgeProgress)}),
+ * or drops whole time partitions when <code>partitionMode</code> is set.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JdbcHistoryStore implements HistoryStore {
+
+    public static final String DEFAULT_TABLE_NAME = "qrtz_scheduler_history";
+    static final String HISTORY_COLUMNS = "host_ip, host_name, scheduler_name, event_type, event_name, " +
+            "event_time, info1, info2, info3, info4, info5";
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcHistoryStore.class);
+
+    private String dataSourceName;
+    private String insertSql;
+    private String querySql;
+    private String deleteSql;
+    private int[] columnSqlTypes;
+    private String tableName = DEFAULT_TABLE_NAME;
+    private String idColumnName;
+    private int deleteChunkSize;
+    private String deleteChunkSql;
+    private long deleteChunkPauseInMillis = 100;
+    private String partitionMode;
+    private String partitionPeriod = HistoryPartitionManager.Period.DAY.name();
+    private int partitionsAhead = 2;
+    private String partitionListSql;
+    private String partitionAddSql;
+    private String partitionDropSql;
+    private String partitionViewSql;
+    private String partitionInsertSql;
+    private HistoryPartitionManager partitionManager;
+    private final AtomicLong appendedCount = new AtomicLong();
+    private final AtomicLong purgedCount = new AtomicLong();
+
+    public void setDataSourceName(String dataSourceName) {
+        this.dataSourceName = dataSourceName;
+    }
+
+    public void setInsertSql(String insertSql) {
+        this.insertSql = insertSql;
+    }
+
+    public void setQuerySql(String querySql) {
+        this.querySql = querySql;
+    }
+
+    public void setDeleteSql(String deleteSql) {
+        this.deleteSql = deleteSql;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public void setIdColumnName(String idColumnName) {
+        this.idColumnName = idColumnName;
+    }
+
+    public void setDeleteChunkSize(int deleteChunkSize) {
+        this.deleteChunkSize = deleteChunkSize;
+    }
+
+    public void setDeleteChunkSql(String deleteChunkSql) {
+        this.deleteChunkSql = deleteChunkSql;
+    }
+
+    public void setDeleteChunkPauseInMillis(long deleteChunkPauseInMillis) {
+        this.deleteChunkPauseInMillis = deleteChunkPauseInMillis;
+    }
+
+    /** Either NATIVE or TABLES. Not set means the history table is not partitioned. */
+    public void setPartitionMode(String partitionMode) {
+        this.partitionMode = partitionMode;
+    }
+
+    /** Either DAY or WEEK. */
+    public void setPartitionPeriod(String partitionPeriod) {
+        this.partitionPeriod = partitionPeriod;
+    }
+
+    public void setPartitionsAhead(int partitionsAhead) {
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    public void setPartitionListSql(String partitionListSql) {
+        this.partitionListSql = partitionListSql;
+    }
+
+    public void setPartitionAddSql(String partitionAddSql) {
+        this.partitionAddSql = partitionAddSql;
+    }
+
+    public void setPartitionDropSql(String partitionDropSql) {
+        this.partitionDropSql = partitionDropSql;
+    }
+
+    public void setPartitionViewSql(String partitionViewSql) {
+        this.partitionViewSql = partitionViewSql;
+    }
+
+    /**
+     * TABLES mode only: the insert SQL with a <code>{name}</code> place holder for the partition table. Default to
+     * insert the history columns with 11 binding parameters.
+     */
+    public void setPartitionInsertSql(String partitionInsertSql) {
+        this.partitionInsertSql = partitionInsertSql;
+    }
+
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    public String getInsertSql() {
+        return insertSql;
+    }
+
+    public String getQuerySql() {
+        return querySql;
+    }
+
+    public String getDeleteSql() {
+        return deleteSql;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getIdColumnName() {
+        return idColumnName;
+    }
+
+    public int getDeleteChunkSize() {
+        return deleteChunkSize;
+    }
+
+    public String getDeleteChunkSql() {
+        return deleteChunkSql;
+    }
+
+    public long getDeleteChunkPauseInMillis() {
+        return deleteChunkPauseInMillis;
+    }
+
+    /**
+     * @return the partition manager if partitionMode is set, else null.
+     */
+    public HistoryPartitionManager getPartitionManager() {
+        return partitionManager;
+    }
+
+    /**
+     * @return true if histories should be removed by {@link #purgeJobHistory(Date, HistoryPurgeProgress)}.
+     */
+    public boolean isChunkedDelete() {
+        return deleteChunkSize > 0 || deleteChunkSql != null;
+    }
+
+    @Override
+    public void open() {
+        if (deleteChunkSize > 0 && deleteChunkSql == null && idColumnName == null)
+            throw new QuartzRuntimeException("History store deleteChunkSize requires either deleteChunkSql " +
+                    "or idColumnName to be set.");
+
+        // Partitions must exist before we can look up the column types and insert.
+        if (partitionMode != null)
+            initPartitionManager();
+
+        // Extract and find all the SQL types for table columns.
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                PreparedStatement stmt = conn.prepareStatement(querySql);
+                ResultSetMetaData metaData = stmt.getMetaData();
+                if (metaData != null) {
+                    // The id column is generated by database, so it's not part of the insert parameters.
+                    List<Integer> types = new ArrayList<Integer>();
+                    int size = metaData.getColumnCount();
+                    for (int i = 1; i <= size; i++) {
+                        int type = metaData.getColumnType(i);
+                        String typeName = metaData.getColumnTypeName(i);
+                        String name = metaData.getColumnName(i);
+                        logger.debug("History table SQL column {}, type={}, typeName={}",
+                                new Object[]{name, type, typeName});
+                        if (idColumnName != null && idColumnName.equalsIgnoreCase(name))
+                            continue;
+                        types.add(type);
+                    }
+                    columnSqlTypes = new int[types.size()];
+                    for (int i = 0; i < columnSqlTypes.length; i++)
+                        columnSqlTypes[i] = types.get(i);
+                }
+                stmt.close();
+            }
+        });
+    }
+
+    private void initPartitionManager() {
+        HistoryPartitionManager.Mode mode = HistoryPartitionManager.Mode.valueOf(partitionMode.trim().toUpperCase());
+        HistoryPartitionManager.Period period =
+                HistoryPartitionManager.Period.valueOf(partitionPeriod.trim().toUpperCase());
+        if (mode == HistoryPartitionManager.Mode.NATIVE && partitionListSql == null)
+            throw new QuartzRuntimeException("History store partitionMode NATIVE requires partitionListSql.");
+
+        String columns = (idColumnName != null) ? idColumnName + ", " + HISTORY_COLUMNS : HISTORY_COLUMNS;
+        partitionManager = new HistoryPartitionManager(mode, period, tableName, columns);
+        partitionManager.setPartitionsAhead(partitionsAhead);
+        partitionManager.setListSql(partitionListSql);
+        if (partitionAddSql != null)
+            partitionManager.setAddSql(partitionAddSql);
+        if (partitionDropSql != null)
+            partitionManager.setDropSql(partitionDropSql);
+        if (partitionViewSql != null)
+            partitionManager.setViewSql(partitionViewSql);
+        if (partitionInsertSql == null)
+            partitionInsertSql = "INSERT INTO {name}(" + HISTORY_COLUMNS + ") VALUES(?,?,?,?,?,?,?,?,?,?,?)";
+        maintainPartitions(null);
+    }
+
+    @Override
+    public void close() {
+        // Connections are returned to the data source after each use.
+    }
+
+    /**
+     * Create partitions ahead, and drop partitions with histories older than the retainAfter date. It may be null to
+     * not drop any.
+     */
+    public void maintainPartitions(final Date retainAfter) {
+        final Date now = new Date();
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                partitionManager.maintain(conn, now, retainAfter);
+            }
+        });
+        logger.info("History partitions maintained: {}", partitionManager.getPartitions());
+    }
+
+    /**
+     * Load all rows returned by querySql into memory.
+     *
+     * @deprecated This does not scale with large history table. Use {@link #query(HistoryQuery)} instead.
+     */
+    @Deprecated
+    public List<List<Object>> getJobHistoryData() {
+        final List<List<Object>> result = new ArrayList<List<Object>>();
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(querySql);
+                int colCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    List<Object> row = new ArrayList<Object>();
+                    for (int i = 1; i <= colCount; i++) {
+                        row.add(rs.getObject(i));
+                    }
+                    result.add(row);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Query one page of history events, newest first. Use {@link HistoryQuery#nextPage(HistoryEvent)} with the last
+     * event returned to get the next page. A page with less than {@link HistoryQuery#getPageSize()} events is the
+     * last one.
+     */
+    @Override
+    public List<HistoryEvent> query(HistoryQuery query) {
+        final List<Object> params = new ArrayList<Object>();
+        final String sql = buildQueryHistorySql(query, params);
+        final int pageSize = query.getPageSize();
+        logger.debug("Query history SQL: {}, params={}", sql, params);
+        final List<HistoryEvent> result = new ArrayList<HistoryEvent>();
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                try {
+                    stmt.setMaxRows(pageSize);
+                    stmt.setFetchSize(pageSize);
+                    for (int i = 1; i <= params.size(); i++)
+                        stmt.setObject(i, params.get(i - 1));
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next() && result.size() < pageSize)
+                        result.add(toHistoryEvent(rs));
+                    rs.close();
+                } finally {
+                    stmt.close();
+                }
+            }
+        });
+        return result;
+    }
+
+    String buildQueryHistorySql(HistoryQuery query, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (idColumnName != null)
+            sql.append(idColumnName).append(", ");
+        sql.append(HISTORY_COLUMNS).append(" FROM ").append(getQuerySource(query)).append(" WHERE 1 = 1");
+        if (query.getFromTime() != null) {
+            sql.append(" AND event_time >= ?");
+            params.add(new java.sql.Timestamp(query.getFromTime().getTime()));
+        }
+        if (query.getToTime() != null) {
+            sql.append(" AND event_time < ?");
+            params.add(new java.sql.Timestamp(query.getToTime().getTime()));
+        }
+        if (query.getEventType() != null) {
+            sql.append(" AND event_type = ?");
+            params.add(query.getEventType());
+        }
+        if (query.getEventName() != null) {
+            sql.append(" AND event_name = ?");
+            params.add(query.getEventName());
+        }
+        if (query.getTriggerKey() != null) {
+            sql.append(" AND info1 = ?");
+            params.add(query.getTriggerKey());
+        }
+        if (query.getJobKey() != null) {
+            sql.append(" AND info2 = ?");
+            params.add(query.getJobKey());
+        }
+        if (query.getAfterEventTime() != null) {
+            java.sql.Timestamp afterTime = new java.sql.Timestamp(query.getAfterEventTime().getTime());
+            if (idColumnName != null && query.getAfterId() != null) {
+                sql.append(" AND (event_time < ? OR (event_time = ? AND ").append(idColumnName).append(" < ?))");
+                params.add(afterTime);
+                params.add(afterTime);
+                params.add(query.getAfterId());
+            } else {
+                sql.append(" AND event_time < ?");
+                params.add(afterTime);
+            }
+        }
+        sql.append(" ORDER BY event_time DESC");
+        if (idColumnName != null)
+            sql.append(", ").append(idColumnName).append(" DESC");
+        return sql.toString();
+    }
+
+    private String getQuerySource(HistoryQuery query) {
+        if (partitionManager == null)
+            return tableName;
+        // Only read the partitions this query may need.
+        Date toTime = query.getToTime();
+        Date afterTime = query.getAfterEventTime();
+        if (afterTime != null && (toTime == null || afterTime.before(toTime)))
+            toTime = afterTime;
+        return partitionManager.getQuerySource(query.getFromTime(), toTime);
+    }
+
+    private HistoryEvent toHistoryEvent(ResultSet rs) throws SQLException {
+        HistoryEvent event = new HistoryEvent();
+        int i = 1;
+        if (idColumnName != null) {
+            long id = rs.getLong(i++);
+            event.setId(rs.wasNull() ? null : id);
+        }
+        event.setHostIp(rs.getString(i++));
+        event.setHostName(rs.getString(i++));
+        event.setSchedulerName(rs.getString(i++));
+        event.setEventType(rs.getString(i++));
+        event.setEventName(rs.getString(i++));
+        java.sql.Timestamp eventTime = rs.getTimestamp(i++);
+        event.setEventTime(eventTime == null ? null : new Date(eventTime.getTime()));
+        event.setInfo1(rs.getString(i++));
+        event.setInfo2(rs.getString(i++));
+        event.setInfo3(rs.getString(i++));
+        event.setInfo4(rs.getString(i++));
+        event.setInfo5(rs.getString(i));
+        return event;
+    }
+
+    /**
+     * Remove events older than the given date: by dropping partitions if the table is partitioned, in chunks if
+     * {@link #isChunkedDelete()}, or else with the single deleteSql statement.
+     *
+     * @return number of events removed, or -1 when partitions are dropped.
+     */
+    @Override
+    public long purge(Date olderThan) {
+        if (partitionManager != null) {
+            maintainPartitions(olderThan);
+            return -1;
+        } else if (isChunkedDelete()) {
+            return purgeJobHistory(olderThan, new HistoryPurgeProgress()).getDeletedCount();
+        } else {
+            return deleteJobHistory(olderThan);
+        }
+    }
+
+    public int deleteJobHistory(final Date olderThanDate) {
+        logger.debug("Delete SQL: {}", deleteSql);
+        final List<Integer> result = new ArrayList<Integer>();
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                PreparedStatement stmt = conn.prepareStatement(deleteSql);
+                stmt.setObject(1, new java.sql.Timestamp(olderThanDate.getTime()));
+                int count = stmt.executeUpdate();
+                logger.info("History record deleted: {}", count);
+                stmt.close();
+                result.add(count);
+            }
+        });
+        purgedCount.addAndGet(result.get(0));
+        return result.get(0);
+    }
+
+    /**
+     * Delete histories older than the given date in chunks, pausing deleteChunkPauseInMillis between them. It returns
+     * when there is no more to delete, or when the progress is cancelled or current thread is interrupted.
+     */
+    public HistoryPurgeProgress purgeJobHistory(Date olderThanDate, HistoryPurgeProgress progress) {
+        logger.debug("Purge histories older than {} with chunk size {}", olderThanDate, deleteChunkSize);
+        progress.start();
+        try {
+            while (!progress.isCancelled()) {
+                int count = deleteJobHistoryChunk(olderThanDate);
+                progress.chunkDeleted(count);
+                purgedCount.addAndGet(count);
+                logger.info("History chunk purged: {}, {}", count, progress);
+                if (count == 0 || (deleteChunkSize > 0 && count < deleteChunkSize))
+                    break;
+
+                if (deleteChunkPauseInMillis > 0) {
+                    try {
+                        Thread.sleep(deleteChunkPauseInMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    logger.info("History purge is interrupted.");
+                    progress.cancel();
+                }
+            }
+        } finally {
+            progress.end();
+        }
+        return progress;
+    }
+
+    private int deleteJobHistoryChunk(final Date olderThanDate) {
+        final java.sql.Timestamp olderThan = new java.sql.Timestamp(olderThanDate.getTime());
+        final List<Integer> result = new ArrayList<Integer>();
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                int count = 0;
+                if (deleteChunkSql != null) {
+                    PreparedStatement stmt = conn.prepareStatement(deleteChunkSql);
+                    stmt.setObject(1, olderThan);
+                    count = stmt.executeUpdate();
+                    stmt.close();
+                } else {
+                    // Find the id of the last row of this chunk, then delete by primary key range.
+                    Long lastId = null;
+                    PreparedStatement stmt = conn.prepareStatement("SELECT " + idColumnName + " FROM " + tableName +
+                            " WHERE event_time < ? ORDER BY " + idColumnName);
+                    stmt.setMaxRows(deleteChunkSize);
+                    stmt.setFetchSize(deleteChunkSize);
+                    stmt.setObject(1, olderThan);
+                    ResultSet rs = stmt.executeQuery();
+                    for (int i = 0; i < deleteChunkSize && rs.next(); i++)
+                        lastId = rs.getLong(1);
+                    rs.close();
+                    stmt.close();
+
+                    if (lastId != null) {
+                        stmt = conn.prepareStatement("DELETE FROM " + tableName + " WHERE " + idColumnName +
+                                " <= ? AND event_time < ?");
+                        stmt.setObject(1, lastId);
+                        stmt.setObject(2, olderThan);
+                        count = stmt.executeUpdate();
+                        stmt.close();
+                    }
+                }
+                if (!conn.getAutoCommit())
+                    conn.commit();
+                result.add(count);
+            }
+        });
+        return result.get(0);
+    }
+
+    @Override
+    public void append(HistoryEvent event) {
+        final Object[] params = event.toParams();
+        final String sql = getInsertSql(params);
+        logger.debug("Insert SQL: {}", sql);
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                bindInsertParams(stmt, params);
+                int result = stmt.executeUpdate();
+                logger.info("History record inserted: {}", result);
+                stmt.close();
+            }
+        });
+        appendedCount.incrementAndGet();
+    }
+
+    /**
+     * Insert all rows with a single connection and one JDBC batch per insert SQL (only partition tables have more
+     * than one).
+     */
+    @Override
+    public void appendBatch(List<HistoryEvent> events) {
+        final Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+        for (HistoryEvent event : events) {
+            Object[] params = event.toParams();
+            String sql = getInsertSql(params);
+            List<Object[]> batch = batches.get(sql);
+            if (batch == null) {
+                batch = new ArrayList<Object[]>();
+                batches.put(sql, batch);
+            }
+            batch.add(params);
+        }
+        withConn(new ConnAction() {
+            @Override
+            public void onConn(Connection conn) throws SQLException {
+                for (Map.Entry<String, List<Object[]>> entry : batches.entrySet()) {
+                    logger.debug("Batch insert SQL: {}, size={}", entry.getKey(), entry.getValue().size());
+                    PreparedStatement stmt = conn.prepareStatement(entry.getKey());
+                    try {
+                        for (Object[] params : entry.getValue()) {
+                            bindInsertParams(stmt, params);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                        logger.info("History records batch inserted: {}", entry.getValue().size());
+                    } finally {
+                        stmt.close();
+                    }
+                }
+            }
+        });
+        appendedCount.addAndGet(events.size());
+    }
+
+    private String getInsertSql(Object[] params) {
+        if (partitionManager == null || partitionManager.getMode() != HistoryPartitionManager.Mode.TABLES)
+            return insertSql;
+        return partitionInsertSql.replace("{name}", partitionManager.getInsertTable((Date) params[5]));
+    }
+
+    private void bindInsertParams(PreparedStatement stmt, Object[] params) throws SQLException {
+        if (columnSqlTypes != null) {
+            for (int i = 1; i <= params.length; i++) {
+                Object param = params[i - 1];
+                if (param instanceof Date) {
+                    long time = ((Date) param).getTime();
+                    param = new java.sql.Timestamp(time);
+                }
+                int type = columnSqlTypes[i - 1];
+                logger.debug("Binding param[{}]: {}, type={}", new Object[]{i, param, type});
+                stmt.setObject(i, param, type);
+            }
+        } else {
+            for (int i = 1; i <= params.length; i++) {
+                Object param = params[i - 1];
+                logger.debug("Binding param[{}]: {}", i, param);
+                stmt.setObject(i, param);
+            }
+        }
+    }
+
+    /** The row count is not known without a full table scan, so eventCount and sizeInBytes are -1. */
+    @Override
+    public HistoryStoreStats getStats() {
+        return new HistoryStoreStats(toString(), -1, -1, appendedCount.get(), purgedCount.get());
+    }
+
+    private void withConn(ConnAction action) {
+        Connection conn = null;
+        try {
+            conn = DBConnectionManager.getInstance().getConnection(dataSourceName);
+            action.onConn(conn);
+        } catch (SQLException e) {
+            throw new QuartzRuntimeException("Failed to execute DB connection action.", e);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                    conn = null;
+                } catch (SQLException e) {
+                    throw new QuartzRuntimeException("Failed to close DB connection.", e);
+                }
+            }
+        }
+    }
+
+    private static interface ConnAction {
+        void onConn(Connection conn) throws SQLException;
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcHistoryStore[" + dataSourceName + ", " + tableName + "]";
+    }
+}
@@ -1,17 +1,9 @@
 package myschedule.quartz.extra;
 
 import org.quartz.*;
-import org.quartz.Trigger.CompletedExecutionInstruction;
-import org.quartz.spi.ClassLoadHelper;
-import org.quartz.spi.SchedulerPlugin;
-import org.quartz.utils.DBConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.sql.*;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -93,46 +85,118 @@ import java.util.List;
  * <p/>
  * <p>If <code>event_type</code> is <code>TriggerListener</code> then info1 = trigger key, info2 = job key,
  * info3 = [FireInstanceId], info4 = [fireTime], info5 = [CompletedExecutionInstruction].
+ * <p/>
+ * <p>The events are kept by a {@link JdbcHistoryStore} that is configured with the settings of this plugin. By default
+ * each event is inserted on the thread that fired it (eg: the Quartz worker thread). On a busy scheduler you may turn
+ * on <code>asyncWrite</code> so listeners only put events into a bounded in-memory queue, and a background
+ * {@link AsyncHistoryWriter} thread insert them with JDBC batches. A batch is written when it has
+ * <code>asyncBatchSize</code> events, or when <code>asyncFlushIntervalInMillis</code> has passed. When the queue is
+ * full, <code>asyncOverflowPolicy</code> decides to BLOCK the caller, DROP_OLDEST event, or SPILL to
+ * <code>asyncSpillFile</code>. Queued events are flushed when the plugin shutdown.
+ * <pre>
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncWrite = true
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncQueueCapacity = 10000
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncBatchSize = 100
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncFlushIntervalInMillis = 1000
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncOverflowPolicy = BLOCK
+ * org.quartz.plugin.MyJobHistoryPlugin.asyncSpillFile = /var/tmp/myschedule-history-spill.dat
+ * </pre>
+ * <p/>
+ * <p>To browse a large history table, use {@link #queryHistory(HistoryQuery)} that read one page at a time, newest
+ * first, and resume from the (event_time, id) of the last row read. For this to work well, the table should have an
+ * increasing id column and an index on (event_time, id), and you should list the insert columns explicitly. Set
+ * <code>idColumnName</code> to tell the plugin which column it is. Without an id column, pages are resumed by
+ * event_time alone, and rows that share the exact same event_time at the page boundary may be skipped.
+ * Here is the MySQL example (see also scripts/tables_mysql.sql and scripts/tables_oracle.sql):
+ * <pre>
+ * CREATE TABLE qrtz_scheduler_history (
+ *   id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+ *   host_ip VARCHAR(15) NOT NULL,
+ *   ...
+ *   info5 VARCHAR(256) NULL,
+ *   INDEX(event_time, id)
+ * )
+ *
+ * org.quartz.plugin.MyJobHistoryPlugin.insertSql = INSERT INTO qrtz_scheduler_history(host_ip, host_name, \
+ *   scheduler_name, event_type, event_name, event_time, info1, info2, info3, info4, info5) \
+ *   VALUES(?,?,?,?,?,?,?,?,?,?,?)
+ * org.quartz.plugin.MyJobHistoryPlugin.tableName = qrtz_scheduler_history
+ * org.quartz.plugin.MyJobHistoryPlugin.idColumnName = id
+ * </pre>
+ * <p/>
+ * <p>The <code>deleteIntervalInSecs</code> auto removal job runs <code>deleteSql</code> as one statement by default.
+ * On a large table that may hold a long lock and stall the history inserts. Set <code>deleteChunkSize</code> to
+ * purge in bounded chunks instead, each in its own statement, with <code>deleteChunkPauseInMillis</code> pause in
+ * between. The chunk is either deleted by <code>deleteChunkSql</code> that limits its own row count (eg: LIMIT on
+ * MySQL or ROWNUM on Oracle), or if not given, by primary key range of <code>idColumnName</code>. The removal job
+ * logs progress after each chunk, and it stops after current chunk when the scheduler interrupts it.
+ * <pre>
+ * org.quartz.plugin.MyJobHistoryPlugin.deleteChunkSize = 1000
+ * org.quartz.plugin.MyJobHistoryPlugin.deleteChunkPauseInMillis = 200
+ * # Optional, MySQL:
+ * org.quartz.plugin.MyJobHistoryPlugin.deleteChunkSql = DELETE FROM qrtz_scheduler_history WHERE event_time < ? LIMIT 1000
+ * # Optional, Oracle:
+ * org.quartz.plugin.MyJobHistoryPlugin.deleteChunkSql = DELETE FROM qrtz_scheduler_history WHERE event_time < ? AND ROWNUM <= 1000
+ * </pre>
+ * <p/>
+ * <p>Even in chunks, row deletes do not scale well for very large histories. You may instead set
+ * <code>partitionMode</code> to keep histories in DAY or WEEK time partitions, so retention drops whole partitions
+ * that are older than <code>deleteIntervalInSecs</code>. The removal job then runs every
+ * <code>partitionMaintenanceIntervalInSecs</code> to create partitions ahead and drop the expired ones. See
+ * {@link HistoryPartitionManager} for the two modes and their SQL templates, and scripts/tables_mysql.sql and
+ * scripts/tables_oracle.sql for the partitioned DDL.
+ * <pre>
+ * # MySQL native range partitions
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionMode = NATIVE
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionPeriod = DAY
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionListSql = SELECT partition_name FROM information_schema.partitions \
+ *   WHERE table_schema = DATABASE() AND table_name = '{table}'
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionAddSql = ALTER TABLE {table} REORGANIZE PARTITION pmax INTO ( \
+ *   PARTITION {name} VALUES LESS THAN (UNIX_TIMESTAMP('{end}')), PARTITION pmax VALUES LESS THAN MAXVALUE)
+ *
+ * # Or, one table per day behind the qrtz_scheduler_history view (MySQL), with ids from one shared counter
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionMode = TABLES
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionAddSql = CREATE TABLE {name} LIKE qrtz_scheduler_history_template
+ * org.quartz.plugin.MyJobHistoryPlugin.partitionInsertSql = INSERT INTO {name}(id, host_ip, host_name, \
+ *   scheduler_name, event_type, event_name, event_time, info1, info2, info3, info4, info5) \
+ *   VALUES(qrtz_scheduler_history_next_id(),?,?,?,?,?,?,?,?,?,?,?)
+ * </pre>
  *
  * @author Zemian Deng <saltnlight5@gmail.com>
  */
-public class JdbcSchedulerHistoryPlugin implements SchedulerPlugin {
+public class JdbcSchedulerHistoryPlugin extends AbstractSchedulerHistoryPlugin {
 
     public static final String DEFAULT_SCHEDULER_CONTEXT_KEY = "JdbcSchedulerHistoryPlugin.Instance";
+    public static final String DEFAULT_TABLE_NAME = JdbcHistoryStore.DEFAULT_TABLE_NAME;
 
     private static final Logger logger = LoggerFactory.getLogger(JdbcSchedulerHistoryPlugin.class);
-    private String name;
-    private Scheduler scheduler;
-    private String localIp;
-    private String localHost;
-    private String schedulerNameAndId;
-
-    private String dataSourceName;
-    private String insertSql;
-    private String querySql;
-    private String deleteSql;
-    private String schedulerContextKey;
+
+    private final JdbcHistoryStore store = new JdbcHistoryStore();
     private long deleteIntervalInSecs;
-    private int[] columnSqlTypes;
+    private long partitionMaintenanceIntervalInSecs = 3600;
+
+    public void setTableName(String tableName) {
+        store.setTableName(tableName);
+    }
 
-    public void setSchedulerContextKey(String schedulerContextKey) {
-        this.schedulerContextKey = schedulerContextKey;
+    public void setIdColumnName(String idColumnName) {
+        store.setIdColumnName(idColumnName);
     }
 
     public void setDataSourceName(String dataSourceName) {
-        this.dataSourceName = dataSourceName;
+        store.setDataSourceName(dataSourceName);
     }
 
     public void setQuerySql(String querySql) {
-        this.querySql = querySql;
+        store.setQuerySql(querySql);
     }
 
     public void setInsertSql(String insertSql) {
-        this.insertSql = insertSql;
+        store.setInsertSql(insertSql);
     }
 
     public void setDeleteSql(String deleteSql) {
-        this.deleteSql = deleteSql;
+        store.setDeleteSql(deleteSql);
     }
 
     public void setDeleteIntervalInSecs(long deleteIntervalInSecs) {
@@ -143,482 +207,153 @@ public class JdbcSchedulerHistoryPlugin implements SchedulerPlugin {
         return deleteIntervalInSecs;
     }
 
-    public List<List<Object>> getJobHistoryData() {
-        final List<List<Object>> result = new ArrayList<List<Object>>();
-        withConn(new ConnAction() {
-            @Override
-            public void onConn(Connection conn) throws SQLException {
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(querySql);
-                int colCount = rs.getMetaData().getColumnCount();
-                while (rs.next()) {
-                    List<Object> row = new ArrayList<Object>();
-                    for (int i = 1; i <= colCount; i++) {
-                        row.add(rs.getObject(i));
-                    }
-                    result.add(row);
-                }
-            }
-        });
-        return result;
-    }
-
-    public int deleteJobHistory(final Date olderThanDate) {
-        logger.debug("Delete SQL: {}", deleteSql);
-        final List<Integer> result = new ArrayList<Integer>();
-        withConn(new ConnAction() {
-            @Override
-            public void onConn(Connection conn) throws SQLException {
-                PreparedStatement stmt = conn.prepareStatement(deleteSql);
-                stmt.setObject(1, new java.sql.Timestamp(olderThanDate.getTime()));
-                int count = stmt.executeUpdate();
-                logger.info("History record deleted: {}", count);
-                stmt.close();
-                result.add(count);
-            }
-        });
-        return result.get(0);
-    }
-
-    private void insertHistory(final String sql, final Object[] params) {
-        logger.debug("Insert SQL: {}", sql);
-        withConn(new ConnAction() {
-            @Override
-            public void onConn(Connection conn) throws SQLException {
-                PreparedStatement stmt = conn.prepareStatement(insertSql);
-                if (columnSqlTypes != null) {
-                    for (int i = 1; i <= params.length; i++) {
-                        Object param = params[i - 1];
-                        if (param instanceof Date) {
-                            long time = ((Date) param).getTime();
-                            param = new java.sql.Timestamp(time);
-                        }
-                        int type = columnSqlTypes[i - 1];
-                        logger.debug("Binding param[{}]: {}, type={}", new Object[]{i, param, type});
-                        stmt.setObject(i, param, type);
-                    }
-                } else {
-                    for (int i = 1; i <= params.length; i++) {
-                        Object param = params[i - 1];
-                        logger.debug("Binding param[{}]: {}", i, param);
-                        stmt.setObject(i, param);
-                    }
-                }
-                int result = stmt.executeUpdate();
-                logger.info("History record inserted: {}", result);
-                stmt.close();
-            }
-        });
-    }
-
-    private void withConn(ConnAction action) {
-        Connection conn = null;
-        try {
-            conn = DBConnectionManager.getInstance().getConnection(dataSourceName);
-            action.onConn(conn);
-        } catch (SQLException e) {
-            throw new QuartzRuntimeException("Failed to execute DB connection action.", e);
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.close();
-                    conn = null;
-                } catch (SQLException e) {
-                    throw new QuartzRuntimeException("Failed to close DB connection.", e);
-                }
-            }
-        }
+    public void setDeleteChunkSize(int deleteChunkSize) {
+        store.setDeleteChunkSize(deleteChunkSize);
     }
 
-    private static interface ConnAction {
-        void onConn(Connection conn) throws SQLException;
+    public void setDeleteChunkSql(String deleteChunkSql) {
+        store.setDeleteChunkSql(deleteChunkSql);
     }
 
-    private String retrieveLocalHost() {
-        try {
-            InetAddress localHost = InetAddress.getLocalHost();
-            return localHost.getHostName();
-        } catch (UnknownHostException e) {
-            throw new RuntimeException(e);
-        }
+    public void setDeleteChunkPauseInMillis(long deleteChunkPauseInMillis) {
+        store.setDeleteChunkPauseInMillis(deleteChunkPauseInMillis);
     }
 
-    private String retrieveLocalIp() {
-        try {
-            InetAddress localHost = InetAddress.getLocalHost();
-            return localHost.getHostAddress();
-        } catch (UnknownHostException e) {
-            throw new RuntimeException(e);
-        }
+    /** Either NATIVE or TABLES. Not set means the history table is not partitioned. */
+    public void setPartitionMode(String partitionMode) {
+        store.setPartitionMode(partitionMode);
     }
 
-    private String retrieveSchedulerNameAndId() {
-        try {
-            return scheduler.getSchedulerName() + "_$_" + scheduler.getSchedulerInstanceId();
-        } catch (SchedulerException e) {
-            throw new QuartzRuntimeException(e);
-        }
+    /** Either DAY or WEEK. */
+    public void setPartitionPeriod(String partitionPeriod) {
+        store.setPartitionPeriod(partitionPeriod);
     }
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper) throws SchedulerException {
-        this.name = name;
-        this.scheduler = scheduler;
-        this.localIp = retrieveLocalIp();
-        this.localHost = retrieveLocalHost();
-        this.schedulerNameAndId = retrieveSchedulerNameAndId();
-
-        // Register listeners
-        scheduler.getListenerManager().addTriggerListener(new HistoryTriggerListener());
-        scheduler.getListenerManager().addSchedulerListener(new HistorySchedulerListener());
-
-        // Store this plugin instance into scheduler context map
-        if (schedulerContextKey == null)
-            schedulerContextKey = DEFAULT_SCHEDULER_CONTEXT_KEY;
-        scheduler.getContext().put(schedulerContextKey, this);
-        logger.info("Added plugin instance {} to scheduler context key: {}", this, schedulerContextKey);
-
-        // Extract and find all the SQL types for table columns.
-        withConn(new ConnAction() {
-            @Override
-            public void onConn(Connection conn) throws SQLException {
-                PreparedStatement stmt = conn.prepareStatement(querySql);
-                ResultSetMetaData metaData = stmt.getMetaData();
-                if (metaData != null) {
-                    int size = metaData.getColumnCount();
-                    columnSqlTypes = new int[size];
-                    for (int i = 1; i <= size; i++) {
-                        int type = metaData.getColumnType(i);
-                        String typeName = metaData.getColumnTypeName(i);
-                        String name = metaData.getColumnName(i);
-                        logger.debug("History table SQL column {}, type={}, typeName={}",
-                                new Object[]{name, type, typeName});
-                        columnSqlTypes[i - 1] = type;
-                    }
-                }
-                stmt.close();
-            }
-        });
+    public void setPartitionsAhead(int partitionsAhead) {
+        store.setPartitionsAhead(partitionsAhead);
     }
 
-    @Override
-    public void start() {
-        logger.info(name + " has started.");
+    public void setPartitionListSql(String partitionListSql) {
+        store.setPartitionListSql(partitionListSql);
     }
 
-    @Override
-    public void shutdown() {
-        logger.info(name + " has shutdown.");
+    public void setPartitionAddSql(String partitionAddSql) {
+        store.setPartitionAddSql(partitionAddSql);
     }
 
-    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    // Listeners
-    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-
-    private class HistorySchedulerListener extends SimpleSchedulerListener {
-
-        @Override
-        public void jobScheduled(Trigger trigger) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "jobScheduled",
-                    new Date(),
-                    trigger.getKey().toString(),
-                    trigger.getJobKey().toString(),
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
-
-        @Override
-        public void jobUnscheduled(TriggerKey triggerKey) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "jobUnscheduled",
-                    new Date(),
-                    triggerKey.toString(),
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
-
-        @Override
-        public void triggerPaused(TriggerKey triggerKey) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "triggerPaused",
-                    new Date(),
-                    triggerKey.toString(),
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    public void setPartitionDropSql(String partitionDropSql) {
+        store.setPartitionDropSql(partitionDropSql);
+    }
 
-        @Override
-        public void triggersPaused(String triggerGroup) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "triggersPaused",
-                    new Date(),
-                    triggerGroup,
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    public void setPartitionViewSql(String partitionViewSql) {
+        store.setPartitionViewSql(partitionViewSql);
+    }
 
-        @Override
-        public void triggerResumed(TriggerKey triggerKey) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "triggerResumed",
-                    new Date(),
-                    triggerKey.toString(),
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    /**
+     * TABLES mode only: the insert SQL with a <code>{name}</code> place holder for the partition table. Default to
+     * insert the history columns with 11 binding parameters.
+     */
+    public void setPartitionInsertSql(String partitionInsertSql) {
+        store.setPartitionInsertSql(partitionInsertSql);
+    }
 
-        @Override
-        public void triggersResumed(String triggerGroup) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "triggersResumed",
-                    new Date(),
-                    triggerGroup,
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    public void setPartitionMaintenanceIntervalInSecs(long partitionMaintenanceIntervalInSecs) {
+        this.partitionMaintenanceIntervalInSecs = partitionMaintenanceIntervalInSecs;
+    }
 
-        @Override
-        public void schedulerError(String msg, SchedulerException cause) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "schedulerError",
-                    new Date(),
-                    msg,
-                    cause.getClass().getName(),
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    /**
+     * @return the partition manager if partitionMode is set, else null.
+     */
+    public HistoryPartitionManager getPartitionManager() {
+        return store.getPartitionManager();
+    }
 
-        @Override
-        public void schedulerInStandbyMode() {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "schedulerInStandbyMode",
-                    new Date(),
-                    null,
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    /**
+     * Create partitions ahead, and drop partitions with histories older than deleteIntervalInSecs (if it's set).
+     */
+    public void maintainPartitions() {
+        Date retainAfter = (deleteIntervalInSecs > 0) ?
+                new Date(System.currentTimeMillis() - (deleteIntervalInSecs * 1000)) : null;
+        store.maintainPartitions(retainAfter);
+    }
 
-        @Override
-        public void schedulerStarted() {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "schedulerStarted",
-                    new Date(),
-                    null,
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-
-            // Auto add a job to delete job history if configured to do so
-            if (deleteIntervalInSecs > 0) {
-                try {
-                    String jobName = "JobHistoryRemovalJob";
-                    if (scheduler.checkExists(TriggerKey.triggerKey(jobName))) {
-                        scheduler.unscheduleJob(TriggerKey.triggerKey(jobName));
-                        logger.info("The JobHistoryRemovalJob already exist. Removed it from scheduler first.");
-                    }
-                    JobDetail job = JobBuilder.newJob(JobHistoryRemovalJob.class).
-                            withIdentity(jobName).
-                            usingJobData(JobHistoryRemovalJob.PLUGIN_KEY_NAME, schedulerContextKey).
-                            build();
-                    Trigger trigger = TriggerBuilder.newTrigger().withIdentity(jobName).
-                            withSchedule(
-                                    SimpleScheduleBuilder.repeatSecondlyForever((int) deleteIntervalInSecs).
-                                            withMisfireHandlingInstructionNextWithRemainingCount()
-                            ).
-                            startAt(new Date(System.currentTimeMillis() + (deleteIntervalInSecs * 1000))).
-                            build();
-                    scheduler.scheduleJob(job, trigger);
-                    logger.info("Added JobHistoryRemovalJob that runs every {} secs.", deleteIntervalInSecs);
-                } catch (SchedulerException e) {
-                    logger.error("Failed to insert JobHistoryRemovalJob.", e);
-                }
-            }
-        }
+    /**
+     * @return true if histories should be removed by {@link #purgeJobHistory(Date, HistoryPurgeProgress)}.
+     */
+    public boolean isChunkedDelete() {
+        return store.isChunkedDelete();
+    }
 
-//        @Override
-//        public void schedulerShutdown() {
-//            // TODO: We can not insert SQL data here yet. See QTZ-257.
-//            //       For now, the workaround is use schedulerShuttingdown(), which called before all pending jobs are
-//            //       completed.
-//			Object[] params = new Object[] {
-//				localIp,
-//				localHost,
-//				schedulerNameAndId,
-//				"SchedulerListener",
-//				"schedulerShutdown",
-//				new Date(),
-//				null,
-//				null,
-//				null,
-//				null,
-//				null
-//			};
-//			insertHistory(insertSql, params);
-//        }
+    /**
+     * Load all rows returned by querySql into memory.
+     *
+     * @deprecated This does not scale with large history table. Use {@link #queryHistory(HistoryQuery)} instead.
+     */
+    @Deprecated
+    public List<List<Object>> getJobHistoryData() {
+        return store.getJobHistoryData();
+    }
 
-        @Override
-        public void schedulerShuttingdown() {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "SchedulerListener",
-                    "schedulerShuttingdown",
-                    new Date(),
-                    null,
-                    null,
-                    null,
-                    null,
-                    null
-            };
-            insertHistory(insertSql, params);
-        }
+    String buildQueryHistorySql(HistoryQuery query, List<Object> params) {
+        return store.buildQueryHistorySql(query, params);
     }
 
-    private class HistoryTriggerListener implements TriggerListener {
-        @Override
-        public String getName() {
-            return name;
-        }
+    public int deleteJobHistory(Date olderThanDate) {
+        return store.deleteJobHistory(olderThanDate);
+    }
 
-        @Override
-        public void triggerFired(Trigger trigger, JobExecutionContext context) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "TriggerListener",
-                    "triggerFired",
-                    new Date(),
-                    trigger.getKey().toString(),
-                    trigger.getJobKey().toString(),
-                    context.getFireInstanceId(),
-                    context.getFireTime(),
-                    null
-            };
-
-            insertHistory(insertSql, params);
-        }
+    /**
+     * Delete histories older than the given date in chunks, pausing deleteChunkPauseInMillis between them. It returns
+     * when there is no more to delete, or when the progress is cancelled or current thread is interrupted.
+     */
+    public HistoryPurgeProgress purgeJobHistory(Date olderThanDate, HistoryPurgeProgress progress) {
+        return store.purgeJobHistory(olderThanDate, progress);
+    }
 
-        @Override
-        public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
-            // Do nothing.
-            return false;
-        }
+    @Override
+    protected String getDefaultSchedulerContextKey() {
+        return DEFAULT_SCHEDULER_CONTEXT_KEY;
+    }
 
-        @Override
-        public void triggerMisfired(Trigger trigger) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "TriggerListener",
-                    "triggerMisfired",
-                    new Date(),
-                    trigger.getKey().toString(),
-                    trigger.getJobKey().toString(),
-                    null,
-                    null,
-                    null
-            };
-
-            insertHistory(insertSql, params);
-        }
+    @Override
+    protected HistoryStore createHistoryStore() {
+        return store;
+    }
 
-        @Override
-        public void triggerComplete(Trigger trigger, JobExecutionContext context,
-                                    CompletedExecutionInstruction triggerInstructionCode) {
-            Object[] params = new Object[]{
-                    localIp,
-                    localHost,
-                    schedulerNameAndId,
-                    "TriggerListener",
-                    "triggerComplete",
-                    new Date(),
-                    trigger.getKey().toString(),
-                    trigger.getJobKey().toString(),
-                    context.getFireInstanceId(),
-                    context.getFireTime(),
-                    triggerInstructionCode.toString()
-            };
-
-            insertHistory(insertSql, params);
+    @Override
+    protected void onSchedulerStarted() {
+        // Auto add a job to delete job history (or maintain partitions) if configured to do so
+        if (deleteIntervalInSecs > 0 || getPartitionManager() != null) {
+            long intervalInSecs = (getPartitionManager() != null) ?
+                    partitionMaintenanceIntervalInSecs : deleteIntervalInSecs;
+            try {
+                String jobName = "JobHistoryRemovalJob";
+                if (getScheduler().checkExists(TriggerKey.triggerKey(jobName))) {
+                    getScheduler().unscheduleJob(TriggerKey.triggerKey(jobName));
+                    logger.info("The JobHistoryRemovalJob already exist. Removed it from scheduler first.");
+                }
+                JobDetail job = JobBuilder.newJob(JobHistoryRemovalJob.class).
+                        withIdentity(jobName).
+                        usingJobData(JobHistoryRemovalJob.PLUGIN_KEY_NAME, getSchedulerContextKey()).
+                        build();
+                Trigger trigger = TriggerBuilder.newTrigger().withIdentity(jobName).
+                        withSchedule(
+                                SimpleScheduleBuilder.repeatSecondlyForever((int) intervalInSecs).
+                                        withMisfireHandlingInstructionNextWithRemainingCount()
+                        ).
+                        startAt(new Date(System.currentTimeMillis() + (intervalInSecs * 1000))).
+                        build();
+                getScheduler().scheduleJob(job, trigger);
+                logger.info("Added JobHistoryRemovalJob that runs every {} secs.", intervalInSecs);
+            } catch (SchedulerException e) {
+                logger.error("Failed to insert JobHistoryRemovalJob.", e);
+            }
         }
     }
 
-    public static class JobHistoryRemovalJob implements Job {
+    public static class JobHistoryRemovalJob implements InterruptableJob {
         public static final String PLUGIN_KEY_NAME = "JdbcSchedulerHistoryPluginKey";
+        private final HistoryPurgeProgress progress = new HistoryPurgeProgress();
 
         @Override
         public void execute(JobExecutionContext context) throws JobExecutionException {
@@ -628,27 +363,57 @@ public class JdbcSchedulerHistoryPlugin implements SchedulerPlugin {
                 JdbcSchedulerHistoryPlugin plugin = (JdbcSchedulerHistoryPlugin) scheduler.getContext().get(pluginKey);
                 long deleteIntervalInSecs = plugin.getDeleteIntervalInSecs();
                 Date olderThanDate = new Date(System.currentTimeMillis() - (deleteIntervalInSecs * 1000));
-                int result = plugin.deleteJobHistory(olderThanDate);
-                logger.info("{} job history records were deleted with date older than {}.", result, olderThanDate);
+                if (plugin.getPartitionManager() != null) {
+                    plugin.maintainPartitions();
+                } else if (plugin.isChunkedDelete()) {
+                    plugin.purgeJobHistory(olderThanDate, progress);
+                    context.setResult(progress);
+                    logger.info("{} job history records were purged with date older than {}. {}",
+                            new Object[]{progress.getDeletedCount(), olderThanDate, progress});
+                } else {
+                    int result = plugin.deleteJobHistory(olderThanDate);
+                    logger.info("{} job history records were deleted with date older than {}.", result, olderThanDate);
+                }
             } catch (SchedulerException e) {
                 throw new JobExecutionException("Failed to run JobHistoryRemovalJob.", e);
             }
         }
+
+        @Override
+        public void interrupt() throws UnableToInterruptJobException {
+            progress.cancel();
+        }
     }
 
     public String getInsertSql() {
-        return insertSql;
+        return store.getInsertSql();
     }
 
     public String getQuerySql() {
-        return querySql;
+        return store.getQuerySql();
     }
 
     public String getDeleteSql() {
-        return deleteSql;
+        return store.getDeleteSql();
+    }
+
+    public String getTableName() {
+        return store.getTableName();
+    }
+
+    public String getIdColumnName() {
+        return store.getIdColumnName();
+    }
+
+    public int getDeleteChunkSize() {
+        return store.getDeleteChunkSize();
+    }
+
+    public String getDeleteChunkSql() {
+        return store.getDeleteChunkSql();
     }
 
-    public String getSchedulerContextKey() {
-        return schedulerContextKey;
+    public long getDeleteChunkPauseInMillis() {
+        return store.getDeleteChunkPauseInMillis();
     }
 }
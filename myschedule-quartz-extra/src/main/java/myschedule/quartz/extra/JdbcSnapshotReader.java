@@ -0,0 +1,429 @@
+package myschedule.quartz.extra;
+
+import org.quartz.CronExpression;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.JobDetailImpl;
+import org.quartz.impl.jdbcjobstore.Constants;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
+import org.quartz.impl.triggers.AbstractTrigger;
+import org.quartz.impl.triggers.CronTriggerImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.*;
+import java.util.Date;
+
+/**
+ * Reads a {@link SchedulerSnapshot} straight from the tables of a JDBC JobStore (JobStoreTX or JobStoreCMT) with one
+ * SELECT per table, all in one transaction, instead of three store calls per trigger through the Scheduler API.
+ * <p/>
+ * <p>The transaction is raised to REPEATABLE_READ, or to SERIALIZABLE where that is the only stricter level supported
+ * (Oracle), and set back afterwards. On databases reading from a snapshot (PostgreSQL, Oracle, MySQL InnoDB) all the
+ * tables are then read at the same point. On databases isolating with locks, a trigger may still be removed between
+ * two SELECTs; a simple or cron trigger whose row is missing from its second table is left out.
+ * <p/>
+ * <p>Simple and cron triggers are rebuilt from their rows. Other trigger types (calendar interval, daily time
+ * interval and blob triggers) are rare, and are loaded through {@link Scheduler#getTrigger(TriggerKey)} after the
+ * bulk read; their states still come from the bulk read.
+ * <p/>
+ * <p>It can also count the triggers or jobs of the scheduler with a single COUNT(*).
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JdbcSnapshotReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSnapshotReader.class);
+
+    private Scheduler scheduler;
+    private String dataSourceName;
+    private String tablePrefix;
+    private String schedulerName;
+    private boolean useProperties;
+
+    public JdbcSnapshotReader(Scheduler scheduler, JobStoreSupport jobStore) {
+        this.scheduler = scheduler;
+        this.dataSourceName = jobStore.getDataSource();
+        this.tablePrefix = jobStore.getTablePrefix();
+        this.schedulerName = jobStore.getInstanceName();
+        this.useProperties = jobStore.canUseProperties();
+    }
+
+    public SchedulerSnapshot read() {
+        Date snapshotTime = new Date();
+        List<Trigger> triggers = new ArrayList<Trigger>();
+        Map<TriggerKey, TriggerState> triggerStates = new HashMap<TriggerKey, TriggerState>();
+        Map<JobKey, JobDetail> jobDetails = new LinkedHashMap<JobKey, JobDetail>();
+        List<TriggerKey> otherTriggerKeys = new ArrayList<TriggerKey>();
+
+        Connection conn = null;
+        boolean autoCommit = true;
+        int isolation = -1;
+        try {
+            conn = DBConnectionManager.getInstance().getConnection(dataSourceName);
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            isolation = conn.getTransactionIsolation();
+            raiseIsolation(conn, isolation);
+
+            Map<TriggerKey, SimpleTriggerImpl> simpleTriggers = new HashMap<TriggerKey, SimpleTriggerImpl>();
+            Map<TriggerKey, CronTriggerImpl> cronTriggers = new HashMap<TriggerKey, CronTriggerImpl>();
+            readTriggers(conn, triggers, triggerStates, simpleTriggers, cronTriggers, otherTriggerKeys);
+            readSimpleTriggers(conn, simpleTriggers);
+            readCronTriggers(conn, cronTriggers);
+            readJobDetails(conn, jobDetails);
+            removeIncompleteTriggers(triggers, triggerStates, simpleTriggers.keySet(), cronTriggers.keySet());
+        } catch (SQLException e) {
+            throw new QuartzRuntimeException("Failed to read snapshot of scheduler " + schedulerName, e);
+        } finally {
+            if (conn != null) {
+                try {
+                    // Nothing was written; the transaction is only there to read all tables at the same point.
+                    conn.rollback();
+                    if (isolation >= 0 && conn.getTransactionIsolation() != isolation)
+                        conn.setTransactionIsolation(isolation);
+                    conn.setAutoCommit(autoCommit);
+                    conn.close();
+                } catch (SQLException e) {
+                    throw new QuartzRuntimeException("Failed to close DB connection.", e);
+                }
+            }
+        }
+
+        if (otherTriggerKeys.size() > 0) {
+            logger.debug("Loading {} triggers of other types through scheduler API.", otherTriggerKeys.size());
+            try {
+                for (TriggerKey key : otherTriggerKeys) {
+                    Trigger trigger = scheduler.getTrigger(key);
+                    if (trigger != null)
+                        triggers.add(trigger);
+                }
+            } catch (SchedulerException e) {
+                throw new QuartzRuntimeException(e);
+            }
+            // Same order as the SELECT: by group, then by name.
+            Collections.sort(triggers, new Comparator<Trigger>() {
+                @Override
+                public int compare(Trigger trigger1, Trigger trigger2) {
+                    TriggerKey key1 = trigger1.getKey();
+                    TriggerKey key2 = trigger2.getKey();
+                    int result = key1.getGroup().compareTo(key2.getGroup());
+                    return (result != 0) ? result : key1.getName().compareTo(key2.getName());
+                }
+            });
+        }
+        return new SchedulerSnapshot(snapshotTime, triggers, triggerStates, jobDetails);
+    }
+
+    /** Raise the isolation to REPEATABLE_READ, or SERIALIZABLE if that's the only stricter one supported. */
+    private void raiseIsolation(Connection conn, int isolation) throws SQLException {
+        if (isolation >= Connection.TRANSACTION_REPEATABLE_READ)
+            return;
+        DatabaseMetaData metaData = conn.getMetaData();
+        if (metaData.supportsTransactionIsolationLevel(Connection.TRANSACTION_REPEATABLE_READ))
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        else if (metaData.supportsTransactionIsolationLevel(Connection.TRANSACTION_SERIALIZABLE))
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        else
+            logger.warn("Database supports neither REPEATABLE_READ nor SERIALIZABLE, snapshot tables may be read " +
+                    "at different points.");
+    }
+
+    /** Leave out the simple and cron triggers whose row was removed from their second table while reading. */
+    private void removeIncompleteTriggers(List<Trigger> triggers, Map<TriggerKey, TriggerState> triggerStates,
+                                          Set<TriggerKey> simpleTriggerKeys, Set<TriggerKey> cronTriggerKeys) {
+        if (simpleTriggerKeys.isEmpty() && cronTriggerKeys.isEmpty())
+            return;
+        for (Iterator<Trigger> it = triggers.iterator(); it.hasNext(); ) {
+            TriggerKey key = it.next().getKey();
+            if (simpleTriggerKeys.contains(key) || cronTriggerKeys.contains(key)) {
+                logger.debug("Trigger {} was removed while reading the snapshot, leaving it out.", key);
+                it.remove();
+                triggerStates.remove(key);
+            }
+        }
+    }
+
+    /** @return number of rows in the TRIGGERS table of the scheduler. */
+    public int countTriggers() {
+        return count("TRIGGERS");
+    }
+
+    /** @return number of rows in the JOB_DETAILS table of the scheduler. */
+    public int countJobs() {
+        return count("JOB_DETAILS");
+    }
+
+    private int count(String tableName) {
+        Connection conn = null;
+        try {
+            conn = DBConnectionManager.getInstance().getConnection(dataSourceName);
+            PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM " + tablePrefix + tableName +
+                    " WHERE SCHED_NAME = ?");
+            try {
+                stmt.setString(1, schedulerName);
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                int count = rs.getInt(1);
+                rs.close();
+                return count;
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            throw new QuartzRuntimeException("Failed to count " + tableName + " of scheduler " + schedulerName, e);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    throw new QuartzRuntimeException("Failed to close DB connection.", e);
+                }
+            }
+        }
+    }
+
+    private void readTriggers(Connection conn, List<Trigger> triggers, Map<TriggerKey, TriggerState> triggerStates,
+                              Map<TriggerKey, SimpleTriggerImpl> simpleTriggers,
+                              Map<TriggerKey, CronTriggerImpl> cronTriggers,
+                              List<TriggerKey> otherTriggerKeys) throws SQLException {
+        String sql = "SELECT TRIGGER_NAME, TRIGGER_GROUP, JOB_NAME, JOB_GROUP, DESCRIPTION, NEXT_FIRE_TIME, " +
+                "PREV_FIRE_TIME, PRIORITY, TRIGGER_STATE, TRIGGER_TYPE, START_TIME, END_TIME, CALENDAR_NAME, " +
+                "MISFIRE_INSTR, JOB_DATA FROM " + tablePrefix + "TRIGGERS WHERE SCHED_NAME = ? " +
+                "ORDER BY TRIGGER_GROUP, TRIGGER_NAME";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
+            stmt.setString(1, schedulerName);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                TriggerKey key = new TriggerKey(rs.getString("TRIGGER_NAME"), rs.getString("TRIGGER_GROUP"));
+                triggerStates.put(key, toTriggerState(rs.getString("TRIGGER_STATE")));
+
+                String type = rs.getString("TRIGGER_TYPE");
+                AbstractTrigger<?> trigger;
+                if (Constants.TTYPE_SIMPLE.equals(type)) {
+                    SimpleTriggerImpl simpleTrigger = new SimpleTriggerImpl();
+                    simpleTriggers.put(key, simpleTrigger);
+                    trigger = simpleTrigger;
+                } else if (Constants.TTYPE_CRON.equals(type)) {
+                    CronTriggerImpl cronTrigger = new CronTriggerImpl();
+                    cronTriggers.put(key, cronTrigger);
+                    trigger = cronTrigger;
+                } else {
+                    otherTriggerKeys.add(key);
+                    continue;
+                }
+                trigger.setKey(key);
+                trigger.setJobKey(new JobKey(rs.getString("JOB_NAME"), rs.getString("JOB_GROUP")));
+                trigger.setDescription(rs.getString("DESCRIPTION"));
+                trigger.setPriority(rs.getInt("PRIORITY"));
+                trigger.setStartTime(new Date(rs.getLong("START_TIME")));
+                trigger.setEndTime(toDate(rs.getLong("END_TIME")));
+                trigger.setNextFireTime(toDate(rs.getLong("NEXT_FIRE_TIME")));
+                trigger.setPreviousFireTime(toDate(rs.getLong("PREV_FIRE_TIME")));
+                trigger.setCalendarName(rs.getString("CALENDAR_NAME"));
+                trigger.setMisfireInstruction(rs.getInt("MISFIRE_INSTR"));
+                JobDataMap jobDataMap = readJobDataMap(rs);
+                if (jobDataMap != null)
+                    trigger.setJobDataMap(jobDataMap);
+                triggers.add(trigger);
+            }
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private void readSimpleTriggers(Connection conn, Map<TriggerKey, SimpleTriggerImpl> simpleTriggers)
+            throws SQLException {
+        if (simpleTriggers.size() == 0)
+            return;
+        String sql = "SELECT TRIGGER_NAME, TRIGGER_GROUP, REPEAT_COUNT, REPEAT_INTERVAL, TIMES_TRIGGERED FROM " +
+                tablePrefix + "SIMPLE_TRIGGERS WHERE SCHED_NAME = ?";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
+            stmt.setString(1, schedulerName);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                TriggerKey key = new TriggerKey(rs.getString("TRIGGER_NAME"), rs.getString("TRIGGER_GROUP"));
+                // Removed when found, so the ones left have no row here.
+                SimpleTriggerImpl trigger = simpleTriggers.remove(key);
+                if (trigger == null)
+                    continue;
+                trigger.setRepeatCount(rs.getInt("REPEAT_COUNT"));
+                trigger.setRepeatInterval(rs.getLong("REPEAT_INTERVAL"));
+                trigger.setTimesTriggered(rs.getInt("TIMES_TRIGGERED"));
+            }
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private void readCronTriggers(Connection conn, Map<TriggerKey, CronTriggerImpl> cronTriggers)
+            throws SQLException {
+        if (cronTriggers.size() == 0)
+            return;
+        String sql = "SELECT TRIGGER_NAME, TRIGGER_GROUP, CRON_EXPRESSION, TIME_ZONE_ID FROM " +
+                tablePrefix + "CRON_TRIGGERS WHERE SCHED_NAME = ?";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
+            stmt.setString(1, schedulerName);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                TriggerKey key = new TriggerKey(rs.getString("TRIGGER_NAME"), rs.getString("TRIGGER_GROUP"));
+                // Removed when found, so the ones left have no row here.
+                CronTriggerImpl trigger = cronTriggers.remove(key);
+                if (trigger == null)
+                    continue;
+                String cronExpression = rs.getString("CRON_EXPRESSION");
+                String timeZoneId = rs.getString("TIME_ZONE_ID");
+                try {
+                    CronExpression cronEx = new CronExpression(cronExpression);
+                    if (timeZoneId != null)
+                        cronEx.setTimeZone(TimeZone.getTimeZone(timeZoneId));
+                    trigger.setCronExpression(cronEx);
+                } catch (ParseException e) {
+                    throw new QuartzRuntimeException("Invalid cron expression " + cronExpression + " in trigger " +
+                            key, e);
+                }
+            }
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readJobDetails(Connection conn, Map<JobKey, JobDetail> jobDetails) throws SQLException {
+        String sql = "SELECT JOB_NAME, JOB_GROUP, DESCRIPTION, JOB_CLASS_NAME, IS_DURABLE, REQUESTS_RECOVERY, " +
+                "JOB_DATA FROM " + tablePrefix + "JOB_DETAILS WHERE SCHED_NAME = ? ORDER BY JOB_GROUP, JOB_NAME";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
+            stmt.setString(1, schedulerName);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                JobKey key = new JobKey(rs.getString("JOB_NAME"), rs.getString("JOB_GROUP"));
+                String jobClassName = rs.getString("JOB_CLASS_NAME");
+                JobDetailImpl jobDetail = new JobDetailImpl();
+                jobDetail.setKey(key);
+                jobDetail.setDescription(rs.getString("DESCRIPTION"));
+                try {
+                    jobDetail.setJobClass((Class<? extends Job>) Class.forName(jobClassName, true, getClassLoader()));
+                } catch (ClassNotFoundException e) {
+                    throw new QuartzRuntimeException("Job class " + jobClassName + " of job " + key +
+                            " is not found.", e);
+                }
+                jobDetail.setDurability(rs.getBoolean("IS_DURABLE"));
+                jobDetail.setRequestsRecovery(rs.getBoolean("REQUESTS_RECOVERY"));
+                JobDataMap jobDataMap = readJobDataMap(rs);
+                if (jobDataMap != null)
+                    jobDetail.setJobDataMap(jobDataMap);
+                jobDetails.put(key, jobDetail);
+            }
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /** Read the JOB_DATA column the same way StdJDBCDelegate writes it. */
+    @SuppressWarnings("unchecked")
+    private JobDataMap readJobDataMap(ResultSet rs) throws SQLException {
+        InputStream inStream = rs.getBinaryStream("JOB_DATA");
+        if (inStream == null)
+            return null;
+        try {
+            Map<Object, Object> map;
+            if (useProperties) {
+                Properties props = new Properties();
+                props.load(inStream);
+                map = props;
+            } else {
+                ObjectInputStream objInStream = new ClassLoaderObjectInputStream(inStream, getClassLoader());
+                map = (Map<Object, Object>) objInStream.readObject();
+            }
+            return (map == null) ? null : new JobDataMap(map);
+        } catch (java.io.EOFException e) {
+            // Empty blob.
+            return null;
+        } catch (IOException e) {
+            throw new QuartzRuntimeException("Failed to read job data map.", e);
+        } catch (ClassNotFoundException e) {
+            throw new QuartzRuntimeException("Failed to read job data map.", e);
+        } finally {
+            try {
+                inStream.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close job data stream.", e);
+            }
+        }
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return (classLoader != null) ? classLoader : JdbcSnapshotReader.class.getClassLoader();
+    }
+
+    /** Same as what JobStoreSupport.getTriggerState() reports for each state value in the TRIGGERS table. */
+    private static TriggerState toTriggerState(String state) {
+        if (Constants.STATE_DELETED.equals(state))
+            return TriggerState.NONE;
+        if (Constants.STATE_COMPLETE.equals(state))
+            return TriggerState.COMPLETE;
+        if (Constants.STATE_PAUSED.equals(state) || Constants.STATE_PAUSED_BLOCKED.equals(state))
+            return TriggerState.PAUSED;
+        if (Constants.STATE_ERROR.equals(state))
+            return TriggerState.ERROR;
+        if (Constants.STATE_BLOCKED.equals(state))
+            return TriggerState.BLOCKED;
+        return TriggerState.NORMAL;
+    }
+
+    /** The TRIGGERS table stores 0 or -1 for no date. */
+    private static Date toDate(long time) {
+        return (time > 0) ? new Date(time) : null;
+    }
+
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+        private ClassLoader classLoader;
+
+        public ClassLoaderObjectInputStream(InputStream inStream, ClassLoader classLoader) throws IOException {
+            super(inStream);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcSnapshotReader[" + dataSourceName + ", " + tablePrefix + ", " + schedulerName + "]";
+    }
+}
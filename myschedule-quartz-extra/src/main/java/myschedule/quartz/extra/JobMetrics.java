@@ -0,0 +1,108 @@
+package myschedule.quartz.extra;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The execution metrics recorded by {@link JobMetricsPlugin} for one job, one job group, or the whole scheduler: the
+ * run time and fire delay (actual fire time minus scheduled fire time) distributions, the failure and misfire counts,
+ * and the number of executions in the last minute. All the recorders are lock-free, so one instance can be updated by
+ * all the worker threads at once.
+ * <p/>
+ * <p>The last minute throughput is kept in 60 one-second slots, where each slot packs its epoch second and its count
+ * into one long, so a slot from an older minute is reset and incremented with the same CAS.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JobMetrics {
+    private static final int THROUGHPUT_WINDOW_IN_SECS = 60;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final String name;
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final LatencyHistogram fireDelay = new LatencyHistogram();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong misfireCount = new AtomicLong();
+    private final AtomicLongArray throughputSlots = new AtomicLongArray(THROUGHPUT_WINDOW_IN_SECS);
+
+    public JobMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getRunTime() {
+        return runTime;
+    }
+
+    public LatencyHistogram getFireDelay() {
+        return fireDelay;
+    }
+
+    public void recordFireDelay(long delayInMillis) {
+        fireDelay.record(delayInMillis);
+    }
+
+    public void recordExecution(long runTimeInMillis, boolean failed) {
+        runTime.record(runTimeInMillis);
+        if (failed)
+            failureCount.incrementAndGet();
+
+        long second = System.currentTimeMillis() / 1000;
+        int index = (int) (second % THROUGHPUT_WINDOW_IN_SECS);
+        while (true) {
+            long slot = throughputSlots.get(index);
+            long next = ((slot >>> COUNT_BITS) == second && (slot & COUNT_MASK) < COUNT_MASK) ?
+                    slot + 1 : (second << COUNT_BITS) | 1;
+            if (throughputSlots.compareAndSet(index, slot, next))
+                break;
+        }
+    }
+
+    public void recordMisfire() {
+        misfireCount.incrementAndGet();
+    }
+
+    public long getExecutionCount() {
+        return runTime.getCount();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getMisfireCount() {
+        return misfireCount.get();
+    }
+
+    /** @return number of executions completed in the last 60 seconds. */
+    public long getLastMinuteExecutionCount() {
+        long now = System.currentTimeMillis() / 1000;
+        long result = 0;
+        for (int i = 0; i < THROUGHPUT_WINDOW_IN_SECS; i++) {
+            long slot = throughputSlots.get(i);
+            long second = slot >>> COUNT_BITS;
+            if (second > now - THROUGHPUT_WINDOW_IN_SECS && second <= now)
+                result += slot & COUNT_MASK;
+        }
+        return result;
+    }
+
+    public JobMetricsSnapshot getSnapshot() {
+        return new JobMetricsSnapshot(name, getExecutionCount(), getFailureCount(), getMisfireCount(),
+                getLastMinuteExecutionCount(),
+                new long[]{runTime.getValueAtPercentile(50), runTime.getValueAtPercentile(95),
+                        runTime.getValueAtPercentile(99), runTime.getMax()},
+                runTime.getMean(),
+                new long[]{fireDelay.getValueAtPercentile(50), fireDelay.getValueAtPercentile(95),
+                        fireDelay.getValueAtPercentile(99), fireDelay.getMax()});
+    }
+
+    @Override
+    public String toString() {
+        return "JobMetrics[" + name + "]";
+    }
+}
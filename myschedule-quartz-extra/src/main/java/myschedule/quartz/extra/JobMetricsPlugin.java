@@ -0,0 +1,230 @@
+package myschedule.quartz.extra;
+
+import org.quartz.*;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This plugin measures the job executions of a scheduler: for each job, each job group and the scheduler as a
+ * whole, it keeps a {@link JobMetrics} with the run time and fire delay histograms, the failure and misfire counts
+ * and the last minute throughput. The metrics are only kept in memory and are reset when the scheduler restarts.
+ * <p/>
+ * <p>The fire delay is the actual fire time minus the scheduled fire time of the trigger, so it shows how late jobs
+ * start when the thread pool is busy. A failure is a job execution that threw a JobExecutionException.
+ * <p/>
+ * <p>The metrics of a job are dropped when the job is deleted, and those of a job group when its last job is deleted.
+ * <p/>
+ * <p>The plugin stores itself into the scheduler context map under <code>schedulerContextKey</code>, and
+ * {@link SchedulerTemplate#getJobMetrics()} reads from it. Here is an example of how you configure this plugin in
+ * <code>quartz.properties</code> file.
+ * <pre>
+ * org.quartz.plugin.MyJobMetricsPlugin.class = myschedule.quartz.extra.JobMetricsPlugin
+ * # Optional settings
+ * org.quartz.plugin.MyJobMetricsPlugin.schedulerContextKey = JobMetricsPlugin.Instance
+ * </pre>
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JobMetricsPlugin implements SchedulerPlugin {
+
+    public static final String DEFAULT_SCHEDULER_CONTEXT_KEY = "JobMetricsPlugin.Instance";
+
+    private static final Logger logger = LoggerFactory.getLogger(JobMetricsPlugin.class);
+    private String name;
+    private Scheduler scheduler;
+    private String schedulerContextKey = DEFAULT_SCHEDULER_CONTEXT_KEY;
+    private JobMetrics totalMetrics;
+    private final ConcurrentMap<JobKey, JobMetrics> jobMetricsMap = new ConcurrentHashMap<JobKey, JobMetrics>();
+    private final ConcurrentMap<String, JobMetrics> groupMetricsMap = new ConcurrentHashMap<String, JobMetrics>();
+
+    public void setSchedulerContextKey(String schedulerContextKey) {
+        this.schedulerContextKey = schedulerContextKey;
+    }
+
+    public String getSchedulerContextKey() {
+        return schedulerContextKey;
+    }
+
+    /** @return the metrics of all the jobs of the scheduler combined. */
+    public JobMetrics getTotalMetrics() {
+        return totalMetrics;
+    }
+
+    /** @return the metrics of a job, or null if it has not run nor misfired since the scheduler started. */
+    public JobMetrics getJobMetrics(JobKey jobKey) {
+        return jobMetricsMap.get(jobKey);
+    }
+
+    /** @return the metrics of a job group, or null if none of its jobs has run nor misfired. */
+    public JobMetrics getJobGroupMetrics(String group) {
+        return groupMetricsMap.get(group);
+    }
+
+    /** @return snapshots of all the job metrics, sorted by job key. */
+    public List<JobMetricsSnapshot> getJobMetricsSnapshots() {
+        return toSortedSnapshots(jobMetricsMap.values());
+    }
+
+    /** @return snapshots of all the job group metrics, sorted by group name. */
+    public List<JobMetricsSnapshot> getJobGroupMetricsSnapshots() {
+        return toSortedSnapshots(groupMetricsMap.values());
+    }
+
+    private List<JobMetricsSnapshot> toSortedSnapshots(Iterable<JobMetrics> metricsList) {
+        List<JobMetricsSnapshot> result = new ArrayList<JobMetricsSnapshot>();
+        for (JobMetrics metrics : metricsList)
+            result.add(metrics.getSnapshot());
+        Collections.sort(result, new Comparator<JobMetricsSnapshot>() {
+            @Override
+            public int compare(JobMetricsSnapshot a, JobMetricsSnapshot b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return result;
+    }
+
+    private JobMetrics getOrCreateJobMetrics(JobKey jobKey) {
+        JobMetrics metrics = jobMetricsMap.get(jobKey);
+        if (metrics == null) {
+            JobMetrics newMetrics = new JobMetrics(jobKey.toString());
+            metrics = jobMetricsMap.putIfAbsent(jobKey, newMetrics);
+            if (metrics == null)
+                metrics = newMetrics;
+        }
+        return metrics;
+    }
+
+    private JobMetrics getOrCreateGroupMetrics(String group) {
+        JobMetrics metrics = groupMetricsMap.get(group);
+        if (metrics == null) {
+            JobMetrics newMetrics = new JobMetrics(group);
+            metrics = groupMetricsMap.putIfAbsent(group, newMetrics);
+            if (metrics == null)
+                metrics = newMetrics;
+        }
+        return metrics;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper) throws SchedulerException {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.totalMetrics = new JobMetrics(scheduler.getSchedulerName());
+
+        // Register listeners
+        scheduler.getListenerManager().addTriggerListener(new JobMetricsTriggerListener());
+        scheduler.getListenerManager().addJobListener(new JobMetricsJobListener());
+        scheduler.getListenerManager().addSchedulerListener(new JobMetricsSchedulerListener());
+
+        // Store this plugin instance into scheduler context map
+        scheduler.getContext().put(schedulerContextKey, this);
+        logger.info("Added plugin instance {} to scheduler context key: {}", this, schedulerContextKey);
+    }
+
+    @Override
+    public void start() {
+        logger.info(name + " has started.");
+    }
+
+    @Override
+    public void shutdown() {
+        logger.info(name + " has shutdown.");
+    }
+
+    private class JobMetricsTriggerListener implements TriggerListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            Date fireTime = context.getFireTime();
+            Date scheduledFireTime = context.getScheduledFireTime();
+            if (fireTime == null || scheduledFireTime == null)
+                return;
+            long delay = fireTime.getTime() - scheduledFireTime.getTime();
+            JobKey jobKey = trigger.getJobKey();
+            getOrCreateJobMetrics(jobKey).recordFireDelay(delay);
+            getOrCreateGroupMetrics(jobKey.getGroup()).recordFireDelay(delay);
+            totalMetrics.recordFireDelay(delay);
+        }
+
+        @Override
+        public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+            // Do nothing.
+            return false;
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            JobKey jobKey = trigger.getJobKey();
+            getOrCreateJobMetrics(jobKey).recordMisfire();
+            getOrCreateGroupMetrics(jobKey.getGroup()).recordMisfire();
+            totalMetrics.recordMisfire();
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                    CompletedExecutionInstruction triggerInstructionCode) {
+            // Do nothing.
+        }
+    }
+
+    private class JobMetricsJobListener implements JobListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void jobToBeExecuted(JobExecutionContext context) {
+        }
+
+        @Override
+        public void jobExecutionVetoed(JobExecutionContext context) {
+        }
+
+        @Override
+        public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+            long runTime = context.getJobRunTime();
+            boolean failed = jobException != null;
+            JobKey jobKey = context.getJobDetail().getKey();
+            getOrCreateJobMetrics(jobKey).recordExecution(runTime, failed);
+            getOrCreateGroupMetrics(jobKey.getGroup()).recordExecution(runTime, failed);
+            totalMetrics.recordExecution(runTime, failed);
+        }
+    }
+
+    private class JobMetricsSchedulerListener extends SimpleSchedulerListener {
+        @Override
+        public void jobDeleted(JobKey jobKey) {
+            jobMetricsMap.remove(jobKey);
+            String group = jobKey.getGroup();
+            try {
+                if (scheduler.getJobKeys(GroupMatcher.jobGroupEquals(group)).isEmpty())
+                    groupMetricsMap.remove(group);
+            } catch (SchedulerException e) {
+                logger.warn("Failed to find the jobs left in group {}", group, e);
+            }
+        }
+
+        @Override
+        public void schedulingDataCleared() {
+            jobMetricsMap.clear();
+            groupMetricsMap.clear();
+        }
+    }
+}
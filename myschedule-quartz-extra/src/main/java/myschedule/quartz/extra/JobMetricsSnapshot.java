@@ -0,0 +1,102 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+
+/**
+ * A copy of the values of one {@link JobMetrics} at the time it was read. All the times are in milliseconds.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JobMetricsSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final long executionCount;
+    private final long failureCount;
+    private final long misfireCount;
+    private final long lastMinuteExecutionCount;
+    private final long[] runTimes;
+    private final double runTimeMean;
+    private final long[] fireDelays;
+
+    /**
+     * @param runTimes the run time p50, p95, p99 and max, in that order.
+     * @param fireDelays the fire delay p50, p95, p99 and max, in that order.
+     */
+    public JobMetricsSnapshot(String name, long executionCount, long failureCount, long misfireCount,
+                              long lastMinuteExecutionCount, long[] runTimes, double runTimeMean, long[] fireDelays) {
+        this.name = name;
+        this.executionCount = executionCount;
+        this.failureCount = failureCount;
+        this.misfireCount = misfireCount;
+        this.lastMinuteExecutionCount = lastMinuteExecutionCount;
+        this.runTimes = runTimes.clone();
+        this.runTimeMean = runTimeMean;
+        this.fireDelays = fireDelays.clone();
+    }
+
+    /** @return the job key (as "group.name"), the job group name, or the scheduler name for the total metrics. */
+    public String getName() {
+        return name;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public long getMisfireCount() {
+        return misfireCount;
+    }
+
+    public long getLastMinuteExecutionCount() {
+        return lastMinuteExecutionCount;
+    }
+
+    public long getRunTimeP50() {
+        return runTimes[0];
+    }
+
+    public long getRunTimeP95() {
+        return runTimes[1];
+    }
+
+    public long getRunTimeP99() {
+        return runTimes[2];
+    }
+
+    public long getRunTimeMax() {
+        return runTimes[3];
+    }
+
+    public double getRunTimeMean() {
+        return runTimeMean;
+    }
+
+    public long getFireDelayP50() {
+        return fireDelays[0];
+    }
+
+    public long getFireDelayP95() {
+        return fireDelays[1];
+    }
+
+    public long getFireDelayP99() {
+        return fireDelays[2];
+    }
+
+    public long getFireDelayMax() {
+        return fireDelays[3];
+    }
+
+    @Override
+    public String toString() {
+        return "JobMetricsSnapshot[name=" + name + ", executionCount=" + executionCount +
+                ", failureCount=" + failureCount + ", misfireCount=" + misfireCount +
+                ", runTimeP50=" + getRunTimeP50() + ", runTimeP99=" + getRunTimeP99() +
+                ", fireDelayP99=" + getFireDelayP99() + "]";
+    }
+}
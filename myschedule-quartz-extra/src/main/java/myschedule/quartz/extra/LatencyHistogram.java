@@ -0,0 +1,105 @@
+package myschedule.quartz.extra;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent, fixed size histogram of millisecond values in the same spirit as HdrHistogram: values below 32 are
+ * counted exactly, and larger values go into log-linear buckets (16 sub buckets for each power of two), so any value
+ * is reported within about 6% of what was recorded. Recording is one array index computation and a few atomic
+ * increments, without locks nor allocation, so it's cheap enough to be called on every job execution.
+ * <p/>
+ * <p>Values are clamped to the range of [0, {@link #MAX_TRACKABLE_VALUE}] (about 2 years in millis). The reads are not
+ * an atomic snapshot of all the buckets, so a percentile read while writers are recording may be off by the few
+ * values being recorded at the time.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class LatencyHistogram {
+    public static final long MAX_TRACKABLE_VALUE = (1L << 36) - 1;
+    private static final int SUB_BUCKET_COUNT = 32;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray(getBucketIndex(MAX_TRACKABLE_VALUE) + 1);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        else if (value > MAX_TRACKABLE_VALUE)
+            value = MAX_TRACKABLE_VALUE;
+        counts.incrementAndGet(getBucketIndex(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value))
+            max = maxValue.get();
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return (count == 0) ? 0 : (double) totalSum.get() / count;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100, eg: 99.9
+     * @return the highest value that is equivalent (within the histogram precision) to the recorded value at the
+     * given percentile, but never more than {@link #getMax()}. Returns 0 if nothing is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] bucketCounts = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = counts.get(i);
+            total += bucketCounts[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long countAtPercentile = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total);
+        if (countAtPercentile < 1)
+            countAtPercentile = 1;
+        long max = maxValue.get();
+        long runningCount = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            runningCount += bucketCounts[i];
+            if (runningCount >= countAtPercentile)
+                return Math.min(getBucketHighestValue(i), max);
+        }
+        return max;
+    }
+
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long getBucketHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + getCount() + ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) + ", max=" + getMax() + "]";
+    }
+}
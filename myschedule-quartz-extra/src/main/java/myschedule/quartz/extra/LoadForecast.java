@@ -0,0 +1,124 @@
+package myschedule.quartz.extra;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The predicted number of jobs running at once in each time bucket of a period, compared to the size of the scheduler
+ * thread pool. Computed by {@link LoadForecaster}; a bucket is saturated when more jobs would run at some point in it
+ * than there are threads, which means some of them will start late or misfire.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class LoadForecast implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Date fromTime;
+    private final Date toTime;
+    private final long bucketSizeInMillis;
+    private final int threadPoolSize;
+    private final List<Bucket> buckets;
+    private final boolean truncated;
+
+    public LoadForecast(Date fromTime, Date toTime, long bucketSizeInMillis, int threadPoolSize, List<Bucket> buckets,
+                        boolean truncated) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+        this.bucketSizeInMillis = bucketSizeInMillis;
+        this.threadPoolSize = threadPoolSize;
+        this.buckets = buckets;
+        this.truncated = truncated;
+    }
+
+    public Date getFromTime() {
+        return fromTime;
+    }
+
+    public Date getToTime() {
+        return toTime;
+    }
+
+    public long getBucketSizeInMillis() {
+        return bucketSizeInMillis;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    /** @return all the buckets of the period, in time order. */
+    public List<Bucket> getBuckets() {
+        return Collections.unmodifiableList(buckets);
+    }
+
+    /** @return the buckets where more jobs would run at once than there are threads. */
+    public List<Bucket> getSaturatedBuckets() {
+        List<Bucket> result = new ArrayList<Bucket>();
+        for (Bucket bucket : buckets) {
+            if (bucket.isSaturated())
+                result.add(bucket);
+        }
+        return result;
+    }
+
+    /** @return the highest number of jobs running at once over the whole period. */
+    public int getPeakConcurrency() {
+        int result = 0;
+        for (Bucket bucket : buckets)
+            result = Math.max(result, bucket.getPeakConcurrency());
+        return result;
+    }
+
+    /**
+     * @return true if the forecast stopped at the maximum number of fires, so the buckets after the last fire
+     * counted show less load than there will be.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * The predicted load of one time bucket.
+     */
+    public static class Bucket implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Date startTime;
+        private final int fireCount;
+        private final int peakConcurrency;
+        private final int threadPoolSize;
+
+        public Bucket(Date startTime, int fireCount, int peakConcurrency, int threadPoolSize) {
+            this.startTime = startTime;
+            this.fireCount = fireCount;
+            this.peakConcurrency = peakConcurrency;
+            this.threadPoolSize = threadPoolSize;
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        /** @return the number of fires starting in this bucket. */
+        public int getFireCount() {
+            return fireCount;
+        }
+
+        /** @return the highest number of jobs running at once in this bucket, including jobs started before it. */
+        public int getPeakConcurrency() {
+            return peakConcurrency;
+        }
+
+        public boolean isSaturated() {
+            return peakConcurrency > threadPoolSize;
+        }
+
+        @Override
+        public String toString() {
+            return "LoadForecast.Bucket[" + startTime + ", fires=" + fireCount + ", peak=" + peakConcurrency + "]";
+        }
+    }
+}
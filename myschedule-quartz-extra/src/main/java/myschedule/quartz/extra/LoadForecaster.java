@@ -0,0 +1,111 @@
+package myschedule.quartz.extra;
+
+import org.quartz.JobKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts how many jobs will run at once from a forecast of fires (see {@link FireTimeForecaster}) and how long each
+ * job usually runs. Each fire is taken to hold a worker thread from its fire time for its estimated run time, and the
+ * period is cut in buckets of equal size, each with its highest number of jobs running at once.
+ * <p/>
+ * <p>The run time of a job is the p95 run time recorded by {@link JobMetricsPlugin} for the job, or else for its job
+ * group, or else for all the jobs of the scheduler. Without the plugin, or before anything ran, the given default run
+ * time is used. Jobs that are already running when the forecast starts are not counted.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class LoadForecaster {
+    public static final long DEFAULT_RUN_TIME_IN_MILLIS = 1000;
+
+    private final JobMetricsPlugin jobMetricsPlugin;
+    private final long defaultRunTimeInMillis;
+    private final Map<JobKey, Long> runTimes = new HashMap<JobKey, Long>();
+
+    /**
+     * @param jobMetricsPlugin the plugin to read the run times from, or null to use the default run time for all.
+     */
+    public LoadForecaster(JobMetricsPlugin jobMetricsPlugin, long defaultRunTimeInMillis) {
+        this.jobMetricsPlugin = jobMetricsPlugin;
+        this.defaultRunTimeInMillis = defaultRunTimeInMillis;
+    }
+
+    /** @return the estimated run time of a job, at least 1 millisecond. */
+    public long estimateRunTime(JobKey jobKey) {
+        Long runTime = runTimes.get(jobKey);
+        if (runTime == null) {
+            runTime = defaultRunTimeInMillis;
+            if (jobMetricsPlugin != null) {
+                JobMetrics[] candidates = {jobMetricsPlugin.getJobMetrics(jobKey),
+                        jobMetricsPlugin.getJobGroupMetrics(jobKey.getGroup()), jobMetricsPlugin.getTotalMetrics()};
+                for (JobMetrics metrics : candidates) {
+                    if (metrics != null && metrics.getExecutionCount() > 0) {
+                        runTime = metrics.getRunTime().getValueAtPercentile(95);
+                        break;
+                    }
+                }
+            }
+            runTime = Math.max(1, runTime);
+            runTimes.put(jobKey, runTime);
+        }
+        return runTime;
+    }
+
+    /**
+     * @param fires the fires from fromTime to toTime, as returned by FireTimeForecaster.getTimeline().
+     * @param truncated true if the fires were cut at a maximum count before toTime.
+     */
+    public LoadForecast forecast(List<ForecastFire> fires, Date fromTime, Date toTime, long bucketSizeInMillis,
+                                 int threadPoolSize, boolean truncated) {
+        if (bucketSizeInMillis <= 0)
+            throw new IllegalArgumentException("Bucket size must be more than zero: " + bucketSizeInMillis);
+
+        int fireCount = fires.size();
+        long[] startTimes = new long[fireCount];
+        long[] endTimes = new long[fireCount];
+        for (int i = 0; i < fireCount; i++) {
+            ForecastFire fire = fires.get(i);
+            startTimes[i] = fire.getFireTime().getTime();
+            endTimes[i] = startTimes[i] + estimateRunTime(fire.getJobKey());
+        }
+        Arrays.sort(startTimes);
+        Arrays.sort(endTimes);
+
+        // Sweep the start and end times in order, ends first when equal since the thread is free again by then.
+        List<LoadForecast.Bucket> buckets = new ArrayList<LoadForecast.Bucket>();
+        int running = 0;
+        int startIndex = 0;
+        int endIndex = 0;
+        for (long bucketStart = fromTime.getTime(); bucketStart < toTime.getTime(); bucketStart += bucketSizeInMillis) {
+            long bucketEnd = bucketStart + bucketSizeInMillis;
+            while (endIndex < fireCount && endTimes[endIndex] <= bucketStart && endIndex < startIndex) {
+                running--;
+                endIndex++;
+            }
+            int peak = running;
+            int bucketFireCount = 0;
+            while (true) {
+                boolean hasStart = startIndex < fireCount && startTimes[startIndex] < bucketEnd;
+                boolean hasEnd = endIndex < startIndex && endTimes[endIndex] < bucketEnd;
+                if (hasEnd && (!hasStart || endTimes[endIndex] <= startTimes[startIndex])) {
+                    running--;
+                    endIndex++;
+                } else if (hasStart) {
+                    running++;
+                    startIndex++;
+                    bucketFireCount++;
+                    peak = Math.max(peak, running);
+                } else {
+                    break;
+                }
+            }
+            buckets.add(new LoadForecast.Bucket(new Date(bucketStart), bucketFireCount, peak, threadPoolSize));
+        }
+        return new LoadForecast(fromTime, toTime, bucketSizeInMillis, threadPoolSize, buckets, truncated);
+    }
+}
@@ -0,0 +1,113 @@
+package myschedule.quartz.extra;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A {@link HistoryStore} that keeps the latest <code>capacity</code> events in a ring buffer in memory. When it's
+ * full, each new event overwrites the oldest one, so appends never allocate or block on I/O. Histories are lost when
+ * the scheduler shuts down.
+ * <p/>
+ * <p>Ids are assigned in append order, and queries return events newest (highest id) first, using the HistoryQuery
+ * afterId as the page cursor. Appends and queries are serialized on this store, and a query only holds the lock while
+ * it scans one page.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class MemoryHistoryStore implements HistoryStore {
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final HistoryEvent[] events;
+    private long nextId = 1;
+    private int size;
+    private long appendedCount;
+    private long purgedCount;
+
+    public MemoryHistoryStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MemoryHistoryStore(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than zero: " + capacity);
+        this.events = new HistoryEvent[capacity];
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public synchronized void append(HistoryEvent event) {
+        long id = nextId++;
+        event.setId(id);
+        events[(int) (id % events.length)] = event;
+        if (size < events.length)
+            size++;
+        else
+            purgedCount++;
+        appendedCount++;
+    }
+
+    @Override
+    public synchronized void appendBatch(List<HistoryEvent> batch) {
+        for (HistoryEvent event : batch)
+            append(event);
+    }
+
+    @Override
+    public synchronized List<HistoryEvent> query(HistoryQuery query) {
+        List<HistoryEvent> result = new ArrayList<HistoryEvent>();
+        long lastId = nextId - 1;
+        if (query.getAfterId() != null && query.getAfterId() <= lastId)
+            lastId = query.getAfterId() - 1;
+        long firstId = nextId - size;
+        for (long id = lastId; id >= firstId && result.size() < query.getPageSize(); id--) {
+            HistoryEvent event = events[(int) (id % events.length)];
+            if (query.matches(event))
+                result.add(event);
+        }
+        return result;
+    }
+
+    /**
+     * Remove the oldest events until it finds one at or after the given date. Events are in append order, so an
+     * event that was appended late with an older time may be kept.
+     */
+    @Override
+    public synchronized long purge(Date olderThan) {
+        long count = 0;
+        long firstId = nextId - size;
+        while (size > 0) {
+            int index = (int) (firstId % events.length);
+            Date eventTime = events[index].getEventTime();
+            if (eventTime != null && !eventTime.before(olderThan))
+                break;
+            events[index] = null;
+            firstId++;
+            size--;
+            count++;
+        }
+        purgedCount += count;
+        return count;
+    }
+
+    @Override
+    public synchronized HistoryStoreStats getStats() {
+        return new HistoryStoreStats(toString(), size, -1, appendedCount, purgedCount);
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryHistoryStore[capacity=" + events.length + "]";
+    }
+}
@@ -0,0 +1,42 @@
+package myschedule.quartz.extra;
+
+/**
+ * This plugin records the same scheduler and trigger events as {@link JdbcSchedulerHistoryPlugin}, but only keeps
+ * the latest <code>capacity</code> events in memory with {@link MemoryHistoryStore}. It has the lowest overhead on the
+ * firing threads, and it's useful for development or for schedulers that only need recent histories in the web UI.
+ * The histories are lost when the scheduler shuts down.
+ * <p/>
+ * <p>Here is an example of how you configure this plugin in <code>quartz.properties</code> file.
+ * <pre>
+ * org.quartz.plugin.MyJobHistoryPlugin.class = myschedule.quartz.extra.MemorySchedulerHistoryPlugin
+ * # Optional settings
+ * org.quartz.plugin.MyJobHistoryPlugin.capacity = 10000
+ * org.quartz.plugin.MyJobHistoryPlugin.schedulerContextKey = MemorySchedulerHistoryPlugin.Instance
+ * </pre>
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class MemorySchedulerHistoryPlugin extends AbstractSchedulerHistoryPlugin {
+
+    public static final String DEFAULT_SCHEDULER_CONTEXT_KEY = "MemorySchedulerHistoryPlugin.Instance";
+
+    private int capacity = MemoryHistoryStore.DEFAULT_CAPACITY;
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    protected String getDefaultSchedulerContextKey() {
+        return DEFAULT_SCHEDULER_CONTEXT_KEY;
+    }
+
+    @Override
+    protected HistoryStore createHistoryStore() {
+        return new MemoryHistoryStore(capacity);
+    }
+}
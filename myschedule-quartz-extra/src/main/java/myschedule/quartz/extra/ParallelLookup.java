@@ -0,0 +1,206 @@
+package myschedule.quartz.extra;
+
+import org.quartz.SchedulerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs a lookup for each key of a list, one after another in the caller thread, or when concurrency is more than 1,
+ * spread over a bounded pool of that many threads. SchedulerTemplate uses this to list a whole scheduler, where with
+ * a RemoteScheduler each lookup is an RMI call and the time is mostly spent waiting on the network.
+ * <p/>
+ * <p>Results come back in the order of the keys, no matter in which order the lookups complete. A lookup that returns
+ * null (eg: the trigger was removed meanwhile) is left out. A lookup that fails makes the whole call fail, same as a
+ * plain loop would; with ignoreFailures it's logged and left out instead, so the caller gets what could be read.
+ * <p/>
+ * <p>The pool threads are daemon threads that end after 30 seconds without work, so an unused instance needs no
+ * shutdown. A {@link #shutdown()} while lookups are running lets them finish on the pool, which is then stopped by the
+ * last of them.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+class ParallelLookup {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelLookup.class);
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final int concurrency;
+    private final boolean ignoreFailures;
+    private ThreadPoolExecutor executor;
+    private int runningCallCount;
+    private boolean shutdownRequested;
+
+    public ParallelLookup(int concurrency, boolean ignoreFailures) {
+        this.concurrency = concurrency;
+        this.ignoreFailures = ignoreFailures;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public boolean isIgnoreFailures() {
+        return ignoreFailures;
+    }
+
+    public <K, V> List<V> lookupAll(List<K> keys, Lookup<K, V> lookup) {
+        if (concurrency <= 1 || keys.size() <= 1)
+            return lookupInCallerThread(keys, lookup);
+        else
+            return lookupInPool(keys, lookup);
+    }
+
+    private <K, V> List<V> lookupInCallerThread(List<K> keys, Lookup<K, V> lookup) {
+        List<V> result = new ArrayList<V>(keys.size());
+        for (K key : keys) {
+            try {
+                V value = lookup.lookup(key);
+                if (value != null)
+                    result.add(value);
+            } catch (Exception e) {
+                if (!ignoreFailures)
+                    throw toRuntimeException(e);
+                logger.warn("Failed to look up {}, leaving it out.", key, e);
+            }
+        }
+        return result;
+    }
+
+    private <K, V> List<V> lookupInPool(final List<K> keys, final Lookup<K, V> lookup) {
+        final int size = keys.size();
+        final AtomicReferenceArray<V> values = new AtomicReferenceArray<V>(size);
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Queue<Exception> failures = new ConcurrentLinkedQueue<Exception>();
+
+        // Each worker keeps taking the next key until none is left, so one call never queues more than
+        // concurrency tasks however many keys there are.
+        int workerCount = Math.min(concurrency, size);
+        List<Future<?>> futures = new ArrayList<Future<?>>(workerCount);
+        ThreadPoolExecutor executor = startCall();
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        int index;
+                        while (!failed.get() && (index = nextIndex.getAndIncrement()) < size) {
+                            K key = keys.get(index);
+                            try {
+                                values.set(index, lookup.lookup(key));
+                            } catch (Exception e) {
+                                if (ignoreFailures) {
+                                    logger.warn("Failed to look up {}, leaving it out.", key, e);
+                                } else {
+                                    failures.add(e);
+                                    failed.set(true);
+                                }
+                            }
+                        }
+                    }
+                }));
+            }
+
+            try {
+                for (Future<?> future : futures)
+                    future.get();
+            } catch (InterruptedException e) {
+                failed.set(true);
+                for (Future<?> future : futures)
+                    future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new QuartzRuntimeException("Interrupted while waiting for lookups to complete.", e);
+            } catch (ExecutionException e) {
+                throw new QuartzRuntimeException("Failed to run lookups.", e.getCause());
+            }
+        } finally {
+            endCall();
+        }
+
+        if (failures.size() > 0) {
+            Exception firstFailure = failures.peek();
+            if (failures.size() == 1)
+                throw toRuntimeException(firstFailure);
+            throw new QuartzRuntimeException(failures.size() + " lookups failed. First failure: " +
+                    firstFailure.getMessage(), firstFailure);
+        }
+
+        List<V> result = new ArrayList<V>(size);
+        for (int i = 0; i < size; i++) {
+            V value = values.get(i);
+            if (value != null)
+                result.add(value);
+        }
+        return result;
+    }
+
+    private static RuntimeException toRuntimeException(Exception e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        return new QuartzRuntimeException(e);
+    }
+
+    /** @return the pool for a lookupAll call, which must call endCall() when done with it. */
+    private synchronized ThreadPoolExecutor startCall() {
+        runningCallCount++;
+        if (executor == null) {
+            final String namePrefix = "ParallelLookup-" + POOL_COUNT.incrementAndGet() + "-";
+            ThreadFactory threadFactory = new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    private synchronized void endCall() {
+        runningCallCount--;
+        if (shutdownRequested && runningCallCount == 0)
+            stopExecutor();
+    }
+
+    /**
+     * Stop the pool threads instead of waiting for them to time out: now if no lookup is running, else once the
+     * running ones are done. A lookupAll called after this still works, on a pool stopped again when it's done.
+     */
+    public synchronized void shutdown() {
+        shutdownRequested = true;
+        if (runningCallCount == 0)
+            stopExecutor();
+    }
+
+    private void stopExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /** A lookup of one key. Returning null leaves the key out of the result. */
+    public static interface Lookup<K, V> {
+        V lookup(K key) throws SchedulerException;
+    }
+}
@@ -1,8 +1,12 @@
 package myschedule.quartz.extra;
 
 import org.quartz.Scheduler;
+import org.quartz.core.QuartzSchedulerResources;
+import org.quartz.impl.StdScheduler;
+import org.quartz.spi.JobStore;
 
 import java.io.InputStream;
+import java.lang.reflect.Field;
 
 /**
  * Place any utility methods that would help programmer in using Quartz.
@@ -29,4 +33,29 @@ public class QuartzExtraUtils {
         }
     }
 
+    /**
+     * Get the JobStore of a local scheduler. Quartz does not expose it in the Scheduler API, so this reads it from the
+     * internal fields of StdScheduler and QuartzScheduler.
+     *
+     * @return the JobStore, or null if the scheduler is remote or the internal fields are not as expected.
+     */
+    public static JobStore getJobStore(Scheduler scheduler) {
+        if (!(scheduler instanceof StdScheduler))
+            return null;
+        try {
+            Object quartzScheduler = getFieldValue(scheduler, "sched");
+            Object resources = getFieldValue(quartzScheduler, "resources");
+            if (resources instanceof QuartzSchedulerResources)
+                return ((QuartzSchedulerResources) resources).getJobStore();
+        } catch (Exception e) {
+            // Not a Quartz version we know; let caller use the Scheduler API instead.
+        }
+        return null;
+    }
+
+    private static Object getFieldValue(Object obj, String fieldName) throws Exception {
+        Field field = obj.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(obj);
+    }
 }
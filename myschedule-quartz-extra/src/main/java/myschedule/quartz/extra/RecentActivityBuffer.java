@@ -0,0 +1,135 @@
+package myschedule.quartz.extra;
+
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed capacity, lock-free ring buffer of the most recent trigger events. It's meant to be written by the Quartz
+ * worker threads on every fire, and read by the web UI, so recording does not lock nor allocate: all the slots are
+ * created up front, and a writer only claims the next sequence number with a CAS and copies the event fields (the
+ * keys and strings are references to objects that Quartz already holds) into the slot.
+ * <p/>
+ * <p>Each slot has a state that is either the sequence number of the event it holds, or BUSY. A writer CAS the state
+ * to BUSY before it writes the fields, and publishes its sequence number after; a reader copies the fields and only
+ * keeps the copy if the state was the same before and after. So readers never see a half written event, but they may
+ * skip an event that is being overwritten at the time they read it. In the rare case that the writers lap the whole
+ * buffer while a slot is still being written, the later writer drops its event instead of waiting (see
+ * {@link #getDroppedCount()}).
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class RecentActivityBuffer {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final long EMPTY = -2;
+    private static final long BUSY = -1;
+
+    private final Slot[] slots;
+    private final AtomicLongArray states;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public RecentActivityBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RecentActivityBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than zero: " + capacity);
+        slots = new Slot[capacity];
+        states = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            states.set(i, EMPTY);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /** @return total number of events recorded, including the ones that have been overwritten. */
+    public long getRecordedCount() {
+        return nextSequence.get();
+    }
+
+    /** @return number of events dropped because their slot was still being written by an older event. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Record one event. It does not allocate any object.
+     *
+     * @param fireTime the trigger fire time in millis, or 0 if not known.
+     * @param durationInMillis the job run time for COMPLETED events, or -1 if not applicable.
+     * @param instruction the completed execution instruction, or null.
+     */
+    public void record(RecentActivityEvent.Type type, TriggerKey triggerKey, JobKey jobKey, String fireInstanceId,
+                       long fireTime, long durationInMillis, Object instruction) {
+        long sequence = nextSequence.getAndIncrement();
+        int index = (int) (sequence % slots.length);
+        long state = states.get(index);
+        if (state == BUSY || state > sequence || !states.compareAndSet(index, state, BUSY)) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        Slot slot = slots[index];
+        slot.type = type;
+        slot.eventTime = System.currentTimeMillis();
+        slot.triggerKey = triggerKey;
+        slot.jobKey = jobKey;
+        slot.fireInstanceId = fireInstanceId;
+        slot.fireTime = fireTime;
+        slot.durationInMillis = durationInMillis;
+        slot.instruction = instruction;
+        states.set(index, sequence);
+    }
+
+    /**
+     * @return up to maxCount of the most recent events, newest first.
+     */
+    public List<RecentActivityEvent> getEvents(int maxCount) {
+        long last = nextSequence.get() - 1;
+        long first = Math.max(0, last - Math.min(maxCount, slots.length) + 1);
+        List<RecentActivityEvent> result = new ArrayList<RecentActivityEvent>();
+        for (long sequence = last; sequence >= first; sequence--) {
+            int index = (int) (sequence % slots.length);
+            if (states.get(index) != sequence)
+                continue;
+            Slot slot = slots[index];
+            Object instruction = slot.instruction;
+            RecentActivityEvent event = new RecentActivityEvent(sequence, slot.type, slot.eventTime, slot.triggerKey,
+                    slot.jobKey, slot.fireInstanceId, slot.fireTime, slot.durationInMillis,
+                    instruction == null ? null : instruction.toString());
+            // Only keep it if no writer has touched the slot while we copy it.
+            if (states.get(index) == sequence)
+                result.add(event);
+        }
+        return result;
+    }
+
+    /** @return all the events still in the buffer, newest first. */
+    public List<RecentActivityEvent> getEvents() {
+        return getEvents(slots.length);
+    }
+
+    /**
+     * One preallocated event slot. Fields are volatile so a reader can tell, by checking the slot state after reading
+     * them, that they were not changed while it was reading.
+     */
+    private static class Slot {
+        volatile RecentActivityEvent.Type type;
+        volatile long eventTime;
+        volatile TriggerKey triggerKey;
+        volatile JobKey jobKey;
+        volatile String fireInstanceId;
+        volatile long fireTime;
+        volatile long durationInMillis;
+        volatile Object instruction;
+    }
+}
@@ -0,0 +1,87 @@
+package myschedule.quartz.extra;
+
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A copy of one trigger event read from {@link RecentActivityBuffer}.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class RecentActivityEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static enum Type {FIRED, COMPLETED, MISFIRED, VETOED}
+
+    private final long sequence;
+    private final Type type;
+    private final long eventTime;
+    private final TriggerKey triggerKey;
+    private final JobKey jobKey;
+    private final String fireInstanceId;
+    private final long fireTime;
+    private final long durationInMillis;
+    private final String instruction;
+
+    public RecentActivityEvent(long sequence, Type type, long eventTime, TriggerKey triggerKey, JobKey jobKey,
+                               String fireInstanceId, long fireTime, long durationInMillis, String instruction) {
+        this.sequence = sequence;
+        this.type = type;
+        this.eventTime = eventTime;
+        this.triggerKey = triggerKey;
+        this.jobKey = jobKey;
+        this.fireInstanceId = fireInstanceId;
+        this.fireTime = fireTime;
+        this.durationInMillis = durationInMillis;
+        this.instruction = instruction;
+    }
+
+    /** @return the order of this event in the buffer, starting from 0. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Date getEventTime() {
+        return new Date(eventTime);
+    }
+
+    public TriggerKey getTriggerKey() {
+        return triggerKey;
+    }
+
+    public JobKey getJobKey() {
+        return jobKey;
+    }
+
+    public String getFireInstanceId() {
+        return fireInstanceId;
+    }
+
+    /** @return the trigger fire time, or null if not known (eg: for MISFIRED). */
+    public Date getFireTime() {
+        return (fireTime == 0) ? null : new Date(fireTime);
+    }
+
+    /** @return the job run time of a COMPLETED event, else -1. */
+    public long getDurationInMillis() {
+        return durationInMillis;
+    }
+
+    /** @return the CompletedExecutionInstruction of a COMPLETED event, else null. */
+    public String getInstruction() {
+        return instruction;
+    }
+
+    @Override
+    public String toString() {
+        return "RecentActivityEvent[sequence=" + sequence + ", type=" + type + ", eventTime=" + getEventTime() +
+                ", triggerKey=" + triggerKey + ", jobKey=" + jobKey + ", durationInMillis=" + durationInMillis + "]";
+    }
+}
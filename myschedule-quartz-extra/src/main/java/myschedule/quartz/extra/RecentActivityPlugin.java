@@ -0,0 +1,136 @@
+package myschedule.quartz.extra;
+
+import org.quartz.*;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+
+/**
+ * This plugin keeps the most recent trigger events (fired, completed, misfired and vetoed, with the job run time) in
+ * a {@link RecentActivityBuffer}, so the web UI can show what the scheduler just did without reading the history
+ * store. It can be used together with any of the history plugins. Recording costs a few field writes on the worker
+ * thread, and the buffer is lost when the scheduler shuts down.
+ * <p/>
+ * <p>The plugin stores itself into the scheduler context map under <code>schedulerContextKey</code>. Here is an
+ * example of how you configure this plugin in <code>quartz.properties</code> file.
+ * <pre>
+ * org.quartz.plugin.MyRecentActivityPlugin.class = myschedule.quartz.extra.RecentActivityPlugin
+ * # Optional settings
+ * org.quartz.plugin.MyRecentActivityPlugin.capacity = 1024
+ * org.quartz.plugin.MyRecentActivityPlugin.schedulerContextKey = RecentActivityPlugin.Instance
+ * </pre>
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class RecentActivityPlugin implements SchedulerPlugin {
+
+    public static final String DEFAULT_SCHEDULER_CONTEXT_KEY = "RecentActivityPlugin.Instance";
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentActivityPlugin.class);
+    private String name;
+    private String schedulerContextKey = DEFAULT_SCHEDULER_CONTEXT_KEY;
+    private int capacity = RecentActivityBuffer.DEFAULT_CAPACITY;
+    private RecentActivityBuffer buffer;
+
+    public void setSchedulerContextKey(String schedulerContextKey) {
+        this.schedulerContextKey = schedulerContextKey;
+    }
+
+    public String getSchedulerContextKey() {
+        return schedulerContextKey;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public RecentActivityBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void initialize(String name, Scheduler scheduler, ClassLoadHelper loadHelper) throws SchedulerException {
+        this.name = name;
+        this.buffer = new RecentActivityBuffer(capacity);
+
+        // Register listeners
+        scheduler.getListenerManager().addTriggerListener(new RecentActivityTriggerListener());
+        scheduler.getListenerManager().addJobListener(new RecentActivityJobListener());
+
+        // Store this plugin instance into scheduler context map
+        scheduler.getContext().put(schedulerContextKey, this);
+        logger.info("Added plugin instance {} to scheduler context key: {}", this, schedulerContextKey);
+    }
+
+    @Override
+    public void start() {
+        logger.info(name + " has started.");
+    }
+
+    @Override
+    public void shutdown() {
+        logger.info(name + " has shutdown.");
+    }
+
+    private static long getTime(Date date) {
+        return (date == null) ? 0 : date.getTime();
+    }
+
+    private class RecentActivityTriggerListener implements TriggerListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            buffer.record(RecentActivityEvent.Type.FIRED, trigger.getKey(), trigger.getJobKey(),
+                    context.getFireInstanceId(), getTime(context.getFireTime()), -1, null);
+        }
+
+        @Override
+        public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+            // Do nothing.
+            return false;
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            buffer.record(RecentActivityEvent.Type.MISFIRED, trigger.getKey(), trigger.getJobKey(), null, 0, -1, null);
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                    CompletedExecutionInstruction triggerInstructionCode) {
+            buffer.record(RecentActivityEvent.Type.COMPLETED, trigger.getKey(), trigger.getJobKey(),
+                    context.getFireInstanceId(), getTime(context.getFireTime()), context.getJobRunTime(),
+                    triggerInstructionCode);
+        }
+    }
+
+    private class RecentActivityJobListener implements JobListener {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void jobToBeExecuted(JobExecutionContext context) {
+        }
+
+        @Override
+        public void jobExecutionVetoed(JobExecutionContext context) {
+            Trigger trigger = context.getTrigger();
+            buffer.record(RecentActivityEvent.Type.VETOED, trigger.getKey(), trigger.getJobKey(),
+                    context.getFireInstanceId(), getTime(context.getFireTime()), -1, null);
+        }
+
+        @Override
+        public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+        }
+    }
+}
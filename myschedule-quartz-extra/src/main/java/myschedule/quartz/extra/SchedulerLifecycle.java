@@ -0,0 +1,338 @@
+package myschedule.quartz.extra;
+
+import org.quartz.InterruptableJob;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks a scheduler through started, draining and terminated, with methods to wait for each, and drains it
+ * gracefully: no new fire, wait for the running jobs up to a deadline, interrupt the ones that are
+ * {@link InterruptableJob}, then shut down. Get it from {@link SchedulerTemplate#getLifecycle()}. For example, in a
+ * shutdown hook of a scheduler host:
+ * <pre>
+ * scheduler.getLifecycle().drain(60000);
+ * </pre>
+ * <p/>
+ * <p>The states come from the scheduler listener, so a shutdown done elsewhere (the web UI, another template) is seen
+ * too. A remote scheduler has no listener; its states are only updated by the calls made through this object.
+ * Reaching a state releases the waits for the states before it, so awaitStarted() returns when the scheduler is
+ * shut down before it ever started.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class SchedulerLifecycle {
+    public static final long DEFAULT_INTERRUPT_GRACE_IN_MILLIS = 5000;
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerLifecycle.class);
+    private static final long POLL_INTERVAL_IN_MILLIS = 100;
+    private static final long LOG_INTERVAL_IN_MILLIS = 5000;
+
+    private final SchedulerTemplate scheduler;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.CREATED);
+    private final CountDownLatch startedLatch = new CountDownLatch(1);
+    private final CountDownLatch drainingLatch = new CountDownLatch(1);
+    private final CountDownLatch terminatedLatch = new CountDownLatch(1);
+    private volatile DrainProgress drainProgress;
+    private boolean listening;
+
+    public SchedulerLifecycle(SchedulerTemplate scheduler) {
+        this.scheduler = scheduler;
+        try {
+            scheduler.addSchedulerListener(new LifecycleSchedulerListener());
+            listening = true;
+        } catch (RuntimeException e) {
+            // A remote scheduler does not support listeners.
+            logger.info("Unable to listen to scheduler state, lifecycle only follows its own calls. {}",
+                    e.getMessage());
+        }
+        if (scheduler.isShutdown())
+            markTerminated();
+        else if (scheduler.isStarted() && !scheduler.isInStandbyMode())
+            markStarted();
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Start the scheduler, after a delay if more than zero. The state becomes STARTED when it actually started.
+     */
+    public void start(int startDelayInSeconds) {
+        if (startDelayInSeconds <= 0)
+            scheduler.start();
+        else
+            scheduler.startDelayed(startDelayInSeconds);
+        if (!listening && startDelayInSeconds <= 0)
+            markStarted();
+    }
+
+    public void awaitStarted() throws InterruptedException {
+        startedLatch.await();
+    }
+
+    /** @return true if started, false if the timeout passed first. */
+    public boolean awaitStarted(long timeout, TimeUnit unit) throws InterruptedException {
+        return startedLatch.await(timeout, unit);
+    }
+
+    public void awaitDraining() throws InterruptedException {
+        drainingLatch.await();
+    }
+
+    /** @return true if draining, false if the timeout passed first. */
+    public boolean awaitDraining(long timeout, TimeUnit unit) throws InterruptedException {
+        return drainingLatch.await(timeout, unit);
+    }
+
+    public void awaitTerminated() throws InterruptedException {
+        terminatedLatch.await();
+    }
+
+    /** @return true if terminated, false if the timeout passed first. */
+    public boolean awaitTerminated(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminatedLatch.await(timeout, unit);
+    }
+
+    /** @return the progress of the drain, or null if not draining yet. */
+    public DrainProgress getDrainProgress() {
+        return drainProgress;
+    }
+
+    /**
+     * Same as {@link #drain(long, long)} with {@link #DEFAULT_INTERRUPT_GRACE_IN_MILLIS}.
+     */
+    public DrainProgress drain(long timeoutInMillis) {
+        return drain(timeoutInMillis, DEFAULT_INTERRUPT_GRACE_IN_MILLIS);
+    }
+
+    /**
+     * Put the scheduler in standby so no trigger fires any more (in a cluster, the other nodes take them over), wait
+     * for the running jobs to complete, then shut it down. The jobs still running after timeoutInMillis are interrupted
+     * if they are InterruptableJob, and given interruptGraceInMillis to end. The jobs still running then are left
+     * running, and the scheduler is shut down without waiting for them.
+     * <p/>
+     * <p>Blocks until terminated. Calling it while another thread drains waits for that drain instead.
+     *
+     * @param timeoutInMillis how long to wait for the running jobs. Less than zero waits as long as they run.
+     * @return the final progress.
+     */
+    public DrainProgress drain(long timeoutInMillis, long interruptGraceInMillis) {
+        if (!markDraining()) {
+            try {
+                awaitTerminated();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return drainProgress;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Date deadline = (timeoutInMillis < 0) ? null : new Date(startTime + timeoutInMillis);
+        if (!scheduler.isShutdown())
+            scheduler.standby();
+        List<JobExecutionContext> runningJobs = getRunningJobs();
+        int initialCount = runningJobs.size();
+        logger.info("Draining scheduler {} with {} jobs running, deadline {}.", scheduler.getSchedulerName(),
+                initialCount, (deadline == null) ? "none" : deadline);
+        updateProgress(startTime, deadline, initialCount, runningJobs, 0, false);
+
+        // Wait for the jobs to complete, up to the deadline.
+        long lastLogTime = startTime;
+        while (!runningJobs.isEmpty() && (deadline == null || System.currentTimeMillis() < deadline.getTime())) {
+            if (!sleep(POLL_INTERVAL_IN_MILLIS))
+                break;
+            runningJobs = getRunningJobs();
+            updateProgress(startTime, deadline, initialCount, runningJobs, 0, false);
+            if (System.currentTimeMillis() - lastLogTime >= LOG_INTERVAL_IN_MILLIS) {
+                lastLogTime = System.currentTimeMillis();
+                logger.info("Draining scheduler {}: {}", scheduler.getSchedulerName(), drainProgress);
+            }
+        }
+
+        // Interrupt the ones left and give them some time to end.
+        int interruptedCount = 0;
+        if (!runningJobs.isEmpty()) {
+            for (JobExecutionContext context : runningJobs) {
+                if (!(context.getJobInstance() instanceof InterruptableJob))
+                    continue;
+                try {
+                    if (scheduler.interrupt(context.getFireInstanceId()))
+                        interruptedCount++;
+                } catch (QuartzRuntimeException e) {
+                    logger.warn("Failed to interrupt job {}", context.getJobDetail().getKey(), e);
+                }
+            }
+            logger.info("Drain deadline passed, interrupted {} of {} running jobs.", interruptedCount,
+                    runningJobs.size());
+            long graceEndTime = System.currentTimeMillis() + interruptGraceInMillis;
+            while (interruptedCount > 0 && !runningJobs.isEmpty() && System.currentTimeMillis() < graceEndTime) {
+                if (!sleep(POLL_INTERVAL_IN_MILLIS))
+                    break;
+                runningJobs = getRunningJobs();
+                updateProgress(startTime, deadline, initialCount, runningJobs, interruptedCount, false);
+            }
+            for (JobExecutionContext context : runningJobs)
+                logger.warn("Job {} is still running, shutting down without waiting for it.",
+                        context.getJobDetail().getKey());
+        }
+
+        // Done before the shutdown, so the threads woken up by it see the final progress.
+        updateProgress(startTime, deadline, initialCount, runningJobs, interruptedCount, true);
+        if (!scheduler.isShutdown())
+            scheduler.shutdown(false);
+        markTerminated();
+        logger.info("Drained scheduler {}: {}", scheduler.getSchedulerName(), drainProgress);
+        return drainProgress;
+    }
+
+    /** Shut down the scheduler now, waiting for the running jobs or not, without draining first. */
+    public void shutdown(boolean waitForJobsToComplete) {
+        if (!scheduler.isShutdown())
+            scheduler.shutdown(waitForJobsToComplete);
+        markTerminated();
+    }
+
+    private List<JobExecutionContext> getRunningJobs() {
+        if (scheduler.isShutdown())
+            return Collections.emptyList();
+        return scheduler.getCurrentlyExecutingJobs();
+    }
+
+    private void updateProgress(long startTime, Date deadline, int initialCount, List<JobExecutionContext> runningJobs,
+                                int interruptedCount, boolean done) {
+        List<String> runningJobKeys = new ArrayList<String>();
+        for (JobExecutionContext context : runningJobs)
+            runningJobKeys.add(context.getJobDetail().getKey().toString());
+        drainProgress = new DrainProgress(new Date(startTime), deadline, initialCount, runningJobKeys,
+                interruptedCount, System.currentTimeMillis() - startTime, done);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void markStarted() {
+        if (state.compareAndSet(State.CREATED, State.STARTED))
+            startedLatch.countDown();
+    }
+
+    private boolean markDraining() {
+        while (true) {
+            State current = state.get();
+            if (current == State.DRAINING || current == State.TERMINATED)
+                return false;
+            if (state.compareAndSet(current, State.DRAINING)) {
+                startedLatch.countDown();
+                drainingLatch.countDown();
+                return true;
+            }
+        }
+    }
+
+    private void markTerminated() {
+        state.set(State.TERMINATED);
+        startedLatch.countDown();
+        drainingLatch.countDown();
+        terminatedLatch.countDown();
+    }
+
+    public static enum State {
+        CREATED, STARTED, DRAINING, TERMINATED
+    }
+
+    /**
+     * A snapshot of a drain in progress, or done.
+     */
+    public static class DrainProgress implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Date startTime;
+        private final Date deadline;
+        private final int initialRunningCount;
+        private final List<String> runningJobKeys;
+        private final int interruptedCount;
+        private final long elapsedInMillis;
+        private final boolean done;
+
+        public DrainProgress(Date startTime, Date deadline, int initialRunningCount, List<String> runningJobKeys,
+                             int interruptedCount, long elapsedInMillis, boolean done) {
+            this.startTime = startTime;
+            this.deadline = deadline;
+            this.initialRunningCount = initialRunningCount;
+            this.runningJobKeys = runningJobKeys;
+            this.interruptedCount = interruptedCount;
+            this.elapsedInMillis = elapsedInMillis;
+            this.done = done;
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        /** @return when the running jobs get interrupted, or null if the drain waits as long as they run. */
+        public Date getDeadline() {
+            return deadline;
+        }
+
+        /** @return the number of jobs running when the drain started. */
+        public int getInitialRunningCount() {
+            return initialRunningCount;
+        }
+
+        public int getRunningCount() {
+            return runningJobKeys.size();
+        }
+
+        public List<String> getRunningJobKeys() {
+            return Collections.unmodifiableList(runningJobKeys);
+        }
+
+        public int getInterruptedCount() {
+            return interruptedCount;
+        }
+
+        public long getElapsedInMillis() {
+            return elapsedInMillis;
+        }
+
+        /** @return true once the drain is over and the scheduler is being shut down. */
+        public boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public String toString() {
+            return "DrainProgress[running=" + getRunningCount() + "/" + initialRunningCount + ", interrupted=" +
+                    interruptedCount + ", elapsedInMillis=" + elapsedInMillis + ", done=" + done + "]";
+        }
+    }
+
+    private class LifecycleSchedulerListener extends SimpleSchedulerListener {
+        @Override
+        public void schedulerStarted() {
+            markStarted();
+        }
+
+        @Override
+        public void schedulerShutdown() {
+            markTerminated();
+        }
+    }
+}
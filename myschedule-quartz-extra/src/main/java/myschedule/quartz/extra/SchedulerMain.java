@@ -5,12 +5,17 @@ import org.quartz.SchedulerException;
 /**
  * A main entry to start a scheduler as a tiny server. This program will block the main thread until user shutdown
  * the JVM (eg: use CTRL+C).
+ * <p/>
+ * <p>On shutdown the scheduler is drained (see {@link SchedulerLifecycle#drain(long)}): it stops firing, and waits for
+ * the running jobs for the time set by the SchedulerMain.DrainTimeout system property in milliseconds, after which
+ * the interruptable jobs are interrupted. The default -1 waits as long as the jobs run.
  *
  * @author Zemian Deng <saltnlight5@gmail.com>
  */
 public class SchedulerMain {
 
     public static final String TIMEOUT_KEY = "SchedulerMain.Timeout";
+    public static final String DRAIN_TIMEOUT_KEY = "SchedulerMain.DrainTimeout";
 
     public static void main(String[] args) throws SchedulerException {
         // Create a scheduler
@@ -23,11 +28,13 @@ public class SchedulerMain {
         }
 
         long timeout = Long.parseLong(System.getProperty(TIMEOUT_KEY, "-1"));
+        final long drainTimeout = Long.parseLong(System.getProperty(DRAIN_TIMEOUT_KEY, "-1"));
         if (timeout < 0) {
             // Register a shutdown hook to bring down scheduler
+            final SchedulerLifecycle lifecycle = scheduler.getLifecycle();
             Runtime.getRuntime().addShutdownHook(new Thread() {
                 public void run() {
-                    scheduler.shutdown(true); // true => wait for jobs to complete.
+                    lifecycle.drain(drainTimeout);
                 }
             });
 
@@ -0,0 +1,68 @@
+package myschedule.quartz.extra;
+
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All the triggers of a scheduler with their states, and all the job details, read together by
+ * {@link SchedulerTemplate#snapshot()}. Use this instead of looking up the job and state of each trigger one at a
+ * time when listing the whole scheduler.
+ * <p/>
+ * <p>Triggers and job details are listed group by group, with the groups sorted by name. The snapshot is not updated
+ * after it's taken.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class SchedulerSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Date snapshotTime;
+    private final List<Trigger> triggers;
+    private final Map<TriggerKey, TriggerState> triggerStates;
+    private final Map<JobKey, JobDetail> jobDetails;
+
+    public SchedulerSnapshot(Date snapshotTime, List<Trigger> triggers, Map<TriggerKey, TriggerState> triggerStates,
+                             Map<JobKey, JobDetail> jobDetails) {
+        this.snapshotTime = snapshotTime;
+        this.triggers = triggers;
+        this.triggerStates = triggerStates;
+        this.jobDetails = jobDetails;
+    }
+
+    public Date getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    public List<Trigger> getTriggers() {
+        return Collections.unmodifiableList(triggers);
+    }
+
+    /**
+     * @return the state of the trigger when the snapshot was taken, or NONE if it was not in the scheduler.
+     */
+    public TriggerState getTriggerState(TriggerKey triggerKey) {
+        TriggerState state = triggerStates.get(triggerKey);
+        return (state == null) ? TriggerState.NONE : state;
+    }
+
+    /**
+     * @return the job detail, or null if it was not in the scheduler.
+     */
+    public JobDetail getJobDetail(JobKey jobKey) {
+        return jobDetails.get(jobKey);
+    }
+
+    public List<JobDetail> getJobDetails() {
+        return new ArrayList<JobDetail>(jobDetails.values());
+    }
+}
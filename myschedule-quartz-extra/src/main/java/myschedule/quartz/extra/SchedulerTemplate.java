@@ -3,13 +3,18 @@ package myschedule.quartz.extra;
 import org.quartz.Calendar;
 import org.quartz.*;
 import org.quartz.Trigger.TriggerState;
+import org.quartz.impl.RemoteScheduler;
 import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.spi.JobFactory;
+import org.quartz.spi.JobStore;
 import org.quartz.spi.MutableTrigger;
 import org.quartz.spi.OperableTrigger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.quartz.CronScheduleBuilder.cronSchedule;
 import static org.quartz.JobBuilder.newJob;
@@ -29,6 +34,9 @@ import static org.quartz.TriggerBuilder.newTrigger;
 public class SchedulerTemplate {
 
     private Scheduler scheduler;
+    private volatile ParallelLookup parallelLookup = new ParallelLookup(1, false);
+    private volatile int bulkChunkSize = 500;
+    private SchedulerLifecycle lifecycle;
 
     public SchedulerTemplate() {
         try {
@@ -333,6 +341,13 @@ public class SchedulerTemplate {
         }
     }
 
+    /**
+     * Start a batch of jobs to be scheduled together, a chunk per scheduleJobs() call. See {@link SchedulingBatch}.
+     */
+    public SchedulingBatch batch() {
+        return new SchedulingBatch(this);
+    }
+
     public void scheduleJob(JobDetail jobDetail, Set<? extends Trigger> triggers, boolean replace) {
         try {
             scheduler.scheduleJob(jobDetail, triggers, replace);
@@ -566,27 +581,37 @@ public class SchedulerTemplate {
     }
 
     /**
-     * Start scheduler, wait for some times, then shutdown scheduler to wait for all jobs to be complete.
+     * @return the lifecycle of the scheduler, to wait for it to start or terminate, and to drain it. Created on first
+     * use, and the same one after.
+     */
+    public synchronized SchedulerLifecycle getLifecycle() {
+        if (lifecycle == null)
+            lifecycle = new SchedulerLifecycle(this);
+        return lifecycle;
+    }
+
+    /**
+     * Start scheduler, wait for some times, then shutdown scheduler to wait for all jobs to be complete. Returns
+     * earlier if the scheduler is shut down meanwhile.
      *
      * @param waitTimeInMillis - number of milliseconds to wait before shutdown.
      */
     public void startAndShutdown(long waitTimeInMillis) {
-        start();
+        SchedulerLifecycle lifecycle = getLifecycle();
+        lifecycle.start(0);
         if (waitTimeInMillis > 0) {
-            synchronized (this) {
-                try {
-                    this.wait(waitTimeInMillis);
-                } catch (InterruptedException e) {
-                    throw new QuartzRuntimeException("Failed to wait after scheduler started.", e);
-                }
+            try {
+                lifecycle.awaitTerminated(waitTimeInMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new QuartzRuntimeException("Failed to wait after scheduler started.", e);
             }
         }
         // true => Wait for job to complete before shutdown.
-        shutdown(true);
+        lifecycle.shutdown(true);
     }
 
     /**
-     * Start the scheduler and put this template instance into wait state until notified or interrupted.
+     * Start the scheduler and wait until it's shut down (eg: by a shutdown hook) or the thread is interrupted.
      * <p/>
      * <p>Note this method will block main thread execution!
      */
@@ -595,7 +620,7 @@ public class SchedulerTemplate {
     }
 
     /**
-     * Start the scheduler with a delay time, and put this template instance into wait state until notified or
+     * Start the scheduler with a delay time, and wait until it's shut down (eg: by a shutdown hook) or the thread is
      * interrupted.
      * <p/>
      * <p>Note this method will block main thread execution!
@@ -603,32 +628,24 @@ public class SchedulerTemplate {
      * @param startDelayInSeconds
      */
     public void startAndWait(int startDelayInSeconds) {
-        if (startDelayInSeconds <= 0) {
-            start();
-        } else {
-            startDelayed(startDelayInSeconds);
-        }
-        synchronized (this) {
-            try {
-                this.wait();
-            } catch (InterruptedException e) {
-                throw new QuartzRuntimeException("Failed to wait after scheduler started.", e);
-            }
+        SchedulerLifecycle lifecycle = getLifecycle();
+        lifecycle.start(startDelayInSeconds);
+        try {
+            lifecycle.awaitTerminated();
+        } catch (InterruptedException e) {
+            throw new QuartzRuntimeException("Failed to wait after scheduler started.", e);
         }
     }
 
     public List<JobDetail> getAllJobDetails() {
         try {
-            List<JobDetail> jobs = new ArrayList<JobDetail>();
-            List<String> groups = scheduler.getJobGroupNames();
-            for (String group : groups) {
-                Set<JobKey> keys = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(group));
-                for (JobKey key : keys) {
-                    JobDetail jobDetail = scheduler.getJobDetail(key);
-                    jobs.add(jobDetail);
+            List<JobKey> keys = getJobKeysOfGroups(parallelLookup, scheduler.getJobGroupNames());
+            return parallelLookup.lookupAll(keys, new ParallelLookup.Lookup<JobKey, JobDetail>() {
+                @Override
+                public JobDetail lookup(JobKey key) throws SchedulerException {
+                    return scheduler.getJobDetail(key);
                 }
-            }
-            return jobs;
+            });
         } catch (SchedulerException e) {
             throw new QuartzRuntimeException(e);
         }
@@ -636,21 +653,290 @@ public class SchedulerTemplate {
 
     public List<Trigger> getAllTriggers() {
         try {
-            List<Trigger> triggers = new ArrayList<Trigger>();
-            List<String> groups = scheduler.getTriggerGroupNames();
-            for (String group : groups) {
-                Set<TriggerKey> keys = scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group));
-                for (TriggerKey key : keys) {
-                    Trigger trigger = scheduler.getTrigger(key);
-                    triggers.add(trigger);
+            List<TriggerKey> keys = getTriggerKeysOfGroups(parallelLookup, scheduler.getTriggerGroupNames());
+            return parallelLookup.lookupAll(keys, new ParallelLookup.Lookup<TriggerKey, Trigger>() {
+                @Override
+                public Trigger lookup(TriggerKey key) throws SchedulerException {
+                    return scheduler.getTrigger(key);
+                }
+            });
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    /**
+     * Iterate all the triggers without loading them all first: the keys are loaded one group at a time, and each
+     * trigger when the iteration reaches it, so a caller that stops early never loads the rest. Triggers removed while
+     * iterating are skipped.
+     */
+    public Iterator<Trigger> iterateTriggers() {
+        try {
+            return new GroupPagedIterator<TriggerKey, Trigger>(scheduler.getTriggerGroupNames()) {
+                @Override
+                protected Set<TriggerKey> getKeys(String group) throws SchedulerException {
+                    return scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group));
+                }
+
+                @Override
+                protected Trigger getValue(TriggerKey key) throws SchedulerException {
+                    return scheduler.getTrigger(key);
+                }
+            };
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    /**
+     * Iterate all the job details without loading them all first. See {@link #iterateTriggers()}.
+     */
+    public Iterator<JobDetail> iterateJobDetails() {
+        try {
+            return new GroupPagedIterator<JobKey, JobDetail>(scheduler.getJobGroupNames()) {
+                @Override
+                protected Set<JobKey> getKeys(String group) throws SchedulerException {
+                    return scheduler.getJobKeys(GroupMatcher.jobGroupEquals(group));
                 }
+
+                @Override
+                protected JobDetail getValue(JobKey key) throws SchedulerException {
+                    return scheduler.getJobDetail(key);
+                }
+            };
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    /**
+     * Count the triggers without loading any of them: a single COUNT(*) on a JDBC JobStore, or the number of trigger
+     * keys on any other store.
+     */
+    public int countTriggers() {
+        JobStore jobStore = QuartzExtraUtils.getJobStore(scheduler);
+        if (jobStore instanceof JobStoreSupport)
+            return new JdbcSnapshotReader(scheduler, (JobStoreSupport) jobStore).countTriggers();
+        try {
+            return scheduler.getTriggerKeys(GroupMatcher.anyTriggerGroup()).size();
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    /**
+     * Count the jobs without loading any of them. See {@link #countTriggers()}.
+     */
+    public int countJobs() {
+        JobStore jobStore = QuartzExtraUtils.getJobStore(scheduler);
+        if (jobStore instanceof JobStoreSupport)
+            return new JdbcSnapshotReader(scheduler, (JobStoreSupport) jobStore).countJobs();
+        try {
+            return scheduler.getJobKeys(GroupMatcher.anyJobGroup()).size();
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    private List<TriggerKey> getTriggerKeysOfGroups(ParallelLookup lookup, List<String> groups) {
+        List<Set<TriggerKey>> keysOfGroups = lookup.lookupAll(groups,
+                new ParallelLookup.Lookup<String, Set<TriggerKey>>() {
+                    @Override
+                    public Set<TriggerKey> lookup(String group) throws SchedulerException {
+                        return scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group));
+                    }
+                });
+        // Sorted by name in each group, the same order as a JDBC snapshot.
+        List<TriggerKey> keys = new ArrayList<TriggerKey>();
+        for (Set<TriggerKey> keysOfGroup : keysOfGroups) {
+            List<TriggerKey> sortedKeys = new ArrayList<TriggerKey>(keysOfGroup);
+            Collections.sort(sortedKeys);
+            keys.addAll(sortedKeys);
+        }
+        return keys;
+    }
+
+    private List<JobKey> getJobKeysOfGroups(ParallelLookup lookup, List<String> groups) {
+        List<Set<JobKey>> keysOfGroups = lookup.lookupAll(groups, new ParallelLookup.Lookup<String, Set<JobKey>>() {
+            @Override
+            public Set<JobKey> lookup(String group) throws SchedulerException {
+                return scheduler.getJobKeys(GroupMatcher.jobGroupEquals(group));
             }
-            return triggers;
+        });
+        List<JobKey> keys = new ArrayList<JobKey>();
+        for (Set<JobKey> keysOfGroup : keysOfGroups) {
+            List<JobKey> sortedKeys = new ArrayList<JobKey>(keysOfGroup);
+            Collections.sort(sortedKeys);
+            keys.addAll(sortedKeys);
+        }
+        return keys;
+    }
+
+    /**
+     * Set how many threads the per group and per key lookups of {@link #getAllTriggers()},
+     * {@link #getAllJobDetails()}, {@link #getPausedTriggers()} and {@link #snapshot()} run on. The default is 1,
+     * which runs them one after another in the caller thread. With a RemoteScheduler each lookup is an RMI round
+     * trip, so running several at once cuts the time to list a large scheduler by about that many times. Results are
+     * in the same order either way.
+     */
+    public void setLookupConcurrency(int lookupConcurrency) {
+        replaceParallelLookup(new ParallelLookup(lookupConcurrency, parallelLookup.isIgnoreFailures()));
+    }
+
+    public int getLookupConcurrency() {
+        return parallelLookup.getConcurrency();
+    }
+
+    /**
+     * When true, a trigger or job that fails to load in the methods listed in {@link #setLookupConcurrency(int)} is
+     * logged and left out of the result instead of failing the whole call. Default is false.
+     */
+    public void setLookupIgnoreFailures(boolean lookupIgnoreFailures) {
+        replaceParallelLookup(new ParallelLookup(parallelLookup.getConcurrency(), lookupIgnoreFailures));
+    }
+
+    public boolean isLookupIgnoreFailures() {
+        return parallelLookup.isIgnoreFailures();
+    }
+
+    private synchronized void replaceParallelLookup(ParallelLookup newParallelLookup) {
+        ParallelLookup oldParallelLookup = parallelLookup;
+        parallelLookup = newParallelLookup;
+        // Lookups still running on the old one finish before its pool stops.
+        oldParallelLookup.shutdown();
+    }
+
+    /**
+     * Read all the triggers, their states and all the job details in one go. On a JDBC JobStore this is one SELECT per
+     * QRTZ_ table in one transaction (see {@link JdbcSnapshotReader}); on any other store (RAMJobStore, or a remote
+     * scheduler) it goes through the scheduler API once per trigger and once per job, without fetching a job again
+     * for each of its triggers, and on as many threads as {@link #setLookupConcurrency(int)} allows.
+     *
+     * @return triggers and job details sorted by group, then by name.
+     */
+    public SchedulerSnapshot snapshot() {
+        JobStore jobStore = QuartzExtraUtils.getJobStore(scheduler);
+        if (jobStore instanceof JobStoreSupport)
+            return new JdbcSnapshotReader(scheduler, (JobStoreSupport) jobStore).read();
+
+        try {
+            ParallelLookup lookup = parallelLookup;
+            Date snapshotTime = new Date();
+            List<String> triggerGroups = new ArrayList<String>(scheduler.getTriggerGroupNames());
+            Collections.sort(triggerGroups);
+            final Map<TriggerKey, TriggerState> triggerStates = new ConcurrentHashMap<TriggerKey, TriggerState>();
+            List<Trigger> triggers = lookup.lookupAll(getTriggerKeysOfGroups(lookup, triggerGroups),
+                    new ParallelLookup.Lookup<TriggerKey, Trigger>() {
+                        @Override
+                        public Trigger lookup(TriggerKey key) throws SchedulerException {
+                            Trigger trigger = scheduler.getTrigger(key);
+                            if (trigger != null) // Else removed while we were reading.
+                                triggerStates.put(key, scheduler.getTriggerState(key));
+                            return trigger;
+                        }
+                    });
+
+            List<String> jobGroups = new ArrayList<String>(scheduler.getJobGroupNames());
+            Collections.sort(jobGroups);
+            Map<JobKey, JobDetail> jobDetails = new LinkedHashMap<JobKey, JobDetail>();
+            List<JobDetail> jobDetailList = lookup.lookupAll(getJobKeysOfGroups(lookup, jobGroups),
+                    new ParallelLookup.Lookup<JobKey, JobDetail>() {
+                        @Override
+                        public JobDetail lookup(JobKey key) throws SchedulerException {
+                            return scheduler.getJobDetail(key);
+                        }
+                    });
+            for (JobDetail jobDetail : jobDetailList)
+                jobDetails.put(jobDetail.getKey(), jobDetail);
+            return new SchedulerSnapshot(snapshotTime, triggers, triggerStates, jobDetails);
         } catch (SchedulerException e) {
             throw new QuartzRuntimeException(e);
         }
     }
 
+    /**
+     * @return the JobMetricsPlugin configured in this scheduler, or null if there is none.
+     */
+    public JobMetricsPlugin getJobMetricsPlugin() {
+        SchedulerContext context = getContext();
+        Object plugin = context.get(JobMetricsPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        if (plugin instanceof JobMetricsPlugin)
+            return (JobMetricsPlugin) plugin;
+
+        // The plugin may be stored with a different key.
+        for (Object value : context.values()) {
+            if (value instanceof JobMetricsPlugin)
+                return (JobMetricsPlugin) value;
+        }
+        return null;
+    }
+
+    /**
+     * @return the CommandGatePlugin configured in this scheduler, or null if there is none.
+     */
+    public CommandGatePlugin getCommandGatePlugin() {
+        SchedulerContext context = getContext();
+        Object plugin = context.get(CommandGatePlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        if (plugin instanceof CommandGatePlugin)
+            return (CommandGatePlugin) plugin;
+
+        // The plugin may be stored with a different key.
+        for (Object value : context.values()) {
+            if (value instanceof CommandGatePlugin)
+                return (CommandGatePlugin) value;
+        }
+        return null;
+    }
+
+    /**
+     * @return the gate limiting the OsCommandJob processes of this scheduler, or null if it has no CommandGatePlugin.
+     */
+    public CommandGate getCommandGate() {
+        CommandGatePlugin plugin = getCommandGatePlugin();
+        return (plugin == null) ? null : plugin.getCommandGate();
+    }
+
+    private JobMetricsPlugin getRequiredJobMetricsPlugin() {
+        JobMetricsPlugin plugin = getJobMetricsPlugin();
+        if (plugin == null)
+            throw new QuartzRuntimeException("No JobMetricsPlugin is configured in scheduler " +
+                    getSchedulerNameAndId());
+        return plugin;
+    }
+
+    /**
+     * @return the execution metrics of each job that has run since the scheduler started, sorted by job key.
+     * @throws QuartzRuntimeException if the scheduler has no JobMetricsPlugin.
+     */
+    public List<JobMetricsSnapshot> getJobMetrics() {
+        return getRequiredJobMetricsPlugin().getJobMetricsSnapshots();
+    }
+
+    /**
+     * @return the execution metrics of each job group, sorted by group name.
+     * @throws QuartzRuntimeException if the scheduler has no JobMetricsPlugin.
+     */
+    public List<JobMetricsSnapshot> getJobGroupMetrics() {
+        return getRequiredJobMetricsPlugin().getJobGroupMetricsSnapshots();
+    }
+
+    /**
+     * @return the execution metrics of one job, or null if it has not run since the scheduler started.
+     * @throws QuartzRuntimeException if the scheduler has no JobMetricsPlugin.
+     */
+    public JobMetricsSnapshot getJobMetrics(JobKey jobKey) {
+        JobMetrics metrics = getRequiredJobMetricsPlugin().getJobMetrics(jobKey);
+        return (metrics == null) ? null : metrics.getSnapshot();
+    }
+
+    /**
+     * @return the execution metrics of all the jobs of the scheduler combined.
+     * @throws QuartzRuntimeException if the scheduler has no JobMetricsPlugin.
+     */
+    public JobMetricsSnapshot getTotalJobMetrics() {
+        return getRequiredJobMetricsPlugin().getTotalMetrics().getSnapshot();
+    }
+
     /**
      * Get a list of next fire time dates up to maxCount time. If next fire time needed
      * before maxCount, then there should be a null object in the last element of the list.
@@ -678,25 +964,44 @@ public class SchedulerTemplate {
     }
 
     /**
-     * Get a list of next fire time dates up to maxCount time. If next fire time needed
-     * before maxCount, then there should be a null object in the last element of the list.
+     * Get a list of next fire time dates up to maxCount time, leaving out the dates excluded by the trigger's
+     * calendar. Excluded dates are skipped while computing, so the list is shorter than maxCount only when the
+     * trigger does not fire that many more times.
      */
     public List<Date> getNextFireTimesWithCalendar(Trigger trigger, Date startTime, int maxCount) {
-        List<Date> dates = getNextFireTimes(trigger, startTime, maxCount);
-        String calName = trigger.getCalendarName();
-        if (calName == null) {
-            return dates;
-        }
-
-        // Else check if dates has excluded by calendar or not.
-        Calendar cal = getCalendar(calName);
-        List<Date> result = new ArrayList<Date>();
-        for (Date dt : dates) {
-            if (cal.isTimeIncluded(dt.getTime())) {
-                result.add(dt);
-            }
+        return new FireTimeForecaster(this).getNextFireTimes(trigger, startTime, maxCount);
+    }
+
+    /**
+     * Get the upcoming fires of all the triggers from fromTime (inclusive) to toTime (exclusive), merged in time
+     * order and up to maxCount fires. Calendar exclusions are applied, and paused, completed or errored triggers are
+     * left out since they won't fire.
+     */
+    public List<ForecastFire> getFireTimeline(Date fromTime, Date toTime, int maxCount) {
+        SchedulerSnapshot snapshot = snapshot();
+        List<Trigger> triggers = new ArrayList<Trigger>();
+        for (Trigger trigger : snapshot.getTriggers()) {
+            TriggerState state = snapshot.getTriggerState(trigger.getKey());
+            if (state == TriggerState.NORMAL || state == TriggerState.BLOCKED)
+                triggers.add(trigger);
         }
-        return result;
+        return new FireTimeForecaster(this).getTimeline(triggers, fromTime, toTime, maxCount);
+    }
+
+    /**
+     * Predict how many jobs will run at once in each bucket of bucketSizeInMillis from fromTime to toTime, against
+     * the thread pool size, from the fire timeline (up to maxFires fires) and the run times recorded by the
+     * JobMetricsPlugin if the scheduler has one. See LoadForecaster.
+     */
+    public LoadForecast getLoadForecast(Date fromTime, Date toTime, long bucketSizeInMillis, int maxFires,
+                                        long defaultRunTimeInMillis) {
+        List<ForecastFire> fires = getFireTimeline(fromTime, toTime, maxFires);
+        // Plugins are not serializable, so they can only be read from a local scheduler.
+        JobMetricsPlugin jobMetricsPlugin = (scheduler instanceof RemoteScheduler) ? null : getJobMetricsPlugin();
+        int threadPoolSize = getSchedulerMetaData().getThreadPoolSize();
+        LoadForecaster loadForecaster = new LoadForecaster(jobMetricsPlugin, defaultRunTimeInMillis);
+        return loadForecaster.forecast(fires, fromTime, toTime, bucketSizeInMillis, threadPoolSize,
+                fires.size() >= maxFires);
     }
 
     /**
@@ -742,17 +1047,15 @@ public class SchedulerTemplate {
 
     public List<Trigger> getPausedTriggers() {
         try {
-            List<Trigger> result = new ArrayList<Trigger>();
-            List<String> groups = scheduler.getTriggerGroupNames();
-            for (String group : groups) {
-                Set<TriggerKey> triggerKeys = scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group));
-                for (TriggerKey key : triggerKeys) {
-                    if (scheduler.getTriggerState(key) == TriggerState.PAUSED) {
-                        result.add(scheduler.getTrigger(key));
-                    }
+            List<TriggerKey> keys = getTriggerKeysOfGroups(parallelLookup, scheduler.getTriggerGroupNames());
+            return parallelLookup.lookupAll(keys, new ParallelLookup.Lookup<TriggerKey, Trigger>() {
+                @Override
+                public Trigger lookup(TriggerKey key) throws SchedulerException {
+                    if (scheduler.getTriggerState(key) == TriggerState.PAUSED)
+                        return scheduler.getTrigger(key);
+                    return null;
                 }
-            }
-            return result;
+            });
         } catch (SchedulerException e) {
             throw new QuartzRuntimeException(e);
         }
@@ -773,6 +1076,202 @@ public class SchedulerTemplate {
         }
     }
 
+    /**
+     * Find the triggers selected by a filter, see {@link TriggerFilter} for how each condition is checked.
+     */
+    public List<TriggerKey> findTriggerKeys(TriggerFilter filter) {
+        return new ArrayList<TriggerKey>(findTriggers(filter, false).keySet());
+    }
+
+    /**
+     * Find the triggers selected by a filter, each with the key of its job if withJobKeys is true, or else with null
+     * when the filter has no condition that needs more than the trigger keys.
+     */
+    private Map<TriggerKey, JobKey> findTriggers(TriggerFilter filter, boolean withJobKeys) {
+        try {
+            Map<TriggerKey, JobKey> result = new LinkedHashMap<TriggerKey, JobKey>();
+            if (!withJobKeys && filter.getStates() == null && filter.getJobClassName() == null) {
+                Collection<TriggerKey> candidates = filter.getKeys();
+                if (candidates == null)
+                    candidates = scheduler.getTriggerKeys(filter.getGroupMatcher());
+                for (TriggerKey key : candidates) {
+                    if (filter.matchesKey(key))
+                        result.put(key, null);
+                }
+                return result;
+            }
+
+            // The states, job classes and job keys are read from a snapshot, in bulk instead of once per trigger.
+            SchedulerSnapshot snapshot = snapshot();
+            for (Trigger trigger : snapshot.getTriggers()) {
+                TriggerKey key = trigger.getKey();
+                if (!filter.matchesKey(key))
+                    continue;
+                if (filter.getStates() != null && !filter.getStates().contains(snapshot.getTriggerState(key)))
+                    continue;
+                if (filter.getJobClassName() != null) {
+                    JobDetail jobDetail = snapshot.getJobDetail(trigger.getJobKey());
+                    if (jobDetail == null || !jobDetail.getJobClass().getName().equals(filter.getJobClassName()))
+                        continue;
+                }
+                result.put(key, trigger.getJobKey());
+            }
+            return result;
+        } catch (SchedulerException e) {
+            throw new QuartzRuntimeException(e);
+        }
+    }
+
+    /**
+     * Pause the triggers selected by a filter. A filter with only a group matcher is done with one
+     * Scheduler.pauseTriggers(GroupMatcher) call, which also pauses the triggers added to these groups later. Else
+     * each trigger found is paused on its own, even when all the triggers of a group are found, since Quartz has no
+     * call to pause a list of triggers and a group call would also pause the triggers added to the group later.
+     */
+    public BulkOperationResult pauseTriggers(TriggerFilter filter) {
+        long startTime = System.currentTimeMillis();
+        List<TriggerKey> keys = findTriggerKeys(filter);
+        if (filter.isGroupOnly()) {
+            pauseTriggers(filter.getGroupMatcher());
+            return new BulkOperationResult("pauseTriggers", keys.size(), keys.size(), 1,
+                    System.currentTimeMillis() - startTime, Collections.<String>emptyList());
+        }
+        return changeEachTrigger("pauseTriggers", keys, startTime, new TriggerChange() {
+            @Override
+            public void change(TriggerKey key) throws SchedulerException {
+                scheduler.pauseTrigger(key);
+            }
+        });
+    }
+
+    /**
+     * Resume the triggers selected by a filter, the same way as {@link #pauseTriggers(TriggerFilter)} pauses them.
+     */
+    public BulkOperationResult resumeTriggers(TriggerFilter filter) {
+        long startTime = System.currentTimeMillis();
+        List<TriggerKey> keys = findTriggerKeys(filter);
+        if (filter.isGroupOnly()) {
+            resumeTriggers(filter.getGroupMatcher());
+            return new BulkOperationResult("resumeTriggers", keys.size(), keys.size(), 1,
+                    System.currentTimeMillis() - startTime, Collections.<String>emptyList());
+        }
+        return changeEachTrigger("resumeTriggers", keys, startTime, new TriggerChange() {
+            @Override
+            public void change(TriggerKey key) throws SchedulerException {
+                scheduler.resumeTrigger(key);
+            }
+        });
+    }
+
+    /**
+     * Remove the triggers selected by a filter with Scheduler.unscheduleJobs(List), one call and so one JobStore lock
+     * and transaction per chunk of {@link #setBulkChunkSize(int)} triggers. Jobs left without trigger are removed
+     * unless durable. If a chunk fails, its triggers are removed one by one to report the ones that fail. If some
+     * triggers of a chunk were already removed, the changed count includes them and is flagged as a maximum.
+     */
+    public BulkOperationResult unscheduleJobs(TriggerFilter filter) {
+        long startTime = System.currentTimeMillis();
+        List<TriggerKey> keys = findTriggerKeys(filter);
+        int changedCount = 0;
+        boolean changedCountMaximum = false;
+        int storeCallCount = 0;
+        List<String> failures = new ArrayList<String>();
+        for (int fromIndex = 0; fromIndex < keys.size(); fromIndex += bulkChunkSize) {
+            List<TriggerKey> chunk = keys.subList(fromIndex, Math.min(fromIndex + bulkChunkSize, keys.size()));
+            storeCallCount++;
+            try {
+                // False means some of them were already removed, but not which ones, so the count is a maximum.
+                if (!scheduler.unscheduleJobs(new ArrayList<TriggerKey>(chunk)))
+                    changedCountMaximum = true;
+                changedCount += chunk.size();
+            } catch (SchedulerException e) {
+                BulkOperationResult chunkResult = changeEachTrigger("unscheduleJobs", chunk, startTime,
+                        new TriggerChange() {
+                            @Override
+                            public void change(TriggerKey key) throws SchedulerException {
+                                scheduler.unscheduleJob(key);
+                            }
+                        });
+                changedCount += chunkResult.getChangedCount();
+                storeCallCount += chunkResult.getStoreCallCount();
+                failures.addAll(chunkResult.getFailures());
+            }
+        }
+        return new BulkOperationResult("unscheduleJobs", keys.size(), changedCount, changedCountMaximum,
+                storeCallCount, System.currentTimeMillis() - startTime, failures);
+    }
+
+    /**
+     * Delete the jobs of the triggers selected by a filter with Scheduler.deleteJobs(List), one call per chunk of
+     * {@link #setBulkChunkSize(int)} jobs. The job keys are read with the triggers from one {@link #snapshot()}.
+     * Deleting a job also removes its other triggers, even the ones not matching the filter. As with
+     * {@link #unscheduleJobs(TriggerFilter)}, the changed count is flagged as a maximum if some jobs were already gone.
+     */
+    public BulkOperationResult deleteJobs(TriggerFilter filter) {
+        long startTime = System.currentTimeMillis();
+        List<JobKey> jobKeys = new ArrayList<JobKey>(new LinkedHashSet<JobKey>(findTriggers(filter, true).values()));
+        int changedCount = 0;
+        boolean changedCountMaximum = false;
+        int storeCallCount = 0;
+        List<String> failures = new ArrayList<String>();
+        for (int fromIndex = 0; fromIndex < jobKeys.size(); fromIndex += bulkChunkSize) {
+            List<JobKey> chunk = jobKeys.subList(fromIndex, Math.min(fromIndex + bulkChunkSize, jobKeys.size()));
+            storeCallCount++;
+            try {
+                if (!scheduler.deleteJobs(new ArrayList<JobKey>(chunk)))
+                    changedCountMaximum = true;
+                changedCount += chunk.size();
+            } catch (SchedulerException e) {
+                for (JobKey key : chunk) {
+                    storeCallCount++;
+                    try {
+                        scheduler.deleteJob(key);
+                        changedCount++;
+                    } catch (SchedulerException e2) {
+                        failures.add(key + ": " + e2.getMessage());
+                    }
+                }
+            }
+        }
+        return new BulkOperationResult("deleteJobs", jobKeys.size(), changedCount, changedCountMaximum,
+                storeCallCount, System.currentTimeMillis() - startTime, failures);
+    }
+
+    /**
+     * Set how many triggers or jobs {@link #unscheduleJobs(TriggerFilter)} and {@link #deleteJobs(TriggerFilter)}
+     * give to the scheduler per call. Default is 500. Larger chunks take the JobStore lock fewer times, but hold it
+     * longer each time.
+     */
+    public void setBulkChunkSize(int bulkChunkSize) {
+        if (bulkChunkSize < 1)
+            throw new IllegalArgumentException("Bulk chunk size must be at least 1: " + bulkChunkSize);
+        this.bulkChunkSize = bulkChunkSize;
+    }
+
+    public int getBulkChunkSize() {
+        return bulkChunkSize;
+    }
+
+    private BulkOperationResult changeEachTrigger(String operation, List<TriggerKey> keys, long startTime,
+                                                  TriggerChange triggerChange) {
+        int changedCount = 0;
+        List<String> failures = new ArrayList<String>();
+        for (TriggerKey key : keys) {
+            try {
+                triggerChange.change(key);
+                changedCount++;
+            } catch (SchedulerException e) {
+                failures.add(key + ": " + e.getMessage());
+            }
+        }
+        return new BulkOperationResult(operation, keys.size(), changedCount, keys.size(),
+                System.currentTimeMillis() - startTime, failures);
+    }
+
+    private static interface TriggerChange {
+        void change(TriggerKey key) throws SchedulerException;
+    }
+
     public Date scheduleCronJob(String name, String cron, Class<? extends Job> jobClass) {
         return scheduleCronJob(JobKey.jobKey(name), cron, jobClass, null, new Date(), null);
     }
@@ -0,0 +1,326 @@
+package myschedule.quartz.extra;
+
+import org.quartz.Calendar;
+import org.quartz.Job;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.spi.MutableTrigger;
+import org.quartz.spi.OperableTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Collects many jobs with their triggers and schedules them with {@link SchedulerTemplate#scheduleJobs(Map, boolean)},
+ * a chunk at a time, instead of one scheduleJob() call per job. With a JDBC JobStore each chunk is stored in one
+ * transaction, so loading thousands of jobs from a script costs a few transactions instead of one per job. Get one
+ * from {@link SchedulerTemplate#batch()}:
+ * <pre>
+ * SchedulingBatch.Result result = scheduler.batch()
+ *     .addCronJob("job1", "0 0 * * * ?", MyJob.class)
+ *     .addSimpleJob("job2", -1, 60000, MyJob.class)
+ *     .commit();
+ * </pre>
+ * <p/>
+ * <p>Every item is validated when it's added, the same way the scheduler would (job and trigger settings, calendar
+ * exists, the trigger fires at least once, no key used twice in the batch), so one bad item is reported without
+ * failing the others. A chunk can still be refused by the JobStore, for example when a job already exists and
+ * replace is false; its items are then scheduled one by one, so only the items that fail are reported.
+ * <p/>
+ * <p>A batch is not thread safe, and can be committed only once.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class SchedulingBatch {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulingBatch.class);
+
+    private final SchedulerTemplate scheduler;
+    private final Map<JobKey, Set<Trigger>> items = new LinkedHashMap<JobKey, Set<Trigger>>();
+    private final Map<JobKey, JobDetail> jobDetails = new HashMap<JobKey, JobDetail>();
+    private final Set<TriggerKey> triggerKeys = new HashSet<TriggerKey>();
+    private final List<Failure> failures = new ArrayList<Failure>();
+    private Set<String> calendarNames;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean replace;
+    private boolean committed;
+
+    public SchedulingBatch(SchedulerTemplate scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /** Number of jobs stored per scheduleJobs() call. Default to {@link #DEFAULT_CHUNK_SIZE}. */
+    public SchedulingBatch chunkSize(int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /** Replace jobs and triggers that already exist in the scheduler. Default to false. */
+    public SchedulingBatch replace(boolean replace) {
+        this.replace = replace;
+        return this;
+    }
+
+    public SchedulingBatch addCronJob(String name, String cron, Class<? extends Job> jobClass) {
+        return addCronJob(JobKey.jobKey(name), cron, jobClass, null, null, null);
+    }
+
+    public SchedulingBatch addCronJob(String name, String cron, Class<? extends Job> jobClass,
+                                      Map<String, Object> dataMap) {
+        return addCronJob(JobKey.jobKey(name), cron, jobClass, dataMap, null, null);
+    }
+
+    /** Same as SchedulerTemplate.scheduleCronJob(), the trigger has the same key as the job. */
+    public SchedulingBatch addCronJob(JobKey jobKey, String cron, Class<? extends Job> jobClass,
+                                      Map<String, Object> dataMap, Date startTime, Date endTime) {
+        MutableTrigger trigger;
+        try {
+            trigger = SchedulerTemplate.createCronTrigger(
+                    TriggerKey.triggerKey(jobKey.getName(), jobKey.getGroup()), cron, startTime, endTime);
+        } catch (QuartzRuntimeException e) {
+            failures.add(new Failure(jobKey, "Invalid cron expression: " + cron, e));
+            return this;
+        }
+        return addJob(SchedulerTemplate.createJobDetail(jobKey, jobClass, false, dataMap), trigger);
+    }
+
+    public SchedulingBatch addSimpleJob(String name, int repeatTotalCount, long repeatInterval,
+                                        Class<? extends Job> jobClass) {
+        return addSimpleJob(JobKey.jobKey(name), repeatTotalCount, repeatInterval, jobClass, null, null, null);
+    }
+
+    public SchedulingBatch addSimpleJob(String name, int repeatTotalCount, long repeatInterval,
+                                        Class<? extends Job> jobClass, Map<String, Object> dataMap) {
+        return addSimpleJob(JobKey.jobKey(name), repeatTotalCount, repeatInterval, jobClass, dataMap, null, null);
+    }
+
+    /** Same as SchedulerTemplate.scheduleSimpleJob(), the trigger has the same key as the job. */
+    public SchedulingBatch addSimpleJob(JobKey jobKey, int repeatTotalCount, long repeatInterval,
+                                        Class<? extends Job> jobClass, Map<String, Object> dataMap, Date startTime,
+                                        Date endTime) {
+        MutableTrigger trigger = SchedulerTemplate.createSimpleTrigger(
+                TriggerKey.triggerKey(jobKey.getName(), jobKey.getGroup()), repeatTotalCount, repeatInterval,
+                startTime, endTime);
+        return addJob(SchedulerTemplate.createJobDetail(jobKey, jobClass, false, dataMap), trigger);
+    }
+
+    /**
+     * Add a job with its triggers. The triggers are set to fire this job. A durable job may have no trigger.
+     */
+    public SchedulingBatch addJob(JobDetail jobDetail, Trigger... triggers) {
+        checkNotCommitted();
+        JobKey jobKey = jobDetail.getKey();
+        if (jobKey == null)
+            throw new IllegalArgumentException("Job must have a key.");
+        try {
+            validate(jobDetail, triggers);
+        } catch (Exception e) {
+            failures.add(new Failure(jobKey, e.getMessage(), e));
+            return this;
+        }
+        Set<Trigger> jobTriggers = new HashSet<Trigger>();
+        for (Trigger trigger : triggers) {
+            ((MutableTrigger) trigger).setJobKey(jobKey);
+            jobTriggers.add(trigger);
+            triggerKeys.add(trigger.getKey());
+        }
+        items.put(jobKey, jobTriggers);
+        jobDetails.put(jobKey, jobDetail);
+        return this;
+    }
+
+    private void validate(JobDetail jobDetail, Trigger[] triggers) throws SchedulerException {
+        if (items.containsKey(jobDetail.getKey()))
+            throw new SchedulerException("Job " + jobDetail.getKey() + " is already in this batch.");
+        if (!jobDetail.isDurable() && triggers.length == 0)
+            throw new SchedulerException("A job that is not durable must have at least one trigger.");
+        Set<TriggerKey> jobTriggerKeys = new HashSet<TriggerKey>();
+        for (Trigger trigger : triggers) {
+            if (triggerKeys.contains(trigger.getKey()) || !jobTriggerKeys.add(trigger.getKey()))
+                throw new SchedulerException("Trigger " + trigger.getKey() + " is already in this batch.");
+        }
+        if (jobDetail.getJobClass() == null)
+            throw new SchedulerException("Job " + jobDetail.getKey() + " has no job class.");
+
+        // Same checks as the scheduler does when storing, on a copy since computing the first fire time changes it.
+        for (Trigger trigger : triggers) {
+            OperableTrigger copy = (OperableTrigger) ((OperableTrigger) trigger).clone();
+            copy.setJobKey(jobDetail.getKey());
+            copy.validate();
+            Calendar calendar = null;
+            if (trigger.getCalendarName() != null) {
+                if (!getCalendarNames().contains(trigger.getCalendarName()))
+                    throw new SchedulerException("Calendar not found: " + trigger.getCalendarName());
+                calendar = scheduler.getCalendar(trigger.getCalendarName());
+            }
+            if (copy.computeFirstFireTime(calendar) == null)
+                throw new SchedulerException("Based on configured schedule, trigger " + trigger.getKey() +
+                        " will never fire.");
+        }
+    }
+
+    private Set<String> getCalendarNames() {
+        if (calendarNames == null)
+            calendarNames = new HashSet<String>(scheduler.getCalendarNames());
+        return calendarNames;
+    }
+
+    private void checkNotCommitted() {
+        if (committed)
+            throw new IllegalStateException("This batch has already been committed.");
+    }
+
+    /** @return the number of valid jobs waiting to be committed. */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Schedule all the valid jobs, one chunk per scheduleJobs() call.
+     *
+     * @return the counts and the failures of all the items added, including the ones refused when added.
+     */
+    public Result commit() {
+        checkNotCommitted();
+        committed = true;
+        long startTime = System.currentTimeMillis();
+        int chunkCount = 0;
+        int scheduledCount = 0;
+        List<JobKey> jobKeys = new ArrayList<JobKey>(items.keySet());
+        for (int fromIndex = 0; fromIndex < jobKeys.size(); fromIndex += chunkSize) {
+            List<JobKey> chunk = jobKeys.subList(fromIndex, Math.min(fromIndex + chunkSize, jobKeys.size()));
+            Map<JobDetail, Set<? extends Trigger>> triggersAndJobs =
+                    new LinkedHashMap<JobDetail, Set<? extends Trigger>>();
+            for (JobKey jobKey : chunk)
+                triggersAndJobs.put(jobDetails.get(jobKey), items.get(jobKey));
+            chunkCount++;
+            try {
+                scheduler.scheduleJobs(triggersAndJobs, replace);
+                scheduledCount += chunk.size();
+            } catch (QuartzRuntimeException e) {
+                logger.warn("Failed to schedule a chunk of {} jobs at once, scheduling them one by one. {}",
+                        chunk.size(), e.getMessage());
+                scheduledCount += scheduleOneByOne(triggersAndJobs);
+            }
+        }
+        long elapsedInMillis = System.currentTimeMillis() - startTime;
+        Result result = new Result(items.size() + failures.size(), scheduledCount, chunkCount, elapsedInMillis,
+                failures);
+        logger.info("Committed scheduling batch: {}", result);
+        return result;
+    }
+
+    private int scheduleOneByOne(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs) {
+        int scheduledCount = 0;
+        for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet()) {
+            JobDetail jobDetail = entry.getKey();
+            try {
+                if (entry.getValue().isEmpty())
+                    scheduler.addJob(jobDetail, replace);
+                else
+                    scheduler.scheduleJob(jobDetail, entry.getValue(), replace);
+                scheduledCount++;
+            } catch (QuartzRuntimeException e) {
+                Throwable cause = (e.getCause() == null) ? e : e.getCause();
+                failures.add(new Failure(jobDetail.getKey(), cause.getMessage(), cause));
+            }
+        }
+        return scheduledCount;
+    }
+
+    /**
+     * A job of the batch that could not be scheduled.
+     */
+    public static class Failure implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final JobKey jobKey;
+        private final String message;
+        private final Throwable exception;
+
+        public Failure(JobKey jobKey, String message, Throwable exception) {
+            this.jobKey = jobKey;
+            this.message = message;
+            this.exception = exception;
+        }
+
+        public JobKey getJobKey() {
+            return jobKey;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public Throwable getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return jobKey + ": " + message;
+        }
+    }
+
+    /**
+     * The outcome of a batch commit.
+     */
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int itemCount;
+        private final int scheduledCount;
+        private final int chunkCount;
+        private final long elapsedInMillis;
+        private final List<Failure> failures;
+
+        public Result(int itemCount, int scheduledCount, int chunkCount, long elapsedInMillis, List<Failure> failures) {
+            this.itemCount = itemCount;
+            this.scheduledCount = scheduledCount;
+            this.chunkCount = chunkCount;
+            this.elapsedInMillis = elapsedInMillis;
+            this.failures = new ArrayList<Failure>(failures);
+        }
+
+        /** @return the number of jobs added to the batch, valid or not. */
+        public int getItemCount() {
+            return itemCount;
+        }
+
+        public int getScheduledCount() {
+            return scheduledCount;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public long getElapsedInMillis() {
+            return elapsedInMillis;
+        }
+
+        /** @return the jobs scheduled per second. */
+        public double getThroughput() {
+            return scheduledCount * 1000.0 / Math.max(1, elapsedInMillis);
+        }
+
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        @Override
+        public String toString() {
+            return "SchedulingBatch.Result[items=" + itemCount + ", scheduled=" + scheduledCount + ", failed=" +
+                    failures.size() + ", chunks=" + chunkCount + ", elapsedInMillis=" + elapsedInMillis +
+                    ", jobsPerSec=" + String.format("%.1f", getThroughput()) + "]";
+        }
+    }
+}
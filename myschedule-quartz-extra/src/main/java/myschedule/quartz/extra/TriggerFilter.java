@@ -0,0 +1,117 @@
+package myschedule.quartz.extra;
+
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects triggers for the bulk operations of SchedulerTemplate, such as
+ * {@link SchedulerTemplate#pauseTriggers(TriggerFilter)} and {@link SchedulerTemplate#unscheduleJobs(TriggerFilter)}.
+ * All the conditions set must match; a filter without any condition selects all the triggers. For example:
+ * <pre>
+ * scheduler.pauseTriggers(new TriggerFilter()
+ *     .group(GroupMatcher.triggerGroupStartsWith("report"))
+ *     .namePattern("daily.*")
+ *     .state(TriggerState.NORMAL));
+ * </pre>
+ * <p/>
+ * <p>The group matcher is given to the JobStore, so only the trigger keys of the matching groups are read. The name
+ * pattern is checked on the keys. The state and the job class are checked on a {@link SchedulerTemplate#snapshot()},
+ * which reads all the triggers, their states and the jobs in bulk, instead of looking them up once per trigger.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class TriggerFilter {
+    private GroupMatcher<TriggerKey> groupMatcher = GroupMatcher.anyTriggerGroup();
+    private Set<TriggerKey> triggerKeys;
+    private Pattern namePattern;
+    private String jobClassName;
+    private Set<TriggerState> states;
+
+    /** Only the triggers in the groups matched. Default to all groups. */
+    public TriggerFilter group(GroupMatcher<TriggerKey> groupMatcher) {
+        this.groupMatcher = groupMatcher;
+        return this;
+    }
+
+    /** Only the triggers in this group. */
+    public TriggerFilter group(String group) {
+        return group(GroupMatcher.triggerGroupEquals(group));
+    }
+
+    /** Only these triggers, such as the ones selected in a table. No group is listed then. */
+    public TriggerFilter keys(Collection<TriggerKey> triggerKeys) {
+        this.triggerKeys = new LinkedHashSet<TriggerKey>(triggerKeys);
+        return this;
+    }
+
+    /** Only the triggers with a name fully matching this regular expression. */
+    public TriggerFilter namePattern(String regex) {
+        this.namePattern = Pattern.compile(regex);
+        return this;
+    }
+
+    /** Only the triggers of jobs of this class. */
+    public TriggerFilter jobClass(Class<?> jobClass) {
+        return jobClassName(jobClass.getName());
+    }
+
+    /** Only the triggers of jobs of this class name, so it can be used without loading the class. */
+    public TriggerFilter jobClassName(String jobClassName) {
+        this.jobClassName = jobClassName;
+        return this;
+    }
+
+    /** Only the triggers in one of these states. */
+    public TriggerFilter state(TriggerState state, TriggerState... moreStates) {
+        this.states = EnumSet.of(state, moreStates);
+        return this;
+    }
+
+    public GroupMatcher<TriggerKey> getGroupMatcher() {
+        return groupMatcher;
+    }
+
+    public Set<TriggerKey> getKeys() {
+        return triggerKeys;
+    }
+
+    public String getJobClassName() {
+        return jobClassName;
+    }
+
+    public Set<TriggerState> getStates() {
+        return states;
+    }
+
+    /**
+     * @return true if only the group matcher is set, so the whole selection is done by the JobStore and the Quartz
+     * group operations, such as Scheduler.pauseTriggers(GroupMatcher), can be used as is.
+     */
+    public boolean isGroupOnly() {
+        return triggerKeys == null && namePattern == null && jobClassName == null && states == null;
+    }
+
+    /** @return true if the key matches the group matcher, the keys and the name pattern. */
+    public boolean matchesKey(TriggerKey triggerKey) {
+        if (triggerKeys != null && !triggerKeys.contains(triggerKey))
+            return false;
+        if (!groupMatcher.isMatch(triggerKey))
+            return false;
+        return namePattern == null || namePattern.matcher(triggerKey.getName()).matches();
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerFilter[group=" + groupMatcher + (triggerKeys == null ? "" : ", keys=" + triggerKeys.size()) +
+                (namePattern == null ? "" : ", name=" + namePattern) +
+                (jobClassName == null ? "" : ", jobClass=" + jobClassName) +
+                (states == null ? "" : ", states=" + states) + "]";
+    }
+}
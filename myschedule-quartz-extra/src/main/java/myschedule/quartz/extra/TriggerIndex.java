@@ -0,0 +1,525 @@
+package myschedule.quartz.extra;
+
+import org.quartz.*;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory index of all the triggers of a scheduler, with what a trigger list shows about each one: next and
+ * previous fire time, state, job class and calendar. Reading it never goes to the job store, so a UI can list or page
+ * through the triggers without a full store scan each time.
+ * <p/>
+ * <p>The index is built from {@link SchedulerTemplate#snapshot()} and then kept current by a scheduler listener and a
+ * trigger listener: a scheduling adds the trigger it carries, pausing and resuming reload the triggers concerned, an
+ * unscheduling removes its trigger, and a firing updates the fire times of its trigger. The listeners can only be added to a local scheduler. A reconcile pass compares the
+ * index against a new snapshot every <code>reconcileIntervalInSecs</code>, which corrects what the listeners can't
+ * see, such as triggers changed by other nodes of a cluster, or all changes of a remote scheduler. A change seen by a
+ * listener while a reconcile is running is not undone by that reconcile.
+ * <p/>
+ * <p>Call {@link #start()} once after creating the index. Until the first build is done {@link #isReady()} returns
+ * false, and the caller should read the scheduler directly.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class TriggerIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TriggerIndex.class);
+
+    private final SchedulerTemplate scheduler;
+    private final long reconcileIntervalInSecs;
+    private final String listenerName = TriggerIndex.class.getName() + "@" + System.identityHashCode(this);
+    private final ConcurrentSkipListMap<TriggerKey, Entry> entries = new ConcurrentSkipListMap<TriggerKey, Entry>();
+    private final ConcurrentMap<JobKey, String> jobClassNames = new ConcurrentHashMap<JobKey, String>();
+    // Triggers removed by the listeners while a reconcile runs, with the update sequence of the removal, so that the
+    // reconcile, which may have read them before they were removed, does not add them back. Only that reconcile needs
+    // them, so they are dropped when it ends, and a removal seen while no reconcile runs is not kept.
+    private final ConcurrentMap<TriggerKey, Long> removedKeys = new ConcurrentHashMap<TriggerKey, Long>();
+    private final AtomicLong updateSequence = new AtomicLong();
+    private volatile boolean reconciling;
+    private volatile boolean ready;
+    private volatile boolean listening;
+    private volatile Date lastReconcileTime;
+    private ScheduledExecutorService reconcileExecutor;
+
+    public TriggerIndex(SchedulerTemplate scheduler, long reconcileIntervalInSecs) {
+        this.scheduler = scheduler;
+        this.reconcileIntervalInSecs = reconcileIntervalInSecs;
+    }
+
+    /**
+     * Add the listeners if the scheduler is local, and build the index in a background thread, which then reconciles
+     * it every reconcileIntervalInSecs if that's more than zero.
+     */
+    public synchronized void start() {
+        try {
+            ListenerManager listenerManager = scheduler.getListenerManager();
+            listenerManager.addSchedulerListener(new IndexSchedulerListener());
+            listenerManager.addTriggerListener(new IndexTriggerListener());
+            listening = true;
+        } catch (RuntimeException e) {
+            // A remote scheduler does not support listeners.
+            logger.info("Unable to listen to scheduler changes, trigger index will only be updated by reconcile. {}",
+                    e.getMessage());
+        }
+
+        reconcileExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TriggerIndex-" + scheduler.getSchedulerName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Runnable reconcileTask = new Runnable() {
+            @Override
+            public void run() {
+                // Don't let an error stop the next reconciles.
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to reconcile trigger index of scheduler {}", scheduler.getSchedulerName(), e);
+                }
+            }
+        };
+        if (reconcileIntervalInSecs > 0)
+            reconcileExecutor.scheduleWithFixedDelay(reconcileTask, 0, reconcileIntervalInSecs, TimeUnit.SECONDS);
+        else
+            reconcileExecutor.execute(reconcileTask);
+    }
+
+    /** Remove the listeners and stop reconciling. The index content is kept but no longer updated. */
+    public synchronized void stop() {
+        if (reconcileExecutor != null) {
+            reconcileExecutor.shutdownNow();
+            reconcileExecutor = null;
+        }
+        if (listening) {
+            listening = false;
+            try {
+                ListenerManager listenerManager = scheduler.getListenerManager();
+                SchedulerListener schedulerListener = findSchedulerListener(listenerManager);
+                if (schedulerListener != null)
+                    listenerManager.removeSchedulerListener(schedulerListener);
+                listenerManager.removeTriggerListener(listenerName);
+            } catch (RuntimeException e) {
+                logger.debug("Failed to remove trigger index listeners.", e);
+            }
+        }
+    }
+
+    private SchedulerListener findSchedulerListener(ListenerManager listenerManager) {
+        for (SchedulerListener listener : listenerManager.getSchedulerListeners()) {
+            if (listener instanceof IndexSchedulerListener && ((IndexSchedulerListener) listener).getIndex() == this)
+                return listener;
+        }
+        return null;
+    }
+
+    /** @return true once the index has been built. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** @return true if the index is updated by listeners between reconciles. */
+    public boolean isListening() {
+        return listening;
+    }
+
+    public Date getLastReconcileTime() {
+        return lastReconcileTime;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** @return the entry of a trigger, or null if it's not in the index. */
+    public Entry getEntry(TriggerKey triggerKey) {
+        return entries.get(triggerKey);
+    }
+
+    /** @return all the entries, sorted by trigger key. */
+    public List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /** @return at most limit entries, starting at offset, sorted by trigger key. */
+    public List<Entry> getEntries(int offset, int limit) {
+        List<Entry> result = new ArrayList<Entry>(Math.min(limit, entries.size()));
+        Iterator<Entry> iterator = entries.values().iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); i++)
+            iterator.next();
+        while (result.size() < limit && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+
+    /** @return the number of triggers in each state, with every state present. */
+    public Map<TriggerState, Integer> countByState() {
+        Map<TriggerState, Integer> result = new EnumMap<TriggerState, Integer>(TriggerState.class);
+        for (TriggerState state : TriggerState.values())
+            result.put(state, 0);
+        for (Entry entry : entries.values())
+            result.put(entry.getState(), result.get(entry.getState()) + 1);
+        return result;
+    }
+
+    /**
+     * Compare the index against a new snapshot of the scheduler, and correct the entries that differ. The first call
+     * builds the index.
+     *
+     * @return the number of entries that were added, updated or removed.
+     */
+    public synchronized int reconcile() {
+        // Set before reading the sequence, so that a removal not seen by this reconcile is kept in removedKeys.
+        reconciling = true;
+        try {
+            return reconcile(updateSequence.get());
+        } finally {
+            // Cleared after the flag, so that a removal that saw the flag set is dropped here.
+            reconciling = false;
+            removedKeys.clear();
+        }
+    }
+
+    private int reconcile(long startSequence) {
+        SchedulerSnapshot snapshot = scheduler.snapshot();
+        int changes = 0;
+
+        Map<JobKey, String> snapshotJobClassNames = new HashMap<JobKey, String>();
+        for (JobDetail jobDetail : snapshot.getJobDetails())
+            snapshotJobClassNames.put(jobDetail.getKey(), jobDetail.getJobClass().getName());
+        jobClassNames.putAll(snapshotJobClassNames);
+        jobClassNames.keySet().retainAll(snapshotJobClassNames.keySet());
+
+        Set<TriggerKey> snapshotKeys = new HashSet<TriggerKey>();
+        for (Trigger trigger : snapshot.getTriggers()) {
+            TriggerKey key = trigger.getKey();
+            snapshotKeys.add(key);
+            Entry newEntry = new Entry(trigger, snapshotJobClassNames.get(trigger.getJobKey()),
+                    snapshot.getTriggerState(key), startSequence);
+            Entry oldEntry = entries.get(key);
+            if (oldEntry == null) {
+                Long removedSequence = removedKeys.get(key);
+                if (removedSequence != null && removedSequence > startSequence)
+                    continue;
+                if (entries.putIfAbsent(key, newEntry) == null) {
+                    changes++;
+                    // The trigger may have been removed between the check and the put.
+                    removedSequence = removedKeys.get(key);
+                    if (removedSequence != null && removedSequence > startSequence)
+                        entries.remove(key, newEntry);
+                }
+            } else if (oldEntry.getUpdateSequence() <= startSequence && !oldEntry.sameAs(newEntry)) {
+                if (entries.replace(key, oldEntry, newEntry))
+                    changes++;
+            }
+        }
+        for (Entry entry : entries.values()) {
+            if (!snapshotKeys.contains(entry.getTriggerKey()) && entry.getUpdateSequence() <= startSequence) {
+                if (entries.remove(entry.getTriggerKey(), entry))
+                    changes++;
+            }
+        }
+        lastReconcileTime = snapshot.getSnapshotTime();
+        if (ready && changes > 0)
+            logger.info("Reconciled trigger index of scheduler {}: {} entries corrected.",
+                    scheduler.getSchedulerName(), changes);
+        else
+            logger.debug("Reconciled trigger index of scheduler {}: {} entries, {} changes.",
+                    new Object[]{scheduler.getSchedulerName(), entries.size(), changes});
+        ready = true;
+        return changes;
+    }
+
+    /** Reload one trigger from the scheduler. */
+    private void reload(TriggerKey triggerKey) {
+        long sequence = updateSequence.incrementAndGet();
+        Trigger trigger = scheduler.getTrigger(triggerKey);
+        if (trigger == null) {
+            remove(triggerKey, sequence);
+        } else {
+            TriggerState state = scheduler.getTriggerState(triggerKey);
+            entries.put(triggerKey, new Entry(trigger, getJobClassName(trigger.getJobKey()), state, sequence));
+        }
+    }
+
+    private void reloadGroup(String triggerGroup) {
+        GroupMatcher<TriggerKey> matcher = (triggerGroup == null) ?
+                GroupMatcher.anyTriggerGroup() : GroupMatcher.triggerGroupEquals(triggerGroup);
+        for (TriggerKey triggerKey : scheduler.getTriggerKeys(matcher))
+            reload(triggerKey);
+    }
+
+    private void reloadJob(JobKey jobKey) {
+        for (Trigger trigger : scheduler.getTriggersOfJob(jobKey))
+            reload(trigger.getKey());
+    }
+
+    private void reloadJobGroup(String jobGroup) {
+        for (Entry entry : entries.values()) {
+            if (jobGroup == null || jobGroup.equals(entry.getJobKey().getGroup()))
+                reload(entry.getTriggerKey());
+        }
+    }
+
+    private void remove(TriggerKey triggerKey, long sequence) {
+        removedKeys.put(triggerKey, sequence);
+        entries.remove(triggerKey);
+        // A reconcile that starts after this reads a later sequence, so it doesn't need the removal.
+        if (!reconciling)
+            removedKeys.remove(triggerKey, sequence);
+    }
+
+    /** @return the number of removals kept for a running reconcile. */
+    int getRemovedKeyCount() {
+        return removedKeys.size();
+    }
+
+    private String getJobClassName(JobKey jobKey) {
+        String jobClassName = jobClassNames.get(jobKey);
+        if (jobClassName == null) {
+            JobDetail jobDetail = scheduler.getJobDetail(jobKey);
+            if (jobDetail != null) {
+                jobClassName = jobDetail.getJobClass().getName();
+                jobClassNames.put(jobKey, jobClassName);
+            }
+        }
+        return jobClassName;
+    }
+
+    private class IndexSchedulerListener extends SimpleSchedulerListener {
+        private TriggerIndex getIndex() {
+            return TriggerIndex.this;
+        }
+
+        // A failed update only leaves the entry stale until the next reconcile, so it must not fail the scheduler
+        // call that notified it.
+        private void reloadQuietly(TriggerKey triggerKey) {
+            try {
+                reload(triggerKey);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to update trigger index for {}", triggerKey, e);
+            }
+        }
+
+        @Override
+        public void jobScheduled(Trigger trigger) {
+            // Built from the trigger given, without going to the job store, so that scheduling many jobs does not
+            // cost a store read for each. A new trigger is taken as NORMAL and a replaced one keeps its state; one
+            // stored PAUSED because its group is paused is corrected by the next reconcile, and so is a job class
+            // that isn't known yet.
+            TriggerKey triggerKey = trigger.getKey();
+            Entry oldEntry = entries.get(triggerKey);
+            TriggerState state = (oldEntry == null) ? TriggerState.NORMAL : oldEntry.getState();
+            entries.put(triggerKey, new Entry(trigger, jobClassNames.get(trigger.getJobKey()), state,
+                    updateSequence.incrementAndGet()));
+        }
+
+        @Override
+        public void jobUnscheduled(TriggerKey triggerKey) {
+            remove(triggerKey, updateSequence.incrementAndGet());
+        }
+
+        @Override
+        public void triggerFinalized(Trigger trigger) {
+            // The job store may still be in the middle of removing it, so it's not reloaded.
+            remove(trigger.getKey(), updateSequence.incrementAndGet());
+        }
+
+        @Override
+        public void triggerPaused(TriggerKey triggerKey) {
+            if (triggerKey == null)
+                triggersPaused(null);
+            else
+                reloadQuietly(triggerKey);
+        }
+
+        @Override
+        public void triggerResumed(TriggerKey triggerKey) {
+            // Quartz 2.2 notifies resumeAll() with a null trigger key.
+            triggerPaused(triggerKey);
+        }
+
+        @Override
+        public void triggersPaused(String triggerGroup) {
+            try {
+                reloadGroup(triggerGroup);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to update trigger index for group {}", triggerGroup, e);
+            }
+        }
+
+        @Override
+        public void triggersResumed(String triggerGroup) {
+            triggersPaused(triggerGroup);
+        }
+
+        @Override
+        public void jobAdded(JobDetail jobDetail) {
+            jobClassNames.put(jobDetail.getKey(), jobDetail.getJobClass().getName());
+        }
+
+        @Override
+        public void jobDeleted(JobKey jobKey) {
+            jobClassNames.remove(jobKey);
+            // The triggers are unscheduled one by one before, this only catches what may have been missed.
+            long sequence = updateSequence.incrementAndGet();
+            for (Entry entry : entries.values()) {
+                if (entry.getJobKey().equals(jobKey))
+                    remove(entry.getTriggerKey(), sequence);
+            }
+        }
+
+        @Override
+        public void jobPaused(JobKey jobKey) {
+            try {
+                reloadJob(jobKey);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to update trigger index for job {}", jobKey, e);
+            }
+        }
+
+        @Override
+        public void jobResumed(JobKey jobKey) {
+            jobPaused(jobKey);
+        }
+
+        @Override
+        public void jobsPaused(String jobGroup) {
+            try {
+                reloadJobGroup(jobGroup);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to update trigger index for job group {}", jobGroup, e);
+            }
+        }
+
+        @Override
+        public void jobsResumed(String jobGroup) {
+            jobsPaused(jobGroup);
+        }
+
+        @Override
+        public void schedulingDataCleared() {
+            long sequence = updateSequence.incrementAndGet();
+            for (TriggerKey triggerKey : entries.keySet())
+                remove(triggerKey, sequence);
+            jobClassNames.clear();
+        }
+    }
+
+    private class IndexTriggerListener extends SimpleTriggerListener {
+        @Override
+        public String getName() {
+            return listenerName;
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            // Called on the worker thread with the trigger already updated for this firing, so only the fire times
+            // are copied, without going to the job store.
+            TriggerKey triggerKey = trigger.getKey();
+            Entry oldEntry = entries.get(triggerKey);
+            if (oldEntry != null) {
+                Entry newEntry = new Entry(trigger, oldEntry.getJobClassName(), oldEntry.getState(),
+                        updateSequence.incrementAndGet());
+                entries.replace(triggerKey, oldEntry, newEntry);
+            }
+        }
+    }
+
+    /**
+     * What the index keeps about one trigger. Immutable.
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final TriggerKey triggerKey;
+        private final JobKey jobKey;
+        private final String triggerClassName;
+        private final String jobClassName;
+        private final String calendarName;
+        private final Date nextFireTime;
+        private final Date previousFireTime;
+        private final TriggerState state;
+        private final long updateSequence;
+
+        Entry(Trigger trigger, String jobClassName, TriggerState state, long updateSequence) {
+            this.triggerKey = trigger.getKey();
+            this.jobKey = trigger.getJobKey();
+            this.triggerClassName = trigger.getClass().getName();
+            this.jobClassName = jobClassName;
+            this.calendarName = trigger.getCalendarName();
+            this.nextFireTime = trigger.getNextFireTime();
+            this.previousFireTime = trigger.getPreviousFireTime();
+            this.state = state;
+            this.updateSequence = updateSequence;
+        }
+
+        public TriggerKey getTriggerKey() {
+            return triggerKey;
+        }
+
+        public JobKey getJobKey() {
+            return jobKey;
+        }
+
+        public String getTriggerClassName() {
+            return triggerClassName;
+        }
+
+        /** @return the job class name, or null if the job was not found. */
+        public String getJobClassName() {
+            return jobClassName;
+        }
+
+        public String getCalendarName() {
+            return calendarName;
+        }
+
+        public Date getNextFireTime() {
+            return nextFireTime;
+        }
+
+        public Date getPreviousFireTime() {
+            return previousFireTime;
+        }
+
+        public TriggerState getState() {
+            return state;
+        }
+
+        long getUpdateSequence() {
+            return updateSequence;
+        }
+
+        boolean sameAs(Entry other) {
+            return triggerKey.equals(other.triggerKey) && jobKey.equals(other.jobKey) &&
+                    triggerClassName.equals(other.triggerClassName) && equal(jobClassName, other.jobClassName) &&
+                    equal(calendarName, other.calendarName) && equal(nextFireTime, other.nextFireTime) &&
+                    equal(previousFireTime, other.previousFireTime) && state == other.state;
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return (a == null) ? b == null : a.equals(b);
+        }
+
+        @Override
+        public String toString() {
+            return "TriggerIndex.Entry[" + triggerKey + ", state=" + state + ", nextFireTime=" + nextFireTime + "]";
+        }
+    }
+}
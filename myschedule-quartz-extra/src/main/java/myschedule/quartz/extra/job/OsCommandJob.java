@@ -1,14 +1,20 @@
 package myschedule.quartz.extra.job;
 
+import myschedule.quartz.extra.CommandGate;
+import myschedule.quartz.extra.CommandGatePlugin;
+import myschedule.quartz.extra.util.OutputCapture;
 import myschedule.quartz.extra.util.ProcessUtils;
 import myschedule.quartz.extra.util.ProcessUtils.BackgroundProcess;
 import org.quartz.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * A quartz job that execute an external command. This is an improved version in comparison to the Quartz's built-in
@@ -27,7 +33,29 @@ import java.util.List;
  * the worker thread. Default to "false" (job will wait for command to complete.)</li>
  * <li><code>Timeout</code> - Optional. If RunInBackground="false", and Timeout > 0, this job will wait for the command no longer
  * than the timeout period specified. Unit is in millis. Default is -1, meaning not to use it.</li>
+ * <li><code>OutputDir</code> - Optional. If set, the command output is written to a file in this directory, named
+ * after the job key and fire instance id, instead of being logged at DEBUG level. See {@link OutputCapture}.</li>
+ * <li><code>OutputMaxFileSize</code> - Optional. Bytes before the output file is rotated. Default is 10MB.</li>
+ * <li><code>OutputMaxFiles</code> - Optional. Number of output files kept, including the current one. Default is 5.</li>
+ * <li><code>OutputMaxCaptures</code> - Optional. Number of executions of the job whose output is kept in OutputDir,
+ * including the current one. Older ones are deleted when a new execution starts. Less than zero keeps them all.
+ * Default is 10.</li>
+ * <li><code>OutputMaxAgeInMillis</code> - Optional. Output of the job in OutputDir older than this is deleted when a
+ * new execution starts. Default is -1, meaning not to use it.</li>
+ * <li><code>CommandGroup</code> - Optional. The {@link CommandGate} group whose permits this job takes. Default is the
+ * job group.</li>
+ * <li><code>CommandGroupLimit</code> - Optional. Max commands of the CommandGroup running at once, if the
+ * CommandGatePlugin does not set one.</li>
+ * <li><code>PermitWaitInMillis</code> - Optional. How long to wait for a permit before the fire is vetoed, 0 to
+ * veto right away and less than zero to wait as long as it takes. Default is the CommandGatePlugin maxWaitInMillis.
+ * </li>
  * </ul>
+ * <p/>
+ * <p>If the scheduler has a {@link CommandGatePlugin}, the plugin takes a permit before the job runs, and the job
+ * gives it back when the process exits. A fire that gets no permit in time is vetoed, and the job does not run.
+ * <p/>
+ * <p>The job result is the command exit code, or null if it timed out. With OutputDir set, it's a
+ * {@link CommandResult} with the exit code, the output file path and the last lines of output.
  *
  * @author Zemian Deng <saltnlight5@gmail.com>
  */
@@ -36,16 +64,36 @@ public class OsCommandJob implements Job, InterruptableJob {
     public static final String CMD_ARGS_KEY = "CommandArguments";
     public static final String TIMEOUT_KEY = "Timeout";
     public static final String RUN_IN_BACKGROUND_KEY = "RunInBackground";
+    public static final String OUTPUT_DIR_KEY = "OutputDir";
+    public static final String OUTPUT_MAX_FILE_SIZE_KEY = "OutputMaxFileSize";
+    public static final String OUTPUT_MAX_FILES_KEY = "OutputMaxFiles";
+    public static final String OUTPUT_MAX_CAPTURES_KEY = "OutputMaxCaptures";
+    public static final String OUTPUT_MAX_AGE_KEY = "OutputMaxAgeInMillis";
+    public static final String COMMAND_GROUP_KEY = "CommandGroup";
+    public static final String COMMAND_GROUP_LIMIT_KEY = "CommandGroupLimit";
+    public static final String PERMIT_WAIT_KEY = "PermitWaitInMillis";
 
     private static final Logger logger = LoggerFactory.getLogger(OsCommandJob.class);
-    private BackgroundProcess bgProcess;
-    private JobKey jobKey;
+    private volatile BackgroundProcess bgProcess;
+    private volatile JobKey jobKey;
+    private volatile OutputCapture outputCapture;
+    private volatile boolean interrupted;
+
+    /** @return the output capture of the running command, or null if OutputDir is not set. */
+    public OutputCapture getOutputCapture() {
+        return outputCapture;
+    }
 
     @Override
     public void interrupt() throws UnableToInterruptJobException {
-        if (!bgProcess.isDone()) {
+        // Set first, so execute() sees it if the process is not started yet.
+        interrupted = true;
+        BackgroundProcess bgProcess = this.bgProcess;
+        if (bgProcess != null && !bgProcess.isDone()) {
             bgProcess.destroy();
             logger.debug("Job {} was interrupted and process has destroyed.", jobKey);
+        } else {
+            logger.debug("Job {} was interrupted before its command started.", jobKey);
         }
     }
 
@@ -53,6 +101,7 @@ public class OsCommandJob implements Job, InterruptableJob {
     public void execute(JobExecutionContext context) throws JobExecutionException {
         // Extract command from data map.
         JobDetail jobDetail = context.getJobDetail();
+        jobKey = jobDetail.getKey();
         JobDataMap dataMap = context.getMergedJobDataMap();
         if (!dataMap.containsKey(CMD_ARGS_KEY)) {
             throw new JobExecutionException(CMD_ARGS_KEY + " not found in data map");
@@ -81,56 +130,186 @@ public class OsCommandJob implements Job, InterruptableJob {
         }
         logger.debug("RunInBackground parameter: {}", runInBackground);
 
-        // Running the command
-        bgProcess = ProcessUtils.runInBackground(commandArguments, new ProcessUtils.LineAction() {
-            @Override
-            public void onLine(String line) {
-                logger.debug("CommandOutput: " + line);
+        // Take over the permit the CommandGatePlugin took for this fire, if any. It's given back when the process exits.
+        final CommandGate.Permit permit = (CommandGate.Permit) context.get(CommandGatePlugin.PERMIT_CONTEXT_KEY);
+        if (permit != null)
+            context.put(CommandGatePlugin.PERMIT_CONTEXT_KEY, null);
+        if (interrupted) {
+            if (permit != null)
+                permit.release();
+            throw new JobExecutionException("Job " + jobKey + " was interrupted before its command started.");
+        }
+        try {
+            // Running the command. Captured output is written as it comes, without decoding it to lines.
+            if (dataMap.containsKey(OUTPUT_DIR_KEY)) {
+                outputCapture = createOutputCapture(dataMap, context);
+                logger.debug("Command output is written to {}", outputCapture.getFile());
+                bgProcess = ProcessUtils.runInBackground(commandArguments, outputCapture, null);
+            } else {
+                bgProcess = ProcessUtils.runInBackground(commandArguments, new ProcessUtils.LineAction() {
+                    @Override
+                    public void onLine(String line) {
+                        logger.debug("CommandOutput: " + line);
+                    }
+                });
             }
-        });
+        } catch (RuntimeException e) {
+            if (permit != null)
+                permit.release();
+            throw e;
+        }
+        if (interrupted && !bgProcess.isDone()) {
+            // Interrupted while the process was starting.
+            bgProcess.destroy();
+            logger.debug("Job {} was interrupted and process has destroyed.", jobKey);
+        }
+        if (permit != null) {
+            bgProcess.addExitListener(new ProcessUtils.ExitListener() {
+                @Override
+                public void onExit(BackgroundProcess bgProcess, int exitCode) {
+                    permit.release();
+                }
+            });
+        }
 
-        // What to do after command started.
+        // What to do after command started. The exit is waited for on the process exit future, not polled.
         if (!runInBackground) {
             int exitCode = -1;
             if (timeout > 0) {
                 long startTime = System.currentTimeMillis();
-                long checkInterval = (long) (timeout * 0.10);
-                logger.debug("Monitoring command for timeout of {} ms with interval of {} ms check.",
-                        timeout, checkInterval);
-                while ((System.currentTimeMillis() - startTime) < timeout && !bgProcess.isDone()) {
-                    try {
-                        Thread.sleep(checkInterval);
-                    } catch (InterruptedException e) {
-                        throw new JobExecutionException("Failed to pause and check for Command timeout.", e);
-                    }
-                }
-                // Timed out?
-                if (bgProcess.isDone()) {
-                    exitCode = bgProcess.getExitCode();
-                    context.setResult(exitCode);
+                logger.debug("Waiting for command with timeout of {} ms.", timeout);
+                Integer exitValue = bgProcess.waitForExit(timeout);
+                if (exitValue != null) {
+                    exitCode = exitValue;
+                    context.setResult(createResult(exitCode));
                     logger.info("Command finished with exitCode=" + exitCode);
                 } else {
                     long stopTime = System.currentTimeMillis();
                     // Process is still running. We must force determination of the Process.
                     bgProcess.destroy();
-                    context.setResult(null);
+                    context.setResult(createResult(null));
                     logger.error("Process has timed-out. It ran for {}/{} ms.", (stopTime - startTime), timeout);
                 }
             } else {
                 logger.debug("Waiting for command to finish.");
                 exitCode = bgProcess.waitForExit();
-                context.setResult(exitCode);
+                context.setResult(createResult(exitCode));
                 logger.info("Command finished with exitCode=" + exitCode);
             }
+            // Give the permit back now if the process is gone, without waiting for the exit listener.
+            if (permit != null && bgProcess.isDone())
+                permit.release();
         } else {
+            final JobKey backgroundJobKey = jobKey;
+            final OutputCapture backgroundOutputCapture = outputCapture;
+            bgProcess.addExitListener(new ProcessUtils.ExitListener() {
+                @Override
+                public void onExit(BackgroundProcess bgProcess, int exitCode) {
+                    logger.info("Background command of job {} finished with exitCode={}", backgroundJobKey, exitCode);
+                    if (backgroundOutputCapture != null)
+                        closeOutputCapture(bgProcess, backgroundOutputCapture);
+                }
+            });
             logger.info("Command has been started in background. {}.", bgProcess);
         }
 
         // Job is done.
-        jobKey = jobDetail.getKey();
         logger.info("Job {} has been executed.", jobKey);
     }
 
+    private OutputCapture createOutputCapture(JobDataMap dataMap, JobExecutionContext context) {
+        long maxFileSize = OutputCapture.DEFAULT_MAX_FILE_SIZE;
+        if (dataMap.containsKey(OUTPUT_MAX_FILE_SIZE_KEY))
+            maxFileSize = dataMap.getLong(OUTPUT_MAX_FILE_SIZE_KEY);
+        int maxFiles = OutputCapture.DEFAULT_MAX_FILES;
+        if (dataMap.containsKey(OUTPUT_MAX_FILES_KEY))
+            maxFiles = dataMap.getInt(OUTPUT_MAX_FILES_KEY);
+        int maxCaptures = OutputCapture.DEFAULT_MAX_CAPTURES;
+        if (dataMap.containsKey(OUTPUT_MAX_CAPTURES_KEY))
+            maxCaptures = dataMap.getInt(OUTPUT_MAX_CAPTURES_KEY);
+        long maxAge = -1;
+        if (dataMap.containsKey(OUTPUT_MAX_AGE_KEY))
+            maxAge = dataMap.getLong(OUTPUT_MAX_AGE_KEY);
+
+        File dir = new File(dataMap.getString(OUTPUT_DIR_KEY));
+        String prefix = toFileName(jobKey.getGroup() + "." + jobKey.getName() + "-");
+        if (dir.isDirectory() && (maxCaptures >= 0 || maxAge >= 0)) {
+            // The older captures of this job only, so the current one counts in maxCaptures. A fire instance id is a
+            // counter, after the scheduler instance id for a JDBC job store.
+            Pattern namePattern = Pattern.compile(Pattern.quote(prefix) + "(" +
+                    Pattern.quote(toFileName(getSchedulerInstanceId(context))) + ")?\\d+\\.log");
+            int maxOldCaptures = (maxCaptures < 0) ? -1 : Math.max(maxCaptures - 1, 0);
+            OutputCapture.deleteOldCaptures(dir, namePattern, maxOldCaptures, maxAge);
+        }
+        File file = new File(dir, prefix + toFileName(context.getFireInstanceId()) + ".log");
+        return new OutputCapture(file, maxFileSize, maxFiles, OutputCapture.DEFAULT_TAIL_LINES);
+    }
+
+    private static String toFileName(String name) {
+        return name.replaceAll("[^\\w.-]", "_");
+    }
+
+    private static String getSchedulerInstanceId(JobExecutionContext context) {
+        try {
+            return context.getScheduler().getSchedulerInstanceId();
+        } catch (SchedulerException e) {
+            throw new RuntimeException("Failed to get scheduler instance id.", e);
+        }
+    }
+
+    /** Close the capture once all output lines are written, or the wait is over. */
+    private static void closeOutputCapture(BackgroundProcess bgProcess, OutputCapture outputCapture) {
+        try {
+            if (!bgProcess.awaitOutput(ProcessUtils.OUTPUT_WAIT_IN_MILLIS))
+                logger.warn("Output of {} not all written to {}", bgProcess, outputCapture.getFile());
+        } finally {
+            outputCapture.close();
+        }
+    }
+
+    private Object createResult(Integer exitCode) {
+        if (outputCapture == null)
+            return exitCode;
+        closeOutputCapture(bgProcess, outputCapture);
+        return new CommandResult(exitCode, outputCapture.getFile().getPath(), outputCapture.getTail());
+    }
+
+    /**
+     * The job result when the output is captured to a file.
+     */
+    public static class CommandResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Integer exitCode;
+        private final String outputPath;
+        private final List<String> outputTail;
+
+        public CommandResult(Integer exitCode, String outputPath, List<String> outputTail) {
+            this.exitCode = exitCode;
+            this.outputPath = outputPath;
+            this.outputTail = outputTail;
+        }
+
+        /** @return the exit code, or null if the command timed out. */
+        public Integer getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutputPath() {
+            return outputPath;
+        }
+
+        /** @return the last lines of output. */
+        public List<String> getOutputTail() {
+            return outputTail;
+        }
+
+        @Override
+        public String toString() {
+            return "CommandResult[exitCode=" + exitCode + ", outputPath=" + outputPath + "]";
+        }
+    }
+
     /**
      * Split a command line input into array of command and arguments by a space.
      * This split would escape spaces within any quoted substring with either "" or ''.
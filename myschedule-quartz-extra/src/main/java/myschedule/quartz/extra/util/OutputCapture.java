@@ -0,0 +1,399 @@
+package myschedule.quartz.extra.util;
+
+import myschedule.quartz.extra.util.ProcessUtils.LineAction;
+import myschedule.quartz.extra.util.ProcessUtils.OutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An OutputSink that writes command output to a file instead of keeping it in memory, with a size cap and rotation.
+ * Only the last bytes are kept in memory, and decoded to lines on {@link #getTail()} for a quick look from the UI.
+ * The output is written as it comes, without decoding. It's also a LineAction, for output that is already lines.
+ * <p/>
+ * <p>Output is collected in a direct buffer and written to the file channel when it's full, or on {@link #flush()}
+ * and {@link #close()}. When the file would grow over <code>maxFileSize</code>, it's rotated: <code>out.log</code>
+ * becomes <code>out.log.1</code>, <code>out.log.1</code> becomes <code>out.log.2</code>, and so on, keeping no more
+ * than <code>maxFiles</code> files. The oldest output is dropped first.
+ * <p/>
+ * <p>Use {@link #readPage(File, long, int)} to read a file back by byte offset, a page at a time, and
+ * {@link #deleteOldCaptures(File, Pattern, int, long)} to keep a directory of captures from growing without bound.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class OutputCapture implements OutputSink, LineAction {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final long DEFAULT_MAX_FILE_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 5;
+    public static final int DEFAULT_MAX_CAPTURES = 10;
+    public static final int DEFAULT_TAIL_LINES = 100;
+    public static final int TAIL_BUFFER_SIZE = 16 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputCapture.class);
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private final File file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final int tailLines;
+    private final Charset charset = Charset.defaultCharset();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+    private final byte[] tailBuffer;
+    private int tailPosition;
+    private boolean tailWrapped;
+    private FileChannel channel;
+    private long fileSize;
+    private long totalBytes;
+    private int rotationCount;
+    private boolean closed;
+
+    public OutputCapture(File file) {
+        this(file, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_FILES, DEFAULT_TAIL_LINES);
+    }
+
+    /**
+     * @param maxFileSize bytes before the file is rotated.
+     * @param maxFiles    the number of files kept, including the current one.
+     * @param tailLines   the number of last lines kept in memory.
+     */
+    public OutputCapture(File file, long maxFileSize, int maxFiles, int tailLines) {
+        if (maxFiles < 1)
+            throw new IllegalArgumentException("maxFiles must be at least 1.");
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.tailLines = tailLines;
+        this.tailBuffer = new byte[(tailLines > 0) ? TAIL_BUFFER_SIZE : 0];
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs())
+            throw new RuntimeException("Failed to create output directory " + dir);
+        open();
+    }
+
+    @Override
+    public synchronized void onOutput(ByteBuffer chunk) {
+        if (closed)
+            return;
+        write(chunk);
+    }
+
+    /** Flushes, but does not close: the same capture may receive both STDOUT and STDERR. */
+    @Override
+    public void onEnd() {
+        flush();
+    }
+
+    @Override
+    public synchronized void onLine(String line) {
+        if (closed)
+            return;
+        write(ByteBuffer.wrap(line.getBytes(charset)));
+        write(ByteBuffer.wrap(NEW_LINE));
+    }
+
+    private void write(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        addToTail(bytes.duplicate());
+        try {
+            long pendingSize = fileSize + buffer.position();
+            if (pendingSize > 0 && pendingSize + length > maxFileSize)
+                rotate();
+            if (length > buffer.remaining()) {
+                flushBuffer();
+                if (length > buffer.capacity()) {
+                    while (bytes.hasRemaining())
+                        fileSize += channel.write(bytes);
+                    totalBytes += length;
+                    return;
+                }
+            }
+            buffer.put(bytes);
+            totalBytes += length;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write output file " + file, e);
+        }
+    }
+
+    private void addToTail(ByteBuffer bytes) {
+        if (tailBuffer.length == 0)
+            return;
+        // Only the last tailBuffer.length bytes can stay.
+        if (bytes.remaining() > tailBuffer.length)
+            bytes.position(bytes.limit() - tailBuffer.length);
+        while (bytes.hasRemaining()) {
+            int length = Math.min(bytes.remaining(), tailBuffer.length - tailPosition);
+            bytes.get(tailBuffer, tailPosition, length);
+            tailPosition += length;
+            if (tailPosition == tailBuffer.length) {
+                tailPosition = 0;
+                tailWrapped = true;
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            fileSize += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void rotate() throws IOException {
+        flushBuffer();
+        channel.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File from = (i == 1) ? file : getRotatedFile(i - 1);
+            File to = getRotatedFile(i);
+            if (from.exists() && (!to.exists() || to.delete()) && !from.renameTo(to))
+                logger.warn("Failed to rotate output file {} to {}", from, to);
+        }
+        rotationCount++;
+        open();
+    }
+
+    private void open() {
+        try {
+            // Truncates the current file, which is the oldest when maxFiles is 1.
+            channel = new FileOutputStream(file).getChannel();
+            fileSize = 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open output file " + file, e);
+        }
+    }
+
+    /** Write the buffered output to the file, so it can be read. */
+    public synchronized void flush() {
+        if (closed)
+            return;
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write output file " + file, e);
+        }
+    }
+
+    public synchronized void close() {
+        if (closed)
+            return;
+        try {
+            flushBuffer();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close output file " + file, e);
+        } finally {
+            closed = true;
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /** @return the current output file, holding the latest output. */
+    public File getFile() {
+        return file;
+    }
+
+    /** @return the rotated file of the given index, 1 being the newest. */
+    public File getRotatedFile(int index) {
+        return new File(file.getPath() + "." + index);
+    }
+
+    /** @return the last lines of output, no more than tailLines and within the last TAIL_BUFFER_SIZE bytes. */
+    public synchronized List<String> getTail() {
+        byte[] bytes;
+        if (tailWrapped) {
+            bytes = new byte[tailBuffer.length];
+            System.arraycopy(tailBuffer, tailPosition, bytes, 0, tailBuffer.length - tailPosition);
+            System.arraycopy(tailBuffer, 0, bytes, tailBuffer.length - tailPosition, tailPosition);
+        } else {
+            bytes = Arrays.copyOf(tailBuffer, tailPosition);
+        }
+        List<String> lines = new ArrayList<String>();
+        int start = 0;
+        if (tailWrapped) {
+            // Skip the first line, it's likely cut.
+            while (start < bytes.length && bytes[start] != '\n')
+                start++;
+            start++;
+        }
+        for (int i = start; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                lines.add(toLine(bytes, start, i));
+                start = i + 1;
+            }
+        }
+        if (start < bytes.length)
+            lines.add(toLine(bytes, start, bytes.length));
+        return (lines.size() > tailLines) ? lines.subList(lines.size() - tailLines, lines.size()) : lines;
+    }
+
+    private String toLine(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r')
+            end--;
+        return new String(bytes, start, end - start, charset);
+    }
+
+    /** @return the bytes of output received, including the ones rotated away. */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * Delete the oldest captures of a directory. A capture is a file whose name matches namePattern, together with its
+     * rotated files, and its age is the time of its last write. The newest maxCount captures are kept, unless they are
+     * older than maxAgeInMillis. A maxCount or maxAgeInMillis less than zero is not applied. A file that fails to be
+     * deleted is left for the next call.
+     *
+     * @return the number of captures deleted.
+     */
+    public static int deleteOldCaptures(File dir, Pattern namePattern, int maxCount, long maxAgeInMillis) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return 0;
+        List<File> captures = new ArrayList<File>();
+        for (File file : files) {
+            if (namePattern.matcher(file.getName()).matches())
+                captures.add(file);
+        }
+        long now = System.currentTimeMillis();
+        final Map<File, Long> lastModified = new HashMap<File, Long>();
+        for (File capture : captures)
+            lastModified.put(capture, capture.lastModified());
+        Collections.sort(captures, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                // Newest first.
+                long diff = lastModified.get(b) - lastModified.get(a);
+                return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+            }
+        });
+
+        int deleted = 0;
+        for (int i = 0; i < captures.size(); i++) {
+            File capture = captures.get(i);
+            boolean tooMany = maxCount >= 0 && i >= maxCount;
+            boolean tooOld = maxAgeInMillis >= 0 && now - lastModified.get(capture) > maxAgeInMillis;
+            if (!tooMany && !tooOld)
+                continue;
+            Pattern rotatedPattern = Pattern.compile(Pattern.quote(capture.getName()) + "\\.\\d+");
+            for (File file : files) {
+                if (rotatedPattern.matcher(file.getName()).matches() && !file.delete())
+                    logger.warn("Failed to delete old output file {}", file);
+            }
+            if (capture.delete())
+                deleted++;
+            else
+                logger.warn("Failed to delete old output file {}", capture);
+        }
+        if (deleted > 0)
+            logger.debug("Deleted {} old output captures from {}", deleted, dir);
+        return deleted;
+    }
+
+    /**
+     * Read a page of a file, from a byte offset. A page that does not reach the end of the file is cut after its last
+     * full line, unless a single line is longer than the page. Use {@link Page#getNextOffset()} to read the next one.
+     */
+    public static Page readPage(File file, long offset, int maxBytes) {
+        RandomAccessFile inFile = null;
+        try {
+            inFile = new RandomAccessFile(file, "r");
+            long fileSize = inFile.length();
+            offset = Math.max(0, Math.min(offset, fileSize));
+            byte[] bytes = new byte[(int) Math.min(maxBytes, fileSize - offset)];
+            inFile.seek(offset);
+            inFile.readFully(bytes);
+            int length = bytes.length;
+            if (offset + length < fileSize) {
+                int lastNewLine = length - 1;
+                while (lastNewLine >= 0 && bytes[lastNewLine] != '\n')
+                    lastNewLine--;
+                if (lastNewLine >= 0)
+                    length = lastNewLine + 1;
+            }
+            String text = new String(bytes, 0, length, Charset.defaultCharset());
+            return new Page(file.getPath(), offset, offset + length, fileSize, text);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read output file " + file, e);
+        } finally {
+            if (inFile != null)
+                try {
+                    inFile.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close output file {}", file, e);
+                }
+        }
+    }
+
+    /**
+     * A page of an output file.
+     */
+    public static class Page implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final long offset;
+        private final long nextOffset;
+        private final long fileSize;
+        private final String text;
+
+        public Page(String path, long offset, long nextOffset, long fileSize, String text) {
+            this.path = path;
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.fileSize = fileSize;
+            this.text = text;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        /** @return the file size when the page was read. The file may still be growing. */
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isEnd() {
+            return nextOffset >= fileSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Page[" + path + ", " + offset + "-" + nextOffset + "/" + fileSize + "]";
+        }
+    }
+}
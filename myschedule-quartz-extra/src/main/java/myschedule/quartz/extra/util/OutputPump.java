@@ -0,0 +1,373 @@
+package myschedule.quartz.extra.util;
+
+import myschedule.quartz.extra.util.ProcessUtils.BackgroundProcess;
+import myschedule.quartz.extra.util.ProcessUtils.LineAction;
+import myschedule.quartz.extra.util.ProcessUtils.LineSink;
+import myschedule.quartz.extra.util.ProcessUtils.OutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the output of many processes with a fixed number of threads, instead of one reading thread per process.
+ * <p/>
+ * <p>Reader threads go round their registered streams and read what is available without blocking, in chunks up to a
+ * bounded buffer per stream. The chunks are handed to the {@link OutputSink} by a fixed pool of delivery threads, one
+ * stream at a time so its output stays in order, and are reused once the sink returns. When a sink is slower than
+ * its process writes, the buffer of that stream fills up and the readers stop reading it: the output waits in the OS
+ * pipe, and the process blocks on write once the pipe is full. Other streams are not held up.
+ * <p/>
+ * <p>A stream ends when its end signal is done and nothing is left to read. The end signal of a process output is
+ * its exit future, completed by {@link #awaitExit(FutureTask)} with one blocking Process.waitFor() call on an exit
+ * thread, which then wakes the readers. Exit threads are parked until their process exits, and end once idle for a
+ * minute. A reader thread with no stream sleeps until one is registered.
+ * <p/>
+ * <p>Nothing is decoded here; register a {@link LineAction} to have the output decoded to lines by a
+ * {@link LineSink}.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class OutputPump {
+    public static final int DEFAULT_THREAD_COUNT = Math.min(4, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputPump.class);
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+    private static final int READ_SIZE = 8 * 1024;
+    private static final int DELIVERY_BATCH_SIZE = 256;
+    private static final long IDLE_WAIT_IN_MILLIS = 10;
+    private static OutputPump defaultPump;
+
+    private final int bufferSize;
+    private final List<Reader> readers = new CopyOnWriteArrayList<Reader>();
+    private final ExecutorService deliveryExecutor;
+    private final ExecutorService exitExecutor;
+    private volatile boolean shutdown;
+
+    public OutputPump() {
+        this(DEFAULT_THREAD_COUNT, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param threadCount number of reader threads, and of delivery threads.
+     * @param bufferSize  bytes buffered per stream before the readers stop reading it.
+     */
+    public OutputPump(int threadCount, int bufferSize) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1.");
+        this.bufferSize = bufferSize;
+        final String namePrefix = "OutputPump-" + POOL_COUNT.incrementAndGet() + "-";
+        for (int i = 1; i <= threadCount; i++) {
+            Reader reader = new Reader();
+            Thread thread = new Thread(reader, namePrefix + "reader-" + i);
+            thread.setDaemon(true);
+            readers.add(reader);
+            thread.start();
+        }
+        deliveryExecutor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), createThreadFactory(namePrefix + "delivery-"));
+        exitExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), createThreadFactory(namePrefix + "exit-"));
+    }
+
+    private static ThreadFactory createThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /** @return the pump shared by ProcessUtils, created on first use. */
+    public static synchronized OutputPump getDefault() {
+        if (defaultPump == null)
+            defaultPump = new OutputPump();
+        return defaultPump;
+    }
+
+    /**
+     * Same as {@link #register(InputStream, Future, OutputSink)}, with lines decoded in the default charset.
+     */
+    public Source register(InputStream inStream, Future<?> endSignal, LineAction lineAction) {
+        return register(inStream, endSignal, new LineSink(lineAction));
+    }
+
+    /**
+     * Start pumping a stream to a sink, on the reader with the fewest streams.
+     *
+     * @param endSignal done when no more output will be written, such as the process exit future.
+     */
+    public Source register(InputStream inStream, Future<?> endSignal, OutputSink sink) {
+        return register(new Source(inStream, endSignal, null, sink));
+    }
+
+    /**
+     * Start pumping an output of a process, ending when the process exited, and tell the process when its output is
+     * all delivered.
+     */
+    Source register(InputStream inStream, BackgroundProcess process, OutputSink sink) {
+        return register(new Source(inStream, process.getExitFuture(), process, sink));
+    }
+
+    /**
+     * Run a process exit future, which blocks in Process.waitFor(), on an exit thread, and wake the readers once it's
+     * done so the outputs of the process end without waiting for their next pass.
+     */
+    void awaitExit(final FutureTask<Integer> exitFuture) {
+        exitExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                exitFuture.run();
+                for (Reader reader : readers) {
+                    synchronized (reader) {
+                        reader.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    private Source register(Source source) {
+        if (shutdown)
+            throw new IllegalStateException("OutputPump is shut down.");
+        Reader target = null;
+        for (Reader reader : readers) {
+            if (target == null || reader.sources.size() < target.sources.size())
+                target = reader;
+        }
+        synchronized (target) {
+            target.sources.add(source);
+            target.notifyAll();
+        }
+        return source;
+    }
+
+    public int getThreadCount() {
+        return readers.size();
+    }
+
+    /** @return the number of streams not done yet. */
+    public int getSourceCount() {
+        int count = 0;
+        for (Reader reader : readers)
+            count += reader.sources.size();
+        return count;
+    }
+
+    /** Stop the threads. The streams not done yet are left unread. */
+    public void shutdown() {
+        shutdown = true;
+        for (Reader reader : readers) {
+            synchronized (reader) {
+                reader.notifyAll();
+            }
+        }
+        deliveryExecutor.shutdown();
+        exitExecutor.shutdown();
+    }
+
+    private class Reader implements Runnable {
+        private final List<Source> sources = new CopyOnWriteArrayList<Source>();
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                boolean worked = false;
+                for (Source source : sources) {
+                    if (source.pump())
+                        worked = true;
+                    if (source.eof)
+                        sources.remove(source);
+                }
+                if (!worked) {
+                    synchronized (this) {
+                        try {
+                            // Streams are not selectable, so they are checked again after a while. With no stream,
+                            // sleep until one is registered.
+                            if (sources.isEmpty() && !shutdown)
+                                wait();
+                            else if (!shutdown)
+                                wait(IDLE_WAIT_IN_MILLIS);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A stream registered in the pump.
+     */
+    public class Source implements Runnable {
+        private final InputStream inStream;
+        private final Future<?> endSignal;
+        private final BackgroundProcess process;
+        private final OutputSink sink;
+        private final LinkedList<ByteBuffer> filledChunks = new LinkedList<ByteBuffer>();
+        private final LinkedList<ByteBuffer> freeChunks = new LinkedList<ByteBuffer>();
+        private final CountDownLatch doneLatch = new CountDownLatch(1);
+        private int bufferedBytes;
+        private boolean delivering;
+        private volatile boolean eof;
+
+        private Source(InputStream inStream, Future<?> endSignal, BackgroundProcess process, OutputSink sink) {
+            this.inStream = inStream;
+            this.endSignal = endSignal;
+            this.process = process;
+            this.sink = sink;
+        }
+
+        /** Read what is available, called by the reader thread. @return true if it read or ended. */
+        private boolean pump() {
+            if (eof)
+                return false;
+            ByteBuffer chunk;
+            synchronized (this) {
+                if (bufferedBytes >= bufferSize)
+                    return false;
+                chunk = freeChunks.poll();
+            }
+            if (chunk == null)
+                chunk = ByteBuffer.allocate(READ_SIZE);
+            try {
+                // Checked before available(), so output written just before the end is not missed.
+                boolean ended = endSignal.isDone();
+                int available = inStream.available();
+                if (available > 0) {
+                    int count = inStream.read(chunk.array(), 0, Math.min(available, chunk.capacity()));
+                    if (count < 0) {
+                        end();
+                    } else {
+                        chunk.limit(count);
+                        synchronized (this) {
+                            filledChunks.add(chunk);
+                            bufferedBytes += count;
+                        }
+                        scheduleDelivery();
+                    }
+                    return true;
+                } else if (ended) {
+                    end();
+                    return true;
+                }
+            } catch (IOException e) {
+                // The process has likely died and its stream closed.
+                logger.debug("Failed to read process output, ending it. {}", e.getMessage());
+                end();
+                return true;
+            }
+            synchronized (this) {
+                freeChunks.add(chunk);
+            }
+            return false;
+        }
+
+        private void end() {
+            eof = true;
+            try {
+                inStream.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close process output. {}", e.getMessage());
+            }
+            scheduleDelivery();
+        }
+
+        private void scheduleDelivery() {
+            synchronized (this) {
+                if (delivering)
+                    return;
+                delivering = true;
+            }
+            deliveryExecutor.execute(this);
+        }
+
+        /** Hand the buffered chunks to the sink, called by a delivery thread. */
+        @Override
+        public void run() {
+            for (int i = 0; i < DELIVERY_BATCH_SIZE; i++) {
+                ByteBuffer chunk;
+                boolean ended = false;
+                synchronized (this) {
+                    chunk = filledChunks.poll();
+                    if (chunk == null) {
+                        // Read eof before giving up delivering, so the end is delivered by exactly one thread.
+                        ended = eof && doneLatch.getCount() > 0;
+                        if (!ended) {
+                            delivering = false;
+                            return;
+                        }
+                    }
+                }
+                if (ended) {
+                    try {
+                        sink.onEnd();
+                    } catch (RuntimeException e) {
+                        logger.warn("OutputSink failed on end of process output.", e);
+                    }
+                    synchronized (this) {
+                        delivering = false;
+                        doneLatch.countDown();
+                    }
+                    if (process != null)
+                        process.onOutputDone();
+                    return;
+                }
+                try {
+                    sink.onOutput(chunk);
+                } catch (RuntimeException e) {
+                    logger.warn("OutputSink failed on process output.", e);
+                }
+                synchronized (this) {
+                    bufferedBytes -= chunk.limit();
+                    chunk.clear();
+                    freeChunks.add(chunk);
+                }
+            }
+            // Let the other streams have their turn.
+            if (!shutdown)
+                deliveryExecutor.execute(this);
+        }
+
+        /** @return true once the stream ended and all its output was delivered. */
+        public boolean isDone() {
+            return doneLatch.getCount() == 0;
+        }
+
+        public void awaitDone() throws InterruptedException {
+            doneLatch.await();
+        }
+
+        /** @return true if done, false if the timeout passed first. */
+        public boolean awaitDone(long timeout, TimeUnit unit) throws InterruptedException {
+            return doneLatch.await(timeout, unit);
+        }
+
+        /** @return the bytes read and not yet delivered. */
+        public synchronized int getBufferedBytes() {
+            return bufferedBytes;
+        }
+    }
+}
@@ -4,16 +4,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utilities to help run external sub-process, and external java process that has the same classpath setup as the one
  * started the parent JVM.
  * <p/>
- * <p>Note that if process has timeout, it is destroyed. In case of JVM sub process, it will not invoke shutdown hook!
+ * <p>Note that if process has timeout, it is destroyed. In case of JVM sub process, it may not invoke shutdown hook!
+ * <p/>
+ * <p>Callers do not poll for the end of a process. The output of all processes is read by the shared
+ * {@link OutputPump}, whose reading threads do not grow with the number of processes running. The
+ * {@link BackgroundProcess#getExitFuture()} of a process is completed by one Process.waitFor() call on a pump exit
+ * thread, parked until the process exits, so a caller waiting with a timeout is woken up as soon as it exits.
  *
  * @author Zemian Deng
  */
@@ -23,8 +36,16 @@ public class ProcessUtils {
      */
     public static final long NO_TIMEOUT = -1;
 
-    private static final Logger logger = LoggerFactory.getLogger(ProcessUtils.class);
+    /**
+     * How long to wait for a process to exit after destroying it on timeout, so it's gone (and its shutdown hooks
+     * ran) when the TimeoutException is thrown.
+     */
+    public static final long DESTROY_WAIT_IN_MILLIS = 5000;
+
+    /** How long run() waits for the output lines to be delivered after the process exited. */
+    public static final long OUTPUT_WAIT_IN_MILLIS = 5000;
 
+    private static final Logger logger = LoggerFactory.getLogger(ProcessUtils.class);
 
     /**
      * Run an external command and read STDOUT and STDERR from the sub-process and process each line from output.
@@ -38,39 +59,33 @@ public class ProcessUtils {
      * @throws TimeoutException - if timeout >=0 and has reached it.
      */
     public static BackgroundProcess runInBackground(String[] commandArguments, final LineAction lineAction) {
+        return runInBackground(commandArguments, new LineSink(lineAction), null);
+    }
+
+    /**
+     * Run an external command and hand its output to sinks, as byte chunks without decoding. Use a {@link LineSink}
+     * to get lines.
+     * <p/>
+     * <p/>
+     * This method will NOT block caller and return Process object after it started the command.
+     *
+     * @param commandArguments External command and arguments
+     * @param outputSink       Receives STDOUT, and STDERR too if errorSink is null.
+     * @param errorSink        Receives STDERR, or null to have it merged into STDOUT.
+     */
+    public static BackgroundProcess runInBackground(String[] commandArguments, OutputSink outputSink,
+                                                    OutputSink errorSink) {
         ProcessBuilder processBuilder = new ProcessBuilder();
-        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectErrorStream(errorSink == null);
         processBuilder.command(commandArguments);
         try {
             final Process process = processBuilder.start();
-
-            // Setup another read thread that we can control the timeout.
-            Thread stdoutReadingThread = new Thread() {
-                public void run() {
-                    InputStream inStream = process.getInputStream();
-                    try {
-                        BufferedReader reader = new BufferedReader(new InputStreamReader(inStream));
-                        String line = null;
-                        while ((line = reader.readLine()) != null) {
-                            lineAction.onLine(line);
-                        }
-                    } catch (IOException e) {
-                        // If we get a IO exception, it's likely that the process has already died, so do nothing.
-                        //logger.error("Failed to read process STDOUT.", e);
-                    } finally {
-                        if (inStream != null)
-                            try {
-                                inStream.close();
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                    }
-                }
-
-                ;
-            };
-            stdoutReadingThread.start();
-            BackgroundProcess bgProcess = new BackgroundProcess(commandArguments, process, stdoutReadingThread);
+            OutputPump pump = OutputPump.getDefault();
+            BackgroundProcess bgProcess = new BackgroundProcess(commandArguments, process, pump,
+                    (errorSink == null) ? 1 : 2);
+            bgProcess.output = pump.register(process.getInputStream(), bgProcess, outputSink);
+            if (errorSink != null)
+                bgProcess.errorOutput = pump.register(process.getErrorStream(), bgProcess, errorSink);
             logger.debug("Command started: {}", bgProcess);
             return bgProcess;
         } catch (Exception e) {
@@ -96,54 +111,24 @@ public class ProcessUtils {
      * @throws TimeoutException - if timeout >=0 and has reached it.
      */
     public static int run(long timeout, String[] commandArguments, LineAction lineAction) {
-        // We will use 10% of the timeout period as check interval.
-        long checkInterval = (long) (timeout * 0.10);
-        return run(timeout, checkInterval, commandArguments, lineAction);
-    }
-
-    /**
-     * Run an external command and read STDOUT and STDERR from the sub-process and process each line from output.
-     * <p/>
-     * <p/>
-     * This method will block caller until command is done, or timeout is up (if set that is.)
-     * <p/>
-     * <p/>
-     * You may set an timeout value to ensure sub-process will terminate after certain milliseconds. A timeout value of
-     * <= 0 will be ignored and run as long as the sub-process will take. If timeout is set, and exceeded, it will throw
-     * an RuntimeException.
-     *
-     * @param timeout              Timeout in milliseconds if external command did not return.
-     * @param timeoutCheckInterval if timeout > 0, then this will set pausing interval in millis to check for timeout/process completion.
-     * @param commandArguments     External command and arguments
-     * @param lineAction           A action processing each output line.
-     * @return exitCode - the external program exit code if it completed successfully.
-     * @throws TimeoutException - if timeout >=0 and has reached it.
-     */
-    public static int run(long timeout, long timeoutCheckInterval, final String[] commandArguments,
-                          final LineAction lineAction) {
         try {
             long startTime = System.currentTimeMillis();
             final BackgroundProcess bgProcess = runInBackground(commandArguments, lineAction);
             int exitCode = 0;
             if (timeout > 0) {
-                // Let's loop until timeout or Process is done.
-                // The loop is necessary because in some OS, the process.getInputStream() might return null
-                // prematurely before the process is started or even terminated, so we can not depend on just
-                // reading the STDOUT steam.
-                logger.debug("Monitoring process with timeout period of {} ms with check interval: {} ms.",
-                        timeout, timeoutCheckInterval);
-                while ((System.currentTimeMillis() - startTime) < timeout && !bgProcess.isDone()) {
-                    Thread.sleep(timeoutCheckInterval);
-                }
-                if (bgProcess.isDone()) {
-                    exitCode = bgProcess.getExitCode();
+                logger.debug("Waiting for process with timeout period of {} ms.", timeout);
+                Integer exitValue = bgProcess.waitForExit(timeout);
+                if (exitValue != null) {
+                    exitCode = exitValue;
                 } else {
                     long stopTime = System.currentTimeMillis();
                     String msg = "Process has timed-out. It ran for " + (stopTime - startTime) + "/" + timeout + " ms.";
                     logger.debug(msg);
 
-                    // Process is still running. We must force determination of the Process.
+                    // Process is still running. We must force determination of the Process, and let it end.
                     bgProcess.destroy();
+                    if (bgProcess.waitForExit(DESTROY_WAIT_IN_MILLIS) == null)
+                        logger.warn("{} did not exit within {} ms after destroyed.", bgProcess, DESTROY_WAIT_IN_MILLIS);
 
                     // Throw timeout exception.
                     throw new TimeoutException(msg);
@@ -151,21 +136,36 @@ public class ProcessUtils {
             } else {
                 exitCode = bgProcess.waitForExit();
             }
+            if (!bgProcess.awaitOutput(OUTPUT_WAIT_IN_MILLIS))
+                logger.warn("Output of {} not all delivered within {} ms.", bgProcess, OUTPUT_WAIT_IN_MILLIS);
 
             long stopTime = System.currentTimeMillis();
             logger.info("Process completed in {} ms. ExitCode: {}", (stopTime - startTime), exitCode);
 
             return exitCode;
-        } catch (Exception e) {
+        } catch (TimeoutException e) {
             // If it's a timeout exception, re-throw it as it.
-            if (e instanceof TimeoutException)
-                throw (TimeoutException) e;
-
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
             // Ohoh, we have other problems, let's re-throw as generic RuntimeException.
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Same as {@link #run(long, String[], LineAction)}. The process end is no longer polled, so the check interval is
+     * not used.
+     *
+     * @deprecated use {@link #run(long, String[], LineAction)}.
+     */
+    @Deprecated
+    public static int run(long timeout, long timeoutCheckInterval, final String[] commandArguments,
+                          final LineAction lineAction) {
+        return run(timeout, commandArguments, lineAction);
+    }
+
     /**
      * Run an external command and read STDOUT and STDERR from the sub-process and return the output as List of String.
      * <p/>
@@ -278,24 +278,6 @@ public class ProcessUtils {
         return run(timeout, arguments, lineAction);
     }
 
-    /**
-     * Determine whether a process has exited or not.
-     * <p/>
-     * <p/>
-     * This is really a bad way to check, but is there any better other way?
-     *
-     * @param process Process
-     * @return true if exitValue is obtainable, false otherwise.
-     */
-    private static boolean isProcessDone(final Process process) {
-        try {
-            process.exitValue();
-            return true;
-        } catch (IllegalThreadStateException e) {
-            return false;
-        }
-    }
-
     /**
      * @return A enum value for OS name.
      */
@@ -361,7 +343,8 @@ public class ProcessUtils {
     }
 
     /**
-     * Collect lines for each line processing into a list.
+     * Collect lines for each line processing into a list. Use {@link OutputCapture} for commands with a lot of output,
+     * or give a maxLines to only keep the last lines.
      *
      * @author Zemian Deng
      */
@@ -372,7 +355,21 @@ public class ProcessUtils {
         /**
          * Line storage.
          */
-        protected List<String> lines = new ArrayList<String>();
+        protected List<String> lines;
+
+        /**
+         * Max number of lines kept, or 0 to keep them all.
+         */
+        protected int maxLines;
+
+        public LineCollector() {
+            this(0);
+        }
+
+        public LineCollector(int maxLines) {
+            this.maxLines = maxLines;
+            this.lines = (maxLines > 0) ? new LinkedList<String>() : new ArrayList<String>();
+        }
 
         /**
          * Getter.
@@ -391,6 +388,8 @@ public class ProcessUtils {
         public void onLine(final String line) {
             logger.debug("Line: {}", line);
             lines.add(line);
+            if (maxLines > 0 && lines.size() > maxLines)
+                lines.remove(0);
         }
     }
 
@@ -403,17 +402,178 @@ public class ProcessUtils {
         void onLine(String line);
     }
 
+    /**
+     * Receives process output as it's read, in chunks of bytes. The chunk buffer is reused after the call returns,
+     * so copy what needs to be kept. Calls for one stream come one at a time, in order.
+     */
+    public static interface OutputSink {
+        /** @param chunk the bytes read, between its position and limit. */
+        void onOutput(ByteBuffer chunk);
+
+        /** Called once, after the last chunk. */
+        void onEnd();
+    }
+
+    /**
+     * An OutputSink that decodes the output to lines for a LineAction. A line may end with "\n" or "\r\n", and one
+     * longer than {@link #MAX_LINE_LENGTH} bytes is split.
+     */
+    public static class LineSink implements OutputSink {
+        public static final int MAX_LINE_LENGTH = 64 * 1024;
+
+        private final LineAction lineAction;
+        private final Charset charset;
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+        /** Decode with the default charset. */
+        public LineSink(LineAction lineAction) {
+            this(lineAction, Charset.defaultCharset());
+        }
+
+        public LineSink(LineAction lineAction, Charset charset) {
+            this.lineAction = lineAction;
+            this.charset = charset;
+        }
+
+        @Override
+        public void onOutput(ByteBuffer chunk) {
+            while (chunk.hasRemaining()) {
+                byte b = chunk.get();
+                if (b == '\n') {
+                    flushLine();
+                } else {
+                    partialLine.write(b);
+                    if (partialLine.size() >= MAX_LINE_LENGTH)
+                        flushLine();
+                }
+            }
+        }
+
+        @Override
+        public void onEnd() {
+            if (partialLine.size() > 0)
+                flushLine();
+        }
+
+        private void flushLine() {
+            byte[] bytes = partialLine.toByteArray();
+            int length = bytes.length;
+            if (length > 0 && bytes[length - 1] == '\r')
+                length--;
+            partialLine.reset();
+            lineAction.onLine(new String(bytes, 0, length, charset));
+        }
+    }
+
+    /**
+     * Callback of {@link BackgroundProcess#addExitListener(ExitListener)}.
+     */
+    public static interface ExitListener {
+        void onExit(BackgroundProcess bgProcess, int exitCode);
+    }
+
     public static class BackgroundProcess {
-        protected boolean destroyed;
+        protected volatile boolean destroyed;
         protected Date startTime = new Date();
         protected String[] commandArgs;
         protected Process process;
+        protected volatile OutputPump.Source output;
+        protected volatile OutputPump.Source errorOutput;
+        protected final FutureTask<Integer> exitFuture;
+        /** @deprecated the output is read by the OutputPump, not by a thread of its own. */
+        @Deprecated
         protected Thread stdoutReadingThread;
+        private final List<ExitListener> exitListeners = new ArrayList<ExitListener>();
+        private int pendingOutputCount;
+        private boolean exitNotified;
 
+        /**
+         * @deprecated the output is read by the OutputPump, not by a thread of its own. Use
+         * {@link #BackgroundProcess(String[], Process)}.
+         */
+        @Deprecated
         public BackgroundProcess(String[] commandArgs, Process process, Thread stdoutReadingThread) {
+            this(commandArgs, process);
+            this.stdoutReadingThread = stdoutReadingThread;
+        }
+
+        public BackgroundProcess(String[] commandArgs, Process process) {
+            this(commandArgs, process, OutputPump.getDefault(), 0);
+        }
+
+        /**
+         * @param outputCount number of outputs that will be registered in the pump, which must all be delivered
+         *                    before the exit listeners are called.
+         */
+        BackgroundProcess(String[] commandArgs, final Process process, OutputPump pump, int outputCount) {
             this.commandArgs = commandArgs;
             this.process = process;
-            this.stdoutReadingThread = stdoutReadingThread;
+            this.pendingOutputCount = outputCount;
+            this.exitFuture = new FutureTask<Integer>(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return process.waitFor();
+                }
+            }) {
+                @Override
+                protected void done() {
+                    notifyExitListenersIfDone();
+                }
+            };
+            pump.awaitExit(exitFuture);
+        }
+
+        /**
+         * @return a Future completed with the exit code when the process exits, by an OutputPump exit thread.
+         */
+        public Future<Integer> getExitFuture() {
+            return exitFuture;
+        }
+
+        /**
+         * Call the listener once the process exited and all its output was handed to the sinks, in an OutputPump
+         * thread, or right away in the caller thread if that is already the case. Lets a caller act on the exit
+         * without a thread blocked waiting for it. The listener should be quick, as it holds up other output.
+         */
+        public void addExitListener(ExitListener listener) {
+            synchronized (exitListeners) {
+                if (!exitNotified) {
+                    exitListeners.add(listener);
+                    return;
+                }
+            }
+            notifyExitListener(listener);
+        }
+
+        /** Called by the OutputPump when an output of this process was all delivered. */
+        void onOutputDone() {
+            synchronized (exitListeners) {
+                pendingOutputCount--;
+            }
+            notifyExitListenersIfDone();
+        }
+
+        private void notifyExitListenersIfDone() {
+            List<ExitListener> listeners;
+            synchronized (exitListeners) {
+                if (exitNotified || !exitFuture.isDone() || pendingOutputCount > 0)
+                    return;
+                exitNotified = true;
+                listeners = new ArrayList<ExitListener>(exitListeners);
+                exitListeners.clear();
+            }
+            for (ExitListener listener : listeners)
+                notifyExitListener(listener);
+        }
+
+        private void notifyExitListener(ExitListener listener) {
+            if (exitFuture.isCancelled())
+                return;
+            try {
+                listener.onExit(this, exitFuture.get());
+            } catch (Exception e) {
+                logger.warn("Process exit listener failed for {}", this, e);
+            }
         }
 
         public boolean isDestroyed() {
@@ -426,21 +586,41 @@ public class ProcessUtils {
 
         public void destroy() {
             logger.debug("Destroying running process {}.", this);
-            stdoutReadingThread.interrupt();
+            if (stdoutReadingThread != null)
+                stdoutReadingThread.interrupt();
             process.destroy();
             destroyed = true;
             logger.info("{} destroyed.", this);
         }
 
         public boolean isDone() {
-            return ProcessUtils.isProcessDone(process);
+            return exitFuture.isDone();
         }
 
         public int waitForExit() {
             try {
-                return process.waitFor();
+                return exitFuture.get();
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * Wait for the process to exit, no longer than the timeout.
+         *
+         * @return the exit code, or null if still running after the timeout.
+         */
+        public Integer waitForExit(long timeoutInMillis) {
+            try {
+                return exitFuture.get(timeoutInMillis, TimeUnit.MILLISECONDS);
+            } catch (java.util.concurrent.TimeoutException e) {
+                return null;
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
             }
         }
 
@@ -448,10 +628,39 @@ public class ProcessUtils {
             return process;
         }
 
+        /** @deprecated the output is read by the OutputPump. Use {@link #getOutput()}. */
+        @Deprecated
         public Thread getStdoutReadingThread() {
             return stdoutReadingThread;
         }
 
+        /** @return the process output being read by the OutputPump. */
+        public OutputPump.Source getOutput() {
+            return output;
+        }
+
+        /** @return the process STDERR being read by the OutputPump, or null if merged into the output. */
+        public OutputPump.Source getErrorOutput() {
+            return errorOutput;
+        }
+
+        /**
+         * Wait for all output to be handed to the sinks, no longer than the timeout.
+         *
+         * @return true if done, false if the timeout passed first.
+         */
+        public boolean awaitOutput(long timeoutInMillis) {
+            long endTime = System.currentTimeMillis() + timeoutInMillis;
+            try {
+                if (!output.awaitDone(timeoutInMillis, TimeUnit.MILLISECONDS))
+                    return false;
+                long remaining = Math.max(0, endTime - System.currentTimeMillis());
+                return errorOutput == null || errorOutput.awaitDone(remaining, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         public Date getStartTime() {
             return startTime;
         }
@@ -0,0 +1,137 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for AsyncHistoryWriter.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class AsyncHistoryWriterTest {
+
+    @Test
+    public void testBatchBySize() throws Exception {
+        ResultBatchHandler handler = new ResultBatchHandler();
+        AsyncHistoryWriter<String> writer = new AsyncHistoryWriter<String>("test", 100, handler);
+        writer.setBatchSize(10);
+        writer.setFlushIntervalInMillis(5000);
+        writer.start();
+        for (int i = 0; i < 25; i++)
+            writer.add("event" + i);
+        writer.shutdown(10000);
+
+        assertThat(handler.items.size(), is(25));
+        assertThat(handler.items.get(0), is("event0"));
+        assertThat(handler.items.get(24), is("event24"));
+        for (Integer size : handler.batchSizes)
+            assertThat(size, lessThanOrEqualTo(10));
+        assertThat(writer.getWrittenCount(), is(25L));
+        assertThat(writer.getQueueSize(), is(0));
+    }
+
+    @Test
+    public void testFlushByTime() throws Exception {
+        ResultBatchHandler handler = new ResultBatchHandler();
+        AsyncHistoryWriter<String> writer = new AsyncHistoryWriter<String>("test", 100, handler);
+        writer.setBatchSize(1000);
+        writer.setFlushIntervalInMillis(50);
+        writer.start();
+        writer.add("event0");
+        writer.add("event1");
+        Thread.sleep(500);
+        assertThat(handler.items.size(), is(2));
+        writer.shutdown(10000);
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        BlockingBatchHandler handler = new BlockingBatchHandler();
+        AsyncHistoryWriter<String> writer = new AsyncHistoryWriter<String>("test", 3, handler);
+        writer.setBatchSize(1);
+        writer.setOverflowPolicy(AsyncHistoryWriter.OverflowPolicy.DROP_OLDEST);
+        writer.start();
+
+        // First one is taken by writer thread and then it get stuck in handler.
+        writer.add("event0");
+        handler.entered.await();
+        for (int i = 1; i <= 5; i++)
+            writer.add("event" + i);
+        assertThat(writer.getDroppedCount(), is(2L));
+
+        handler.release.countDown();
+        writer.shutdown(10000);
+        assertThat(handler.items, contains("event0", "event3", "event4", "event5"));
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        File spillFile = new File("target/AsyncHistoryWriterTest-spill.dat");
+        spillFile.delete();
+        BlockingBatchHandler handler = new BlockingBatchHandler();
+        AsyncHistoryWriter<String> writer = new AsyncHistoryWriter<String>("test", 2, handler);
+        writer.setBatchSize(1);
+        writer.setFlushIntervalInMillis(50);
+        writer.setOverflowPolicy(AsyncHistoryWriter.OverflowPolicy.SPILL);
+        writer.setSpillFile(spillFile);
+        writer.start();
+
+        writer.add("event0");
+        handler.entered.await();
+        for (int i = 1; i <= 5; i++)
+            writer.add("event" + i);
+        assertThat(writer.getSpilledCount(), is(3L));
+        assertThat(spillFile.exists(), is(true));
+
+        handler.release.countDown();
+        writer.shutdown(10000);
+        assertThat(handler.items.size(), is(6));
+        assertThat(handler.items, hasItems("event0", "event1", "event2", "event3", "event4", "event5"));
+        assertThat(spillFile.exists(), is(false));
+    }
+
+    @Test
+    public void testAddAfterShutdownWritesDirectly() throws Exception {
+        ResultBatchHandler handler = new ResultBatchHandler();
+        AsyncHistoryWriter<String> writer = new AsyncHistoryWriter<String>("test", 10, handler);
+        writer.start();
+        writer.shutdown(10000);
+        writer.add("late");
+        assertThat(handler.items, contains("late"));
+    }
+
+    public static class ResultBatchHandler implements AsyncHistoryWriter.BatchHandler<String> {
+        List<String> items = Collections.synchronizedList(new ArrayList<String>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void onBatch(List<String> batch) {
+            batchSizes.add(batch.size());
+            items.addAll(batch);
+        }
+    }
+
+    public static class BlockingBatchHandler extends ResultBatchHandler {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void onBatch(List<String> batch) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            super.onBatch(batch);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.TriggerKey;
+
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test AsyncSchedulerTemplate futures, read coalescing, timeouts and queue bound.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class AsyncSchedulerTemplateTest {
+
+    private static AsyncSchedulerTemplate.Call<Integer> createWaitingCall(final CountDownLatch latch) {
+        return new AsyncSchedulerTemplate.Call<Integer>() {
+            @Override
+            public Integer call(SchedulerTemplate scheduler) throws Exception {
+                latch.await();
+                return scheduler.countTriggers();
+            }
+        };
+    }
+
+    @Test
+    public void testOperations() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testOperations");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        AsyncSchedulerTemplate asyncScheduler = new AsyncSchedulerTemplate(scheduler);
+        try {
+            asyncScheduler.scheduleJob(SchedulerTemplate.createJobDetail("job1", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("job1", "0 0 * * * ?")).get(5, TimeUnit.SECONDS);
+            assertThat(asyncScheduler.countTriggers().get(5, TimeUnit.SECONDS), is(1));
+            assertThat(asyncScheduler.getTrigger(TriggerKey.triggerKey("job1")).get(5, TimeUnit.SECONDS).getKey(),
+                    is(TriggerKey.triggerKey("job1")));
+            asyncScheduler.pauseTrigger(TriggerKey.triggerKey("job1")).get(5, TimeUnit.SECONDS);
+            assertThat(asyncScheduler.getPausedTriggers().get(5, TimeUnit.SECONDS).size(), is(1));
+        } finally {
+            asyncScheduler.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadCoalescing() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testReadCoalescing");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        AsyncSchedulerTemplate asyncScheduler = new AsyncSchedulerTemplate(scheduler);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            Future<Integer> first = asyncScheduler.submitRead("count", createWaitingCall(latch));
+            Future<Integer> second = asyncScheduler.submitRead("count", createWaitingCall(latch));
+            Future<Integer> other = asyncScheduler.submitRead("otherCount", createWaitingCall(latch));
+            assertThat(second, sameInstance(first));
+            assertThat(other, not(sameInstance(first)));
+            assertThat(asyncScheduler.getCoalescedCount(), is(1L));
+
+            latch.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS), is(0));
+            assertThat(other.get(5, TimeUnit.SECONDS), is(0));
+            // Done reads are not shared any more.
+            assertThat(asyncScheduler.submitRead("count", createWaitingCall(latch)), not(sameInstance(first)));
+        } finally {
+            asyncScheduler.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testTimeout");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        AsyncSchedulerTemplate asyncScheduler = new AsyncSchedulerTemplate(scheduler, 1, 10, 0);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            Future<Integer> future = asyncScheduler.submit(createWaitingCall(latch), 100);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Operation should have timed out.");
+            } catch (CancellationException e) {
+                // Expected.
+            }
+            assertThat(asyncScheduler.getTimedOutCount(), is(1L));
+        } finally {
+            latch.countDown();
+            asyncScheduler.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testBoundedQueue() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testBoundedQueue");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        AsyncSchedulerTemplate asyncScheduler = new AsyncSchedulerTemplate(scheduler, 1, 1, 0);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            Future<Integer> running = asyncScheduler.submit(createWaitingCall(latch));
+            long endTime = System.currentTimeMillis() + 5000;
+            while (asyncScheduler.getActiveCount() == 0 && System.currentTimeMillis() < endTime)
+                Thread.sleep(10);
+            Future<Integer> queued = asyncScheduler.submit(createWaitingCall(latch));
+            assertThat(asyncScheduler.getQueueSize(), is(1));
+            try {
+                asyncScheduler.submit(createWaitingCall(latch));
+                fail("Queue should be full.");
+            } catch (RejectedExecutionException e) {
+                // Expected.
+            }
+
+            // Cancelling frees the place in the queue.
+            queued.cancel(false);
+            assertThat(asyncScheduler.getQueueSize(), is(0));
+            Future<Integer> next = asyncScheduler.submit(createWaitingCall(latch));
+            latch.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS), is(0));
+            assertThat(next.get(5, TimeUnit.SECONDS), is(0));
+        } finally {
+            latch.countDown();
+            asyncScheduler.shutdown();
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package myschedule.quartz.extra;
+
+import myschedule.quartz.extra.job.OsCommandJob;
+import myschedule.quartz.extra.util.ProcessUtilsTest;
+import org.junit.Test;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for CommandGate and CommandGatePlugin.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class CommandGateTest {
+    @Test
+    public void testGlobalLimit() throws Exception {
+        CommandGate gate = new CommandGate(2, true);
+        CommandGate.Permit a = gate.acquire("A", 0);
+        CommandGate.Permit b = gate.acquire("B", 0);
+        assertThat(a, notNullValue());
+        assertThat(b, notNullValue());
+        assertThat(gate.acquire("C", 0), nullValue());
+
+        CommandGateStats stats = gate.getStats().get(0);
+        assertThat(stats.getName(), is(CommandGate.GLOBAL_NAME));
+        assertThat(stats.getLimit(), is(2));
+        assertThat(stats.getInUseCount(), is(2));
+        assertThat(stats.getAcquiredCount(), is(2L));
+        assertThat(stats.getRejectedCount(), is(1L));
+
+        a.release();
+        a.release();
+        assertThat(gate.getStats().get(0).getInUseCount(), is(1));
+        assertThat(gate.acquire("C", 0), notNullValue());
+    }
+
+    @Test
+    public void testGroupLimit() throws Exception {
+        CommandGate gate = new CommandGate(0, true);
+        gate.setGroupLimit("reports", 1);
+        CommandGate.Permit permit = gate.acquire("reports", 0);
+        assertThat(permit.getGroup(), is("reports"));
+        assertThat(gate.acquire("reports", 0), nullValue());
+        // Other groups have no limit.
+        assertThat(gate.acquire("backups", 0), notNullValue());
+        assertThat(gate.acquire("backups", 0), notNullValue());
+
+        List<CommandGateStats> stats = gate.getStats();
+        assertThat(stats.size(), is(2));
+        assertThat(stats.get(0).getLimit(), is(0));
+        assertThat(stats.get(0).getInUseCount(), is(3));
+        assertThat(stats.get(1).getName(), is("reports"));
+        assertThat(stats.get(1).getInUseCount(), is(1));
+        assertThat(stats.get(1).getRejectedCount(), is(1L));
+
+        // A rejected group permit does not keep the global one.
+        permit.release();
+        assertThat(gate.getStats().get(0).getInUseCount(), is(2));
+        assertThat(gate.getStats().get(1).getInUseCount(), is(0));
+    }
+
+    @Test
+    public void testDefaultGroupLimit() throws Exception {
+        CommandGate gate = new CommandGate(0, true);
+        gate.setDefaultGroupLimit(1);
+        gate.setGroupLimitIfAbsent("big", 2);
+        gate.setGroupLimitIfAbsent("big", 5);
+        assertThat(gate.acquire("small", 0), notNullValue());
+        assertThat(gate.acquire("small", 0), nullValue());
+        assertThat(gate.acquire("big", 0), notNullValue());
+        assertThat(gate.acquire("big", 0), notNullValue());
+        assertThat(gate.acquire("big", 0), nullValue());
+    }
+
+    @Test
+    public void testWaitForPermit() throws Exception {
+        final CommandGate gate = new CommandGate(1, true);
+        CommandGate.Permit permit = gate.acquire("A", 0);
+        assertThat(gate.acquire("A", 50), nullValue());
+
+        final AtomicReference<CommandGate.Permit> waited = new AtomicReference<CommandGate.Permit>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waited.set(gate.acquire("A", -1));
+                } catch (InterruptedException e) {
+                    // Test fails below.
+                }
+                done.countDown();
+            }
+        };
+        thread.start();
+        Thread.sleep(100);
+        assertThat(gate.getStats().get(0).getWaitingCount(), is(1));
+        permit.release();
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(waited.get(), notNullValue());
+
+        CommandGateStats stats = gate.getStats().get(0);
+        assertThat(stats.getWaitingCount(), is(0));
+        assertThat(stats.getAcquiredCount(), is(2L));
+        assertThat(stats.getRejectedCount(), is(1L));
+        assertThat(stats.getWaitTimeMax(), greaterThanOrEqualTo(50L));
+    }
+
+    @Test
+    public void testPlugin() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "CommandGateTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.plugin.MyCommandGatePlugin.class", CommandGatePlugin.class.getName());
+        props.put("org.quartz.plugin.MyCommandGatePlugin.maxConcurrent", "4");
+        props.put("org.quartz.plugin.MyCommandGatePlugin.groupLimits", "reports=1, backups=2");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        CommandGate gate = scheduler.getCommandGate();
+        assertThat(gate, notNullValue());
+        ResultJobListener.resetResult();
+        scheduler.addJobListener(new ResultJobListener());
+
+        String pathSep = File.separator;
+        String javaBin = System.getProperty("java.home") + pathSep + "bin" + pathSep + "java";
+        String classpath = System.getProperty("java.class.path");
+        String[] cmdArgs = new String[]{javaBin, "-cp", classpath, ProcessUtilsTest.RunJavaMain.class.getName(),
+                "A"};
+
+        // The reports permit is held here, so the fire is vetoed right away by default.
+        CommandGate.Permit held = gate.acquire("reports", 0);
+        JobDetail rejectedJob = SchedulerTemplate.createJobDetail(JobKey.jobKey("rejected", "reports"),
+                OsCommandJob.class, false, null);
+        rejectedJob.getJobDataMap().put(OsCommandJob.CMD_ARGS_KEY, cmdArgs);
+        Trigger trigger = SchedulerTemplate.createSimpleTrigger("rejected");
+        scheduler.scheduleJob(rejectedJob, trigger);
+
+        JobDetail job = SchedulerTemplate.createJobDetail(JobKey.jobKey("ran", "other"), OsCommandJob.class, false,
+                null);
+        JobDataMap dataMap = job.getJobDataMap();
+        dataMap.put(OsCommandJob.CMD_ARGS_KEY, cmdArgs);
+        dataMap.put(OsCommandJob.COMMAND_GROUP_KEY, "backups");
+        scheduler.scheduleJob(job, SchedulerTemplate.createSimpleTrigger("ran"));
+        scheduler.startAndShutdown(500);
+        held.release();
+
+        // The vetoed job did not run, and the other one ran without failing.
+        assertThat(ResultJobListener.result.jobExecutionVetoedTimes.size(), is(1));
+        assertThat(ResultJobListener.result.jobWasExecutedTimes.size(), is(1));
+        assertThat(ResultJobListener.result.jobWasExecutedTimes.get(0)[2], nullValue());
+
+        List<CommandGateStats> stats = gate.getStats();
+        assertThat(stats.size(), is(3));
+        assertThat(stats.get(0).getLimit(), is(4));
+        assertThat(stats.get(0).getAcquiredCount(), is(2L));
+        assertThat(stats.get(0).getInUseCount(), is(0));
+        assertThat(stats.get(1).getName(), is("backups"));
+        assertThat(stats.get(1).getAcquiredCount(), is(1L));
+        assertThat(stats.get(1).getInUseCount(), is(0));
+        assertThat(stats.get(2).getName(), is("reports"));
+        assertThat(stats.get(2).getAcquiredCount(), is(1L));
+        assertThat(stats.get(2).getRejectedCount(), is(1L));
+    }
+}
@@ -0,0 +1,195 @@
+package myschedule.quartz.extra;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for FileHistoryStore and FileSchedulerHistoryPlugin.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class FileHistoryStoreTest {
+    private File storeDir = new File("target/FileHistoryStoreTest");
+    private FileHistoryStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(storeDir);
+        store = new FileHistoryStore(storeDir);
+        store.setSegmentSizeInBytes(4096);
+        store.setIndexInterval(4);
+        store.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void testAppendAndQueryPages() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 100; i++)
+            store.append(createEvent(time + i * 100, "T" + (i % 3)));
+        assertThat(store.getRecordCount(), is(100L));
+        assertThat(store.getSegmentCount(), greaterThan(1));
+
+        HistoryQuery query = new HistoryQuery();
+        query.setPageSize(30);
+        List<Long> ids = new ArrayList<Long>();
+        List<HistoryEvent> page = store.query(query);
+        while (true) {
+            for (HistoryEvent event : page)
+                ids.add(event.getId());
+            if (page.size() < query.getPageSize())
+                break;
+            query = query.nextPage(page.get(page.size() - 1));
+            page = store.query(query);
+        }
+        assertThat(ids.size(), is(100));
+        for (int i = 0; i < 100; i++)
+            assertThat(ids.get(i), is(100L - i));
+
+        HistoryEvent event = store.query(new HistoryQuery()).get(0);
+        assertThat(event.getEventTime().getTime(), is(time + 99 * 100));
+        assertThat(event.getInfo1(), is("DEFAULT.T0"));
+        assertThat(event.getInfo3(), nullValue());
+        assertThat(event.getInfo5(), is("\u00e9v\u00e9nement"));
+    }
+
+    @Test
+    public void testQueryFilters() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 100; i++)
+            store.append(createEvent(time + i * 100, "T" + (i % 3)));
+
+        HistoryQuery query = new HistoryQuery();
+        query.setTriggerKey("DEFAULT.T1");
+        query.setFromTime(new Date(time + 1000));
+        query.setToTime(new Date(time + 2000));
+        List<HistoryEvent> events = store.query(query);
+        // i = 10 to 19 where i % 3 == 1
+        assertThat(events.size(), is(4));
+        assertThat(events.get(0).getEventTime().getTime(), is(time + 1900));
+        assertThat(events.get(3).getEventTime().getTime(), is(time + 1000));
+    }
+
+    @Test
+    public void testReopenAndDelete() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 100; i++)
+            store.append(createEvent(time + i * 100, "T" + i));
+        int segmentCount = store.getSegmentCount();
+        store.close();
+
+        store = new FileHistoryStore(storeDir);
+        store.setSegmentSizeInBytes(4096);
+        store.open();
+        assertThat(store.getSegmentCount(), is(segmentCount));
+        assertThat(store.getRecordCount(), is(100L));
+        HistoryEvent event = createEvent(time + 100 * 100, "T100");
+        store.append(event);
+        assertThat(event.getId(), is(101L));
+
+        long deleted = store.purge(new Date(time + 5000));
+        assertThat(deleted, greaterThan(0L));
+        assertThat(store.getRecordCount(), is(101L - deleted));
+        HistoryQuery query = new HistoryQuery();
+        query.setPageSize(1000);
+        List<HistoryEvent> events = store.query(query);
+        assertThat(events.size(), is((int) (101L - deleted)));
+        assertThat(events.get(0).getId(), is(101L));
+
+        HistoryStoreStats stats = store.getStats();
+        assertThat(stats.getEventCount(), is(101L - deleted));
+        assertThat(stats.getAppendedCount(), is(1L));
+        assertThat(stats.getPurgedCount(), is(deleted));
+    }
+
+    @Test
+    public void testPurgeWhileQuerying() throws Exception {
+        final long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 100; i++)
+            store.append(createEvent(time + i * 100, "T" + i));
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                HistoryQuery query = new HistoryQuery();
+                query.setPageSize(1000);
+                try {
+                    while (!done.get()) {
+                        for (HistoryEvent event : store.query(query))
+                            assertThat(event.getInfo1(), startsWith("DEFAULT.T"));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }
+        });
+        reader.start();
+        long deleted = 0;
+        for (int i = 1; i <= 9; i++) {
+            deleted += store.purge(new Date(time + i * 1000));
+            Thread.sleep(10);
+        }
+        done.set(true);
+        reader.join();
+        assertThat(errors.size(), is(0));
+        assertThat(deleted, greaterThan(0L));
+
+        // Files of segments still read during a purge are deleted by the next one.
+        assertThat(store.purge(new Date(0)), is(0L));
+        assertThat(storeDir.list().length, is(store.getSegmentCount()));
+    }
+
+    @Test
+    public void testPlugin() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "FileHistoryStoreTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.class", FileSchedulerHistoryPlugin.class.getName());
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.storeDir", storeDir.getPath() + "/plugin");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        FileSchedulerHistoryPlugin plugin = (FileSchedulerHistoryPlugin) scheduler.getContext().get(
+                FileSchedulerHistoryPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        scheduler.scheduleSimpleJob("testPlugin", 1, 0, SchedulerTemplateTest.TestJob.class);
+        scheduler.startAndShutdown(500);
+
+        HistoryQuery query = new HistoryQuery();
+        query.setEventType("TriggerListener");
+        List<HistoryEvent> events = plugin.queryHistory(query);
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0).getEventName(), is("triggerComplete"));
+        assertThat(events.get(0).getInfo2(), is("DEFAULT.testPlugin"));
+        assertThat(events.get(1).getEventName(), is("triggerFired"));
+    }
+
+    private HistoryEvent createEvent(long time, String triggerName) {
+        HistoryEvent event = new HistoryEvent();
+        event.setHostIp("127.0.0.1");
+        event.setHostName("localhost");
+        event.setSchedulerName("test");
+        event.setEventType("TriggerListener");
+        event.setEventName("triggerFired");
+        event.setEventTime(new Date(time));
+        event.setInfo1("DEFAULT." + triggerName);
+        event.setInfo2("DEFAULT." + triggerName + "Job");
+        event.setInfo5("\u00e9v\u00e9nement");
+        return event;
+    }
+}
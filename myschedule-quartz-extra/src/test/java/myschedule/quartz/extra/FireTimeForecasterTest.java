@@ -0,0 +1,128 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.calendar.CronCalendar;
+
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+/**
+ * Test FireTimeForecaster and the SchedulerTemplate methods using it.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class FireTimeForecasterTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static Date createBaseTime() {
+        java.util.Calendar cal = new GregorianCalendar(2030, java.util.Calendar.JANUARY, 1, 0, 0, 0);
+        return cal.getTime();
+    }
+
+    private static int getHour(Date date) {
+        java.util.Calendar cal = java.util.Calendar.getInstance();
+        cal.setTime(date);
+        return cal.get(java.util.Calendar.HOUR_OF_DAY);
+    }
+
+    @Test
+    public void testNextFireTimesSkipCalendarExclusions() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testNextFireTimesSkipCalendarExclusions");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            // Only afternoons and evenings are included.
+            scheduler.addCalendar("noMornings", new CronCalendar("* * 0-11 ? * *"), false, false);
+            Date baseTime = createBaseTime();
+            Trigger trigger = newTrigger().withIdentity("hourly").startAt(baseTime).modifiedByCalendar("noMornings")
+                    .withSchedule(CronScheduleBuilder.cronSchedule("0 0 * * * ?")).build();
+
+            List<Date> dates = scheduler.getNextFireTimesWithCalendar(trigger, baseTime, 24);
+            assertThat(dates.size(), is(24));
+            for (Date date : dates)
+                assertThat(getHour(date), greaterThanOrEqualTo(12));
+            assertThat(dates.get(0), is(new Date(baseTime.getTime() + 12 * HOUR)));
+            assertThat(dates.get(12), is(new Date(baseTime.getTime() + 36 * HOUR)));
+
+            // A trigger that runs out of fire times returns fewer.
+            Trigger limited = newTrigger().withIdentity("limited").startAt(baseTime).modifiedByCalendar("noMornings")
+                    .withSchedule(SimpleScheduleBuilder.repeatHourlyForTotalCount(24)).build();
+            assertThat(scheduler.getNextFireTimesWithCalendar(limited, new Date(baseTime.getTime() - 1), 100).size(),
+                    is(12));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeline() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testTimeline");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            Date baseTime = createBaseTime();
+            Trigger everyHour = newTrigger().withIdentity("everyHour").startAt(baseTime)
+                    .withSchedule(CronScheduleBuilder.cronSchedule("0 0 * * * ?")).build();
+            Trigger every20Minutes = newTrigger().withIdentity("every20Minutes").startAt(baseTime)
+                    .withSchedule(SimpleScheduleBuilder.repeatMinutelyForever(20)).build();
+            List<Trigger> triggers = Arrays.asList(everyHour, every20Minutes);
+
+            FireTimeForecaster forecaster = new FireTimeForecaster(scheduler);
+            Date toTime = new Date(baseTime.getTime() + 2 * HOUR);
+            assertThat(forecaster.getFireTimesBetween(everyHour, baseTime, toTime).size(), is(2));
+            assertThat(forecaster.getFireTimesBetween(every20Minutes, baseTime, toTime).size(), is(6));
+
+            List<ForecastFire> timeline = forecaster.getTimeline(triggers, baseTime, toTime, 100);
+            assertThat(timeline.size(), is(8));
+            for (int i = 1; i < timeline.size(); i++)
+                assertThat(timeline.get(i).getFireTime(), greaterThanOrEqualTo(timeline.get(i - 1).getFireTime()));
+            // Same fire time, ordered by trigger key.
+            assertThat(timeline.get(0).getTriggerKey(), is(TriggerKey.triggerKey("every20Minutes")));
+            assertThat(timeline.get(1).getTriggerKey(), is(TriggerKey.triggerKey("everyHour")));
+            assertThat(timeline.get(1).getFireTime(), is(baseTime));
+
+            assertThat(forecaster.getTimeline(triggers, baseTime, toTime, 3).size(), is(3));
+            // Forecasting does not change the triggers.
+            assertThat(everyHour.getNextFireTime(), nullValue());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testSchedulerFireTimeline() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testSchedulerFireTimeline");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            Date fromTime = new Date();
+            Date toTime = new Date(fromTime.getTime() + 24 * HOUR);
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail("hourlyJob", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("hourlyJob", "0 0 * * * ?"));
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail("pausedJob", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("pausedJob", "0 0 * * * ?"));
+            scheduler.pauseTrigger(TriggerKey.triggerKey("pausedJob"));
+
+            List<ForecastFire> timeline = scheduler.getFireTimeline(fromTime, toTime, 1000);
+            assertThat(timeline.size(), is(24));
+            for (ForecastFire fire : timeline)
+                assertThat(fire.getTriggerKey(), is(TriggerKey.triggerKey("hourlyJob")));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
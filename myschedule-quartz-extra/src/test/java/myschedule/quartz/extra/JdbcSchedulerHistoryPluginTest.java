@@ -0,0 +1,287 @@
+package myschedule.quartz.extra;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Integration test for JdbcSchedulerHistoryPlugin using an in-memory H2 database.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JdbcSchedulerHistoryPluginTest {
+    private static final String DB_URL = "jdbc:h2:mem:JdbcSchedulerHistoryPluginTest;DB_CLOSE_DELAY=-1";
+    private static final String HISTORY_COLUMNS_DDL = "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "host_ip VARCHAR(15) NOT NULL, host_name VARCHAR(256) NOT NULL, " +
+            "scheduler_name VARCHAR(256) NOT NULL, event_type VARCHAR(128) NOT NULL, " +
+            "event_name VARCHAR(128) NOT NULL, event_time TIMESTAMP NOT NULL, " +
+            "info1 VARCHAR(256), info2 VARCHAR(256), info3 VARCHAR(256), info4 VARCHAR(256), info5 VARCHAR(256)";
+    private SchedulerTemplate scheduler;
+    private JdbcSchedulerHistoryPlugin plugin;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        Connection conn = DriverManager.getConnection(DB_URL);
+        Statement stmt = conn.createStatement();
+        stmt.execute("DROP TABLE IF EXISTS qrtz_scheduler_history");
+        stmt.execute("CREATE TABLE qrtz_scheduler_history (" + HISTORY_COLUMNS_DDL + ")");
+        stmt.execute("CREATE INDEX qrtz_scheduler_history_time_idx ON qrtz_scheduler_history(event_time, id)");
+        stmt.close();
+        conn.close();
+
+        scheduler = new SchedulerTemplate(createProps());
+        plugin = (JdbcSchedulerHistoryPlugin) scheduler.getContext().get(
+                JdbcSchedulerHistoryPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+    }
+
+    private Properties createProps() {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "JdbcSchedulerHistoryPluginTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.dataSource.historyDs.driver", "org.h2.Driver");
+        props.put("org.quartz.dataSource.historyDs.URL", DB_URL);
+        props.put("org.quartz.dataSource.historyDs.maxConnections", "3");
+        String prefix = "org.quartz.plugin.MyJobHistoryPlugin.";
+        props.put(prefix + "class", JdbcSchedulerHistoryPlugin.class.getName());
+        props.put(prefix + "dataSourceName", "historyDs");
+        props.put(prefix + "insertSql", "INSERT INTO qrtz_scheduler_history(host_ip, host_name, scheduler_name, " +
+                "event_type, event_name, event_time, info1, info2, info3, info4, info5) VALUES(?,?,?,?,?,?,?,?,?,?,?)");
+        props.put(prefix + "querySql", "SELECT * FROM qrtz_scheduler_history ORDER BY event_time DESC");
+        props.put(prefix + "deleteSql", "DELETE FROM qrtz_scheduler_history WHERE event_time < ?");
+        props.put(prefix + "idColumnName", "id");
+        return props;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPluginRecordsHistory() throws Exception {
+        scheduler.scheduleSimpleJob("testPluginRecordsHistory", 1, 0, SchedulerTemplateTest.TestJob.class);
+        HistoryQuery query = new HistoryQuery();
+        query.setEventName("jobScheduled");
+        List<HistoryEvent> events = plugin.queryHistory(query);
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getId(), notNullValue());
+        assertThat(events.get(0).getEventType(), is("SchedulerListener"));
+        assertThat(events.get(0).getInfo1(), is("DEFAULT.testPluginRecordsHistory"));
+    }
+
+    @Test
+    public void testQueryHistoryPages() throws Exception {
+        // Many events share the same time, so the pages must break ties by id.
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 25; i++)
+            insertEvent(i % 2 == 0 ? "triggerFired" : "triggerComplete", time + (i / 10) * 1000, "T" + (i % 3));
+
+        HistoryQuery query = new HistoryQuery();
+        query.setPageSize(7);
+        List<Long> ids = new ArrayList<Long>();
+        int pages = 0;
+        List<HistoryEvent> page = plugin.queryHistory(query);
+        while (true) {
+            pages++;
+            HistoryEvent prev = null;
+            for (HistoryEvent event : page) {
+                if (prev != null)
+                    assertThat(event.getEventTime().getTime(), lessThanOrEqualTo(prev.getEventTime().getTime()));
+                ids.add(event.getId());
+                prev = event;
+            }
+            if (page.size() < query.getPageSize())
+                break;
+            query = query.nextPage(page.get(page.size() - 1));
+            page = plugin.queryHistory(query);
+        }
+        assertThat(pages, is(4));
+        assertThat(ids.size(), is(25));
+        assertThat(new HashSet<Long>(ids).size(), is(25));
+    }
+
+    @Test
+    public void testQueryHistoryFilters() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 30; i++)
+            insertEvent(i % 2 == 0 ? "triggerFired" : "triggerComplete", time + i * 1000, "T" + (i % 3));
+
+        HistoryQuery query = new HistoryQuery();
+        query.setEventType("TriggerListener");
+        query.setEventName("triggerFired");
+        query.setTriggerKey("DEFAULT.T0");
+        List<HistoryEvent> events = plugin.queryHistory(query);
+        assertThat(events.size(), is(5));
+        for (HistoryEvent event : events) {
+            assertThat(event.getEventName(), is("triggerFired"));
+            assertThat(event.getInfo1(), is("DEFAULT.T0"));
+            assertThat(event.getInfo2(), is("DEFAULT.T0Job"));
+        }
+
+        query = new HistoryQuery();
+        query.setJobKey("DEFAULT.T1Job");
+        query.setFromTime(new Date(time + 10000));
+        query.setToTime(new Date(time + 20000));
+        events = plugin.queryHistory(query);
+        assertThat(events.size(), is(4));
+        assertThat(events.get(0).getEventTime().getTime(), is(time + 19000));
+    }
+
+    @Test
+    public void testPurgeByIdRange() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 25; i++)
+            insertEvent("triggerFired", time + i * 1000, "T" + i);
+
+        plugin.setDeleteChunkSize(10);
+        plugin.setDeleteChunkPauseInMillis(0);
+        HistoryPurgeProgress progress = plugin.purgeJobHistory(new Date(time + 23000), new HistoryPurgeProgress());
+        assertThat(progress.isDone(), is(true));
+        assertThat(progress.getDeletedCount(), is(23L));
+        assertThat(progress.getChunkCount(), is(3));
+
+        List<HistoryEvent> events = plugin.queryHistory(new HistoryQuery());
+        assertThat(events.size(), is(2));
+        assertThat(events.get(1).getEventTime().getTime(), is(time + 23000));
+    }
+
+    @Test
+    public void testPurgeByChunkSql() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 25; i++)
+            insertEvent("triggerFired", time + i * 1000, "T" + i);
+
+        plugin.setDeleteChunkSize(10);
+        plugin.setDeleteChunkPauseInMillis(0);
+        plugin.setDeleteChunkSql("DELETE FROM qrtz_scheduler_history WHERE event_time < ? LIMIT 10");
+        HistoryPurgeProgress progress = plugin.purgeJobHistory(new Date(time + 30000), new HistoryPurgeProgress());
+        assertThat(progress.getDeletedCount(), is(25L));
+        assertThat(progress.getChunkCount(), is(3));
+        assertThat(plugin.queryHistory(new HistoryQuery()).size(), is(0));
+    }
+
+    @Test
+    public void testPurgeCancelled() throws Exception {
+        long time = System.currentTimeMillis() - 60000;
+        for (int i = 0; i < 25; i++)
+            insertEvent("triggerFired", time + i * 1000, "T" + i);
+
+        plugin.setDeleteChunkSize(5);
+        plugin.setDeleteChunkPauseInMillis(0);
+        final HistoryPurgeProgress progress = new HistoryPurgeProgress() {
+            @Override
+            void chunkDeleted(int count) {
+                super.chunkDeleted(count);
+                if (getChunkCount() == 2)
+                    cancel();
+            }
+        };
+        plugin.purgeJobHistory(new Date(time + 30000), progress);
+        assertThat(progress.isCancelled(), is(true));
+        assertThat(progress.getDeletedCount(), is(10L));
+        assertThat(plugin.queryHistory(new HistoryQuery()).size(), is(15));
+    }
+
+    @Test
+    public void testPartitionTables() throws Exception {
+        scheduler.shutdown();
+        Properties props = createProps();
+        String prefix = "org.quartz.plugin.MyJobHistoryPlugin.";
+        props.put(prefix + "tableName", "test_history_p");
+        props.put(prefix + "querySql", "SELECT * FROM test_history_p");
+        props.put(prefix + "partitionMode", "TABLES");
+        props.put(prefix + "partitionAddSql", "CREATE TABLE {name} (" + HISTORY_COLUMNS_DDL + "); " +
+                "CREATE INDEX {name}_t ON {name}(event_time)");
+        scheduler = new SchedulerTemplate(props);
+        plugin = (JdbcSchedulerHistoryPlugin) scheduler.getContext().get(
+                JdbcSchedulerHistoryPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+
+        // Current and two ahead partitions are created on init.
+        HistoryPartitionManager manager = plugin.getPartitionManager();
+        Date now = new Date();
+        String today = manager.getPartitionName(now);
+        assertThat(manager.getPartitions().size(), is(3));
+        assertThat(manager.getPartitions().get(0), is(today));
+        // Each statement of the add SQL is run, so the partition tables get their index.
+        Connection conn = DriverManager.getConnection(DB_URL);
+        java.sql.ResultSet rs = conn.getMetaData().getIndexInfo(null, null, today.toUpperCase(), false, false);
+        List<String> indexNames = new ArrayList<String>();
+        while (rs.next())
+            indexNames.add(rs.getString("INDEX_NAME"));
+        rs.close();
+        conn.close();
+        assertThat(indexNames, hasItem((today + "_t").toUpperCase()));
+
+        // Events go into today's table, and can be read back from the view or by query.
+        scheduler.scheduleSimpleJob("testPartitionTables", 1, 0, SchedulerTemplateTest.TestJob.class);
+        assertThat(countRows(today), is(1));
+        assertThat(countRows("test_history_p"), is(1));
+        HistoryQuery query = new HistoryQuery();
+        query.setEventName("jobScheduled");
+        assertThat(plugin.queryHistory(query).size(), is(1));
+
+        // Old partitions are dropped as whole tables.
+        Date oldTime = new Date(now.getTime() - 10 * 24 * 3600 * 1000L);
+        String oldName = manager.getPartitionName(oldTime);
+        conn = DriverManager.getConnection(DB_URL);
+        Statement stmt = conn.createStatement();
+        stmt.execute("CREATE TABLE " + oldName + " (" + HISTORY_COLUMNS_DDL + ")");
+        stmt.close();
+        conn.close();
+        plugin.setDeleteIntervalInSecs(3 * 24 * 3600);
+        plugin.maintainPartitions();
+        assertThat(manager.getPartitions(), not(hasItem(oldName)));
+        assertThat(manager.getPartitions(), hasItem(today));
+
+        // Time range queries only read the partitions they need.
+        List<Object> params = new ArrayList<Object>();
+        query.setFromTime(manager.getPeriodStart(now));
+        query.setToTime(now);
+        assertThat(plugin.buildQueryHistorySql(query, params), containsString("FROM " + today + " WHERE"));
+    }
+
+    private int countRows(String table) throws Exception {
+        Connection conn = DriverManager.getConnection(DB_URL);
+        Statement stmt = conn.createStatement();
+        java.sql.ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table);
+        rs.next();
+        int result = rs.getInt(1);
+        rs.close();
+        stmt.close();
+        conn.close();
+        return result;
+    }
+
+    private void insertEvent(String eventName, long time, String triggerName) throws Exception {
+        Connection conn = DriverManager.getConnection(DB_URL);
+        PreparedStatement stmt = conn.prepareStatement("INSERT INTO qrtz_scheduler_history(host_ip, host_name, " +
+                "scheduler_name, event_type, event_name, event_time, info1, info2) VALUES(?,?,?,?,?,?,?,?)");
+        stmt.setString(1, "127.0.0.1");
+        stmt.setString(2, "localhost");
+        stmt.setString(3, "test");
+        stmt.setString(4, "TriggerListener");
+        stmt.setString(5, eventName);
+        stmt.setTimestamp(6, new Timestamp(time));
+        stmt.setString(7, "DEFAULT." + triggerName);
+        stmt.setString(8, "DEFAULT." + triggerName + "Job");
+        stmt.executeUpdate();
+        stmt.close();
+        conn.close();
+    }
+}
@@ -0,0 +1,170 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for LatencyHistogram, JobMetrics and JobMetricsPlugin.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class JobMetricsPluginTest {
+    @Test
+    public void testLatencyHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(99), is(0L));
+
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i);
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getMax(), is(1000L));
+        assertThat(histogram.getMean(), closeTo(500.5, 0.001));
+        assertThat(histogram.getValueAtPercentile(0), is(1L));
+        assertThat(histogram.getValueAtPercentile(100), is(1000L));
+        // Values are within the histogram precision of the exact percentiles.
+        assertThat((double) histogram.getValueAtPercentile(50), closeTo(500, 500 * 0.07));
+        assertThat((double) histogram.getValueAtPercentile(95), closeTo(950, 950 * 0.07));
+        assertThat((double) histogram.getValueAtPercentile(99), closeTo(990, 990 * 0.07));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertThat(histogram.getMax(), is(LatencyHistogram.MAX_TRACKABLE_VALUE));
+    }
+
+    @Test
+    public void testHistogramBuckets() throws Exception {
+        long previousIndex = -1;
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertThat((long) index, greaterThanOrEqualTo(previousIndex));
+            assertThat(LatencyHistogram.getBucketHighestValue(index), greaterThanOrEqualTo(value));
+            previousIndex = index;
+        }
+        int last = LatencyHistogram.getBucketIndex(LatencyHistogram.MAX_TRACKABLE_VALUE);
+        assertThat(LatencyHistogram.getBucketHighestValue(last), is(LatencyHistogram.MAX_TRACKABLE_VALUE));
+    }
+
+    @Test
+    public void testJobMetrics() throws Exception {
+        JobMetrics metrics = new JobMetrics("test");
+        metrics.recordExecution(10, false);
+        metrics.recordExecution(20, true);
+        metrics.recordExecution(30, false);
+        metrics.recordFireDelay(5);
+        metrics.recordMisfire();
+
+        JobMetricsSnapshot snapshot = metrics.getSnapshot();
+        assertThat(snapshot.getName(), is("test"));
+        assertThat(snapshot.getExecutionCount(), is(3L));
+        assertThat(snapshot.getFailureCount(), is(1L));
+        assertThat(snapshot.getMisfireCount(), is(1L));
+        assertThat(snapshot.getLastMinuteExecutionCount(), is(3L));
+        assertThat(snapshot.getRunTimeP50(), is(20L));
+        assertThat(snapshot.getRunTimeMax(), is(30L));
+        assertThat(snapshot.getFireDelayP99(), is(5L));
+    }
+
+    @Test
+    public void testPlugin() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "JobMetricsPluginTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.plugin.MyJobMetricsPlugin.class", JobMetricsPlugin.class.getName());
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        // Durable, so that the job metrics are not dropped when the triggers end.
+        scheduler.scheduleJob(SchedulerTemplate.createJobDetail(JobKey.jobKey("testPlugin"),
+                SchedulerTemplateTest.TestJob.class, true, null),
+                SchedulerTemplate.createSimpleTrigger("testPlugin", 2, 100));
+        scheduler.scheduleJob(SchedulerTemplate.createJobDetail(JobKey.jobKey("testPluginFailed", "FailGroup"),
+                FailJob.class, true, null),
+                SchedulerTemplate.createSimpleTrigger(TriggerKey.triggerKey("testPluginFailed", "FailGroup"), 1, 0,
+                        new Date(), null));
+        scheduler.startAndShutdown(500);
+
+        List<JobMetricsSnapshot> jobMetrics = scheduler.getJobMetrics();
+        assertThat(jobMetrics.size(), is(2));
+        assertThat(jobMetrics.get(0).getName(), is("DEFAULT.testPlugin"));
+        assertThat(jobMetrics.get(0).getExecutionCount(), is(2L));
+        assertThat(jobMetrics.get(0).getFailureCount(), is(0L));
+        assertThat(jobMetrics.get(1).getName(), is("FailGroup.testPluginFailed"));
+        assertThat(jobMetrics.get(1).getFailureCount(), is(1L));
+
+        List<JobMetricsSnapshot> groupMetrics = scheduler.getJobGroupMetrics();
+        assertThat(groupMetrics.size(), is(2));
+        assertThat(groupMetrics.get(0).getName(), is("DEFAULT"));
+
+        JobMetricsSnapshot total = scheduler.getTotalJobMetrics();
+        assertThat(total.getExecutionCount(), is(3L));
+        assertThat(total.getFailureCount(), is(1L));
+        assertThat(total.getLastMinuteExecutionCount(), is(3L));
+        assertThat(total.getFireDelayMax(), greaterThanOrEqualTo(0L));
+        assertThat(scheduler.getJobMetrics(JobKey.jobKey("testPlugin")).getExecutionCount(), is(2L));
+        assertThat(scheduler.getJobMetrics(JobKey.jobKey("noSuchJob")), nullValue());
+    }
+
+    @Test
+    public void testPluginDropsDeletedJobs() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testPluginDropsDeletedJobs");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        props.put("org.quartz.plugin.MyJobMetricsPlugin.class", JobMetricsPlugin.class.getName());
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            JobKey jobA = JobKey.jobKey("jobA", "GroupA");
+            JobKey jobB = JobKey.jobKey("jobB", "GroupA");
+            scheduler.scheduleSimpleJob(jobA, 100, 60000, SchedulerTemplateTest.TestJob.class, null, null, null);
+            scheduler.scheduleSimpleJob(jobB, 100, 60000, SchedulerTemplateTest.TestJob.class, null, null, null);
+            scheduler.start();
+            long endTime = System.currentTimeMillis() + 5000;
+            while (scheduler.getTotalJobMetrics().getExecutionCount() < 2 && System.currentTimeMillis() < endTime)
+                Thread.sleep(10);
+            assertThat(scheduler.getJobMetrics().size(), is(2));
+
+            scheduler.deleteJob(jobA);
+            assertThat(scheduler.getJobMetrics(jobA), nullValue());
+            assertThat(scheduler.getJobGroupMetrics().size(), is(1));
+
+            scheduler.deleteJob(jobB);
+            assertThat(scheduler.getJobMetrics().size(), is(0));
+            assertThat(scheduler.getJobGroupMetrics().size(), is(0));
+            assertThat(scheduler.getTotalJobMetrics().getExecutionCount(), is(2L));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(expected = QuartzRuntimeException.class)
+    public void testNoPlugin() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "JobMetricsPluginTest_testNoPlugin");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            assertThat(scheduler.getJobMetricsPlugin(), nullValue());
+            scheduler.getJobMetrics();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    public static class FailJob implements Job {
+        @Override
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            throw new JobExecutionException("Test failure.");
+        }
+    }
+}
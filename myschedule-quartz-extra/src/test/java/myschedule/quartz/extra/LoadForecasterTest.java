@@ -0,0 +1,103 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test LoadForecaster and SchedulerTemplate.getLoadForecast().
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class LoadForecasterTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    private static ForecastFire createFire(long fireTime, String name) {
+        return new ForecastFire(new Date(fireTime), TriggerKey.triggerKey(name), JobKey.jobKey(name));
+    }
+
+    @Test
+    public void testForecast() throws Exception {
+        long fromTime = 1000000L * MINUTE;
+        List<ForecastFire> fires = new ArrayList<ForecastFire>();
+        fires.add(createFire(fromTime, "job1"));
+        fires.add(createFire(fromTime, "job2"));
+        fires.add(createFire(fromTime + 10, "job3"));
+        fires.add(createFire(fromTime + 5 * MINUTE, "job1"));
+        // Runs from minute 7 to minute 9.
+        fires.add(createFire(fromTime + 7 * MINUTE, "longJob"));
+        fires.add(createFire(fromTime + 8 * MINUTE + 1, "job2"));
+
+        LoadForecaster loadForecaster = new LoadForecaster(null, 1000) {
+            @Override
+            public long estimateRunTime(JobKey jobKey) {
+                return jobKey.getName().equals("longJob") ? 2 * MINUTE : super.estimateRunTime(jobKey);
+            }
+        };
+        LoadForecast forecast = loadForecaster.forecast(fires, new Date(fromTime), new Date(fromTime + 10 * MINUTE),
+                MINUTE, 2, false);
+
+        List<LoadForecast.Bucket> buckets = forecast.getBuckets();
+        assertThat(buckets.size(), is(10));
+        assertThat(buckets.get(0).getFireCount(), is(3));
+        assertThat(buckets.get(0).getPeakConcurrency(), is(3));
+        assertThat(buckets.get(0).isSaturated(), is(true));
+        assertThat(buckets.get(1).getPeakConcurrency(), is(0));
+        assertThat(buckets.get(5).getPeakConcurrency(), is(1));
+        assertThat(buckets.get(7).getPeakConcurrency(), is(1));
+        // The long job started in the bucket before still holds a thread.
+        assertThat(buckets.get(8).getFireCount(), is(1));
+        assertThat(buckets.get(8).getPeakConcurrency(), is(2));
+        assertThat(buckets.get(8).isSaturated(), is(false));
+        // It ends exactly when the last bucket starts.
+        assertThat(buckets.get(9).getPeakConcurrency(), is(0));
+
+        assertThat(forecast.getSaturatedBuckets().size(), is(1));
+        assertThat(forecast.getPeakConcurrency(), is(3));
+        assertThat(forecast.getThreadPoolSize(), is(2));
+    }
+
+    @Test
+    public void testSchedulerLoadForecast() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "LoadForecasterTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            // Two jobs at the top of each hour, on a single thread.
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail("job1", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("job1", "0 0 * * * ?"));
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail("job2", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("job2", "0 0 * * * ?"));
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail("job3", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("job3", "0 30 * * * ?"));
+
+            // Buckets start half way through a minute, so the top of hour fires don't run across a bucket start.
+            Date fromTime = new Date(System.currentTimeMillis() / MINUTE * MINUTE + MINUTE / 2);
+            Date toTime = new Date(fromTime.getTime() + 24 * 60 * MINUTE);
+            LoadForecast forecast = scheduler.getLoadForecast(fromTime, toTime, MINUTE, 10000,
+                    LoadForecaster.DEFAULT_RUN_TIME_IN_MILLIS);
+            assertThat(forecast.getBuckets().size(), is(24 * 60));
+            assertThat(forecast.getThreadPoolSize(), is(1));
+            assertThat(forecast.isTruncated(), is(false));
+            assertThat(forecast.getSaturatedBuckets().size(), is(24));
+            for (LoadForecast.Bucket bucket : forecast.getSaturatedBuckets())
+                assertThat(bucket.getFireCount(), is(2));
+
+            assertThat(scheduler.getLoadForecast(fromTime, toTime, MINUTE, 10,
+                    LoadForecaster.DEFAULT_RUN_TIME_IN_MILLIS).isTruncated(), is(true));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
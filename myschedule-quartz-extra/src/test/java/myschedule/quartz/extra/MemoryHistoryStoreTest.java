@@ -0,0 +1,107 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for MemoryHistoryStore and MemorySchedulerHistoryPlugin.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class MemoryHistoryStoreTest {
+    @Test
+    public void testRingBuffer() throws Exception {
+        MemoryHistoryStore store = new MemoryHistoryStore(50);
+        long time = System.currentTimeMillis() - 60000;
+        List<HistoryEvent> batch = new ArrayList<HistoryEvent>();
+        for (int i = 0; i < 80; i++)
+            batch.add(createEvent(time + i * 100, "T" + (i % 2)));
+        store.appendBatch(batch.subList(0, 40));
+        for (HistoryEvent event : batch.subList(40, 80))
+            store.append(event);
+
+        HistoryStoreStats stats = store.getStats();
+        assertThat(stats.getEventCount(), is(50L));
+        assertThat(stats.getAppendedCount(), is(80L));
+        assertThat(stats.getPurgedCount(), is(30L));
+
+        // Only the latest 50 are kept, newest first, and pages resume after the last id.
+        HistoryQuery query = new HistoryQuery();
+        query.setPageSize(20);
+        List<Long> ids = new ArrayList<Long>();
+        List<HistoryEvent> page = store.query(query);
+        while (page.size() > 0) {
+            for (HistoryEvent event : page)
+                ids.add(event.getId());
+            query = query.nextPage(page.get(page.size() - 1));
+            page = store.query(query);
+        }
+        assertThat(ids.size(), is(50));
+        assertThat(ids.get(0), is(80L));
+        assertThat(ids.get(49), is(31L));
+
+        query = new HistoryQuery();
+        query.setTriggerKey("DEFAULT.T1");
+        query.setFromTime(new Date(time + 7000));
+        // i = 70 to 79 where i % 2 == 1
+        assertThat(store.query(query).size(), is(5));
+
+        assertThat(store.purge(new Date(time + 4000)), is(10L));
+        assertThat(store.getStats().getEventCount(), is(40L));
+        assertThat(store.query(new HistoryQuery()).get(0).getId(), is(80L));
+    }
+
+    @Test
+    public void testPlugin() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "MemoryHistoryStoreTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.class", MemorySchedulerHistoryPlugin.class.getName());
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.capacity", "100");
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.asyncWrite", "true");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        MemorySchedulerHistoryPlugin plugin = (MemorySchedulerHistoryPlugin) scheduler.getContext().get(
+                MemorySchedulerHistoryPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        assertThat(plugin.getHistoryStore(), instanceOf(MemoryHistoryStore.class));
+        scheduler.scheduleSimpleJob("testPlugin", 1, 0, SchedulerTemplateTest.TestJob.class);
+        scheduler.startAndShutdown(500);
+
+        HistoryQuery query = new HistoryQuery();
+        query.setEventType("TriggerListener");
+        List<HistoryEvent> events = plugin.queryHistory(query);
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0).getEventName(), is("triggerComplete"));
+        assertThat(events.get(0).getInfo2(), is("DEFAULT.testPlugin"));
+        assertThat(events.get(0).getInfo4(), notNullValue());
+        assertThat(events.get(1).getEventName(), is("triggerFired"));
+    }
+
+    @Test
+    public void testCustomStoreClass() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "MemoryHistoryStoreTest2");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.class", FileSchedulerHistoryPlugin.class.getName());
+        props.put("org.quartz.plugin.MyJobHistoryPlugin.historyStoreClass", MemoryHistoryStore.class.getName());
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        AbstractSchedulerHistoryPlugin plugin = (AbstractSchedulerHistoryPlugin) scheduler.getContext().get(
+                FileSchedulerHistoryPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        assertThat(plugin.getHistoryStore(), instanceOf(MemoryHistoryStore.class));
+        scheduler.startAndShutdown(100);
+        assertThat(plugin.getHistoryStore().getStats().getAppendedCount(), greaterThan(0L));
+    }
+
+    private HistoryEvent createEvent(long time, String triggerName) {
+        return new HistoryEvent("127.0.0.1", "localhost", "test", "TriggerListener", "triggerFired", new Date(time),
+                "DEFAULT." + triggerName, "DEFAULT." + triggerName + "Job", null, null, null);
+    }
+}
@@ -0,0 +1,176 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test ParallelLookup and the lookupConcurrency option of SchedulerTemplate.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class ParallelLookupTest {
+
+    private static List<Integer> createKeys(int count) {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+            keys.add(i);
+        return keys;
+    }
+
+    @Test
+    public void testResultsInKeyOrder() throws Exception {
+        ParallelLookup parallelLookup = new ParallelLookup(4, false);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<String> result = parallelLookup.lookupAll(createKeys(100), new ParallelLookup.Lookup<Integer, String>() {
+            @Override
+            public String lookup(Integer key) throws SchedulerException {
+                int count = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), count));
+                }
+                try {
+                    // Later keys finish first.
+                    Thread.sleep((100 - key) % 7);
+                } catch (InterruptedException e) {
+                    throw new SchedulerException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return (key % 10 == 0) ? null : "value" + key;
+            }
+        });
+        parallelLookup.shutdown();
+
+        assertThat(result.size(), is(90));
+        int i = 0;
+        for (int key = 0; key < 100; key++) {
+            if (key % 10 != 0)
+                assertThat(result.get(i++), is("value" + key));
+        }
+        assertThat(maxRunning.get(), lessThanOrEqualTo(4));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        for (int concurrency : new int[]{1, 4}) {
+            ParallelLookup parallelLookup = new ParallelLookup(concurrency, false);
+            try {
+                parallelLookup.lookupAll(createKeys(20), new FailingLookup());
+                fail("Lookup should have failed with concurrency " + concurrency);
+            } catch (QuartzRuntimeException e) {
+                assertThat(e.getMessage(), containsString("Failed key 13"));
+            }
+            parallelLookup.shutdown();
+        }
+    }
+
+    @Test
+    public void testIgnoreFailures() throws Exception {
+        for (int concurrency : new int[]{1, 4}) {
+            ParallelLookup parallelLookup = new ParallelLookup(concurrency, true);
+            List<String> result = parallelLookup.lookupAll(createKeys(20), new FailingLookup());
+            assertThat(result.size(), is(19));
+            assertThat(result.get(12), is("value12"));
+            assertThat(result.get(13), is("value14"));
+            parallelLookup.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownWhileRunning() throws Exception {
+        final ParallelLookup parallelLookup = new ParallelLookup(4, false);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<List<String>> results = new ArrayList<List<String>>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<String> result = parallelLookup.lookupAll(createKeys(20),
+                        new ParallelLookup.Lookup<Integer, String>() {
+                            @Override
+                            public String lookup(Integer key) throws SchedulerException {
+                                started.countDown();
+                                try {
+                                    release.await();
+                                } catch (InterruptedException e) {
+                                    throw new SchedulerException(e);
+                                }
+                                return "value" + key;
+                            }
+                        });
+                synchronized (results) {
+                    results.add(result);
+                }
+            }
+        });
+        thread.start();
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+
+        // The running lookups finish on the pool before it's stopped.
+        parallelLookup.shutdown();
+        release.countDown();
+        thread.join(5000);
+        synchronized (results) {
+            assertThat(results.size(), is(1));
+            assertThat(results.get(0).size(), is(20));
+        }
+        // And a later call still works.
+        assertThat(parallelLookup.lookupAll(createKeys(10), new FailingLookup()).size(), is(10));
+        parallelLookup.shutdown();
+    }
+
+    @Test
+    public void testSchedulerTemplateLookupConcurrency() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "ParallelLookupTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            for (int i = 0; i < 50; i++) {
+                TriggerKey key = TriggerKey.triggerKey("job" + i, "group" + (i % 5));
+                scheduler.scheduleSimpleJob(JobKey.jobKey(key.getName(), key.getGroup()), -1, 60000,
+                        SchedulerTemplateTest.TestJob.class, null, null, null);
+                if (i % 3 == 0)
+                    scheduler.pauseTrigger(key);
+            }
+            List<Trigger> triggers = scheduler.getAllTriggers();
+            List<Trigger> pausedTriggers = scheduler.getPausedTriggers();
+            assertThat(triggers.size(), is(50));
+            assertThat(pausedTriggers.size(), is(17));
+
+            scheduler.setLookupConcurrency(4);
+            assertThat(scheduler.getLookupConcurrency(), is(4));
+            assertThat(scheduler.getAllTriggers(), is(triggers));
+            assertThat(scheduler.getPausedTriggers(), is(pausedTriggers));
+            assertThat(scheduler.getAllJobDetails().size(), is(50));
+            assertThat(scheduler.snapshot().getTriggers().size(), is(50));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static class FailingLookup implements ParallelLookup.Lookup<Integer, String> {
+        @Override
+        public String lookup(Integer key) throws SchedulerException {
+            if (key == 13)
+                throw new SchedulerException("Failed key " + key);
+            return "value" + key;
+        }
+    }
+}
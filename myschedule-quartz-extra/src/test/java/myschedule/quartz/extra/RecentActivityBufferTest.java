@@ -0,0 +1,93 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for RecentActivityBuffer and RecentActivityPlugin.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class RecentActivityBufferTest {
+    @Test
+    public void testRingBuffer() throws Exception {
+        RecentActivityBuffer buffer = new RecentActivityBuffer(8);
+        assertThat(buffer.getEvents().size(), is(0));
+
+        JobKey jobKey = JobKey.jobKey("job");
+        for (int i = 0; i < 20; i++)
+            buffer.record(RecentActivityEvent.Type.COMPLETED, TriggerKey.triggerKey("T" + i), jobKey, "id" + i,
+                    1000 + i, i, null);
+        assertThat(buffer.getRecordedCount(), is(20L));
+
+        List<RecentActivityEvent> events = buffer.getEvents();
+        assertThat(events.size(), is(8));
+        assertThat(events.get(0).getSequence(), is(19L));
+        assertThat(events.get(0).getTriggerKey().getName(), is("T19"));
+        assertThat(events.get(0).getDurationInMillis(), is(19L));
+        assertThat(events.get(0).getFireTime().getTime(), is(1019L));
+        assertThat(events.get(7).getTriggerKey().getName(), is("T12"));
+        assertThat(buffer.getEvents(3).size(), is(3));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final RecentActivityBuffer buffer = new RecentActivityBuffer(64);
+        final TriggerKey triggerKey = TriggerKey.triggerKey("T");
+        final JobKey jobKey = JobKey.jobKey("J");
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++)
+                        buffer.record(RecentActivityEvent.Type.FIRED, triggerKey, jobKey, null, i + 1, -1, null);
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        // Read while writing: events must never be half written.
+        while (buffer.getRecordedCount() < 40000) {
+            for (RecentActivityEvent event : buffer.getEvents()) {
+                assertThat(event.getTriggerKey(), is(triggerKey));
+                assertThat(event.getFireTime(), notNullValue());
+            }
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertThat((long) buffer.getEvents().size(), greaterThanOrEqualTo(64 - buffer.getDroppedCount()));
+    }
+
+    @Test
+    public void testPlugin() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "RecentActivityBufferTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        props.put("org.quartz.plugin.MyRecentActivityPlugin.class", RecentActivityPlugin.class.getName());
+        props.put("org.quartz.plugin.MyRecentActivityPlugin.capacity", "16");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        RecentActivityPlugin plugin = (RecentActivityPlugin) scheduler.getContext().get(
+                RecentActivityPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        scheduler.scheduleSimpleJob("testPlugin", 1, 0, SchedulerTemplateTest.TestJob.class);
+        scheduler.startAndShutdown(500);
+
+        List<RecentActivityEvent> events = plugin.getBuffer().getEvents();
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0).getType(), is(RecentActivityEvent.Type.COMPLETED));
+        assertThat(events.get(0).getJobKey(), is(JobKey.jobKey("testPlugin")));
+        assertThat(events.get(0).getDurationInMillis(), greaterThanOrEqualTo(0L));
+        assertThat(events.get(0).getInstruction(), is("DELETE_TRIGGER"));
+        assertThat(events.get(1).getType(), is(RecentActivityEvent.Type.FIRED));
+        assertThat(events.get(1).getFireInstanceId(), is(events.get(0).getFireInstanceId()));
+    }
+}
@@ -0,0 +1,131 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.InterruptableJob;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.UnableToInterruptJobException;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test SchedulerLifecycle states and drain.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class SchedulerLifecycleTest {
+
+    private static void waitUntilRunning(SchedulerTemplate scheduler, int count) throws Exception {
+        long endTime = System.currentTimeMillis() + 5000;
+        while (scheduler.getCurrentlyExecutingJobs().size() < count && System.currentTimeMillis() < endTime)
+            Thread.sleep(10);
+        assertThat(scheduler.getCurrentlyExecutingJobs().size(), is(count));
+    }
+
+    @Test
+    public void testAwaitStates() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testAwaitStates");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        SchedulerLifecycle lifecycle = scheduler.getLifecycle();
+        assertThat(scheduler.getLifecycle(), sameInstance(lifecycle));
+        assertThat(lifecycle.getState(), is(SchedulerLifecycle.State.CREATED));
+        assertThat(lifecycle.awaitStarted(10, TimeUnit.MILLISECONDS), is(false));
+
+        lifecycle.start(0);
+        assertThat(lifecycle.awaitStarted(5, TimeUnit.SECONDS), is(true));
+        assertThat(lifecycle.getState(), is(SchedulerLifecycle.State.STARTED));
+        assertThat(lifecycle.awaitTerminated(10, TimeUnit.MILLISECONDS), is(false));
+
+        // A shutdown not done through the lifecycle is seen too.
+        scheduler.shutdown();
+        assertThat(lifecycle.awaitTerminated(5, TimeUnit.SECONDS), is(true));
+        assertThat(lifecycle.getState(), is(SchedulerLifecycle.State.TERMINATED));
+        assertThat(lifecycle.awaitDraining(0, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    @Test
+    public void testDrainWaitsForRunningJobs() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testDrainWaitsForRunningJobs");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        SleepJob.sleepTimeInMillis = 500;
+        scheduler.scheduleSimpleJob("sleepJob", 1, 0, SleepJob.class);
+        SchedulerLifecycle lifecycle = scheduler.getLifecycle();
+        lifecycle.start(0);
+        waitUntilRunning(scheduler, 1);
+
+        SchedulerLifecycle.DrainProgress progress = lifecycle.drain(5000);
+        assertThat(progress.isDone(), is(true));
+        assertThat(progress.getInitialRunningCount(), is(1));
+        assertThat(progress.getRunningCount(), is(0));
+        assertThat(progress.getInterruptedCount(), is(0));
+        assertThat(lifecycle.getState(), is(SchedulerLifecycle.State.TERMINATED));
+        assertThat(scheduler.isShutdown(), is(true));
+        assertThat(SleepJob.completed, is(true));
+    }
+
+    @Test
+    public void testDrainInterruptsAfterDeadline() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testDrainInterruptsAfterDeadline");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "2");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        scheduler.scheduleSimpleJob("interruptableJob", 1, 0, InterruptableSleepJob.class);
+        SchedulerLifecycle lifecycle = scheduler.getLifecycle();
+        lifecycle.start(0);
+        waitUntilRunning(scheduler, 1);
+
+        SchedulerLifecycle.DrainProgress progress = lifecycle.drain(200, 5000);
+        assertThat(progress.getInitialRunningCount(), is(1));
+        assertThat(progress.getInterruptedCount(), is(1));
+        assertThat(progress.getRunningCount(), is(0));
+        assertThat(progress.getElapsedInMillis(), lessThan(5000L));
+        assertThat(scheduler.isShutdown(), is(true));
+    }
+
+    public static class SleepJob implements Job {
+        static volatile long sleepTimeInMillis;
+        static volatile boolean completed;
+
+        @Override
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            completed = false;
+            try {
+                Thread.sleep(sleepTimeInMillis);
+                completed = true;
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            }
+        }
+    }
+
+    public static class InterruptableSleepJob implements InterruptableJob {
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            try {
+                interrupted.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            }
+        }
+
+        @Override
+        public void interrupt() throws UnableToInterruptJobException {
+            interrupted.countDown();
+        }
+    }
+}
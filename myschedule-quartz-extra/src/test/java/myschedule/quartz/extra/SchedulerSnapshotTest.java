@@ -0,0 +1,193 @@
+package myschedule.quartz.extra;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.DateBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
+import org.quartz.simpl.RAMJobStore;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.quartz.CalendarIntervalScheduleBuilder.calendarIntervalSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+/**
+ * Test SchedulerTemplate.snapshot(), countTriggers() and countJobs() on a RAMJobStore and on a JDBC JobStore (H2
+ * in-memory) against what the Scheduler API returns for the same triggers and jobs.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class SchedulerSnapshotTest {
+    private static final String DB_URL = "jdbc:h2:mem:SchedulerSnapshotTest;DB_CLOSE_DELAY=-1";
+
+    @Test
+    public void testRamJobStore() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "SchedulerSnapshotTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            assertThat(QuartzExtraUtils.getJobStore(scheduler.getScheduler()), instanceOf(RAMJobStore.class));
+            assertSnapshotMatchesScheduler(scheduler);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testJdbcJobStore() throws Exception {
+        createQuartzTables();
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "SchedulerSnapshotTest");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        props.put("org.quartz.jobStore.class", "org.quartz.impl.jdbcjobstore.JobStoreTX");
+        props.put("org.quartz.jobStore.driverDelegateClass", "org.quartz.impl.jdbcjobstore.StdJDBCDelegate");
+        props.put("org.quartz.jobStore.dataSource", "quartzDs");
+        props.put("org.quartz.jobStore.tablePrefix", "QRTZ_");
+        props.put("org.quartz.dataSource.quartzDs.driver", "org.h2.Driver");
+        props.put("org.quartz.dataSource.quartzDs.URL", DB_URL);
+        props.put("org.quartz.dataSource.quartzDs.maxConnections", "3");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            // Make sure the snapshot is read with SQL, not through the scheduler API.
+            assertThat(QuartzExtraUtils.getJobStore(scheduler.getScheduler()), instanceOf(JobStoreSupport.class));
+            assertSnapshotMatchesScheduler(scheduler);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private void createQuartzTables() throws Exception {
+        InputStream inStream = getClass().getResourceAsStream("SchedulerSnapshotTest-h2-tables.sql");
+        String script;
+        try {
+            script = IOUtils.toString(inStream, "UTF-8");
+        } finally {
+            inStream.close();
+        }
+        Class.forName("org.h2.Driver");
+        Connection conn = DriverManager.getConnection(DB_URL);
+        try {
+            Statement stmt = conn.createStatement();
+            for (String sql : script.replaceAll("--[^\n]*\n", "").split(";")) {
+                if (sql.trim().length() > 0)
+                    stmt.execute(sql);
+            }
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private void assertSnapshotMatchesScheduler(SchedulerTemplate scheduler) {
+        Date startTime = DateBuilder.futureDate(1, DateBuilder.IntervalUnit.HOUR);
+
+        JobDetail cronJob = SchedulerTemplate.createJobDetail(JobKey.jobKey("cronJob", "groupA"),
+                SchedulerTemplateTest.TestJob.class, false, SchedulerTemplate.mkMap("jobKey1", "jobValue1"));
+        CronTrigger cronTrigger = newTrigger().withIdentity("cronJob", "groupA").startAt(startTime)
+                .usingJobData("triggerKey1", "triggerValue1")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 0/5 8-17 ? * MON-FRI")
+                        .inTimeZone(TimeZone.getTimeZone("America/New_York")))
+                .build();
+        scheduler.scheduleJob(cronJob, cronTrigger);
+
+        JobDetail simpleJob = SchedulerTemplate.createJobDetail(JobKey.jobKey("simpleJob", "groupB"),
+                SchedulerTemplateTest.TestJob.class, false, null);
+        Trigger simpleTrigger = SchedulerTemplate.createSimpleTrigger(TriggerKey.triggerKey("simpleJob", "groupB"),
+                3, 60000, startTime, null);
+        scheduler.scheduleJob(simpleJob, simpleTrigger);
+        scheduler.pauseTrigger(simpleTrigger.getKey());
+
+        JobDetail calendarIntervalJob = SchedulerTemplate.createJobDetail(JobKey.jobKey("calendarIntervalJob"),
+                SchedulerTemplateTest.TestJob.class, false, null);
+        Trigger calendarIntervalTrigger = newTrigger().withIdentity("calendarIntervalJob").startAt(startTime)
+                .withSchedule(calendarIntervalSchedule().withIntervalInDays(1)).build();
+        scheduler.scheduleJob(calendarIntervalJob, calendarIntervalTrigger);
+
+        JobDetail durableJob = SchedulerTemplate.createJobDetail(JobKey.jobKey("durableJob", "groupC"),
+                SchedulerTemplateTest.TestJob.class, true, null);
+        scheduler.addJob(durableJob, false);
+
+        SchedulerSnapshot snapshot = scheduler.snapshot();
+
+        List<Trigger> triggers = snapshot.getTriggers();
+        assertThat(triggers.size(), is(3));
+        assertThat(triggers.get(0).getKey(), is(calendarIntervalTrigger.getKey())); // Groups are sorted by name.
+        assertThat(triggers.get(1).getKey(), is(cronTrigger.getKey()));
+        assertThat(triggers.get(2).getKey(), is(simpleTrigger.getKey()));
+        for (Trigger trigger : triggers) {
+            Trigger expected = scheduler.getTrigger(trigger.getKey());
+            assertThat(trigger.getClass().getName(), is(expected.getClass().getName()));
+            assertThat(trigger.getJobKey(), is(expected.getJobKey()));
+            assertThat(trigger.getStartTime(), is(expected.getStartTime()));
+            assertThat(trigger.getEndTime(), is(expected.getEndTime()));
+            assertThat(trigger.getNextFireTime(), is(expected.getNextFireTime()));
+            assertThat(trigger.getPreviousFireTime(), is(expected.getPreviousFireTime()));
+            assertThat(trigger.getPriority(), is(expected.getPriority()));
+            assertThat(trigger.getMisfireInstruction(), is(expected.getMisfireInstruction()));
+            assertThat(trigger.getJobDataMap(), is(expected.getJobDataMap()));
+            assertThat(snapshot.getTriggerState(trigger.getKey()), is(scheduler.getTriggerState(trigger.getKey())));
+        }
+        CronTrigger snapshotCronTrigger = (CronTrigger) triggers.get(1);
+        assertThat(snapshotCronTrigger.getCronExpression(), is("0 0/5 8-17 ? * MON-FRI"));
+        assertThat(snapshotCronTrigger.getTimeZone().getID(), is("America/New_York"));
+        assertThat((String) snapshotCronTrigger.getJobDataMap().get("triggerKey1"), is("triggerValue1"));
+        SimpleTrigger snapshotSimpleTrigger = (SimpleTrigger) triggers.get(2);
+        assertThat(snapshotSimpleTrigger.getRepeatCount(), is(2));
+        assertThat(snapshotSimpleTrigger.getRepeatInterval(), is(60000L));
+        assertThat(snapshot.getTriggerState(simpleTrigger.getKey()), is(Trigger.TriggerState.PAUSED));
+        assertThat(snapshot.getTriggerState(TriggerKey.triggerKey("noSuchTrigger")), is(Trigger.TriggerState.NONE));
+
+        List<JobDetail> jobDetails = snapshot.getJobDetails();
+        assertThat(jobDetails.size(), is(4));
+        for (JobDetail jobDetail : jobDetails) {
+            JobDetail expected = scheduler.getJobDetail(jobDetail.getKey());
+            assertThat(jobDetail.getJobClass().getName(), is(expected.getJobClass().getName()));
+            assertThat(jobDetail.isDurable(), is(expected.isDurable()));
+            assertThat(jobDetail.requestsRecovery(), is(expected.requestsRecovery()));
+            assertThat(jobDetail.getJobDataMap(), is(expected.getJobDataMap()));
+        }
+        assertThat((String) snapshot.getJobDetail(cronJob.getKey()).getJobDataMap().get("jobKey1"), is("jobValue1"));
+        assertThat(snapshot.getJobDetail(durableJob.getKey()).isDurable(), is(true));
+        assertThat(snapshot.getJobDetail(JobKey.jobKey("noSuchJob")), nullValue());
+
+        // Nothing scheduled after the snapshot shows up in it.
+        scheduler.scheduleJob(SchedulerTemplate.createJobDetail("laterJob", SchedulerTemplateTest.TestJob.class),
+                SchedulerTemplate.createSimpleTrigger("laterJob", 1, 0, startTime));
+        assertThat(snapshot.getTriggers().size(), is(3));
+        assertThat(Collections.frequency(scheduler.snapshot().getTriggers(), scheduler.getTrigger(
+                TriggerKey.triggerKey("laterJob"))), is(1));
+
+
+        // Triggers loaded through the scheduler API are sorted by name within their group too.
+        Trigger otherTypeTrigger = newTrigger().withIdentity("aCalendarIntervalJob", "groupA").startAt(startTime)
+                .withSchedule(calendarIntervalSchedule().withIntervalInDays(1)).build();
+        scheduler.scheduleJob(SchedulerTemplate.createJobDetail(JobKey.jobKey("aCalendarIntervalJob", "groupA"),
+                SchedulerTemplateTest.TestJob.class, false, null), otherTypeTrigger);
+        List<Trigger> sortedTriggers = scheduler.snapshot().getTriggers();
+        int index = sortedTriggers.indexOf(otherTypeTrigger);
+        assertThat(sortedTriggers.get(index + 1).getKey(), is(cronTrigger.getKey()));
+
+        assertThat(scheduler.countTriggers(), is(5));
+        assertThat(scheduler.countJobs(), is(6));
+    }
+}
@@ -53,6 +53,46 @@ public class SchedulerTemplateTest {
         assertThat(TestJob.jobResult.executionTimes.size(), is(2));
     }
 
+    @Test
+    public void testIterateTriggersAndJobDetails() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testIterateTriggersAndJobDetails");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate st = new SchedulerTemplate(props);
+        try {
+            assertThat(st.iterateTriggers().hasNext(), is(false));
+            for (int i = 0; i < 10; i++)
+                st.scheduleSimpleJob(JobKey.jobKey("job" + i, "group" + (i % 3)), -1, 60000, TestJob.class, null,
+                        null, null);
+            st.addJob(SchedulerTemplate.createJobDetail(JobKey.jobKey("durableJob"), TestJob.class, true, null), false);
+
+            Set<TriggerKey> triggerKeys = new HashSet<TriggerKey>();
+            for (Iterator<Trigger> it = st.iterateTriggers(); it.hasNext(); )
+                triggerKeys.add(it.next().getKey());
+            assertThat(triggerKeys.size(), is(10));
+            assertThat(st.countTriggers(), is(10));
+
+            Set<JobKey> jobKeys = new HashSet<JobKey>();
+            for (Iterator<JobDetail> it = st.iterateJobDetails(); it.hasNext(); )
+                jobKeys.add(it.next().getKey());
+            assertThat(jobKeys.size(), is(11));
+            assertThat(st.countJobs(), is(11));
+
+            // Triggers removed after the iteration started are skipped.
+            Iterator<Trigger> it = st.iterateTriggers();
+            Trigger first = it.next();
+            for (TriggerKey key : triggerKeys) {
+                if (!key.equals(first.getKey()))
+                    st.unscheduleJob(key);
+            }
+            assertThat(it.hasNext(), is(false));
+            assertThat(st.countTriggers(), is(1));
+        } finally {
+            st.shutdown();
+        }
+    }
+
     @Test
     public void testSchedulerMethodsDelegation() throws Exception {
         Scheduler mockedScheduler = mock(Scheduler.class);
@@ -0,0 +1,131 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+import org.quartz.impl.calendar.HolidayCalendar;
+import org.quartz.spi.MutableTrigger;
+
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test SchedulingBatch validation, chunking and per job failures.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class SchedulingBatchTest {
+
+    @Test
+    public void testCommitInChunks() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testCommitInChunks");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            SchedulingBatch batch = scheduler.batch().chunkSize(10);
+            for (int i = 0; i < 25; i++)
+                batch.addCronJob("cronJob" + i, "0 0 * * * ?", SchedulerTemplateTest.TestJob.class);
+            batch.addSimpleJob("simpleJob", -1, 60000, SchedulerTemplateTest.TestJob.class);
+            assertThat(batch.size(), is(26));
+
+            SchedulingBatch.Result result = batch.commit();
+            assertThat(result.getItemCount(), is(26));
+            assertThat(result.getScheduledCount(), is(26));
+            assertThat(result.getChunkCount(), is(3));
+            assertThat(result.getFailures().size(), is(0));
+            assertThat(scheduler.getAllJobDetails().size(), is(26));
+            assertThat(scheduler.getTrigger(TriggerKey.triggerKey("cronJob24")).getJobKey(),
+                    is(JobKey.jobKey("cronJob24")));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidItems() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testInvalidItems");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            SchedulingBatch.Result result = scheduler.batch()
+                    .addCronJob("goodJob", "0 0 * * * ?", SchedulerTemplateTest.TestJob.class)
+                    .addCronJob("goodJob", "0 30 * * * ?", SchedulerTemplateTest.TestJob.class)
+                    .addCronJob("badCronJob", "not a cron", SchedulerTemplateTest.TestJob.class)
+                    .addJob(SchedulerTemplate.createJobDetail("noTriggerJob", SchedulerTemplateTest.TestJob.class))
+                    .addCronJob("neverFireJob", "0 0 0 1 1 ? 2000", SchedulerTemplateTest.TestJob.class)
+                    .commit();
+            assertThat(result.getItemCount(), is(5));
+            assertThat(result.getScheduledCount(), is(1));
+            assertThat(result.getFailures().size(), is(4));
+            assertThat(result.getFailures().get(0).getJobKey(), is(JobKey.jobKey("goodJob")));
+            assertThat(result.getFailures().get(1).getJobKey(), is(JobKey.jobKey("badCronJob")));
+            assertThat(scheduler.getAllJobDetails().size(), is(1));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testMissingCalendar() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testMissingCalendar");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            scheduler.addCalendar("holidays", new HolidayCalendar(), false, false);
+            SchedulingBatch batch = scheduler.batch();
+            batch.addJob(SchedulerTemplate.createJobDetail("job1", SchedulerTemplateTest.TestJob.class),
+                    SchedulerTemplate.createCronTrigger("job1", "0 0 * * * ?"));
+            MutableTrigger trigger = SchedulerTemplate.createCronTrigger("job2", "0 0 * * * ?");
+            trigger.setCalendarName("holidays");
+            batch.addJob(SchedulerTemplate.createJobDetail("job2", SchedulerTemplateTest.TestJob.class), trigger);
+            trigger = SchedulerTemplate.createCronTrigger("job3", "0 0 * * * ?");
+            trigger.setCalendarName("noSuchCalendar");
+            batch.addJob(SchedulerTemplate.createJobDetail("job3", SchedulerTemplateTest.TestJob.class), trigger);
+
+            SchedulingBatch.Result result = batch.commit();
+            assertThat(result.getScheduledCount(), is(2));
+            assertThat(result.getFailures().size(), is(1));
+            assertThat(result.getFailures().get(0).getMessage(), containsString("noSuchCalendar"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testChunkRefusedByStore() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testChunkRefusedByStore");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        try {
+            scheduler.scheduleCronJob("existingJob", "0 0 * * * ?", SchedulerTemplateTest.TestJob.class);
+            SchedulingBatch.Result result = scheduler.batch()
+                    .addCronJob("job1", "0 0 * * * ?", SchedulerTemplateTest.TestJob.class)
+                    .addCronJob("existingJob", "0 0 * * * ?", SchedulerTemplateTest.TestJob.class)
+                    .addCronJob("job2", "0 0 * * * ?", SchedulerTemplateTest.TestJob.class)
+                    .commit();
+            // The chunk fails as a whole, then the jobs are scheduled one by one.
+            assertThat(result.getScheduledCount(), is(2));
+            assertThat(result.getFailures().size(), is(1));
+            assertThat(result.getFailures().get(0).getJobKey(), is(JobKey.jobKey("existingJob")));
+            assertThat(scheduler.getAllJobDetails().size(), is(3));
+
+            result = scheduler.batch().replace(true)
+                    .addCronJob("existingJob", "0 30 * * * ?", SchedulerTemplateTest.TestJob.class)
+                    .commit();
+            assertThat(result.getScheduledCount(), is(1));
+            assertThat(result.getChunkCount(), is(1));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package myschedule.quartz.extra;
+
+import myschedule.quartz.extra.job.LoggerJob;
+import org.junit.Test;
+import org.quartz.JobKey;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test TriggerFilter and the SchedulerTemplate bulk operations using it.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class TriggerFilterTest {
+
+    @Test
+    public void testFindTriggerKeys() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testFindTriggerKeys");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        addReportJobs(scheduler);
+        try {
+            assertThat(scheduler.findTriggerKeys(new TriggerFilter()).size(), is(12));
+            assertThat(scheduler.findTriggerKeys(new TriggerFilter().group("other")).size(), is(4));
+            assertThat(scheduler.findTriggerKeys(new TriggerFilter()
+                    .group(GroupMatcher.triggerGroupStartsWith("report"))
+                    .namePattern("daily[12]")).size(), is(4));
+            assertThat(scheduler.findTriggerKeys(new TriggerFilter().jobClass(LoggerJob.class)).size(), is(3));
+            assertThat(scheduler.findTriggerKeys(new TriggerFilter()
+                    .keys(Arrays.asList(TriggerKey.triggerKey("hourly", "other"),
+                            TriggerKey.triggerKey("hourly", "reportA")))
+                    .group("other")),
+                    contains(TriggerKey.triggerKey("hourly", "other")));
+
+            scheduler.pauseTrigger(TriggerKey.triggerKey("daily0", "other"));
+            assertThat(scheduler.findTriggerKeys(new TriggerFilter().state(TriggerState.PAUSED)),
+                    contains(TriggerKey.triggerKey("daily0", "other")));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testPauseAndResumeTriggers() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testPauseAndResumeTriggers");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        addReportJobs(scheduler);
+        try {
+            BulkOperationResult result = scheduler.pauseTriggers(new TriggerFilter().namePattern("daily.*"));
+            assertThat(result.getMatchedCount(), is(9));
+            assertThat(result.getChangedCount(), is(9));
+            assertThat(result.getFailures().size(), is(0));
+            assertThat(scheduler.getPausedTriggers().size(), is(9));
+
+            result = scheduler.resumeTriggers(new TriggerFilter().jobClass(SchedulerTemplateTest.TestJob.class)
+                    .group("reportA").state(TriggerState.PAUSED));
+            assertThat(result.getChangedCount(), is(3));
+            assertThat(scheduler.getPausedTriggers().size(), is(6));
+
+            // Group only filters use the Quartz group operation, in one call.
+            result = scheduler.pauseTriggers(new TriggerFilter().group("reportA"));
+            assertThat(result.getMatchedCount(), is(4));
+            assertThat(result.getStoreCallCount(), is(1));
+            assertThat(scheduler.getPausedTriggers().size(), is(10));
+
+            // Other filters change each trigger, even when they select a whole group.
+            result = scheduler.resumeTriggers(new TriggerFilter().state(TriggerState.PAUSED));
+            assertThat(result.getMatchedCount(), is(10));
+            assertThat(result.getChangedCount(), is(10));
+            assertThat(result.getStoreCallCount(), is(10));
+            assertThat(scheduler.getPausedTriggers().size(), is(0));
+
+            // So the group is not marked paused, and a trigger added to it later is not paused.
+            result = scheduler.pauseTriggers(new TriggerFilter().keys(
+                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals("reportB"))));
+            assertThat(result.getChangedCount(), is(4));
+            assertThat(scheduler.getPausedTriggerGroups().contains("reportB"), is(false));
+            scheduler.scheduleCronJob(JobKey.jobKey("weekly", "reportB"), "0 0 0 ? * MON",
+                    SchedulerTemplateTest.TestJob.class, null, new Date(), null);
+            assertThat(scheduler.getTriggerState(TriggerKey.triggerKey("weekly", "reportB")),
+                    is(TriggerState.NORMAL));
+            assertThat(scheduler.getPausedTriggers().size(), is(4));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnscheduleAndDeleteJobs() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testUnscheduleAndDeleteJobs");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        addReportJobs(scheduler);
+        try {
+            scheduler.setBulkChunkSize(2);
+            BulkOperationResult result = scheduler.unscheduleJobs(new TriggerFilter()
+                    .group(GroupMatcher.triggerGroupStartsWith("report")).namePattern("daily.*"));
+            assertThat(result.getMatchedCount(), is(6));
+            assertThat(result.getChangedCount(), is(6));
+            assertThat(result.getStoreCallCount(), is(3));
+            assertThat(result.isChangedCountMaximum(), is(false));
+            assertThat(scheduler.countTriggers(), is(6));
+            // The jobs are not durable, so they went with their triggers.
+            assertThat(scheduler.countJobs(), is(6));
+
+            result = scheduler.deleteJobs(new TriggerFilter().jobClass(LoggerJob.class));
+            assertThat(result.getMatchedCount(), is(3));
+            assertThat(result.getChangedCount(), is(3));
+            assertThat(scheduler.countJobs(), is(3));
+            assertThat(scheduler.countTriggers(), is(3));
+
+            // A filter on keys only still gets the job keys from the same read of the triggers.
+            result = scheduler.deleteJobs(new TriggerFilter().group("other").namePattern("daily0"));
+            assertThat(result.getMatchedCount(), is(1));
+            assertThat(result.getChangedCount(), is(1));
+            assertThat(scheduler.checkExists(JobKey.jobKey("daily0", "other")), is(false));
+            assertThat(scheduler.countJobs(), is(2));
+
+            // A trigger already removed is still counted, but the count is flagged as a maximum.
+            result = scheduler.unscheduleJobs(new TriggerFilter().keys(Arrays.asList(
+                    TriggerKey.triggerKey("daily1", "other"), TriggerKey.triggerKey("daily0", "other"))));
+            assertThat(result.getMatchedCount(), is(2));
+            assertThat(result.getChangedCount(), is(2));
+            assertThat(result.isChangedCountMaximum(), is(true));
+            assertThat(result.getFailures().size(), is(0));
+            assertThat(scheduler.countTriggers(), is(1));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /** Schedule a daily0..2 and an hourly LoggerJob cron job in each of the reportA, reportB and other groups. */
+    private static void addReportJobs(SchedulerTemplate scheduler) {
+        SchedulingBatch batch = scheduler.batch();
+        for (String group : Arrays.asList("reportA", "reportB", "other")) {
+            for (int i = 0; i < 3; i++)
+                batch.addCronJob(JobKey.jobKey("daily" + i, group), "0 0 0 * * ?", SchedulerTemplateTest.TestJob.class,
+                        null, null, null);
+            batch.addCronJob(JobKey.jobKey("hourly", group), "0 0 * * * ?", LoggerJob.class, null, null, null);
+        }
+        batch.commit();
+    }
+}
@@ -0,0 +1,152 @@
+package myschedule.quartz.extra;
+
+import org.junit.Test;
+import org.quartz.DateBuilder;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test TriggerIndex updates from the scheduler listeners and from reconcile.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class TriggerIndexTest {
+
+    private static void waitUntilReady(TriggerIndex index) throws Exception {
+        long endTime = System.currentTimeMillis() + 5000;
+        while (!index.isReady() && System.currentTimeMillis() < endTime)
+            Thread.sleep(10);
+        assertThat(index.isReady(), is(true));
+    }
+
+    @Test
+    public void testListenerUpdates() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testListenerUpdates");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        Date startTime = DateBuilder.futureDate(1, DateBuilder.IntervalUnit.HOUR);
+        scheduler.scheduleJob(SchedulerTemplate.createJobDetail("existingJob", SchedulerTemplateTest.TestJob.class),
+                SchedulerTemplate.createSimpleTrigger("existingJob", 1, 0, startTime));
+        TriggerIndex index = new TriggerIndex(scheduler, 0);
+        try {
+            index.start();
+            waitUntilReady(index);
+            assertThat(index.isListening(), is(true));
+            assertThat(index.size(), is(1));
+            TriggerIndex.Entry existing = index.getEntry(TriggerKey.triggerKey("existingJob"));
+            assertThat(existing.getJobClassName(), is(SchedulerTemplateTest.TestJob.class.getName()));
+            assertThat(existing.getNextFireTime(), is(startTime));
+            assertThat(existing.getState(), is(TriggerState.NORMAL));
+
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail(JobKey.jobKey("job2", "groupB"),
+                    SchedulerTemplateTest.TestJob.class, false, null),
+                    SchedulerTemplate.createSimpleTrigger(TriggerKey.triggerKey("job2", "groupB"), 1, 0, startTime,
+                            null));
+            assertThat(index.size(), is(2));
+            assertThat(index.getEntry(TriggerKey.triggerKey("job2", "groupB")).getJobKey(),
+                    is(JobKey.jobKey("job2", "groupB")));
+            assertThat(index.getEntry(TriggerKey.triggerKey("job2", "groupB")).getJobClassName(),
+                    is(SchedulerTemplateTest.TestJob.class.getName()));
+
+            scheduler.pauseTrigger(TriggerKey.triggerKey("existingJob"));
+            assertThat(index.getEntry(TriggerKey.triggerKey("existingJob")).getState(), is(TriggerState.PAUSED));
+            scheduler.resumeAll();
+            assertThat(index.getEntry(TriggerKey.triggerKey("existingJob")).getState(), is(TriggerState.NORMAL));
+            assertThat(index.countByState().get(TriggerState.NORMAL), is(2));
+            assertThat(index.countByState().get(TriggerState.PAUSED), is(0));
+
+            scheduler.unscheduleJob(TriggerKey.triggerKey("job2", "groupB"));
+            assertThat(index.size(), is(1));
+            assertThat(index.getEntry(TriggerKey.triggerKey("job2", "groupB")), nullValue());
+            // No reconcile runs, so the removal is not kept.
+            assertThat(index.getRemovedKeyCount(), is(0));
+
+            // A trigger scheduled into a paused group is stored PAUSED, which only a reconcile sees.
+            scheduler.pauseTriggers(GroupMatcher.triggerGroupEquals("groupC"));
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail(JobKey.jobKey("job3", "groupC"),
+                    SchedulerTemplateTest.TestJob.class, false, null),
+                    SchedulerTemplate.createSimpleTrigger(TriggerKey.triggerKey("job3", "groupC"), 1, 0, startTime,
+                            null));
+            assertThat(index.getEntry(TriggerKey.triggerKey("job3", "groupC")).getState(), is(TriggerState.NORMAL));
+            assertThat(index.reconcile(), is(1));
+            assertThat(index.getEntry(TriggerKey.triggerKey("job3", "groupC")).getState(), is(TriggerState.PAUSED));
+            scheduler.deleteJob(JobKey.jobKey("job3", "groupC"));
+            assertThat(index.size(), is(1));
+
+            // A firing updates the fire times, and the last one removes the trigger.
+            Trigger trigger = SchedulerTemplate.createSimpleTrigger("firingJob", 2, 200);
+            scheduler.scheduleJob(SchedulerTemplate.createJobDetail("firingJob", SchedulerTemplateTest.TestJob.class),
+                    trigger);
+            scheduler.start();
+            long endTime = System.currentTimeMillis() + 5000;
+            TriggerIndex.Entry firing = index.getEntry(trigger.getKey());
+            while (firing != null && firing.getPreviousFireTime() == null && System.currentTimeMillis() < endTime) {
+                Thread.sleep(10);
+                firing = index.getEntry(trigger.getKey());
+            }
+            assertThat(firing.getPreviousFireTime(), notNullValue());
+            while (index.getEntry(trigger.getKey()) != null && System.currentTimeMillis() < endTime)
+                Thread.sleep(10);
+            assertThat(index.getEntry(trigger.getKey()), nullValue());
+            assertThat(index.getRemovedKeyCount(), is(0));
+
+            // Nothing to correct since the listeners saw every change.
+            assertThat(index.reconcile(), is(0));
+        } finally {
+            index.stop();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        Properties props = new Properties();
+        props.put("org.quartz.scheduler.instanceName", "testReconcile");
+        props.put("org.quartz.scheduler.skipUpdateCheck", "true");
+        props.put("org.quartz.threadPool.threadCount", "1");
+        SchedulerTemplate scheduler = new SchedulerTemplate(props);
+        Date startTime = DateBuilder.futureDate(1, DateBuilder.IntervalUnit.HOUR);
+        // Not started, so no listeners: changes are only seen by reconcile.
+        TriggerIndex index = new TriggerIndex(scheduler, 0);
+        try {
+            assertThat(index.isReady(), is(false));
+            assertThat(index.reconcile(), is(0));
+            assertThat(index.isReady(), is(true));
+
+            for (int i = 0; i < 5; i++) {
+                scheduler.scheduleJob(SchedulerTemplate.createJobDetail("job" + i, SchedulerTemplateTest.TestJob.class),
+                        SchedulerTemplate.createSimpleTrigger("job" + i, 1, 0, startTime));
+            }
+            assertThat(index.size(), is(0));
+            assertThat(index.reconcile(), is(5));
+            assertThat(index.size(), is(5));
+
+            List<TriggerIndex.Entry> page = index.getEntries(1, 2);
+            assertThat(page.size(), is(2));
+            assertThat(page.get(0).getTriggerKey(), is(TriggerKey.triggerKey("job1")));
+            assertThat(page.get(1).getTriggerKey(), is(TriggerKey.triggerKey("job2")));
+            assertThat(index.getEntries(4, 10).size(), is(1));
+
+            scheduler.pauseTrigger(TriggerKey.triggerKey("job0"));
+            scheduler.unscheduleJob(TriggerKey.triggerKey("job4"));
+            assertThat(index.reconcile(), is(2));
+            assertThat(index.size(), is(4));
+            assertThat(index.getEntry(TriggerKey.triggerKey("job0")).getState(), is(TriggerState.PAUSED));
+            assertThat(index.reconcile(), is(0));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -2,7 +2,9 @@ package myschedule.quartz.extra.job;
 
 import myschedule.quartz.extra.ResultJobListener;
 import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.quartz.extra.util.OutputCapture;
 import myschedule.quartz.extra.util.ProcessUtilsTest;
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
@@ -10,6 +12,7 @@ import org.quartz.Trigger;
 
 import java.io.File;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
@@ -113,4 +116,40 @@ public class OsCommandJobTest {
         assertThat(ResultJobListener.result.jobResults.size(), is(1));
         assertThat(ResultJobListener.result.jobResults.get(0), nullValue());
     }
+
+    @Test
+    public void testJavaOsCommandJobOutputCapture() throws Exception {
+        String pathSep = File.separator;
+        String javaHome = System.getProperty("java.home");
+        String javaBin = javaHome + pathSep + "bin" + pathSep + "java";
+        String classpath = System.getProperty("java.class.path");
+        Class<?> mainClass = ProcessUtilsTest.RunJavaMain.class;
+        String[] cmdArgs = new String[]{javaBin, "-cp", classpath, mainClass.getName(), "A", "B"};
+        File outputDir = new File("target/OsCommandJobTest");
+        FileUtils.deleteDirectory(outputDir);
+        File oldOutputFile = new File(outputDir, "DEFAULT.MyOsCommandJobTest-999999.log");
+        FileUtils.writeStringToFile(oldOutputFile, "old");
+
+        ResultJobListener.resetResult();
+        SchedulerTemplate st = new SchedulerTemplate();
+        st.addJobListener(new ResultJobListener());
+
+        JobDetail job = SchedulerTemplate.createJobDetail("MyOsCommandJobTest", OsCommandJob.class);
+        JobDataMap dataMap = job.getJobDataMap();
+        dataMap.put(OsCommandJob.CMD_ARGS_KEY, cmdArgs);
+        dataMap.put(OsCommandJob.OUTPUT_DIR_KEY, outputDir.getPath());
+        dataMap.put(OsCommandJob.OUTPUT_MAX_CAPTURES_KEY, 1);
+        Trigger trigger = SchedulerTemplate.createSimpleTrigger("MyOsCommandJobTest");
+        st.scheduleJob(job, trigger);
+        st.startAndShutdown(99);
+
+        assertThat(ResultJobListener.result.jobResults.size(), is(1));
+        OsCommandJob.CommandResult result = (OsCommandJob.CommandResult) ResultJobListener.result.jobResults.get(0);
+        assertThat(result.getExitCode(), is(0));
+        assertThat(result.getOutputTail(), contains("A", "B", "DONE"));
+        File outputFile = new File(result.getOutputPath());
+        assertThat(outputFile.getParentFile(), is(outputDir));
+        assertThat(OutputCapture.readPage(outputFile, 0, 1024).getText(), is("A\nB\nDONE\n"));
+        assertThat(oldOutputFile.exists(), is(false));
+    }
 }
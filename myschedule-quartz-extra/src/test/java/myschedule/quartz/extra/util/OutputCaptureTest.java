@@ -0,0 +1,117 @@
+package myschedule.quartz.extra.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test OutputCapture rotation, tail and paging.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class OutputCaptureTest {
+    private File outputDir = new File("target/OutputCaptureTest");
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+    @Test
+    public void testTailAndPages() throws Exception {
+        File file = new File(outputDir, "out.log");
+        OutputCapture capture = new OutputCapture(file, 1024 * 1024, 2, 3);
+        for (int i = 0; i < 100; i++)
+            capture.onLine("line" + i);
+        assertThat(capture.getTail(), contains("line97", "line98", "line99"));
+        capture.close();
+        assertThat(file.length(), is(capture.getTotalBytes()));
+
+        // Pages end on a full line, and follow each other by offset.
+        OutputCapture.Page page = OutputCapture.readPage(file, 0, 20);
+        assertThat(page.getText(), is("line0\nline1\nline2\n"));
+        assertThat(page.isEnd(), is(false));
+        page = OutputCapture.readPage(file, page.getNextOffset(), 20);
+        assertThat(page.getText(), is("line3\nline4\nline5\n"));
+
+        page = OutputCapture.readPage(file, file.length() - 7, 20);
+        assertThat(page.getText(), is("line99\n"));
+        assertThat(page.isEnd(), is(true));
+        assertThat(OutputCapture.readPage(file, file.length() + 10, 20).getText(), is(""));
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        File file = new File(outputDir, "out.log");
+        OutputCapture capture = new OutputCapture(file, 100, 3, 0);
+        for (int i = 0; i < 100; i++)
+            capture.onLine("line" + i);
+        capture.close();
+
+        assertThat(capture.getRotationCount(), greaterThan(2));
+        assertThat(capture.getTail().size(), is(0));
+        assertThat(file.length(), lessThan(101L));
+        assertThat(capture.getRotatedFile(1).exists(), is(true));
+        assertThat(capture.getRotatedFile(2).exists(), is(true));
+        assertThat(capture.getRotatedFile(3).exists(), is(false));
+        assertThat(FileUtils.readFileToString(file), endsWith("line99\n"));
+        assertThat(FileUtils.readFileToString(capture.getRotatedFile(2)), not(containsString("line0\n")));
+    }
+
+    @Test
+    public void testTailOfChunks() throws Exception {
+        OutputCapture capture = new OutputCapture(new File(outputDir, "chunks.log"), 1024 * 1024, 1, 2);
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            output.append("line").append(i).append("\n");
+        output.append("partial");
+        byte[] bytes = output.toString().getBytes();
+        for (int i = 0; i < bytes.length; i += 1000)
+            capture.onOutput(ByteBuffer.wrap(bytes, i, Math.min(1000, bytes.length - i)));
+        capture.onEnd();
+
+        assertThat(capture.getTail(), contains("line4999", "partial"));
+        assertThat(capture.getTotalBytes(), is((long) bytes.length));
+        capture.close();
+        assertThat(capture.getFile().length(), is((long) bytes.length));
+    }
+
+    @Test
+    public void testDeleteOldCaptures() throws Exception {
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 4; i++) {
+            OutputCapture capture = new OutputCapture(new File(outputDir, "job-" + i + ".log"), 10, 2, 0);
+            capture.onLine("line0");
+            capture.onLine("line1");
+            capture.close();
+            assertThat(capture.getRotatedFile(1).exists(), is(true));
+            capture.getFile().setLastModified(now - (5 - i) * 60000L);
+        }
+        File otherJobFile = new File(outputDir, "job-other-1.log");
+        FileUtils.writeStringToFile(otherJobFile, "other");
+        otherJobFile.setLastModified(now - 3600000L);
+        Pattern namePattern = Pattern.compile("job-\\d+\\.log");
+
+        // The newest two are kept, with their rotated files.
+        assertThat(OutputCapture.deleteOldCaptures(outputDir, namePattern, 2, -1), is(2));
+        assertThat(new File(outputDir, "job-1.log").exists(), is(false));
+        assertThat(new File(outputDir, "job-1.log.1").exists(), is(false));
+        assertThat(new File(outputDir, "job-2.log").exists(), is(false));
+        assertThat(new File(outputDir, "job-3.log").exists(), is(true));
+        assertThat(new File(outputDir, "job-3.log.1").exists(), is(true));
+        assertThat(new File(outputDir, "job-4.log").exists(), is(true));
+
+        // job-3 was written 2 minutes ago.
+        assertThat(OutputCapture.deleteOldCaptures(outputDir, namePattern, -1, 90000), is(1));
+        assertThat(new File(outputDir, "job-3.log").exists(), is(false));
+        assertThat(new File(outputDir, "job-4.log").exists(), is(true));
+        assertThat(otherJobFile.exists(), is(true));
+    }
+}
@@ -0,0 +1,192 @@
+package myschedule.quartz.extra.util;
+
+import myschedule.quartz.extra.util.ProcessUtils.BackgroundProcess;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test OutputPump reading many streams with a few threads.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class OutputPumpTest {
+
+    private static FutureTask<Object> createEnded() {
+        FutureTask<Object> ended = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return null;
+            }
+        });
+        ended.run();
+        return ended;
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        OutputPump pump = new OutputPump(1, 1024);
+        try {
+            ProcessUtils.LineCollector collector = new ProcessUtils.LineCollector();
+            byte[] bytes = "A\nB\r\n\nC".getBytes();
+            OutputPump.Source source = pump.register(new ByteArrayInputStream(bytes), createEnded(), collector);
+            assertThat(source.awaitDone(5, TimeUnit.SECONDS), is(true));
+            assertThat(collector.getLines(), contains("A", "B", "", "C"));
+            assertThat(pump.getSourceCount(), is(0));
+        } finally {
+            pump.shutdown();
+        }
+    }
+
+    @Test
+    public void testChunksAreReused() throws Exception {
+        OutputPump pump = new OutputPump(1, 1024);
+        try {
+            byte[] bytes = new byte[100 * 1024];
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = (byte) i;
+            final Set<ByteBuffer> chunks = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            OutputPump.Source source = pump.register(new ByteArrayInputStream(bytes), createEnded(),
+                    new ProcessUtils.OutputSink() {
+                        @Override
+                        public void onOutput(ByteBuffer chunk) {
+                            chunks.add(chunk);
+                            received.write(chunk.array(), chunk.position(), chunk.remaining());
+                        }
+
+                        @Override
+                        public void onEnd() {
+                        }
+                    });
+            assertThat(source.awaitDone(5, TimeUnit.SECONDS), is(true));
+            assertThat(received.toByteArray(), is(bytes));
+            // 100KB went through a few 8KB chunks, bounded by the 1KB buffer.
+            assertThat(chunks.size(), lessThan(4));
+        } finally {
+            pump.shutdown();
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        OutputPump pump = new OutputPump(1, 1024);
+        try {
+            StringBuilder output = new StringBuilder();
+            for (int i = 0; i < 10000; i++)
+                output.append("line").append(i).append("\n");
+            ByteArrayInputStream inStream = new ByteArrayInputStream(output.toString().getBytes());
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+            OutputPump.Source source = pump.register(inStream, createEnded(), new ProcessUtils.LineAction() {
+                @Override
+                public void onLine(String line) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    lines.add(line);
+                }
+            });
+
+            // The LineAction is stuck, so the pump stops reading once the buffer is full.
+            Thread.sleep(200);
+            assertThat(source.getBufferedBytes(), lessThan(1024 + 8 * 1024 + 1));
+            assertThat(inStream.available(), greaterThan(0));
+            assertThat(source.isDone(), is(false));
+
+            release.countDown();
+            assertThat(source.awaitDone(5, TimeUnit.SECONDS), is(true));
+            assertThat(lines.size(), is(10000));
+            assertThat(lines.get(9999), is("line9999"));
+        } finally {
+            pump.shutdown();
+        }
+    }
+
+    @Test
+    public void testIdleReadersSleep() throws Exception {
+        OutputPump pump = new OutputPump(1, 1024);
+        try {
+            ProcessUtils.LineCollector collector = new ProcessUtils.LineCollector();
+            OutputPump.Source source = pump.register(new ByteArrayInputStream("A\n".getBytes()), createEnded(),
+                    collector);
+            assertThat(source.awaitDone(5, TimeUnit.SECONDS), is(true));
+
+            // With no stream left, the reader waits for one without a timeout.
+            Thread reader = null;
+            Thread[] threads = new Thread[Thread.activeCount() * 2];
+            int count = Thread.enumerate(threads);
+            for (int i = 0; i < count; i++) {
+                if (threads[i].getName().matches("OutputPump-\\d+-reader-1") &&
+                        threads[i].getState() != Thread.State.TERMINATED && reader == null)
+                    reader = threads[i];
+            }
+            Thread.sleep(100);
+            assertThat(reader, notNullValue());
+            assertThat(reader.getState(), is(Thread.State.WAITING));
+
+            // And a new stream wakes it up.
+            source = pump.register(new ByteArrayInputStream("B\n".getBytes()), createEnded(), collector);
+            assertThat(source.awaitDone(5, TimeUnit.SECONDS), is(true));
+            assertThat(collector.getLines(), contains("A", "B"));
+        } finally {
+            pump.shutdown();
+        }
+    }
+
+    @Test
+    public void testManyProcessesShareThreads() throws Exception {
+        String pathSep = File.separator;
+        String javaBin = System.getProperty("java.home") + pathSep + "bin" + pathSep + "java";
+        String classpath = System.getProperty("java.class.path");
+        String[] cmdArgs = new String[]{javaBin, "-cp", classpath, ProcessUtilsTest.RunJavaMain.class.getName(),
+                "A", "B"};
+
+        List<BackgroundProcess> processes = new ArrayList<BackgroundProcess>();
+        List<ProcessUtils.LineCollector> collectors = new ArrayList<ProcessUtils.LineCollector>();
+        for (int i = 0; i < 10; i++) {
+            ProcessUtils.LineCollector collector = new ProcessUtils.LineCollector();
+            collectors.add(collector);
+            processes.add(ProcessUtils.runInBackground(cmdArgs, collector));
+        }
+        // The output is read by the reader and delivery threads, started once. Only a parked exit thread per process
+        // waits for it to exit.
+        assertThat(countThreads("OutputPump-\\d+-(reader|delivery)-\\d+"),
+                lessThan(2 * OutputPump.DEFAULT_THREAD_COUNT + 1));
+        assertThat(countThreads("OutputPump-\\d+-exit-\\d+"), lessThan(processes.size() + 1));
+
+        for (int i = 0; i < processes.size(); i++) {
+            assertThat(processes.get(i).waitForExit(), is(0));
+            assertThat(processes.get(i).getOutput().awaitDone(5, TimeUnit.SECONDS), is(true));
+            assertThat(collectors.get(i).getLines(), contains("A", "B", "DONE"));
+        }
+    }
+
+    private static int countThreads(String nameRegex) {
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int count = Thread.enumerate(threads);
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().matches(nameRegex))
+                matched++;
+        }
+        return matched;
+    }
+}
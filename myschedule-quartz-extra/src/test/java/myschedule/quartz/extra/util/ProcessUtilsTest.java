@@ -3,11 +3,20 @@ package myschedule.quartz.extra.util;
 import myschedule.quartz.extra.util.ProcessUtils.BackgroundProcess;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -76,6 +85,88 @@ public class ProcessUtilsTest {
         assertThat(bgProcess.isDestroyed(), is(true));
     }
 
+    @Test
+    public void testExitFutureAndListener() throws Exception {
+        String pathSep = File.separator;
+        String javaBin = System.getProperty("java.home") + pathSep + "bin" + pathSep + "java";
+        String classpath = System.getProperty("java.class.path");
+
+        String[] cmdArgs = new String[]{javaBin, "-cp", classpath, RunBackgroundProcessMain.class.getName(), "3000"};
+        long startTime = System.currentTimeMillis();
+        BackgroundProcess bgProcess = ProcessUtils.runInBackground(cmdArgs, new ProcessUtils.LineCollector());
+        final AtomicInteger listenerExitCode = new AtomicInteger(-1);
+        final CountDownLatch exited = new CountDownLatch(1);
+        bgProcess.addExitListener(new ProcessUtils.ExitListener() {
+            @Override
+            public void onExit(BackgroundProcess bgProcess, int exitCode) {
+                listenerExitCode.set(exitCode);
+                exited.countDown();
+            }
+        });
+        assertThat(bgProcess.waitForExit(100), is(nullValue()));
+
+        // Destroying it completes the future right away, without waiting for a check interval.
+        bgProcess.destroy();
+        int exitCode = bgProcess.getExitFuture().get(5, TimeUnit.SECONDS);
+        assertThat(exited.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(listenerExitCode.get(), is(exitCode));
+        assertThat(bgProcess.isDone(), is(true));
+        assertThat(System.currentTimeMillis() - startTime, lessThan(3000L));
+
+        // Added after the exit, the listener is called right away.
+        final AtomicInteger lateExitCode = new AtomicInteger(-1);
+        bgProcess.addExitListener(new ProcessUtils.ExitListener() {
+            @Override
+            public void onExit(BackgroundProcess bgProcess, int exitCode) {
+                lateExitCode.set(exitCode);
+            }
+        });
+        assertThat(lateExitCode.get(), is(exitCode));
+    }
+
+    @Test
+    public void testSeparateErrorOutput() throws Exception {
+        String pathSep = File.separator;
+        String javaBin = System.getProperty("java.home") + pathSep + "bin" + pathSep + "java";
+        String classpath = System.getProperty("java.class.path");
+        String[] cmdArgs = new String[]{javaBin, "-cp", classpath, RunErrorOutputMain.class.getName()};
+
+        // Raw bytes for STDOUT, decoded lines for STDERR.
+        final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        final AtomicInteger endCount = new AtomicInteger();
+        ProcessUtils.OutputSink outSink = new ProcessUtils.OutputSink() {
+            @Override
+            public void onOutput(ByteBuffer chunk) {
+                while (chunk.hasRemaining())
+                    outBytes.write(chunk.get());
+            }
+
+            @Override
+            public void onEnd() {
+                endCount.incrementAndGet();
+            }
+        };
+        ProcessUtils.LineCollector errLines = new ProcessUtils.LineCollector();
+        BackgroundProcess bgProcess = ProcessUtils.runInBackground(cmdArgs, outSink,
+                new ProcessUtils.LineSink(errLines, Charset.forName("UTF-8")));
+        assertThat(bgProcess.waitForExit(), is(0));
+        assertThat(bgProcess.awaitOutput(5000), is(true));
+
+        assertThat(new String(outBytes.toByteArray(), "UTF-8").trim(), is("OUT1\nOUT2".replace("\n",
+                System.getProperty("line.separator"))));
+        assertThat(endCount.get(), is(1));
+        assertThat(errLines.getLines(), contains("ERR1", "ERR2"));
+    }
+
+    public static class RunErrorOutputMain {
+        public static void main(String[] args) {
+            System.out.println("OUT1");
+            System.err.println("ERR1");
+            System.out.println("OUT2");
+            System.err.println("ERR2");
+        }
+    }
+
     public static class RunJavaMain {
         public static void main(String[] args) {
             for (String arg : args) {
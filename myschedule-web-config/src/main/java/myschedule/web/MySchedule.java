@@ -1,6 +1,9 @@
 package myschedule.web;
 
+import myschedule.quartz.extra.AsyncSchedulerTemplate;
+import myschedule.quartz.extra.LoadForecast;
 import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.quartz.extra.TriggerIndex;
 import myschedule.quartz.extra.util.ClasspathURLStreamHandler;
 import myschedule.quartz.extra.util.Props;
 import org.apache.commons.io.IOUtils;
@@ -13,6 +16,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is the central manager of the MySchedule application. There is only one instance of MySchedule application, 
@@ -25,10 +29,13 @@ public class MySchedule extends AbstractService {
 	private MyScheduleSettings myScheduleSettings;
 	private Map<String, SchedulerSettings> schedulerSettingsMap; //key=SettingsName
 	private Map<String, SchedulerTemplate> schedulersMap;        //key=SettingsName
+    private Map<String, TriggerIndex> triggerIndexesMap;         //key=SettingsName
+    private Map<String, AsyncSchedulerTemplate> asyncSchedulersMap; //key=SettingsName
     private SchedulerSettingsStore schedulerSettingsStore;
     private TemplatesStore schedulerTemplatesStore;
     private TemplatesStore scriptTemplatesStore;
     private TemplatesStore xmlJobLoaderTemplatesStore;
+    private SchedulerMetricsCollector schedulerMetricsCollector;
     private String myScheduleVersion;
     private String quartzVersion;
 
@@ -56,6 +63,7 @@ public class MySchedule extends AbstractService {
 		initSchedulerSettingsMap();
 		initSchedulersMap();
         initDefaultSchedulerIfNeeded();
+        schedulerMetricsCollector.init();
 		LOGGER.info("MySchedule is initialized.");
 	}
 
@@ -90,6 +98,10 @@ public class MySchedule extends AbstractService {
                 ".xml",
                 getDefaultXmlJobLoaderTemplates());
         xmlJobLoaderTemplatesStore.init();
+
+        schedulerMetricsCollector = new SchedulerMetricsCollector(this,
+                myScheduleSettings.getMetricsTriggerCountsRefreshInSecs(),
+                myScheduleSettings.isMetricsJmxEnabled());
     }
 
     private String[] getDefaultSchedulerConfigsTemplates() {
@@ -97,6 +109,7 @@ public class MySchedule extends AbstractService {
         String[] result = {
             resNamePrefix + "full-config-quartz.properties",
             resNamePrefix + "in-memory-quartz.properties",
+            resNamePrefix + "in-memory-job-histories-quartz.properties",
             resNamePrefix + "jmx-quartz.properties",
             resNamePrefix + "mysql-clustered-quartz.properties",
             resNamePrefix + "mysql-jee-cmt-quartz.properties",
@@ -116,7 +129,8 @@ public class MySchedule extends AbstractService {
             resNamePrefix + "simpleJobs.js",
             resNamePrefix + "cronJobs.js",
             resNamePrefix + "calendarJobs.js",
-            resNamePrefix + "advanceJobs.js"
+            resNamePrefix + "advanceJobs.js",
+            resNamePrefix + "batchJobs.js"
         };
         return result;
     }
@@ -133,6 +147,7 @@ public class MySchedule extends AbstractService {
         schedulerSettingsStore.destroy();
         schedulerTemplatesStore.destroy();
         scriptTemplatesStore.destroy();
+        schedulerMetricsCollector.destroy();
     }
 
 	private void initSchedulerSettingsMap() {
@@ -154,8 +169,10 @@ public class MySchedule extends AbstractService {
     }
 
 	private void initSchedulersMap() {
-		// Init the map first
-		schedulersMap = new HashMap<String, SchedulerTemplate>();
+		// Init the map first. It's concurrent because the metrics collector reads it outside of the UI threads.
+		schedulersMap = new ConcurrentHashMap<String, SchedulerTemplate>();
+        triggerIndexesMap = new ConcurrentHashMap<String, TriggerIndex>();
+        asyncSchedulersMap = new ConcurrentHashMap<String, AsyncSchedulerTemplate>();
 		
 		// Create and init all schedulersMap using schedulerSettingsMap
 		for (SchedulerSettings settings : schedulerSettingsMap.values()) {
@@ -184,9 +201,21 @@ public class MySchedule extends AbstractService {
         // Initialize Quartz scheduler. If configured, the Quartz will try to connect to DB upon init!
         LOGGER.info("Creating new Quartz scheduler from {}", settings);
         SchedulerTemplate scheduler = new SchedulerTemplate(settings.getQuartzProperties());
+        scheduler.setLookupConcurrency(settings.getLookupConcurrency());
+        scheduler.setLookupIgnoreFailures(settings.isLookupIgnoreFailures());
         schedulersMap.put(settingsName, scheduler);
+        schedulerMetricsCollector.registerMBean(settingsName);
         LOGGER.info("Quartz scheduler created with settings name {}", settingsName);
 
+        // The index is built in the background, the UI reads the scheduler directly until it's ready.
+        if (settings.isTriggerIndexEnabled()) {
+            TriggerIndex triggerIndex = new TriggerIndex(scheduler, settings.getTriggerIndexReconcileInSecs());
+            triggerIndex.start();
+            triggerIndexesMap.put(settingsName, triggerIndex);
+        }
+        asyncSchedulersMap.put(settingsName, new AsyncSchedulerTemplate(scheduler, settings.getAsyncThreadCount(),
+                settings.getAsyncQueueCapacity(), settings.getAsyncTimeoutInSecs() * 1000L));
+
         // Be user friendly and prevent unwanted remote scheduler auto/start effect if possible.
         if (scheduler.getScheduler() instanceof RemoteScheduler &&
                 settings.isPreventAutoStartShutdownRemoteScheduler()) {
@@ -206,6 +235,12 @@ public class MySchedule extends AbstractService {
 		boolean waitForJobToComplete = schedulerSettings.isWaitForJobToComplete();
 		LOGGER.info("Shutting down {} with waitForJobToComplete={}", schedulerSettings, waitForJobToComplete);
 		SchedulerTemplate scheduler = schedulersMap.get(settingsName);
+        TriggerIndex triggerIndex = triggerIndexesMap.remove(settingsName);
+        if (triggerIndex != null)
+            triggerIndex.stop();
+        AsyncSchedulerTemplate asyncScheduler = asyncSchedulersMap.remove(settingsName);
+        if (asyncScheduler != null)
+            asyncScheduler.shutdown();
         if (scheduler != null) {
             // Be user friendly and prevent unwanted remote scheduler shutdown effect if possible.
             boolean preventShutdown = schedulerSettings.isPreventAutoStartShutdownRemoteScheduler();
@@ -218,6 +253,7 @@ public class MySchedule extends AbstractService {
                     LOGGER.info("Scheduler settingsName={} has already been shutdown. No action.", settingsName);
             }
 		    schedulersMap.remove(settingsName);
+		    schedulerMetricsCollector.unregisterMBean(settingsName);
         }
 	}
 
@@ -332,6 +368,42 @@ public class MySchedule extends AbstractService {
 		return schedulersMap.get(settingsName);
 	}
 
+    /** @return a read only view of all the created schedulers, keyed by settings name. */
+    public Map<String, SchedulerTemplate> getSchedulers() {
+        return Collections.unmodifiableMap(schedulersMap);
+    }
+
+    /** @return the trigger index of a scheduler, or null if it has none. Check isReady() before reading it. */
+    public TriggerIndex getTriggerIndex(String settingsName) {
+        return triggerIndexesMap.get(settingsName);
+    }
+
+    /** @return the async operations of a created scheduler, for the UI calls that shouldn't block; else null. */
+    public AsyncSchedulerTemplate getAsyncScheduler(String settingsName) {
+        return asyncSchedulersMap.get(settingsName);
+    }
+
+    /**
+     * Forecast how many jobs a scheduler will run at once over the next hours against its thread pool size, with
+     * the loadForecast settings. Buckets start at a multiple of the bucket size.
+     */
+    public LoadForecast getLoadForecast(String settingsName, int hours) {
+        SchedulerTemplate scheduler = schedulersMap.get(settingsName);
+        if (scheduler == null)
+            throw new IllegalArgumentException("Scheduler not found: " + settingsName);
+        long bucketSizeInMillis = myScheduleSettings.getLoadForecastBucketInSecs() * 1000L;
+        long now = System.currentTimeMillis();
+        Date fromTime = new Date(now - now % bucketSizeInMillis);
+        Date toTime = new Date(fromTime.getTime() + hours * 60 * 60 * 1000L);
+        return scheduler.getLoadForecast(fromTime, toTime, bucketSizeInMillis,
+                myScheduleSettings.getMaxNumOfForecastFires(),
+                myScheduleSettings.getLoadForecastDefaultRunTimeInMillis());
+    }
+
+    public SchedulerMetricsCollector getSchedulerMetricsCollector() {
+        return schedulerMetricsCollector;
+    }
+
     public static SchedulerStatus getSchedulerStatus(SchedulerTemplate scheduler) {
         if (scheduler == null)
             return SchedulerStatus.SHUTDOWN;
@@ -56,6 +56,11 @@ public class MyScheduleSettings {
 		
 		// Expand vars if there are any.
 		props.expandVariables();
+
+		// A zero bucket size would fail every load forecast, so fail at startup instead.
+		if (getLoadForecastBucketInSecs() <= 0)
+			throw new RuntimeException(SETTINGS_KEY_PREFIX + "loadForecastBucketInSecs must be greater than 0, but was " +
+					getLoadForecastBucketInSecs());
 		LOGGER.info("MySchedule settings are ready. myschedule.web.dataStoreDir=" + props.getString("myschedule.web.dataStoreDir"));
 
         // Enable debug output if it's on.
@@ -96,7 +101,31 @@ public class MyScheduleSettings {
         return props.getInt(SETTINGS_KEY_PREFIX + "numOfFiretimesPreview");
     }
 
+    public int getMaxNumOfForecastFires() {
+        return props.getInt(SETTINGS_KEY_PREFIX + "maxNumOfForecastFires");
+    }
+
+    public long getLoadForecastBucketInSecs() {
+        return props.getLong(SETTINGS_KEY_PREFIX + "loadForecastBucketInSecs");
+    }
+
+    public long getLoadForecastDefaultRunTimeInMillis() {
+        return props.getLong(SETTINGS_KEY_PREFIX + "loadForecastDefaultRunTimeInMillis");
+    }
+
+    public long getUiWaitInMillis() {
+        return props.getLong(SETTINGS_KEY_PREFIX + "uiWaitInMillis");
+    }
+
     public String getJdbcSchedulerHistoryPluginContextKey() {
         return props.getString(SETTINGS_KEY_PREFIX + "JdbcSchedulerHistoryPluginContextKey");
     }
+
+    public long getMetricsTriggerCountsRefreshInSecs() {
+        return props.getLong(SETTINGS_KEY_PREFIX + "metricsTriggerCountsRefreshInSecs");
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return props.getBoolean(SETTINGS_KEY_PREFIX + "metricsJmxEnabled");
+    }
 }
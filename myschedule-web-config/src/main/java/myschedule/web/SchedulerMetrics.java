@@ -0,0 +1,95 @@
+package myschedule.web;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The monitoring values of one managed scheduler, collected by {@link SchedulerMetricsCollector}. Values that are not
+ * available for a scheduler (eg: the misfire count without JobMetricsPlugin, or the history queue depth when the
+ * history plugin writes synchronously) are -1.
+ *
+ * @author Zemian Deng
+ */
+public class SchedulerMetrics {
+    private final String settingsName;
+    private final SchedulerStatus status;
+    private final long jobsExecuted;
+    private final int runningJobs;
+    private final int threadPoolSize;
+    private final long jobFailures;
+    private final long misfires;
+    private final Map<String, Integer> triggerCountsByState;
+    private final int historyQueueSize;
+    private final int historyQueueCapacity;
+
+    public SchedulerMetrics(String settingsName, SchedulerStatus status, long jobsExecuted, int runningJobs,
+                            int threadPoolSize, long jobFailures, long misfires,
+                            Map<String, Integer> triggerCountsByState, int historyQueueSize,
+                            int historyQueueCapacity) {
+        this.settingsName = settingsName;
+        this.status = status;
+        this.jobsExecuted = jobsExecuted;
+        this.runningJobs = runningJobs;
+        this.threadPoolSize = threadPoolSize;
+        this.jobFailures = jobFailures;
+        this.misfires = misfires;
+        this.triggerCountsByState = triggerCountsByState;
+        this.historyQueueSize = historyQueueSize;
+        this.historyQueueCapacity = historyQueueCapacity;
+    }
+
+    public String getSettingsName() {
+        return settingsName;
+    }
+
+    public SchedulerStatus getStatus() {
+        return status;
+    }
+
+    public long getJobsExecuted() {
+        return jobsExecuted;
+    }
+
+    public int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    /** Each running job holds one worker thread, so this is the same as the running jobs count. */
+    public int getThreadPoolBusy() {
+        return runningJobs;
+    }
+
+    public long getJobFailures() {
+        return jobFailures;
+    }
+
+    public long getMisfires() {
+        return misfires;
+    }
+
+    /**
+     * @return trigger counts keyed by Trigger.TriggerState name, as of the last background refresh. Empty if the
+     * triggers have not been counted yet.
+     */
+    public Map<String, Integer> getTriggerCountsByState() {
+        return Collections.unmodifiableMap(triggerCountsByState);
+    }
+
+    public int getHistoryQueueSize() {
+        return historyQueueSize;
+    }
+
+    public int getHistoryQueueCapacity() {
+        return historyQueueCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "SchedulerMetrics[settingsName=" + settingsName + ", status=" + status +
+                ", jobsExecuted=" + jobsExecuted + ", runningJobs=" + runningJobs + "]";
+    }
+}
@@ -0,0 +1,322 @@
+package myschedule.web;
+
+import myschedule.quartz.extra.AbstractSchedulerHistoryPlugin;
+import myschedule.quartz.extra.AsyncHistoryWriter;
+import myschedule.quartz.extra.JobMetrics;
+import myschedule.quartz.extra.JobMetricsPlugin;
+import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.quartz.extra.TriggerIndex;
+import org.quartz.SchedulerMetaData;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.RemoteScheduler;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the {@link SchedulerMetrics} of all the schedulers managed by {@link MySchedule} in one pass, for the JMX
+ * MBeans and the metrics servlet. A collection only reads values the schedulers already keep in memory: the scheduler
+ * meta data, the currently executing jobs, and the counters of JobMetricsPlugin and of the history plugin async
+ * writer. The result is reused for {@link #MIN_COLLECT_INTERVAL_IN_MILLIS}, so a JMX client reading every attribute
+ * one by one does not collect again for each of them.
+ * <p>
+ * Counting triggers by state needs to read every trigger from the job store, so it's never done while collecting.
+ * Instead a background thread counts them every <code>myschedule.web.metricsTriggerCountsRefreshInSecs</code> and
+ * the collection uses the last counts. A scheduler with a ready trigger index is counted from the index.
+ * </p>
+ *
+ * @author Zemian Deng
+ */
+public class SchedulerMetricsCollector extends AbstractService {
+    public static final String OBJECT_NAME_PREFIX = "myschedule:type=SchedulerMetrics,name=";
+    public static final long MIN_COLLECT_INTERVAL_IN_MILLIS = 1000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerMetricsCollector.class);
+    private final MySchedule mySchedule;
+    private final long triggerCountsRefreshInSecs;
+    private final boolean jmxEnabled;
+    private final ConcurrentMap<String, Map<String, Integer>> triggerCountsMap =
+            new ConcurrentHashMap<String, Map<String, Integer>>();
+    private final Set<String> registeredMBeanNames =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ScheduledExecutorService refreshExecutor;
+    private List<SchedulerMetrics> lastMetricsList = Collections.emptyList();
+    private long lastCollectTime;
+
+    public SchedulerMetricsCollector(MySchedule mySchedule, long triggerCountsRefreshInSecs, boolean jmxEnabled) {
+        this.mySchedule = mySchedule;
+        this.triggerCountsRefreshInSecs = triggerCountsRefreshInSecs;
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    @Override
+    public void initService() {
+        if (triggerCountsRefreshInSecs > 0) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SchedulerMetricsCollector");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    // Don't let an error stop the next refreshes.
+                    try {
+                        refreshTriggerCounts();
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to refresh trigger counts.", e);
+                    }
+                }
+            }, 0, triggerCountsRefreshInSecs, TimeUnit.SECONDS);
+        }
+        LOGGER.info("SchedulerMetricsCollector is initialized with triggerCountsRefreshInSecs={}, jmxEnabled={}",
+                triggerCountsRefreshInSecs, jmxEnabled);
+    }
+
+    @Override
+    public void destroyService() {
+        if (refreshExecutor != null)
+            refreshExecutor.shutdownNow();
+        for (String settingsName : new ArrayList<String>(registeredMBeanNames))
+            unregisterMBean(settingsName);
+        triggerCountsMap.clear();
+    }
+
+    /**
+     * @return the metrics of all the managed schedulers, sorted by settings name.
+     */
+    public synchronized List<SchedulerMetrics> collectAll() {
+        long now = System.currentTimeMillis();
+        if (now - lastCollectTime < MIN_COLLECT_INTERVAL_IN_MILLIS)
+            return lastMetricsList;
+
+        Map<String, SchedulerTemplate> schedulers = new TreeMap<String, SchedulerTemplate>(mySchedule.getSchedulers());
+        List<SchedulerMetrics> result = new ArrayList<SchedulerMetrics>();
+        for (Map.Entry<String, SchedulerTemplate> entry : schedulers.entrySet()) {
+            String settingsName = entry.getKey();
+            try {
+                result.add(collect(settingsName, entry.getValue()));
+            } catch (RuntimeException e) {
+                // A broken scheduler (eg: remote connection lost) should not fail the others.
+                LOGGER.warn("Failed to collect metrics from scheduler settingsName={}", settingsName, e);
+                result.add(createShutdownMetrics(settingsName));
+            }
+        }
+        lastMetricsList = Collections.unmodifiableList(result);
+        lastCollectTime = now;
+        return lastMetricsList;
+    }
+
+    /**
+     * @return the metrics of one managed scheduler, or null if it's not found.
+     */
+    public SchedulerMetrics getMetrics(String settingsName) {
+        for (SchedulerMetrics metrics : collectAll()) {
+            if (metrics.getSettingsName().equals(settingsName))
+                return metrics;
+        }
+        return null;
+    }
+
+    private SchedulerMetrics collect(String settingsName, SchedulerTemplate scheduler) {
+        SchedulerStatus status = MySchedule.getSchedulerStatus(scheduler);
+        if (status == SchedulerStatus.SHUTDOWN)
+            return createShutdownMetrics(settingsName);
+
+        SchedulerMetaData metaData = scheduler.getSchedulerMetaData();
+        int runningJobs = scheduler.getCurrentlyExecutingJobs().size();
+        long jobFailures = -1;
+        long misfires = -1;
+        int historyQueueSize = -1;
+        int historyQueueCapacity = -1;
+
+        // Plugins are not serializable, so they can only be read from a local scheduler.
+        if (!(scheduler.getScheduler() instanceof RemoteScheduler)) {
+            for (Object value : scheduler.getContext().values()) {
+                if (value instanceof JobMetricsPlugin) {
+                    JobMetrics totalMetrics = ((JobMetricsPlugin) value).getTotalMetrics();
+                    jobFailures = totalMetrics.getFailureCount();
+                    misfires = totalMetrics.getMisfireCount();
+                } else if (value instanceof AbstractSchedulerHistoryPlugin) {
+                    AsyncHistoryWriter<?> writer = ((AbstractSchedulerHistoryPlugin) value).getAsyncHistoryWriter();
+                    if (writer != null) {
+                        historyQueueSize = writer.getQueueSize();
+                        historyQueueCapacity = historyQueueSize + writer.getQueueRemainingCapacity();
+                    }
+                }
+            }
+        }
+
+        Map<String, Integer> triggerCounts = triggerCountsMap.get(settingsName);
+        if (triggerCounts == null)
+            triggerCounts = Collections.emptyMap();
+
+        return new SchedulerMetrics(settingsName, status, metaData.getNumberOfJobsExecuted(), runningJobs,
+                metaData.getThreadPoolSize(), jobFailures, misfires, triggerCounts, historyQueueSize,
+                historyQueueCapacity);
+    }
+
+    private SchedulerMetrics createShutdownMetrics(String settingsName) {
+        Map<String, Integer> triggerCounts = Collections.emptyMap();
+        return new SchedulerMetrics(settingsName, SchedulerStatus.SHUTDOWN, 0, 0, 0, -1, -1, triggerCounts, -1, -1);
+    }
+
+    /**
+     * Count the triggers of each scheduler by state. This reads all the triggers from the job stores, so it's only
+     * called by the background refresh thread.
+     */
+    void refreshTriggerCounts() {
+        Map<String, SchedulerTemplate> schedulers = mySchedule.getSchedulers();
+        triggerCountsMap.keySet().retainAll(schedulers.keySet());
+        for (Map.Entry<String, SchedulerTemplate> entry : schedulers.entrySet()) {
+            String settingsName = entry.getKey();
+            SchedulerTemplate scheduler = entry.getValue();
+            try {
+                if (scheduler.isShutdown()) {
+                    triggerCountsMap.remove(settingsName);
+                    continue;
+                }
+                Map<String, Integer> counts = new TreeMap<String, Integer>();
+                TriggerIndex triggerIndex = mySchedule.getTriggerIndex(settingsName);
+                if (triggerIndex != null && triggerIndex.isReady()) {
+                    for (Map.Entry<TriggerState, Integer> count : triggerIndex.countByState().entrySet())
+                        counts.put(count.getKey().name(), count.getValue());
+                } else {
+                    for (TriggerState state : TriggerState.values())
+                        counts.put(state.name(), 0);
+                    for (String group : scheduler.getTriggerGroupNames()) {
+                        for (TriggerKey key : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group))) {
+                            String state = scheduler.getTriggerState(key).name();
+                            counts.put(state, counts.get(state) + 1);
+                        }
+                    }
+                }
+                triggerCountsMap.put(settingsName, counts);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to count triggers of scheduler settingsName={}", settingsName, e);
+                triggerCountsMap.remove(settingsName);
+            }
+        }
+    }
+
+    /** Register the MXBean of a managed scheduler into the platform MBeanServer, if JMX is enabled. */
+    public void registerMBean(String settingsName) {
+        if (!jmxEnabled)
+            return;
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = createObjectName(settingsName);
+            if (mBeanServer.isRegistered(objectName))
+                mBeanServer.unregisterMBean(objectName);
+            mBeanServer.registerMBean(new SchedulerMetricsBean(settingsName), objectName);
+            registeredMBeanNames.add(settingsName);
+            LOGGER.info("Registered scheduler metrics MBean {}", objectName);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to register scheduler metrics MBean for settingsName={}", settingsName, e);
+        }
+    }
+
+    /** Remove the MXBean of a managed scheduler from the platform MBeanServer. */
+    public void unregisterMBean(String settingsName) {
+        if (!registeredMBeanNames.remove(settingsName))
+            return;
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = createObjectName(settingsName);
+            if (mBeanServer.isRegistered(objectName))
+                mBeanServer.unregisterMBean(objectName);
+            LOGGER.info("Unregistered scheduler metrics MBean {}", objectName);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to unregister scheduler metrics MBean for settingsName={}", settingsName, e);
+        }
+    }
+
+    private ObjectName createObjectName(String settingsName) throws Exception {
+        return new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(settingsName));
+    }
+
+    /**
+     * The MXBean of one scheduler. Every attribute reads the latest collected metrics.
+     */
+    private class SchedulerMetricsBean implements SchedulerMetricsMXBean {
+        private final String settingsName;
+
+        SchedulerMetricsBean(String settingsName) {
+            this.settingsName = settingsName;
+        }
+
+        private SchedulerMetrics getMetrics() {
+            SchedulerMetrics metrics = SchedulerMetricsCollector.this.getMetrics(settingsName);
+            return (metrics == null) ? createShutdownMetrics(settingsName) : metrics;
+        }
+
+        @Override
+        public String getSettingsName() {
+            return settingsName;
+        }
+
+        @Override
+        public String getStatus() {
+            return getMetrics().getStatus().name();
+        }
+
+        @Override
+        public long getJobsExecuted() {
+            return getMetrics().getJobsExecuted();
+        }
+
+        @Override
+        public int getRunningJobs() {
+            return getMetrics().getRunningJobs();
+        }
+
+        @Override
+        public int getThreadPoolSize() {
+            return getMetrics().getThreadPoolSize();
+        }
+
+        @Override
+        public int getThreadPoolBusy() {
+            return getMetrics().getThreadPoolBusy();
+        }
+
+        @Override
+        public long getJobFailures() {
+            return getMetrics().getJobFailures();
+        }
+
+        @Override
+        public long getMisfires() {
+            return getMetrics().getMisfires();
+        }
+
+        @Override
+        public Map<String, Integer> getTriggerCountsByState() {
+            return new TreeMap<String, Integer>(getMetrics().getTriggerCountsByState());
+        }
+
+        @Override
+        public int getHistoryQueueSize() {
+            return getMetrics().getHistoryQueueSize();
+        }
+
+        @Override
+        public int getHistoryQueueCapacity() {
+            return getMetrics().getHistoryQueueCapacity();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package myschedule.web;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link SchedulerMetrics}. One is registered in the platform MBeanServer for each managed scheduler
+ * under <code>myschedule:type=SchedulerMetrics,name=&lt;settingsName&gt;</code>.
+ *
+ * @author Zemian Deng
+ */
+public interface SchedulerMetricsMXBean {
+    String getSettingsName();
+    String getStatus();
+    long getJobsExecuted();
+    int getRunningJobs();
+    int getThreadPoolSize();
+    int getThreadPoolBusy();
+    long getJobFailures();
+    long getMisfires();
+    Map<String, Integer> getTriggerCountsByState();
+    int getHistoryQueueSize();
+    int getHistoryQueueCapacity();
+}
@@ -1,5 +1,6 @@
 package myschedule.web;
 
+import myschedule.quartz.extra.AsyncSchedulerTemplate;
 import myschedule.quartz.extra.util.Props;
 
 import java.util.HashMap;
@@ -78,6 +79,52 @@ public class SchedulerSettings {
         return props.getBoolean(SETTINGS_KEY_PREFIX + "preventAutoStartRemoteScheduler", true);
     }
 
+    /**
+     * Number of threads to list triggers and jobs with, see SchedulerTemplate.setLookupConcurrency(). Worth raising
+     * for a Quartz remote scheduler, where each lookup is a RMI call. Default to 1.
+     */
+    public int getLookupConcurrency() {
+        return props.getInt(SETTINGS_KEY_PREFIX + "lookupConcurrency", 1);
+    }
+
+    /** Leave out triggers and jobs that fail to load when listing them instead of failing the page. Default to false. */
+    public boolean isLookupIgnoreFailures() {
+        return props.getBoolean(SETTINGS_KEY_PREFIX + "lookupIgnoreFailures", false);
+    }
+
+    /**
+     * Keep an in-memory index of the triggers for the web UI, see TriggerIndex. Default to true.
+     */
+    public boolean isTriggerIndexEnabled() {
+        return props.getBoolean(SETTINGS_KEY_PREFIX + "triggerIndexEnabled", true);
+    }
+
+    /**
+     * How often the trigger index is compared against the job store, to pick up changes its listeners can't see
+     * (other cluster nodes, remote schedulers). Zero builds it once only. Default to 60.
+     */
+    public int getTriggerIndexReconcileInSecs() {
+        return props.getInt(SETTINGS_KEY_PREFIX + "triggerIndexReconcileInSecs", 60);
+    }
+
+    /**
+     * Number of threads running the scheduler operations of the web UI that shouldn't block a request thread, see
+     * AsyncSchedulerTemplate. Default to 4.
+     */
+    public int getAsyncThreadCount() {
+        return props.getInt(SETTINGS_KEY_PREFIX + "asyncThreadCount", AsyncSchedulerTemplate.DEFAULT_THREAD_COUNT);
+    }
+
+    /** Number of operations that can wait for an async thread, more are refused. Default to 100. */
+    public int getAsyncQueueCapacity() {
+        return props.getInt(SETTINGS_KEY_PREFIX + "asyncQueueCapacity", AsyncSchedulerTemplate.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /** An async operation not done by then is cancelled. Zero means no timeout. Default to 30. */
+    public int getAsyncTimeoutInSecs() {
+        return props.getInt(SETTINGS_KEY_PREFIX + "asyncTimeoutInSecs", 30);
+    }
+
     /**
      * @return a Map of all keys for Quartz plugin class names.
      */
@@ -0,0 +1,8 @@
+importClass(Packages.myschedule.quartz.extra.job.LoggerJob);
+// Schedule many jobs together, each chunk of jobs is stored in one JobStore transaction.
+// The result has the scheduled count and the jobs that failed, with the reason.
+var batch = scheduler.batch().chunkSize(500);
+for (var i = 0; i < 100; i++) {
+  batch.addCronJob("batchJob" + i, "0 " + (i % 60) + " * * * ?", LoggerJob);
+}
+batch.commit();
\ No newline at end of file
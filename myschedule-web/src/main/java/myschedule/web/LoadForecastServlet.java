@@ -0,0 +1,66 @@
+package myschedule.web;
+
+import myschedule.quartz.extra.LoadForecast;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+/**
+ * A servlet that writes the load forecast of a scheduler (see {@link MySchedule#getLoadForecast(String, int)}) as
+ * CSV, one line per time bucket: start time, fires starting in it, jobs running at once, thread pool size and whether
+ * the pool is saturated. Parameters:
+ * <ul>
+ * <li><code>scheduler</code> - the scheduler settings name. Required.</li>
+ * <li><code>hours</code> - how far to forecast. Default to 24.</li>
+ * <li><code>saturatedOnly</code> - only write the saturated buckets. Default to false.</li>
+ * </ul>
+ *
+ * @author Zemian Deng
+ */
+public class LoadForecastServlet extends HttpServlet {
+    public static final String CONTENT_TYPE = "text/csv; charset=utf-8";
+    public static final int MAX_HOURS = 24 * 7;
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String settingsName = req.getParameter("scheduler");
+        if (settingsName == null || MySchedule.getInstance().getScheduler(settingsName) == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Scheduler not found: " + settingsName);
+            return;
+        }
+        int hours;
+        try {
+            hours = (req.getParameter("hours") == null) ? 24 : Integer.parseInt(req.getParameter("hours"));
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid hours: " + req.getParameter("hours"));
+            return;
+        }
+        if (hours < 1 || hours > MAX_HOURS) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Hours must be from 1 to " + MAX_HOURS);
+            return;
+        }
+        boolean saturatedOnly = Boolean.parseBoolean(req.getParameter("saturatedOnly"));
+
+        LoadForecast forecast = MySchedule.getInstance().getLoadForecast(settingsName, hours);
+        List<LoadForecast.Bucket> buckets = saturatedOnly ? forecast.getSaturatedBuckets() : forecast.getBuckets();
+        resp.setContentType(CONTENT_TYPE);
+        PrintWriter out = resp.getWriter();
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        out.print("bucketStart,fires,jobsRunningAtOnce,threadPoolSize,saturated\n");
+        for (LoadForecast.Bucket bucket : buckets) {
+            out.print(df.format(bucket.getStartTime()) + "," + bucket.getFireCount() + "," +
+                    bucket.getPeakConcurrency() + "," + forecast.getThreadPoolSize() + "," + bucket.isSaturated() +
+                    "\n");
+        }
+        if (forecast.isTruncated())
+            out.print("# Forecast stopped at the maximum number of fires, later buckets are incomplete.\n");
+        out.flush();
+    }
+}
@@ -0,0 +1,99 @@
+package myschedule.web;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A servlet that writes the metrics of all the managed schedulers in the Prometheus text exposition format (version
+ * 0.0.4), so a monitoring system can scrape them. Each value has a <code>scheduler</code> label with the scheduler
+ * settings name. The values come from one {@link SchedulerMetricsCollector#collectAll()} pass, which does not read
+ * the job stores; the trigger counts are the ones counted by the collector background refresh.
+ * <p>
+ * Values that are not available for a scheduler (see {@link SchedulerMetrics}) are left out instead of reported as -1.
+ * </p>
+ *
+ * @author Zemian Deng
+ */
+public class PrometheusMetricsServlet extends HttpServlet {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        List<SchedulerMetrics> metricsList = MySchedule.getInstance().getSchedulerMetricsCollector().collectAll();
+        resp.setContentType(CONTENT_TYPE);
+        PrintWriter out = resp.getWriter();
+
+        writeHeader(out, "myschedule_scheduler_up", "gauge", "1 if the scheduler is started and not in standby.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_scheduler_up", metrics, null,
+                    (metrics.getStatus() == SchedulerStatus.RUNNING) ? 1 : 0);
+
+        writeHeader(out, "myschedule_jobs_executed_total", "counter", "Jobs executed since the scheduler started.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_jobs_executed_total", metrics, null, metrics.getJobsExecuted());
+
+        writeHeader(out, "myschedule_jobs_running", "gauge", "Jobs currently executing.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_jobs_running", metrics, null, metrics.getRunningJobs());
+
+        writeHeader(out, "myschedule_thread_pool_size", "gauge", "Worker threads in the scheduler thread pool.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_thread_pool_size", metrics, null, metrics.getThreadPoolSize());
+
+        writeHeader(out, "myschedule_thread_pool_busy", "gauge", "Worker threads executing a job.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_thread_pool_busy", metrics, null, metrics.getThreadPoolBusy());
+
+        writeHeader(out, "myschedule_job_failures_total", "counter", "Jobs that threw an exception.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_job_failures_total", metrics, null, metrics.getJobFailures());
+
+        writeHeader(out, "myschedule_misfires_total", "counter", "Trigger misfires.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_misfires_total", metrics, null, metrics.getMisfires());
+
+        writeHeader(out, "myschedule_triggers", "gauge", "Triggers by state, as of the last background count.");
+        for (SchedulerMetrics metrics : metricsList) {
+            for (Map.Entry<String, Integer> entry : metrics.getTriggerCountsByState().entrySet())
+                writeSample(out, "myschedule_triggers", metrics, "state=\"" + escape(entry.getKey()) + "\"",
+                        entry.getValue());
+        }
+
+        writeHeader(out, "myschedule_history_queue_size", "gauge", "Events waiting in the history async writer queue.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_history_queue_size", metrics, null, metrics.getHistoryQueueSize());
+
+        writeHeader(out, "myschedule_history_queue_capacity", "gauge", "Capacity of the history async writer queue.");
+        for (SchedulerMetrics metrics : metricsList)
+            writeSample(out, "myschedule_history_queue_capacity", metrics, null, metrics.getHistoryQueueCapacity());
+
+        out.flush();
+    }
+
+    private void writeHeader(PrintWriter out, String name, String type, String help) {
+        out.print("# HELP " + name + " " + help + "\n");
+        out.print("# TYPE " + name + " " + type + "\n");
+    }
+
+    private void writeSample(PrintWriter out, String name, SchedulerMetrics metrics, String extraLabels,
+                             long value) {
+        if (value < 0)
+            return; // Not available.
+        out.print(name + "{scheduler=\"" + escape(metrics.getSettingsName()) + "\"");
+        if (extraLabels != null)
+            out.print("," + extraLabels);
+        out.print("} " + value + "\n");
+    }
+
+    /** Escape a label value per the exposition format: backslash, double quote and line feed. */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
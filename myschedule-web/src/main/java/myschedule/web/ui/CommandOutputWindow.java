@@ -0,0 +1,102 @@
+package myschedule.web.ui;
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.TextField;
+import myschedule.quartz.extra.util.OutputCapture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A popup UI window to page through the output file of an OsCommandJob, by byte offset. The output of a running
+ * command is flushed before each page is read, so the latest lines show up.
+ */
+public class CommandOutputWindow extends EditorWindow {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandOutputWindow.class);
+    private static final long serialVersionUID = 1L;
+    private static final int PAGE_SIZE = 64 * 1024;
+    private OutputCapture outputCapture;
+    private OutputCapture.Page page;
+    private Label positionLabel;
+    private TextField offsetField;
+
+    public CommandOutputWindow(OutputCapture outputCapture) {
+        this.outputCapture = outputCapture;
+        setCaption("Command Output " + outputCapture.getFile().getPath());
+        initControls();
+        showTail();
+    }
+
+    private void initControls() {
+        HorizontalLayout controls = new HorizontalLayout();
+        content.addComponent(controls);
+
+        controls.addComponent(createButton("First", new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                showPage(0);
+            }
+        }));
+        controls.addComponent(createButton("Previous", new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                showPage(Math.max(0, page.getOffset() - PAGE_SIZE));
+            }
+        }));
+        controls.addComponent(createButton("Next", new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                showPage(page.getNextOffset());
+            }
+        }));
+        controls.addComponent(createButton("Tail", new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                showTail();
+            }
+        }));
+
+        offsetField = new TextField();
+        offsetField.setInputPrompt("Byte Offset");
+        controls.addComponent(offsetField);
+        controls.addComponent(createButton("Go", new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                try {
+                    showPage(Long.parseLong(offsetField.getValue().trim()));
+                } catch (NumberFormatException e) {
+                    Notification.show("Invalid byte offset: " + offsetField.getValue(),
+                            Notification.Type.WARNING_MESSAGE);
+                }
+            }
+        }));
+
+        positionLabel = new Label();
+        controls.addComponent(positionLabel);
+    }
+
+    private Button createButton(String caption, Button.ClickListener listener) {
+        Button button = new Button(caption);
+        button.addClickListener(listener);
+        return button;
+    }
+
+    private void showTail() {
+        outputCapture.flush();
+        long fileSize = outputCapture.getFile().length();
+        showPage(Math.max(0, fileSize - PAGE_SIZE));
+    }
+
+    private void showPage(long offset) {
+        outputCapture.flush();
+        LOGGER.debug("Reading output file {} from offset {}", outputCapture.getFile(), offset);
+        page = OutputCapture.readPage(outputCapture.getFile(), offset, PAGE_SIZE);
+        editor.setReadOnly(false);
+        editor.setValue(page.getText());
+        editor.setReadOnly(true);
+        positionLabel.setValue("Bytes " + page.getOffset() + "-" + page.getNextOffset() + " of " +
+                page.getFileSize());
+    }
+}
@@ -6,6 +6,7 @@ import com.vaadin.ui.Button;
 import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Table;
 import com.vaadin.ui.VerticalLayout;
+import myschedule.quartz.extra.AsyncSchedulerTemplate;
 import myschedule.quartz.extra.SchedulerTemplate;
 import myschedule.web.MySchedule;
 import myschedule.web.SchedulerSettings;
@@ -14,7 +15,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vaadin.dialogs.ConfirmDialog;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * UI screen for displaying a dashboard of all schedulers in a table view. This is the default main screen for the
@@ -80,18 +89,36 @@ public class DashboardScreen extends VerticalLayout {
         table.addContainerProperty("Status", String.class, defaultValue);
         table.addContainerProperty("Job Counts", Integer.class, defaultValue);
 
-        // Fill table data
+        // Count the triggers of all the schedulers at once, so one slow scheduler doesn't hold up the others.
         List<String> names = mySchedule.getSchedulerSettingsNames();
+        Map<String, SchedulerStatus> statuses = new HashMap<String, SchedulerStatus>();
+        Map<String, Future<Integer>> jobCounts = new HashMap<String, Future<Integer>>();
         for (String settingsName : names) {
-            LOGGER.debug("Adding scheduler settings {} to dashboard.", settingsName);
-            SchedulerSettings settings = mySchedule.getSchedulerSettings(settingsName);
             SchedulerTemplate scheduler = mySchedule.getScheduler(settingsName);
             SchedulerStatus status = MySchedule.getSchedulerStatus(scheduler);
+            statuses.put(settingsName, status);
+            AsyncSchedulerTemplate asyncScheduler = mySchedule.getAsyncScheduler(settingsName);
+            if (asyncScheduler != null && (status == SchedulerStatus.RUNNING || status == SchedulerStatus.STANDBY)) {
+                try {
+                    jobCounts.put(settingsName, asyncScheduler.countTriggers());
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("Too many operations waiting on scheduler {}, job count not shown.", settingsName);
+                }
+            }
+        }
+
+        // Fill table data
+        long waitEndTime = System.currentTimeMillis() + mySchedule.getMyScheduleSettings().getUiWaitInMillis();
+        for (String settingsName : names) {
+            LOGGER.debug("Adding scheduler settings {} to dashboard.", settingsName);
+            SchedulerSettings settings = mySchedule.getSchedulerSettings(settingsName);
+            SchedulerStatus status = statuses.get(settingsName);
             Integer jobCount = 0;
             String schedulerName = settings.getSchedulerFullName();
 
-            if (status == SchedulerStatus.RUNNING || status == SchedulerStatus.STANDBY) {
-                jobCount = scheduler.getAllTriggers().size();
+            Future<Integer> jobCountFuture = jobCounts.get(settingsName);
+            if (jobCountFuture != null) {
+                jobCount = getJobCount(settingsName, jobCountFuture, waitEndTime);
             }
 
             Object[] row = new Object[]{
@@ -127,6 +154,23 @@ public class DashboardScreen extends VerticalLayout {
         });
     }
 
+    /** @return the job count, or null if not counted by the wait end time. It's shown empty then. */
+    private Integer getJobCount(String settingsName, Future<Integer> jobCountFuture, long waitEndTime) {
+        try {
+            long waitTime = Math.max(0, waitEndTime - System.currentTimeMillis());
+            return jobCountFuture.get(waitTime, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Scheduler {} did not count its triggers in time, job count not shown.", settingsName);
+        } catch (ExecutionException e) {
+            LOGGER.warn("Failed to count the triggers of scheduler " + settingsName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            LOGGER.warn("Counting the triggers of scheduler {} was cancelled, job count not shown.", settingsName);
+        }
+        return null;
+    }
+
     class SchedulerButtonGroup extends HorizontalLayout {
         Button init = createInitButton();
         Button start = createStartButton();
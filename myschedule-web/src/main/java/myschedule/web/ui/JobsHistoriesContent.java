@@ -1,7 +1,10 @@
 package myschedule.web.ui;
 
+import com.vaadin.shared.ui.datefield.Resolution;
 import com.vaadin.ui.*;
-import myschedule.quartz.extra.JdbcSchedulerHistoryPlugin;
+import myschedule.quartz.extra.HistoryEvent;
+import myschedule.quartz.extra.HistoryQuery;
+import myschedule.quartz.extra.AbstractSchedulerHistoryPlugin;
 import myschedule.quartz.extra.SchedulerTemplate;
 import myschedule.web.MySchedule;
 import org.slf4j.Logger;
@@ -10,9 +13,13 @@ import org.slf4j.LoggerFactory;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**s
- * JobsHistoriesContent provide a table view for Job histories recorded by JdbcSchedulerHistoryPlugin.
+ * JobsHistoriesContent provide a table view for Job histories recorded by any of the scheduler history plugins
+ * (JdbcSchedulerHistoryPlugin, FileSchedulerHistoryPlugin or MemorySchedulerHistoryPlugin).
+ * The histories are read one page at a time (newest first) with the toolbar filters, and the next page is only
+ * loaded when user scroll near the end of the table.
  * User: Zemian Deng
  * Date: 6/1/13
  */
@@ -23,6 +30,15 @@ public class JobsHistoriesContent extends VerticalLayout {
     String schedulerSettingsName;
     HorizontalLayout toolbar;
     Table table;
+    ComboBox eventTypeField;
+    TextField eventNameField;
+    TextField triggerKeyField;
+    TextField jobKeyField;
+    PopupDateField fromTimeField;
+    PopupDateField toTimeField;
+    AbstractSchedulerHistoryPlugin plugin;
+    HistoryQuery nextQuery;
+    int nextItemId;
 
     public JobsHistoriesContent(MyScheduleUi myScheduleUi, String schedulerSettingsName) {
         this.myScheduleUi = myScheduleUi;
@@ -36,6 +52,34 @@ public class JobsHistoriesContent extends VerticalLayout {
         addComponent(toolbar);
 
         toolbar.addComponent(createRefreshButton());
+
+        eventTypeField = new ComboBox();
+        eventTypeField.setInputPrompt("Event Type");
+        eventTypeField.addItem("SchedulerListener");
+        eventTypeField.addItem("TriggerListener");
+        toolbar.addComponent(eventTypeField);
+
+        eventNameField = new TextField();
+        eventNameField.setInputPrompt("Event Name");
+        toolbar.addComponent(eventNameField);
+
+        triggerKeyField = new TextField();
+        triggerKeyField.setInputPrompt("Trigger Key (group.name)");
+        toolbar.addComponent(triggerKeyField);
+
+        jobKeyField = new TextField();
+        jobKeyField.setInputPrompt("Job Key (group.name)");
+        toolbar.addComponent(jobKeyField);
+
+        fromTimeField = new PopupDateField();
+        fromTimeField.setInputPrompt("From Time");
+        fromTimeField.setResolution(Resolution.SECOND);
+        toolbar.addComponent(fromTimeField);
+
+        toTimeField = new PopupDateField();
+        toTimeField.setInputPrompt("To Time");
+        toTimeField.setResolution(Resolution.SECOND);
+        toolbar.addComponent(toTimeField);
     }
 
     private Button createRefreshButton() {
@@ -50,7 +94,15 @@ public class JobsHistoriesContent extends VerticalLayout {
     }
 
     private void initJobsTable() {
-        table = new Table();
+        table = new Table() {
+            @Override
+            public void changeVariables(Object source, Map<String, Object> variables) {
+                super.changeVariables(source, variables);
+                // Client sends these when user scroll the table.
+                if (variables.containsKey("firstvisible") || variables.containsKey("reqfirstrow"))
+                    loadMoreIfNeeded();
+            }
+        };
         addComponent(table);
 
         table.setSizeFull();
@@ -77,9 +129,10 @@ public class JobsHistoriesContent extends VerticalLayout {
         MySchedule mySchedule = MySchedule.getInstance();
         SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
         String key = mySchedule.getMyScheduleSettings().getJdbcSchedulerHistoryPluginContextKey();
-        JdbcSchedulerHistoryPlugin plugin = (JdbcSchedulerHistoryPlugin)scheduler.getContext().get(key);
+        AbstractSchedulerHistoryPlugin plugin = findHistoryPlugin(scheduler, key);
         if (plugin == null) {
-            String msg = "No JdbcSchedulerHistoryPlugin detected! Please configure this plugin to record scheduler " +
+            String msg = "No JdbcSchedulerHistoryPlugin, FileSchedulerHistoryPlugin or MemorySchedulerHistoryPlugin " +
+                    "detected! Please configure one of these plugins to record scheduler " +
                     "events and job histories in your scheduler config settings.";
             Notification.show("WARNING", msg, Notification.Type.WARNING_MESSAGE);
 
@@ -87,28 +140,75 @@ public class JobsHistoriesContent extends VerticalLayout {
             return;
         }
 
+        this.plugin = plugin;
+        nextQuery = createHistoryQuery();
+        nextItemId = 0;
         table.removeAllItems();
+        LOGGER.debug("Loading job hitories from scheduler {} with {}", schedulerSettingsName, nextQuery);
+        loadNextPage();
+    }
+
+    private AbstractSchedulerHistoryPlugin findHistoryPlugin(SchedulerTemplate scheduler, String key) {
+        Object plugin = scheduler.getContext().get(key);
+        if (plugin instanceof AbstractSchedulerHistoryPlugin)
+            return (AbstractSchedulerHistoryPlugin)plugin;
+
+        // The plugin may be stored with its own default key.
+        for (Object value : scheduler.getContext().values()) {
+            if (value instanceof AbstractSchedulerHistoryPlugin)
+                return (AbstractSchedulerHistoryPlugin)value;
+        }
+        return null;
+    }
+
+    private HistoryQuery createHistoryQuery() {
+        HistoryQuery query = new HistoryQuery();
+        query.setEventType((String) eventTypeField.getValue());
+        query.setEventName(toFilter(eventNameField.getValue()));
+        query.setTriggerKey(toFilter(triggerKeyField.getValue()));
+        query.setJobKey(toFilter(jobKeyField.getValue()));
+        query.setFromTime(fromTimeField.getValue());
+        query.setToTime(toTimeField.getValue());
+        return query;
+    }
+
+    private void loadMoreIfNeeded() {
+        int lastVisibleIndex = table.getCurrentPageFirstItemIndex() + table.getPageLength();
+        if (nextQuery != null && lastVisibleIndex + table.getPageLength() >= table.size())
+            loadNextPage();
+    }
+
+    private void loadNextPage() {
         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        LOGGER.debug("Loading job hitories from scheduler {}", schedulerSettingsName);
-        List<List<Object>> histories = plugin.getJobHistoryData();
-        int index = 0;
-        for (List<Object> history : histories) {
+        List<HistoryEvent> histories = plugin.queryHistory(nextQuery);
+        for (HistoryEvent history : histories) {
             Object[] row = new Object[]{
-                    history.get(0) + "/" + history.get(1),
-                    toStr(history.get(2)),
-                    toStr(history.get(3)),
-                    toStr(history.get(4)),
-                    (history.get(5) instanceof Date) ?
-                        toDateStr((Date)history.get(5), df) :
-                        toStr(history.get(5)),
-                    toStr(history.get(6)),
-                    toStr(history.get(7)),
-                    toStr(history.get(8)),
-                    toStr(history.get(9)),
-                    toStr(history.get(10))
+                    history.getHostIp() + "/" + history.getHostName(),
+                    toStr(history.getSchedulerName()),
+                    toStr(history.getEventType()),
+                    toStr(history.getEventName()),
+                    toDateStr(history.getEventTime(), df),
+                    toStr(history.getInfo1()),
+                    toStr(history.getInfo2()),
+                    toStr(history.getInfo3()),
+                    toStr(history.getInfo4()),
+                    toStr(history.getInfo5())
             };
-            table.addItem(row, index++);
+            table.addItem(row, nextItemId++);
         }
+
+        // A short page means there is no more to load.
+        if (histories.size() < nextQuery.getPageSize())
+            nextQuery = null;
+        else
+            nextQuery = nextQuery.nextPage(histories.get(histories.size() - 1));
+    }
+
+    private String toFilter(String value) {
+        if (value == null || value.trim().length() == 0)
+            return null;
+        else
+            return value.trim();
     }
 
     private String toStr(Object item) {
@@ -4,9 +4,12 @@ import com.vaadin.data.Property;
 import com.vaadin.event.ItemClickEvent;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.Table;
 import com.vaadin.ui.VerticalLayout;
 import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.quartz.extra.job.OsCommandJob;
+import myschedule.quartz.extra.util.OutputCapture;
 import myschedule.web.MySchedule;
 import org.apache.commons.lang.StringUtils;
 import org.quartz.*;
@@ -54,6 +57,7 @@ public class JobsRunningContent extends VerticalLayout {
 
         tableRowActionButtonsGroup.addComponent(createViewDetailsButton());
         tableRowActionButtonsGroup.addComponent(createInterruptButton());
+        tableRowActionButtonsGroup.addComponent(createViewOutputButton());
 
         disableToolbarIfNeeded();
     }
@@ -115,6 +119,32 @@ public class JobsRunningContent extends VerticalLayout {
         return button;
     }
 
+    private Button createViewOutputButton() {
+        Button button = new Button("View Output");
+        button.addClickListener(new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                OutputCapture outputCapture = findOutputCapture(getSelectedTriggerKey());
+                if (outputCapture == null) {
+                    Notification.show("No output file for this job. Only an OsCommandJob with OutputDir set in " +
+                            "its data map writes one.", Notification.Type.WARNING_MESSAGE);
+                    return;
+                }
+                myScheduleUi.addWindow(new CommandOutputWindow(outputCapture));
+            }
+        });
+        return button;
+    }
+
+    private OutputCapture findOutputCapture(TriggerKey triggerKey) {
+        SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
+        for (JobExecutionContext job : scheduler.getCurrentlyExecutingJobs()) {
+            if (job.getTrigger().getKey().equals(triggerKey) && job.getJobInstance() instanceof OsCommandJob)
+                return ((OsCommandJob) job.getJobInstance()).getOutputCapture();
+        }
+        return null;
+    }
+
     private void initJobsTable() {
         table = new Table();
         addComponent(table);
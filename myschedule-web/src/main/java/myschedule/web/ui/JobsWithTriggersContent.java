@@ -5,9 +5,14 @@ import com.vaadin.data.Property;
 import com.vaadin.event.ItemClickEvent;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.Table;
 import com.vaadin.ui.VerticalLayout;
+import myschedule.quartz.extra.BulkOperationResult;
+import myschedule.quartz.extra.SchedulerSnapshot;
 import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.quartz.extra.TriggerFilter;
+import myschedule.quartz.extra.TriggerIndex;
 import myschedule.web.MySchedule;
 import org.apache.commons.lang.StringUtils;
 import org.quartz.JobDetail;
@@ -19,8 +24,11 @@ import org.slf4j.LoggerFactory;
 import org.vaadin.dialogs.ConfirmDialog;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**s
  * JobsWithTriggersContents provide a table view for all JobDetails that have triggers associated.
@@ -36,6 +44,9 @@ public class JobsWithTriggersContent extends VerticalLayout {
     HorizontalLayout tableRowActionButtonsGroup;
     Table table;
     String selectedTriggerKeyName;
+    Set<String> selectedTriggerKeyNames = new HashSet<String>();
+    Button viewDetailsButton;
+    Button runItNowButton;
     Button pauseOrResumeButton;
 
     public JobsWithTriggersContent(MyScheduleUi myScheduleUi, String schedulerSettingsName) {
@@ -54,26 +65,39 @@ public class JobsWithTriggersContent extends VerticalLayout {
         tableRowActionButtonsGroup = new HorizontalLayout();
         toolbar.addComponent(tableRowActionButtonsGroup);
 
-        tableRowActionButtonsGroup.addComponent(createViewDetailsButton());
+        viewDetailsButton = createViewDetailsButton();
+        tableRowActionButtonsGroup.addComponent(viewDetailsButton);
         tableRowActionButtonsGroup.addComponent(createDeleteButton());
-        tableRowActionButtonsGroup.addComponent(createRunItNowButton());
+        runItNowButton = createRunItNowButton();
+        tableRowActionButtonsGroup.addComponent(runItNowButton);
 
         pauseOrResumeButton = createPauseOrResumeButton();
         tableRowActionButtonsGroup.addComponent(pauseOrResumeButton);
 
-        disableToolbarIfNeeded(Trigger.TriggerState.NORMAL.toString());
+        disableToolbarIfNeeded();
     }
 
-    private void disableToolbarIfNeeded(String triggerStateName) {
-        if (selectedTriggerKeyName == null) {
+    private void disableToolbarIfNeeded() {
+        if (selectedTriggerKeyNames.isEmpty()) {
             tableRowActionButtonsGroup.setEnabled(false);
         } else {
-            // Check and ensure Pause/Resume button has the right label.
-            Trigger.TriggerState triggerState = Trigger.TriggerState.valueOf(triggerStateName);
-            if (triggerState == Trigger.TriggerState.PAUSED)
+            // Check and ensure Pause/Resume button has the right label: Resume only when all selected are paused.
+            boolean allPaused = true;
+            for (String triggerKeyName : selectedTriggerKeyNames) {
+                Item item = table.getItem(triggerKeyName);
+                String triggerStateName = (item == null) ? null : (String) item.getItemProperty("Status").getValue();
+                if (!Trigger.TriggerState.PAUSED.toString().equals(triggerStateName))
+                    allPaused = false;
+            }
+            if (allPaused)
                 pauseOrResumeButton.setCaption("Resume");
             else
                 pauseOrResumeButton.setCaption("Pause");
+
+            // Delete and Pause/Resume work on all the selected triggers, the others on one only.
+            boolean singleSelected = selectedTriggerKeyNames.size() == 1;
+            viewDetailsButton.setEnabled(singleSelected);
+            runItNowButton.setEnabled(singleSelected);
             tableRowActionButtonsGroup.setEnabled(true);
         }
     }
@@ -105,13 +129,13 @@ public class JobsWithTriggersContent extends VerticalLayout {
         button.addClickListener(new Button.ClickListener() {
             @Override
             public void buttonClick(Button.ClickEvent event) {
-                ConfirmDialog.show(myScheduleUi, "Are you sure to delete trigger?",
+                ConfirmDialog.show(myScheduleUi, "Are you sure to delete " + getSelectedCountText() + "?",
                         new ConfirmDialog.Listener() {
                             public void onClose(ConfirmDialog dialog) {
                                 if (dialog.isConfirmed()) {
-                                    TriggerKey triggerKey = getSelectedTriggerKey();
+                                    TriggerFilter filter = new TriggerFilter().keys(getSelectedTriggerKeys());
                                     SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
-                                    scheduler.unscheduleJob(triggerKey);
+                                    showBulkOperationResult(scheduler.unscheduleJobs(filter));
 
                                     reloadTableContent();
                                 }
@@ -154,18 +178,18 @@ public class JobsWithTriggersContent extends VerticalLayout {
             public void buttonClick(Button.ClickEvent event) {
                 final String caption = event.getButton().getCaption();
                 String msg = caption.equals("Pause") ?
-                        "Are you sure to pause it now?" :
-                        "Are you sure to resume it now?";
+                        "Are you sure to pause " + getSelectedCountText() + " now?" :
+                        "Are you sure to resume " + getSelectedCountText() + " now?";
                 ConfirmDialog.show(myScheduleUi, msg,
                         new ConfirmDialog.Listener() {
                             public void onClose(ConfirmDialog dialog) {
                                 if (dialog.isConfirmed()) {
-                                    TriggerKey triggerKey = getSelectedTriggerKey();
+                                    TriggerFilter filter = new TriggerFilter().keys(getSelectedTriggerKeys());
                                     SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
                                     if (caption.equals("Pause")) {
-                                        scheduler.pauseTrigger(triggerKey);
+                                        showBulkOperationResult(scheduler.pauseTriggers(filter));
                                     } else {
-                                        scheduler.resumeTrigger(triggerKey);
+                                        showBulkOperationResult(scheduler.resumeTriggers(filter));
                                     }
                                     reloadTableContent();
                                 }
@@ -184,6 +208,7 @@ public class JobsWithTriggersContent extends VerticalLayout {
         table.setSizeFull();
         table.setImmediate(true);
         table.setSelectable(true);
+        table.setMultiSelect(true);
 
         Object defaultValue = null; // Not used.
         table.addContainerProperty("Trigger", String.class, defaultValue);
@@ -196,13 +221,13 @@ public class JobsWithTriggersContent extends VerticalLayout {
         // Selectable handler
         table.addValueChangeListener(new Property.ValueChangeListener() {
             @Override
+            @SuppressWarnings("unchecked")
             public void valueChange(Property.ValueChangeEvent event) {
-                selectedTriggerKeyName = (String) event.getProperty().getValue();
-                Item item = table.getItem(selectedTriggerKeyName);
-                if (item != null) {
-                    String triggerStateName = (String)item.getItemProperty("Status").getValue();
-                    disableToolbarIfNeeded(triggerStateName);
-                }
+                // A multi select table value is the set of selected item ids.
+                selectedTriggerKeyNames = new HashSet<String>((Set<String>) event.getProperty().getValue());
+                selectedTriggerKeyName = (selectedTriggerKeyNames.size() == 1) ?
+                        selectedTriggerKeyNames.iterator().next() : null;
+                disableToolbarIfNeeded();
             }
         });
 
@@ -223,23 +248,34 @@ public class JobsWithTriggersContent extends VerticalLayout {
 
     private void reloadTableContent() {
         table.removeAllItems();
-        LOGGER.debug("Loading triggers from scheduler {}", schedulerSettingsName);
         MySchedule mySchedule = MySchedule.getInstance();
+
+        // Only use the index when listeners keep it current, else it would not show the actions done on this screen
+        // until its next reconcile.
+        TriggerIndex triggerIndex = mySchedule.getTriggerIndex(schedulerSettingsName);
+        if (triggerIndex != null && triggerIndex.isReady() && triggerIndex.isListening()) {
+            LOGGER.debug("Loading triggers from trigger index of scheduler {}", schedulerSettingsName);
+            loadTableContent(triggerIndex);
+            return;
+        }
+
+        LOGGER.debug("Loading triggers from scheduler {}", schedulerSettingsName);
         SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
-        List<Trigger> triggers = scheduler.getAllTriggers();
+        SchedulerSnapshot snapshot = scheduler.snapshot();
         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        for (Trigger trigger : triggers) {
+        for (Trigger trigger : snapshot.getTriggers()) {
             TriggerKey triggerKey = trigger.getKey();
             JobKey jobKey = trigger.getJobKey();
-            JobDetail jobDetail = scheduler.getJobDetail(jobKey);
+            JobDetail jobDetail = snapshot.getJobDetail(jobKey);
             Date nextFireTime = trigger.getNextFireTime();
             Date previousFireTime = trigger.getPreviousFireTime();
             String triggerKeyName = triggerKey.getName() + "/" + triggerKey.getGroup();
-            Trigger.TriggerState triggerState = scheduler.getTriggerState(triggerKey);
+            Trigger.TriggerState triggerState = snapshot.getTriggerState(triggerKey);
+            String jobClassName = (jobDetail == null) ? "" : jobDetail.getJobClass().getSimpleName();
             Object[] row = new Object[]{
                     triggerKeyName,
                     jobKey.getName() + "/" + jobKey.getGroup(),
-                    trigger.getClass().getSimpleName() + "/" + jobDetail.getJobClass().getSimpleName(),
+                    trigger.getClass().getSimpleName() + "/" + jobClassName,
                     (nextFireTime == null) ? "" : df.format(nextFireTime),
                     (previousFireTime == null) ? "" : df.format(previousFireTime),
                     triggerState.toString()
@@ -248,6 +284,31 @@ public class JobsWithTriggersContent extends VerticalLayout {
         }
     }
 
+    private void loadTableContent(TriggerIndex triggerIndex) {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (TriggerIndex.Entry entry : triggerIndex.getEntries()) {
+            TriggerKey triggerKey = entry.getTriggerKey();
+            JobKey jobKey = entry.getJobKey();
+            Date nextFireTime = entry.getNextFireTime();
+            Date previousFireTime = entry.getPreviousFireTime();
+            String triggerKeyName = triggerKey.getName() + "/" + triggerKey.getGroup();
+            String jobClassName = (entry.getJobClassName() == null) ? "" : getSimpleName(entry.getJobClassName());
+            Object[] row = new Object[]{
+                    triggerKeyName,
+                    jobKey.getName() + "/" + jobKey.getGroup(),
+                    getSimpleName(entry.getTriggerClassName()) + "/" + jobClassName,
+                    (nextFireTime == null) ? "" : df.format(nextFireTime),
+                    (previousFireTime == null) ? "" : df.format(previousFireTime),
+                    entry.getState().toString()
+            };
+            table.addItem(row, triggerKeyName);
+        }
+    }
+
+    private static String getSimpleName(String className) {
+        return className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+    }
+
     private void showJobsWithTriggersWindow() {
         TriggerKey triggerKey = getSelectedTriggerKey();
         JobsWithTriggersWindow window = new JobsWithTriggersWindow(myScheduleUi, schedulerSettingsName, triggerKey);
@@ -255,11 +316,36 @@ public class JobsWithTriggersContent extends VerticalLayout {
     }
 
     private TriggerKey getSelectedTriggerKey() {
-        String[] names = StringUtils.split(selectedTriggerKeyName, "/");
+        return toTriggerKey(selectedTriggerKeyName);
+    }
+
+    private List<TriggerKey> getSelectedTriggerKeys() {
+        List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>();
+        for (String triggerKeyName : selectedTriggerKeyNames)
+            triggerKeys.add(toTriggerKey(triggerKeyName));
+        return triggerKeys;
+    }
+
+    private String getSelectedCountText() {
+        int count = selectedTriggerKeyNames.size();
+        return (count == 1) ? "trigger" : count + " triggers";
+    }
+
+    private TriggerKey toTriggerKey(String triggerKeyName) {
+        String[] names = StringUtils.split(triggerKeyName, "/");
         if (names.length != 2)
             throw new RuntimeException("Unable to retrieve trigger: invalid trigger name/group format used.");
 
         TriggerKey triggerKey = new TriggerKey(names[0], names[1]);
         return triggerKey;
     }
+
+    private void showBulkOperationResult(BulkOperationResult result) {
+        LOGGER.info("Scheduler {}: {}", schedulerSettingsName, result);
+        if (result.getFailures().size() > 0) {
+            String msg = result.getFailures().size() + " of " + result.getMatchedCount() + " triggers failed: " +
+                    StringUtils.join(result.getFailures(), "; ");
+            Notification.show("WARNING", msg, Notification.Type.WARNING_MESSAGE);
+        }
+    }
 }
\ No newline at end of file
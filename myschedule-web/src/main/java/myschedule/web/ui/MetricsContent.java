@@ -0,0 +1,201 @@
+package myschedule.web.ui;
+
+import com.vaadin.data.Property;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.ComboBox;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.VerticalLayout;
+import myschedule.quartz.extra.CommandGate;
+import myschedule.quartz.extra.CommandGateStats;
+import myschedule.quartz.extra.JobMetricsPlugin;
+import myschedule.quartz.extra.JobMetricsSnapshot;
+import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.web.MySchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * MetricsContent shows the job execution metrics recorded by JobMetricsPlugin: the run time and fire delay
+ * percentiles (in milliseconds), and the execution, failure and misfire counts of each job or each job group. The
+ * first row is the total of all the jobs.
+ * <p/>
+ * <p>If the scheduler has a CommandGatePlugin, a second table shows the OS command permits: the ones in use and the
+ * jobs waiting for one, the acquired and rejected counts, and the wait time percentiles (in milliseconds) of the global
+ * limit and of each command group.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class MetricsContent extends VerticalLayout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsContent.class);
+    private static final String BY_JOB = "By Job";
+    private static final String BY_GROUP = "By Job Group";
+    MySchedule mySchedule = MySchedule.getInstance();
+    MyScheduleUi myScheduleUi;
+    String schedulerSettingsName;
+    HorizontalLayout toolbar;
+    ComboBox groupByField;
+    Table table;
+    Table commandGateTable;
+
+    public MetricsContent(MyScheduleUi myScheduleUi, String schedulerSettingsName) {
+        this.myScheduleUi = myScheduleUi;
+        this.schedulerSettingsName = schedulerSettingsName;
+        initToolbar();
+        initTable();
+        initCommandGateTable();
+    }
+
+    private void initToolbar() {
+        toolbar = new HorizontalLayout();
+        addComponent(toolbar);
+
+        groupByField = new ComboBox();
+        groupByField.addItem(BY_JOB);
+        groupByField.addItem(BY_GROUP);
+        groupByField.setValue(BY_JOB);
+        groupByField.setNullSelectionAllowed(false);
+        groupByField.setImmediate(true);
+        groupByField.addValueChangeListener(new Property.ValueChangeListener() {
+            @Override
+            public void valueChange(Property.ValueChangeEvent event) {
+                reloadTableContent();
+            }
+        });
+        toolbar.addComponent(groupByField);
+
+        toolbar.addComponent(createRefreshButton());
+    }
+
+    private Button createRefreshButton() {
+        Button button = new Button("Refresh");
+        button.addClickListener(new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                reloadTableContent();
+            }
+        });
+        return button;
+    }
+
+    private void initTable() {
+        table = new Table();
+        addComponent(table);
+
+        table.setSizeFull();
+        table.setImmediate(true);
+        table.setSelectable(true);
+
+        Object defaultValue = null; // Not used.
+        table.addContainerProperty("Name", String.class, defaultValue);
+        table.addContainerProperty("Executions", String.class, defaultValue);
+        table.addContainerProperty("Last Minute", String.class, defaultValue);
+        table.addContainerProperty("Failures", String.class, defaultValue);
+        table.addContainerProperty("Misfires", String.class, defaultValue);
+        table.addContainerProperty("Run p50", String.class, defaultValue);
+        table.addContainerProperty("Run p95", String.class, defaultValue);
+        table.addContainerProperty("Run p99", String.class, defaultValue);
+        table.addContainerProperty("Run Max", String.class, defaultValue);
+        table.addContainerProperty("Delay p50", String.class, defaultValue);
+        table.addContainerProperty("Delay p95", String.class, defaultValue);
+        table.addContainerProperty("Delay p99", String.class, defaultValue);
+        table.addContainerProperty("Delay Max", String.class, defaultValue);
+
+        reloadTableContent();
+    }
+
+    private void initCommandGateTable() {
+        commandGateTable = new Table("Command Gate");
+        addComponent(commandGateTable);
+
+        commandGateTable.setWidth("100%");
+        commandGateTable.setPageLength(5);
+        commandGateTable.setImmediate(true);
+        commandGateTable.setSelectable(true);
+
+        Object defaultValue = null; // Not used.
+        commandGateTable.addContainerProperty("Name", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Limit", String.class, defaultValue);
+        commandGateTable.addContainerProperty("In Use", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Waiting", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Acquired", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Rejected", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Wait p50", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Wait p95", String.class, defaultValue);
+        commandGateTable.addContainerProperty("Wait Max", String.class, defaultValue);
+
+        reloadCommandGateContent();
+    }
+
+    private void reloadCommandGateContent() {
+        commandGateTable.removeAllItems();
+        SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
+        CommandGate gate = scheduler.getCommandGate();
+        commandGateTable.setVisible(gate != null);
+        if (gate == null)
+            return;
+
+        LOGGER.debug("Loading command gate stats from scheduler {}", schedulerSettingsName);
+        int index = 0;
+        for (CommandGateStats stats : gate.getStats()) {
+            Object[] row = new Object[]{
+                    stats.getName(),
+                    (stats.getLimit() > 0) ? "" + stats.getLimit() : "None",
+                    "" + stats.getInUseCount(),
+                    "" + stats.getWaitingCount(),
+                    "" + stats.getAcquiredCount(),
+                    "" + stats.getRejectedCount(),
+                    "" + stats.getWaitTimeP50(),
+                    "" + stats.getWaitTimeP95(),
+                    "" + stats.getWaitTimeMax()
+            };
+            commandGateTable.addItem(row, index++);
+        }
+    }
+
+    private void reloadTableContent() {
+        table.removeAllItems();
+        if (commandGateTable != null)
+            reloadCommandGateContent();
+        SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
+        JobMetricsPlugin plugin = scheduler.getJobMetricsPlugin();
+        if (plugin == null) {
+            String msg = "No JobMetricsPlugin detected! Please configure this plugin in your scheduler config " +
+                    "settings to see the job execution metrics.";
+            Notification.show("WARNING", msg, Notification.Type.WARNING_MESSAGE);
+
+            // End this method here.
+            return;
+        }
+
+        LOGGER.debug("Loading job metrics from scheduler {}", schedulerSettingsName);
+        int index = 0;
+        addTableItem(index++, plugin.getTotalMetrics().getSnapshot(), "TOTAL");
+        List<JobMetricsSnapshot> metricsList = BY_GROUP.equals(groupByField.getValue()) ?
+                plugin.getJobGroupMetricsSnapshots() : plugin.getJobMetricsSnapshots();
+        for (JobMetricsSnapshot metrics : metricsList)
+            addTableItem(index++, metrics, metrics.getName());
+    }
+
+    private void addTableItem(int index, JobMetricsSnapshot metrics, String name) {
+        Object[] row = new Object[]{
+                name,
+                "" + metrics.getExecutionCount(),
+                "" + metrics.getLastMinuteExecutionCount(),
+                "" + metrics.getFailureCount(),
+                "" + metrics.getMisfireCount(),
+                "" + metrics.getRunTimeP50(),
+                "" + metrics.getRunTimeP95(),
+                "" + metrics.getRunTimeP99(),
+                "" + metrics.getRunTimeMax(),
+                "" + metrics.getFireDelayP50(),
+                "" + metrics.getFireDelayP95(),
+                "" + metrics.getFireDelayP99(),
+                "" + metrics.getFireDelayMax()
+        };
+        table.addItem(row, index);
+    }
+}
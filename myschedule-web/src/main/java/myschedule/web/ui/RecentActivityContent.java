@@ -0,0 +1,138 @@
+package myschedule.web.ui;
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.ComboBox;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.VerticalLayout;
+import myschedule.quartz.extra.RecentActivityEvent;
+import myschedule.quartz.extra.RecentActivityPlugin;
+import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.web.MySchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * RecentActivityContent shows the latest trigger events kept in memory by RecentActivityPlugin. It does not read the
+ * history store, so it's cheap to refresh to see what the scheduler just fired.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class RecentActivityContent extends VerticalLayout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecentActivityContent.class);
+    MySchedule mySchedule = MySchedule.getInstance();
+    MyScheduleUi myScheduleUi;
+    String schedulerSettingsName;
+    HorizontalLayout toolbar;
+    ComboBox eventTypeField;
+    Table table;
+
+    public RecentActivityContent(MyScheduleUi myScheduleUi, String schedulerSettingsName) {
+        this.myScheduleUi = myScheduleUi;
+        this.schedulerSettingsName = schedulerSettingsName;
+        initToolbar();
+        initTable();
+    }
+
+    private void initToolbar() {
+        toolbar = new HorizontalLayout();
+        addComponent(toolbar);
+
+        eventTypeField = new ComboBox();
+        eventTypeField.setInputPrompt("All events");
+        for (RecentActivityEvent.Type type : RecentActivityEvent.Type.values())
+            eventTypeField.addItem(type);
+        eventTypeField.setImmediate(true);
+        toolbar.addComponent(eventTypeField);
+
+        toolbar.addComponent(createRefreshButton());
+    }
+
+    private Button createRefreshButton() {
+        Button button = new Button("Refresh");
+        button.addClickListener(new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                reloadTableContent();
+            }
+        });
+        return button;
+    }
+
+    private void initTable() {
+        table = new Table();
+        addComponent(table);
+
+        table.setSizeFull();
+        table.setImmediate(true);
+        table.setSelectable(true);
+
+        Object defaultValue = null; // Not used.
+        table.addContainerProperty("Time", String.class, defaultValue);
+        table.addContainerProperty("Event", String.class, defaultValue);
+        table.addContainerProperty("Trigger", String.class, defaultValue);
+        table.addContainerProperty("JobDetail", String.class, defaultValue);
+        table.addContainerProperty("Fire Time", String.class, defaultValue);
+        table.addContainerProperty("Duration (ms)", String.class, defaultValue);
+        table.addContainerProperty("Instruction", String.class, defaultValue);
+
+        reloadTableContent();
+    }
+
+    private void reloadTableContent() {
+        table.removeAllItems();
+        SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
+        RecentActivityPlugin plugin = findPlugin(scheduler);
+        if (plugin == null) {
+            String msg = "No RecentActivityPlugin detected! Please configure this plugin in your scheduler config " +
+                    "settings to see the recent trigger events.";
+            Notification.show("WARNING", msg, Notification.Type.WARNING_MESSAGE);
+
+            // End this method here.
+            return;
+        }
+
+        LOGGER.debug("Loading recent activity from scheduler {}", schedulerSettingsName);
+        RecentActivityEvent.Type type = (RecentActivityEvent.Type) eventTypeField.getValue();
+        List<RecentActivityEvent> events = plugin.getBuffer().getEvents();
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        for (RecentActivityEvent event : events) {
+            if (type != null && type != event.getType())
+                continue;
+            Object[] row = new Object[]{
+                    df.format(event.getEventTime()),
+                    event.getType().name(),
+                    event.getTriggerKey().getName() + "/" + event.getTriggerKey().getGroup(),
+                    event.getJobKey().getName() + "/" + event.getJobKey().getGroup(),
+                    toDateStr(event.getFireTime(), df),
+                    (event.getDurationInMillis() < 0) ? "" : "" + event.getDurationInMillis(),
+                    (event.getInstruction() == null) ? "" : event.getInstruction()
+            };
+            table.addItem(row, event.getSequence());
+        }
+    }
+
+    private RecentActivityPlugin findPlugin(SchedulerTemplate scheduler) {
+        Object plugin = scheduler.getContext().get(RecentActivityPlugin.DEFAULT_SCHEDULER_CONTEXT_KEY);
+        if (plugin instanceof RecentActivityPlugin)
+            return (RecentActivityPlugin)plugin;
+
+        // The plugin may be stored with a different key.
+        for (Object value : scheduler.getContext().values()) {
+            if (value instanceof RecentActivityPlugin)
+                return (RecentActivityPlugin)value;
+        }
+        return null;
+    }
+
+    private String toDateStr(Date date, SimpleDateFormat df) {
+        if (date == null)
+            return "";
+        return df.format(date);
+    }
+}
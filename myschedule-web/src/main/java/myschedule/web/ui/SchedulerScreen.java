@@ -33,8 +33,11 @@ public class SchedulerScreen extends VerticalLayout {
         VerticalLayout jobsWithTriggersContent = new VerticalLayout();
         VerticalLayout jobsWithoutTriggersContent = new VerticalLayout();
         VerticalLayout jobsRunningContent = new VerticalLayout();
+        VerticalLayout recentActivityContent = new VerticalLayout();
+        VerticalLayout upcomingFiresContent = new VerticalLayout();
         VerticalLayout calendarsContent = new VerticalLayout();
         VerticalLayout schedulerStatusContent = new VerticalLayout();
+        VerticalLayout metricsContent = new VerticalLayout();
         VerticalLayout xmlJobLoaderContent = new VerticalLayout();
         VerticalLayout jobsHistoriesContent = new VerticalLayout();
         VerticalLayout scriptConsoleContent = new VerticalLayout();
@@ -46,8 +49,11 @@ public class SchedulerScreen extends VerticalLayout {
             tabSheet.addTab(jobsWithTriggersContent, "Jobs with Triggers");
             tabSheet.addTab(jobsWithoutTriggersContent, "Jobs without Triggers");
             tabSheet.addTab(jobsRunningContent, "Current Running Jobs");
+            tabSheet.addTab(recentActivityContent, "Recent Activity");
+            tabSheet.addTab(upcomingFiresContent, "Next 24 Hours");
             tabSheet.addTab(calendarsContent, "Calendars/Exclusions");
             tabSheet.addTab(schedulerStatusContent, "Scheduler Status");
+            tabSheet.addTab(metricsContent, "Metrics");
             tabSheet.addTab(xmlJobLoaderContent, "Xml Job Loader");
             tabSheet.addTab(jobsHistoriesContent, "Job Histories");
             tabSheet.addTab(scriptConsoleContent, "Script Console");
@@ -63,10 +69,16 @@ public class SchedulerScreen extends VerticalLayout {
                         switchJobsWithoutTriggersContent();
                     } else if (selectedContent == jobsRunningContent) {
                         switchJobsRunningContent();
+                    } else if (selectedContent == recentActivityContent) {
+                        switchRecentActivityContent();
+                    } else if (selectedContent == upcomingFiresContent) {
+                        switchUpcomingFiresContent();
                     } else if (selectedContent == calendarsContent) {
                         switchCalendarsContent();
                     } else if (selectedContent == schedulerStatusContent) {
                         switchSchedulerStatusContent();
+                    } else if (selectedContent == metricsContent) {
+                        switchMetricsContent();
                     } else if (selectedContent == xmlJobLoaderContent) {
                         XmlJobLoaderWindow xmlJobLoaderWindow = new XmlJobLoaderWindow(myScheduleUi, schedulerSettingsName);
                         myScheduleUi.addWindow(xmlJobLoaderWindow);
@@ -95,6 +107,9 @@ public class SchedulerScreen extends VerticalLayout {
             jobsWithTriggersContent.addComponent(new JobsWithTriggersContent(myScheduleUi, schedulerSettingsName));
 
             // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
             jobsWithoutTriggersContent.removeAllComponents();
             jobsRunningContent.removeAllComponents();
             schedulerStatusContent.removeAllComponents();
@@ -107,6 +122,9 @@ public class SchedulerScreen extends VerticalLayout {
             jobsWithoutTriggersContent.addComponent(new JobsWithoutTriggersContent(myScheduleUi, schedulerSettingsName));
 
             // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
             jobsWithTriggersContent.removeAllComponents();
             jobsRunningContent.removeAllComponents();
             schedulerStatusContent.removeAllComponents();
@@ -119,6 +137,9 @@ public class SchedulerScreen extends VerticalLayout {
             jobsRunningContent.addComponent(new JobsRunningContent(myScheduleUi, schedulerSettingsName));
 
             // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
             jobsWithoutTriggersContent.removeAllComponents();
             jobsWithTriggersContent.removeAllComponents();
             schedulerStatusContent.removeAllComponents();
@@ -126,11 +147,44 @@ public class SchedulerScreen extends VerticalLayout {
             jobsHistoriesContent.removeAllComponents();
         }
 
+        void switchRecentActivityContent() {
+            recentActivityContent.removeAllComponents();
+            recentActivityContent.addComponent(new RecentActivityContent(myScheduleUi, schedulerSettingsName));
+
+            // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            jobsWithoutTriggersContent.removeAllComponents();
+            jobsWithTriggersContent.removeAllComponents();
+            jobsRunningContent.removeAllComponents();
+            schedulerStatusContent.removeAllComponents();
+            calendarsContent.removeAllComponents();
+            jobsHistoriesContent.removeAllComponents();
+        }
+
+        void switchUpcomingFiresContent() {
+            upcomingFiresContent.removeAllComponents();
+            upcomingFiresContent.addComponent(new UpcomingFiresContent(myScheduleUi, schedulerSettingsName));
+
+            // Clean up other tab resources
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
+            jobsWithoutTriggersContent.removeAllComponents();
+            jobsWithTriggersContent.removeAllComponents();
+            jobsRunningContent.removeAllComponents();
+            schedulerStatusContent.removeAllComponents();
+            calendarsContent.removeAllComponents();
+            jobsHistoriesContent.removeAllComponents();
+        }
+
         void switchCalendarsContent() {
             calendarsContent.removeAllComponents();
             calendarsContent.addComponent(new CalendarsContent(schedulerSettingsName));
 
             // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
             jobsWithoutTriggersContent.removeAllComponents();
             jobsWithTriggersContent.removeAllComponents();
             jobsRunningContent.removeAllComponents();
@@ -143,6 +197,9 @@ public class SchedulerScreen extends VerticalLayout {
             schedulerStatusContent.addComponent(new SchedulerStatusContent(schedulerSettingsName));
 
             // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
             jobsWithoutTriggersContent.removeAllComponents();
             jobsWithTriggersContent.removeAllComponents();
             jobsRunningContent.removeAllComponents();
@@ -150,11 +207,29 @@ public class SchedulerScreen extends VerticalLayout {
             jobsHistoriesContent.removeAllComponents();
         }
 
+        void switchMetricsContent() {
+            metricsContent.removeAllComponents();
+            metricsContent.addComponent(new MetricsContent(myScheduleUi, schedulerSettingsName));
+
+            // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
+            jobsWithoutTriggersContent.removeAllComponents();
+            jobsWithTriggersContent.removeAllComponents();
+            jobsRunningContent.removeAllComponents();
+            calendarsContent.removeAllComponents();
+            schedulerStatusContent.removeAllComponents();
+            jobsHistoriesContent.removeAllComponents();
+        }
+
         void switchJobsHistoriesContent() {
             jobsHistoriesContent.removeAllComponents();
             jobsHistoriesContent.addComponent(new JobsHistoriesContent(myScheduleUi, schedulerSettingsName));
 
             // Clean up other tab resources
+            upcomingFiresContent.removeAllComponents();
+            metricsContent.removeAllComponents();
+            recentActivityContent.removeAllComponents();
             jobsWithoutTriggersContent.removeAllComponents();
             jobsWithTriggersContent.removeAllComponents();
             jobsRunningContent.removeAllComponents();
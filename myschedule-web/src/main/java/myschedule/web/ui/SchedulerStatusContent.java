@@ -3,6 +3,7 @@ package myschedule.web.ui;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Table;
 import com.vaadin.ui.VerticalLayout;
+import myschedule.quartz.extra.LoadForecast;
 import myschedule.quartz.extra.SchedulerTemplate;
 import myschedule.web.MySchedule;
 import org.quartz.*;
@@ -30,6 +31,8 @@ public class SchedulerStatusContent extends VerticalLayout {
         this.schedulerSettingsName = schedulerSettingsName;
         initSchedulerStatusTable();
         addComponent(new Label(" ")); // Just a separator
+        initLoadForecastTable();
+        addComponent(new Label(" ")); // Just a separator
         initListenersInfoTable();
         addComponent(new Label(" ")); // Just a separator
         initPluginsInfoTable();
@@ -72,6 +75,42 @@ public class SchedulerStatusContent extends VerticalLayout {
         table.setPageLength(table.size());
     }
 
+    void initLoadForecastTable() {
+        // Only the saturated buckets are listed, the others are summarized in the caption.
+        Table table = new Table();
+        addComponent(table);
+
+        table.setSizeFull();
+
+        Object defaultValue = null; // Not used.
+        table.addContainerProperty("Time", String.class, defaultValue);
+        table.addContainerProperty("Fires", Integer.class, defaultValue);
+        table.addContainerProperty("Jobs Running at Once", Integer.class, defaultValue);
+        table.addContainerProperty("Thread Pool Size", Integer.class, defaultValue);
+
+        // Fill table data
+        LOGGER.debug("Loading load forecast table for {}", schedulerSettingsName);
+        LoadForecast forecast = mySchedule.getLoadForecast(schedulerSettingsName, 24);
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        int index = 1;
+        for (LoadForecast.Bucket bucket : forecast.getSaturatedBuckets()) {
+            Object[] row = new Object[]{df.format(bucket.getStartTime()), bucket.getFireCount(),
+                    bucket.getPeakConcurrency(), forecast.getThreadPoolSize()};
+            table.addItem(row, index++);
+        }
+
+        String caption = "Load Forecast for the Next 24 Hours: up to " + forecast.getPeakConcurrency() +
+                " jobs at once for " + forecast.getThreadPoolSize() + " threads, " + table.size() + " of " +
+                forecast.getBuckets().size() + " periods of " + (forecast.getBucketSizeInMillis() / 1000) +
+                " seconds saturated";
+        if (forecast.isTruncated())
+            caption += " (forecast stopped at the maximum number of fires)";
+        table.setCaption(caption);
+
+        // Shrink the table height to fit data rows size.
+        table.setPageLength(Math.min(table.size(), 20));
+    }
+
     void initListenersInfoTable() {
         Table table = new Table("Listeners Information");
         addComponent(table);
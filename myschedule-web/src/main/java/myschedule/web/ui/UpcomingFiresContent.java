@@ -0,0 +1,122 @@
+package myschedule.web.ui;
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.VerticalLayout;
+import myschedule.quartz.extra.ForecastFire;
+import myschedule.quartz.extra.SchedulerTemplate;
+import myschedule.web.MySchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * UpcomingFiresContent shows what the scheduler will run in the next 24 hours: the number of fires per hour, and
+ * every fire in time order. Fire times are forecast from the triggers, skipping calendar exclusions, and paused
+ * triggers are left out.
+ *
+ * @author Zemian Deng <saltnlight5@gmail.com>
+ */
+public class UpcomingFiresContent extends VerticalLayout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpcomingFiresContent.class);
+    private static final long FORECAST_PERIOD_IN_MILLIS = 24 * 60 * 60 * 1000L;
+    MySchedule mySchedule = MySchedule.getInstance();
+    MyScheduleUi myScheduleUi;
+    String schedulerSettingsName;
+    HorizontalLayout toolbar;
+    Label summaryLabel;
+    Table hourlyTable;
+    Table firesTable;
+
+    public UpcomingFiresContent(MyScheduleUi myScheduleUi, String schedulerSettingsName) {
+        this.myScheduleUi = myScheduleUi;
+        this.schedulerSettingsName = schedulerSettingsName;
+        initToolbar();
+        initTables();
+    }
+
+    private void initToolbar() {
+        toolbar = new HorizontalLayout();
+        addComponent(toolbar);
+
+        toolbar.addComponent(createRefreshButton());
+
+        summaryLabel = new Label();
+        toolbar.addComponent(summaryLabel);
+    }
+
+    private Button createRefreshButton() {
+        Button button = new Button("Refresh");
+        button.addClickListener(new Button.ClickListener() {
+            @Override
+            public void buttonClick(Button.ClickEvent event) {
+                reloadTableContent();
+            }
+        });
+        return button;
+    }
+
+    private void initTables() {
+        Object defaultValue = null; // Not used.
+
+        hourlyTable = new Table("Fires per Hour");
+        addComponent(hourlyTable);
+        hourlyTable.setSizeFull();
+        hourlyTable.addContainerProperty("Hour", String.class, defaultValue);
+        hourlyTable.addContainerProperty("Fires", Integer.class, defaultValue);
+
+        firesTable = new Table("Upcoming Fires");
+        addComponent(firesTable);
+        firesTable.setSizeFull();
+        firesTable.setSelectable(true);
+        firesTable.addContainerProperty("Fire Time", String.class, defaultValue);
+        firesTable.addContainerProperty("Trigger", String.class, defaultValue);
+        firesTable.addContainerProperty("JobDetail", String.class, defaultValue);
+
+        reloadTableContent();
+    }
+
+    private void reloadTableContent() {
+        hourlyTable.removeAllItems();
+        firesTable.removeAllItems();
+
+        LOGGER.debug("Forecasting next 24 hours fires of scheduler {}", schedulerSettingsName);
+        SchedulerTemplate scheduler = mySchedule.getScheduler(schedulerSettingsName);
+        int maxCount = mySchedule.getMyScheduleSettings().getMaxNumOfForecastFires();
+        Date fromTime = new Date();
+        Date toTime = new Date(fromTime.getTime() + FORECAST_PERIOD_IN_MILLIS);
+        List<ForecastFire> fires = scheduler.getFireTimeline(fromTime, toTime, maxCount);
+
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        SimpleDateFormat hourDf = new SimpleDateFormat("yyyy-MM-dd HH:00");
+        Map<String, Integer> hourlyCounts = new TreeMap<String, Integer>();
+        int index = 0;
+        for (ForecastFire fire : fires) {
+            Object[] row = new Object[]{
+                    df.format(fire.getFireTime()),
+                    fire.getTriggerKey().getName() + "/" + fire.getTriggerKey().getGroup(),
+                    fire.getJobKey().getName() + "/" + fire.getJobKey().getGroup()
+            };
+            firesTable.addItem(row, index++);
+
+            String hour = hourDf.format(fire.getFireTime());
+            Integer count = hourlyCounts.get(hour);
+            hourlyCounts.put(hour, (count == null) ? 1 : count + 1);
+        }
+        for (Map.Entry<String, Integer> entry : hourlyCounts.entrySet())
+            hourlyTable.addItem(new Object[]{entry.getKey(), entry.getValue()}, entry.getKey());
+        hourlyTable.setPageLength(Math.min(hourlyTable.size(), 25));
+
+        String summary = fires.size() + " fires until " + df.format(toTime);
+        if (fires.size() >= maxCount)
+            summary += " (listing stopped at the first " + maxCount + ")";
+        summaryLabel.setValue(summary);
+    }
+}
@@ -164,4 +164,92 @@ CREATE TABLE QRTZ_LOCKS
 );
 
 
+-- Optional: the history table for myschedule.quartz.extra.JdbcSchedulerHistoryPlugin (with idColumnName = id).
+-- The (event_time, id) index lets the plugin read the newest histories one page at a time.
+DROP TABLE IF EXISTS QRTZ_SCHEDULER_HISTORY;
+CREATE TABLE QRTZ_SCHEDULER_HISTORY
+  (
+    ID BIGINT NOT NULL AUTO_INCREMENT,
+    HOST_IP VARCHAR(15) NOT NULL,
+    HOST_NAME VARCHAR(256) NOT NULL,
+    SCHEDULER_NAME VARCHAR(256) NOT NULL,
+    EVENT_TYPE VARCHAR(128) NOT NULL,
+    EVENT_NAME VARCHAR(128) NOT NULL,
+    EVENT_TIME TIMESTAMP NOT NULL,
+    INFO1 VARCHAR(256) NULL,
+    INFO2 VARCHAR(256) NULL,
+    INFO3 VARCHAR(256) NULL,
+    INFO4 VARCHAR(256) NULL,
+    INFO5 VARCHAR(256) NULL,
+    PRIMARY KEY (ID),
+    INDEX IDX_QRTZ_SH_TIME (EVENT_TIME,ID),
+    INDEX IDX_QRTZ_SH_EVENT (EVENT_TYPE,EVENT_NAME,EVENT_TIME)
+);
+
+-- Partitioned variants of the history table. Use one of these instead of the above to retain histories by dropping
+-- whole partitions (see JdbcSchedulerHistoryPlugin partitionMode).
+--
+-- 1) partitionMode = NATIVE: range partitions on EVENT_TIME. The plugin adds the daily (or weekly) partitions by
+--    splitting PMAX, with these settings:
+--    partitionListSql = SELECT partition_name FROM information_schema.partitions WHERE table_schema = DATABASE() AND table_name = '{table}'
+--    partitionAddSql = ALTER TABLE {table} REORGANIZE PARTITION pmax INTO (PARTITION {name} VALUES LESS THAN (UNIX_TIMESTAMP('{end}')), PARTITION pmax VALUES LESS THAN MAXVALUE)
+--
+-- CREATE TABLE QRTZ_SCHEDULER_HISTORY
+--   (
+--     ID BIGINT NOT NULL AUTO_INCREMENT,
+--     HOST_IP VARCHAR(15) NOT NULL,
+--     HOST_NAME VARCHAR(256) NOT NULL,
+--     SCHEDULER_NAME VARCHAR(256) NOT NULL,
+--     EVENT_TYPE VARCHAR(128) NOT NULL,
+--     EVENT_NAME VARCHAR(128) NOT NULL,
+--     EVENT_TIME TIMESTAMP NOT NULL,
+--     INFO1 VARCHAR(256) NULL,
+--     INFO2 VARCHAR(256) NULL,
+--     INFO3 VARCHAR(256) NULL,
+--     INFO4 VARCHAR(256) NULL,
+--     INFO5 VARCHAR(256) NULL,
+--     PRIMARY KEY (ID,EVENT_TIME),
+--     INDEX IDX_QRTZ_SH_TIME (EVENT_TIME,ID),
+--     INDEX IDX_QRTZ_SH_EVENT (EVENT_TYPE,EVENT_NAME,EVENT_TIME)
+-- )
+-- PARTITION BY RANGE (UNIX_TIMESTAMP(EVENT_TIME)) (PARTITION pmax VALUES LESS THAN MAXVALUE);
+--
+-- 2) partitionMode = TABLES: the plugin creates one QRTZ_SCHEDULER_HISTORY_yyyyMMdd table per period like this
+--    template table, and keeps the QRTZ_SCHEDULER_HISTORY view over them. An AUTO_INCREMENT per table would repeat
+--    ids across the view, so ids come from the one QRTZ_SCHEDULER_HISTORY_SEQ counter, with these settings:
+--    partitionAddSql = CREATE TABLE {name} LIKE QRTZ_SCHEDULER_HISTORY_TEMPLATE
+--    partitionInsertSql = INSERT INTO {name}(id, host_ip, host_name, scheduler_name, event_type, event_name, event_time, info1, info2, info3, info4, info5) VALUES(QRTZ_SCHEDULER_HISTORY_NEXT_ID(),?,?,?,?,?,?,?,?,?,?,?)
+--
+--    With binary logging on, creating the function needs the SUPER privilege or log_bin_trust_function_creators.
+--
+-- CREATE TABLE QRTZ_SCHEDULER_HISTORY_SEQ (ID BIGINT NOT NULL);
+-- INSERT INTO QRTZ_SCHEDULER_HISTORY_SEQ VALUES (0);
+-- DELIMITER //
+-- CREATE FUNCTION QRTZ_SCHEDULER_HISTORY_NEXT_ID() RETURNS BIGINT NOT DETERMINISTIC MODIFIES SQL DATA
+-- BEGIN
+--   UPDATE QRTZ_SCHEDULER_HISTORY_SEQ SET ID = LAST_INSERT_ID(ID + 1);
+--   RETURN LAST_INSERT_ID();
+-- END //
+-- DELIMITER ;
+--
+-- CREATE TABLE QRTZ_SCHEDULER_HISTORY_TEMPLATE
+--   (
+--     ID BIGINT NOT NULL,
+--     HOST_IP VARCHAR(15) NOT NULL,
+--     HOST_NAME VARCHAR(256) NOT NULL,
+--     SCHEDULER_NAME VARCHAR(256) NOT NULL,
+--     EVENT_TYPE VARCHAR(128) NOT NULL,
+--     EVENT_NAME VARCHAR(128) NOT NULL,
+--     EVENT_TIME TIMESTAMP NOT NULL,
+--     INFO1 VARCHAR(256) NULL,
+--     INFO2 VARCHAR(256) NULL,
+--     INFO3 VARCHAR(256) NULL,
+--     INFO4 VARCHAR(256) NULL,
+--     INFO5 VARCHAR(256) NULL,
+--     PRIMARY KEY (ID),
+--     INDEX IDX_QRTZ_SH_TIME (EVENT_TIME,ID),
+--     INDEX IDX_QRTZ_SH_EVENT (EVENT_TYPE,EVENT_NAME,EVENT_TIME)
+-- );
+
+
 commit;
@@ -190,4 +190,68 @@ create index idx_qrtz_ft_t_g on qrtz_fired_triggers(SCHED_NAME,TRIGGER_NAME,TRIG
 create index idx_qrtz_ft_tg on qrtz_fired_triggers(SCHED_NAME,TRIGGER_GROUP);
 
 
+-- Optional: the history table for myschedule.quartz.extra.JdbcSchedulerHistoryPlugin (with idColumnName = id).
+-- The (event_time, id) index lets the plugin read the newest histories one page at a time. Use the sequence in
+-- the plugin insertSql, eg: INSERT INTO qrtz_scheduler_history(id, host_ip, ..., info5)
+-- VALUES(qrtz_scheduler_history_seq.nextval,?,?,?,?,?,?,?,?,?,?,?)
+CREATE SEQUENCE qrtz_scheduler_history_seq;
+CREATE TABLE qrtz_scheduler_history
+  (
+    ID NUMBER(19) NOT NULL,
+    HOST_IP VARCHAR2(120) NOT NULL,
+    HOST_NAME VARCHAR2(200) NOT NULL,
+    SCHEDULER_NAME VARCHAR2(250) NOT NULL,
+    EVENT_TYPE VARCHAR2(250) NOT NULL,
+    EVENT_NAME VARCHAR2(250) NOT NULL,
+    EVENT_TIME TIMESTAMP NOT NULL,
+    INFO1 VARCHAR2(250) NULL,
+    INFO2 VARCHAR2(250) NULL,
+    INFO3 VARCHAR2(250) NULL,
+    INFO4 VARCHAR2(250) NULL,
+    INFO5 VARCHAR2(250) NULL,
+    CONSTRAINT QRTZ_SCHEDULER_HISTORY_PK PRIMARY KEY (ID)
+);
+create index idx_qrtz_sh_time on qrtz_scheduler_history(EVENT_TIME,ID);
+create index idx_qrtz_sh_event on qrtz_scheduler_history(EVENT_TYPE,EVENT_NAME,EVENT_TIME);
+
+-- Partitioned variants of the history table. Use one of these instead of the above to retain histories by dropping
+-- whole partitions (see JdbcSchedulerHistoryPlugin partitionMode).
+--
+-- 1) partitionMode = NATIVE: range partitions on EVENT_TIME. The plugin adds the daily (or weekly) partitions ahead,
+--    and the P19700101 starter partition is dropped by the first retention run. Use these settings:
+--    partitionListSql = SELECT partition_name FROM user_tab_partitions WHERE table_name = UPPER('{table}')
+--    partitionAddSql = ALTER TABLE {table} ADD PARTITION {name} VALUES LESS THAN (TIMESTAMP '{end}')
+--    partitionDropSql = ALTER TABLE {table} DROP PARTITION {name} UPDATE GLOBAL INDEXES
+--
+-- CREATE TABLE qrtz_scheduler_history
+--   (
+--     ID NUMBER(19) NOT NULL,
+--     HOST_IP VARCHAR2(120) NOT NULL,
+--     HOST_NAME VARCHAR2(200) NOT NULL,
+--     SCHEDULER_NAME VARCHAR2(250) NOT NULL,
+--     EVENT_TYPE VARCHAR2(250) NOT NULL,
+--     EVENT_NAME VARCHAR2(250) NOT NULL,
+--     EVENT_TIME TIMESTAMP NOT NULL,
+--     INFO1 VARCHAR2(250) NULL,
+--     INFO2 VARCHAR2(250) NULL,
+--     INFO3 VARCHAR2(250) NULL,
+--     INFO4 VARCHAR2(250) NULL,
+--     INFO5 VARCHAR2(250) NULL,
+--     CONSTRAINT QRTZ_SCHEDULER_HISTORY_PK PRIMARY KEY (ID)
+-- )
+-- PARTITION BY RANGE (EVENT_TIME)
+--   (PARTITION P19700101 VALUES LESS THAN (TIMESTAMP '1970-01-02 00:00:00'));
+-- create index idx_qrtz_sh_time on qrtz_scheduler_history(EVENT_TIME,ID) LOCAL;
+-- create index idx_qrtz_sh_event on qrtz_scheduler_history(EVENT_TYPE,EVENT_NAME,EVENT_TIME) LOCAL;
+--
+-- 2) partitionMode = TABLES: the plugin creates one QRTZ_SCHEDULER_HISTORY_yyyyMMdd table per period and keeps the
+--    qrtz_scheduler_history view over them. Use the sequence above for ids, with these settings. CREATE TABLE AS
+--    SELECT copies no constraint nor index, so the template also adds the primary key and the (EVENT_TIME, ID)
+--    index (names longer than 30 characters need Oracle 12.2 or later, as do the default table names):
+--    partitionAddSql = CREATE TABLE {name} AS SELECT * FROM qrtz_scheduler_history_template WHERE 1 = 0; ALTER TABLE {name} ADD CONSTRAINT {name}_pk PRIMARY KEY (ID); CREATE INDEX {name}_t ON {name}(EVENT_TIME,ID)
+--    partitionInsertSql = INSERT INTO {name}(id, host_ip, host_name, scheduler_name, event_type, event_name, event_time, info1, info2, info3, info4, info5) VALUES(qrtz_scheduler_history_seq.nextval,?,?,?,?,?,?,?,?,?,?,?)
+--
+-- CREATE TABLE qrtz_scheduler_history_template AS SELECT * FROM qrtz_scheduler_history WHERE 1 = 0;
+
+
 commit;